@@ -33,6 +33,8 @@ import org.apache.poi.poifs.filesystem.POIFSFileSystem;
  * This will cause your file to be processed a record at a time.  Each record with
  * a static id matching one that you have registered in your HSSFRequest will be passed
  * to your associated HSSFListener.
+ * Records that no listener has been registered for are skipped over without being
+ * parsed, so listening for just the records you need makes processing much quicker.
  *
  * @author Andrew C. Oliver (acoliver at apache dot org)
  * @author Carey Sublette  (careysub@earthling.net)
@@ -135,8 +137,8 @@ public class HSSFEventFactory {
 		throws HSSFUserException {
 		short userCode = 0;
 
-		// Create a new RecordStream and use that
-		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false);
+		// Create a new RecordStream and use that, skipping records that nobody listens to
+		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false, req.getRequestedSids());
 
 		// Process each record as they come in
 		while(true) {
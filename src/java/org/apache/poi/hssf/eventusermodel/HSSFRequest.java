@@ -84,6 +84,24 @@ public class HSSFRequest {
 		}
 	}
 
+	/**
+	 * Called by HSSFEventFactory to find out which records to build. Records with
+	 * other sids are skipped without being parsed, so they never reach
+	 * {@link #processRecord(Record)}. Subclasses which override that to see records
+	 * nobody has registered a listener for should return <code>null</code> here.
+	 *
+	 * @return the sids that listeners have been registered for, or <code>null</code>
+	 * if every record is wanted
+	 */
+	protected short[] getRequestedSids() {
+		short[] result = new short[_records.size()];
+		int i = 0;
+		for (Short sid : _records.keySet()) {
+			result[i++] = sid.shortValue();
+		}
+		return result;
+	}
+
 	/**
 	 * Called by HSSFEventFactory, passes the Record to each listener associated with
 	 * a record.sid.
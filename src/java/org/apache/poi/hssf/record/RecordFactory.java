@@ -18,10 +18,6 @@
 package org.apache.poi.hssf.record;
 
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
 
 import org.apache.poi.hssf.record.chart.*;
@@ -40,219 +36,177 @@ import org.apache.poi.hssf.record.pivottable.*;
 public final class RecordFactory {
 	private static final int NUM_RECORDS = 512;
 
-	private interface I_RecordCreator {
-		Record create(RecordInputStream in);
-
-		Class<? extends Record> getRecordClass();
-	}
-	private static final class ReflectionConstructorRecordCreator implements I_RecordCreator {
-
-		private final Constructor<? extends Record> _c;
-		public ReflectionConstructorRecordCreator(Constructor<? extends Record> c) {
-			_c = c;
-		}
-		public Record create(RecordInputStream in) {
-			Object[] args = { in, };
-			try {
-				return _c.newInstance(args);
-			} catch (IllegalArgumentException e) {
-				throw new RuntimeException(e);
-			} catch (InstantiationException e) {
-				throw new RuntimeException(e);
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
-			} catch (InvocationTargetException e) {
-				throw new RecordFormatException("Unable to construct record instance" , e.getTargetException());
-			}
-		}
-		public Class<? extends Record> getRecordClass() {
-			return _c.getDeclaringClass();
-		}
-	}
 	/**
-	 * A "create" method is used instead of the usual constructor if the created record might
-	 * be of a different class to the declaring class.
+	 * Creates the records of one class. There is an instance of this for each class in
+	 * {@link #recordCreators}, so that records are constructed directly, rather than by
+	 * reflection, as there can be millions of them in a single file.
 	 */
-	private static final class ReflectionMethodRecordCreator implements I_RecordCreator {
+	private static abstract class RecordCreator {
+		private final Class<? extends Record> _recordClass;
 
-		private final Method _m;
-		public ReflectionMethodRecordCreator(Method m) {
-			_m = m;
+		RecordCreator(Class<? extends Record> recordClass) {
+			_recordClass = recordClass;
 		}
-		public Record create(RecordInputStream in) {
-			Object[] args = { in, };
-			try {
-				return (Record) _m.invoke(null, args);
-			} catch (IllegalArgumentException e) {
-				throw new RuntimeException(e);
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
-			} catch (InvocationTargetException e) {
-				throw new RecordFormatException("Unable to construct record instance" , e.getTargetException());
-			}
-		}
-		@SuppressWarnings("unchecked")
-		public Class<? extends Record> getRecordClass() {
-			return (Class<? extends Record>) _m.getDeclaringClass();
+		abstract Record create(RecordInputStream in);
+
+		Class<? extends Record> getRecordClass() {
+			return _recordClass;
 		}
 	}
 
-
-	private static final Class<?>[] CONSTRUCTOR_ARGS = { RecordInputStream.class, };
-
 	/**
-	 * contains the classes for all the records we want to parse.<br/>
+	 * contains the creators for all the records we want to parse.<br/>
 	 * Note - this most but not *every* subclass of Record.
 	 */
-	@SuppressWarnings("unchecked")
-	private static final Class<? extends Record>[] recordClasses = new Class[] {
-		ArrayRecord.class,
-        AutoFilterInfoRecord.class,
-        BackupRecord.class,
-		BlankRecord.class,
-		BOFRecord.class,
-		BookBoolRecord.class,
-		BoolErrRecord.class,
-		BottomMarginRecord.class,
-		BoundSheetRecord.class,
-		CalcCountRecord.class,
-		CalcModeRecord.class,
-		CFHeaderRecord.class,
-		CFRuleRecord.class,
-		ChartRecord.class,
-		ChartTitleFormatRecord.class,
-		CodepageRecord.class,
-		ColumnInfoRecord.class,
-		ContinueRecord.class,
-		CountryRecord.class,
-		CRNCountRecord.class,
-		CRNRecord.class,
-		DateWindow1904Record.class,
-		DBCellRecord.class,
-                DConRefRecord.class,
-		DefaultColWidthRecord.class,
-		DefaultRowHeightRecord.class,
-		DeltaRecord.class,
-		DimensionsRecord.class,
-		DrawingGroupRecord.class,
-		DrawingRecord.class,
-		DrawingSelectionRecord.class,
-		DSFRecord.class,
-		DVALRecord.class,
-		DVRecord.class,
-		EOFRecord.class,
-		ExtendedFormatRecord.class,
-		ExternalNameRecord.class,
-		ExternSheetRecord.class,
-		ExtSSTRecord.class,
-		FeatRecord.class,
-		FeatHdrRecord.class,
-		FilePassRecord.class,
-		FileSharingRecord.class,
-		FnGroupCountRecord.class,
-		FontRecord.class,
-		FooterRecord.class,
-		FormatRecord.class,
-		FormulaRecord.class,
-		GridsetRecord.class,
-		GutsRecord.class,
-		HCenterRecord.class,
-		HeaderRecord.class,
-        HeaderFooterRecord.class,
-		HideObjRecord.class,
-		HorizontalPageBreakRecord.class,
-		HyperlinkRecord.class,
-		IndexRecord.class,
-		InterfaceEndRecord.class,
-		InterfaceHdrRecord.class,
-		IterationRecord.class,
-		LabelRecord.class,
-		LabelSSTRecord.class,
-		LeftMarginRecord.class,
-		LegendRecord.class,
-		MergeCellsRecord.class,
-		MMSRecord.class,
-		MulBlankRecord.class,
-		MulRKRecord.class,
-		NameRecord.class,
-		NameCommentRecord.class,
-		NoteRecord.class,
-		NumberRecord.class,
-		ObjectProtectRecord.class,
-		ObjRecord.class,
-		PaletteRecord.class,
-		PaneRecord.class,
-		PasswordRecord.class,
-		PasswordRev4Record.class,
-		PrecisionRecord.class,
-		PrintGridlinesRecord.class,
-		PrintHeadersRecord.class,
-		PrintSetupRecord.class,
-		ProtectionRev4Record.class,
-		ProtectRecord.class,
-		RecalcIdRecord.class,
-		RefModeRecord.class,
-		RefreshAllRecord.class,
-		RightMarginRecord.class,
-		RKRecord.class,
-		RowRecord.class,
-		SaveRecalcRecord.class,
-		ScenarioProtectRecord.class,
-		SelectionRecord.class,
-		SeriesRecord.class,
-		SeriesTextRecord.class,
-		SharedFormulaRecord.class,
-		SSTRecord.class,
-		StringRecord.class,
-		StyleRecord.class,
-		SupBookRecord.class,
-		TabIdRecord.class,
-		TableRecord.class,
-		TableStylesRecord.class,
-		TextObjectRecord.class,
-		TopMarginRecord.class,
-		UncalcedRecord.class,
-		UseSelFSRecord.class,
-		UserSViewBegin.class,
-		UserSViewEnd.class,
-		ValueRangeRecord.class,
-		VCenterRecord.class,
-		VerticalPageBreakRecord.class,
-		WindowOneRecord.class,
-		WindowProtectRecord.class,
-		WindowTwoRecord.class,
-		WriteAccessRecord.class,
-		WriteProtectRecord.class,
-		WSBoolRecord.class,
+	private static final RecordCreator[] recordCreators = {
+		new RecordCreator(ArrayRecord.class) { Record create(RecordInputStream in) { return new ArrayRecord(in); } },
+		new RecordCreator(AutoFilterInfoRecord.class) { Record create(RecordInputStream in) { return new AutoFilterInfoRecord(in); } },
+		new RecordCreator(BackupRecord.class) { Record create(RecordInputStream in) { return new BackupRecord(in); } },
+		new RecordCreator(BlankRecord.class) { Record create(RecordInputStream in) { return new BlankRecord(in); } },
+		new RecordCreator(BOFRecord.class) { Record create(RecordInputStream in) { return new BOFRecord(in); } },
+		new RecordCreator(BookBoolRecord.class) { Record create(RecordInputStream in) { return new BookBoolRecord(in); } },
+		new RecordCreator(BoolErrRecord.class) { Record create(RecordInputStream in) { return new BoolErrRecord(in); } },
+		new RecordCreator(BottomMarginRecord.class) { Record create(RecordInputStream in) { return new BottomMarginRecord(in); } },
+		new RecordCreator(BoundSheetRecord.class) { Record create(RecordInputStream in) { return new BoundSheetRecord(in); } },
+		new RecordCreator(CalcCountRecord.class) { Record create(RecordInputStream in) { return new CalcCountRecord(in); } },
+		new RecordCreator(CalcModeRecord.class) { Record create(RecordInputStream in) { return new CalcModeRecord(in); } },
+		new RecordCreator(CFHeaderRecord.class) { Record create(RecordInputStream in) { return new CFHeaderRecord(in); } },
+		new RecordCreator(CFRuleRecord.class) { Record create(RecordInputStream in) { return new CFRuleRecord(in); } },
+		new RecordCreator(ChartRecord.class) { Record create(RecordInputStream in) { return new ChartRecord(in); } },
+		new RecordCreator(ChartTitleFormatRecord.class) { Record create(RecordInputStream in) { return new ChartTitleFormatRecord(in); } },
+		new RecordCreator(CodepageRecord.class) { Record create(RecordInputStream in) { return new CodepageRecord(in); } },
+		new RecordCreator(ColumnInfoRecord.class) { Record create(RecordInputStream in) { return new ColumnInfoRecord(in); } },
+		new RecordCreator(ContinueRecord.class) { Record create(RecordInputStream in) { return new ContinueRecord(in); } },
+		new RecordCreator(CountryRecord.class) { Record create(RecordInputStream in) { return new CountryRecord(in); } },
+		new RecordCreator(CRNCountRecord.class) { Record create(RecordInputStream in) { return new CRNCountRecord(in); } },
+		new RecordCreator(CRNRecord.class) { Record create(RecordInputStream in) { return new CRNRecord(in); } },
+		new RecordCreator(DateWindow1904Record.class) { Record create(RecordInputStream in) { return new DateWindow1904Record(in); } },
+		new RecordCreator(DBCellRecord.class) { Record create(RecordInputStream in) { return new DBCellRecord(in); } },
+		new RecordCreator(DConRefRecord.class) { Record create(RecordInputStream in) { return new DConRefRecord(in); } },
+		new RecordCreator(DefaultColWidthRecord.class) { Record create(RecordInputStream in) { return new DefaultColWidthRecord(in); } },
+		new RecordCreator(DefaultRowHeightRecord.class) { Record create(RecordInputStream in) { return new DefaultRowHeightRecord(in); } },
+		new RecordCreator(DeltaRecord.class) { Record create(RecordInputStream in) { return new DeltaRecord(in); } },
+		new RecordCreator(DimensionsRecord.class) { Record create(RecordInputStream in) { return new DimensionsRecord(in); } },
+		new RecordCreator(DrawingGroupRecord.class) { Record create(RecordInputStream in) { return new DrawingGroupRecord(in); } },
+		new RecordCreator(DrawingRecord.class) { Record create(RecordInputStream in) { return new DrawingRecord(in); } },
+		new RecordCreator(DrawingSelectionRecord.class) { Record create(RecordInputStream in) { return new DrawingSelectionRecord(in); } },
+		new RecordCreator(DSFRecord.class) { Record create(RecordInputStream in) { return new DSFRecord(in); } },
+		new RecordCreator(DVALRecord.class) { Record create(RecordInputStream in) { return new DVALRecord(in); } },
+		new RecordCreator(DVRecord.class) { Record create(RecordInputStream in) { return new DVRecord(in); } },
+		new RecordCreator(EOFRecord.class) { Record create(RecordInputStream in) { return new EOFRecord(in); } },
+		new RecordCreator(ExtendedFormatRecord.class) { Record create(RecordInputStream in) { return new ExtendedFormatRecord(in); } },
+		new RecordCreator(ExternalNameRecord.class) { Record create(RecordInputStream in) { return new ExternalNameRecord(in); } },
+		new RecordCreator(ExternSheetRecord.class) { Record create(RecordInputStream in) { return new ExternSheetRecord(in); } },
+		new RecordCreator(ExtSSTRecord.class) { Record create(RecordInputStream in) { return new ExtSSTRecord(in); } },
+		new RecordCreator(FeatRecord.class) { Record create(RecordInputStream in) { return new FeatRecord(in); } },
+		new RecordCreator(FeatHdrRecord.class) { Record create(RecordInputStream in) { return new FeatHdrRecord(in); } },
+		new RecordCreator(FilePassRecord.class) { Record create(RecordInputStream in) { return new FilePassRecord(in); } },
+		new RecordCreator(FileSharingRecord.class) { Record create(RecordInputStream in) { return new FileSharingRecord(in); } },
+		new RecordCreator(FnGroupCountRecord.class) { Record create(RecordInputStream in) { return new FnGroupCountRecord(in); } },
+		new RecordCreator(FontRecord.class) { Record create(RecordInputStream in) { return new FontRecord(in); } },
+		new RecordCreator(FooterRecord.class) { Record create(RecordInputStream in) { return new FooterRecord(in); } },
+		new RecordCreator(FormatRecord.class) { Record create(RecordInputStream in) { return new FormatRecord(in); } },
+		new RecordCreator(FormulaRecord.class) { Record create(RecordInputStream in) { return new FormulaRecord(in); } },
+		new RecordCreator(GridsetRecord.class) { Record create(RecordInputStream in) { return new GridsetRecord(in); } },
+		new RecordCreator(GutsRecord.class) { Record create(RecordInputStream in) { return new GutsRecord(in); } },
+		new RecordCreator(HCenterRecord.class) { Record create(RecordInputStream in) { return new HCenterRecord(in); } },
+		new RecordCreator(HeaderRecord.class) { Record create(RecordInputStream in) { return new HeaderRecord(in); } },
+		new RecordCreator(HeaderFooterRecord.class) { Record create(RecordInputStream in) { return new HeaderFooterRecord(in); } },
+		new RecordCreator(HideObjRecord.class) { Record create(RecordInputStream in) { return new HideObjRecord(in); } },
+		new RecordCreator(HorizontalPageBreakRecord.class) { Record create(RecordInputStream in) { return new HorizontalPageBreakRecord(in); } },
+		new RecordCreator(HyperlinkRecord.class) { Record create(RecordInputStream in) { return new HyperlinkRecord(in); } },
+		new RecordCreator(IndexRecord.class) { Record create(RecordInputStream in) { return new IndexRecord(in); } },
+		new RecordCreator(InterfaceEndRecord.class) { Record create(RecordInputStream in) { return InterfaceEndRecord.create(in); } },
+		new RecordCreator(InterfaceHdrRecord.class) { Record create(RecordInputStream in) { return new InterfaceHdrRecord(in); } },
+		new RecordCreator(IterationRecord.class) { Record create(RecordInputStream in) { return new IterationRecord(in); } },
+		new RecordCreator(LabelRecord.class) { Record create(RecordInputStream in) { return new LabelRecord(in); } },
+		new RecordCreator(LabelSSTRecord.class) { Record create(RecordInputStream in) { return new LabelSSTRecord(in); } },
+		new RecordCreator(LeftMarginRecord.class) { Record create(RecordInputStream in) { return new LeftMarginRecord(in); } },
+		new RecordCreator(LegendRecord.class) { Record create(RecordInputStream in) { return new LegendRecord(in); } },
+		new RecordCreator(MergeCellsRecord.class) { Record create(RecordInputStream in) { return new MergeCellsRecord(in); } },
+		new RecordCreator(MMSRecord.class) { Record create(RecordInputStream in) { return new MMSRecord(in); } },
+		new RecordCreator(MulBlankRecord.class) { Record create(RecordInputStream in) { return new MulBlankRecord(in); } },
+		new RecordCreator(MulRKRecord.class) { Record create(RecordInputStream in) { return new MulRKRecord(in); } },
+		new RecordCreator(NameRecord.class) { Record create(RecordInputStream in) { return new NameRecord(in); } },
+		new RecordCreator(NameCommentRecord.class) { Record create(RecordInputStream in) { return new NameCommentRecord(in); } },
+		new RecordCreator(NoteRecord.class) { Record create(RecordInputStream in) { return new NoteRecord(in); } },
+		new RecordCreator(NumberRecord.class) { Record create(RecordInputStream in) { return new NumberRecord(in); } },
+		new RecordCreator(ObjectProtectRecord.class) { Record create(RecordInputStream in) { return new ObjectProtectRecord(in); } },
+		new RecordCreator(ObjRecord.class) { Record create(RecordInputStream in) { return new ObjRecord(in); } },
+		new RecordCreator(PaletteRecord.class) { Record create(RecordInputStream in) { return new PaletteRecord(in); } },
+		new RecordCreator(PaneRecord.class) { Record create(RecordInputStream in) { return new PaneRecord(in); } },
+		new RecordCreator(PasswordRecord.class) { Record create(RecordInputStream in) { return new PasswordRecord(in); } },
+		new RecordCreator(PasswordRev4Record.class) { Record create(RecordInputStream in) { return new PasswordRev4Record(in); } },
+		new RecordCreator(PrecisionRecord.class) { Record create(RecordInputStream in) { return new PrecisionRecord(in); } },
+		new RecordCreator(PrintGridlinesRecord.class) { Record create(RecordInputStream in) { return new PrintGridlinesRecord(in); } },
+		new RecordCreator(PrintHeadersRecord.class) { Record create(RecordInputStream in) { return new PrintHeadersRecord(in); } },
+		new RecordCreator(PrintSetupRecord.class) { Record create(RecordInputStream in) { return new PrintSetupRecord(in); } },
+		new RecordCreator(ProtectionRev4Record.class) { Record create(RecordInputStream in) { return new ProtectionRev4Record(in); } },
+		new RecordCreator(ProtectRecord.class) { Record create(RecordInputStream in) { return new ProtectRecord(in); } },
+		new RecordCreator(RecalcIdRecord.class) { Record create(RecordInputStream in) { return new RecalcIdRecord(in); } },
+		new RecordCreator(RefModeRecord.class) { Record create(RecordInputStream in) { return new RefModeRecord(in); } },
+		new RecordCreator(RefreshAllRecord.class) { Record create(RecordInputStream in) { return new RefreshAllRecord(in); } },
+		new RecordCreator(RightMarginRecord.class) { Record create(RecordInputStream in) { return new RightMarginRecord(in); } },
+		new RecordCreator(RKRecord.class) { Record create(RecordInputStream in) { return new RKRecord(in); } },
+		new RecordCreator(RowRecord.class) { Record create(RecordInputStream in) { return new RowRecord(in); } },
+		new RecordCreator(SaveRecalcRecord.class) { Record create(RecordInputStream in) { return new SaveRecalcRecord(in); } },
+		new RecordCreator(ScenarioProtectRecord.class) { Record create(RecordInputStream in) { return new ScenarioProtectRecord(in); } },
+		new RecordCreator(SelectionRecord.class) { Record create(RecordInputStream in) { return new SelectionRecord(in); } },
+		new RecordCreator(SeriesRecord.class) { Record create(RecordInputStream in) { return new SeriesRecord(in); } },
+		new RecordCreator(SeriesTextRecord.class) { Record create(RecordInputStream in) { return new SeriesTextRecord(in); } },
+		new RecordCreator(SharedFormulaRecord.class) { Record create(RecordInputStream in) { return new SharedFormulaRecord(in); } },
+		new RecordCreator(SSTRecord.class) { Record create(RecordInputStream in) { return new SSTRecord(in); } },
+		new RecordCreator(StringRecord.class) { Record create(RecordInputStream in) { return new StringRecord(in); } },
+		new RecordCreator(StyleRecord.class) { Record create(RecordInputStream in) { return new StyleRecord(in); } },
+		new RecordCreator(SupBookRecord.class) { Record create(RecordInputStream in) { return new SupBookRecord(in); } },
+		new RecordCreator(TabIdRecord.class) { Record create(RecordInputStream in) { return new TabIdRecord(in); } },
+		new RecordCreator(TableRecord.class) { Record create(RecordInputStream in) { return new TableRecord(in); } },
+		new RecordCreator(TableStylesRecord.class) { Record create(RecordInputStream in) { return new TableStylesRecord(in); } },
+		new RecordCreator(TextObjectRecord.class) { Record create(RecordInputStream in) { return new TextObjectRecord(in); } },
+		new RecordCreator(TopMarginRecord.class) { Record create(RecordInputStream in) { return new TopMarginRecord(in); } },
+		new RecordCreator(UncalcedRecord.class) { Record create(RecordInputStream in) { return new UncalcedRecord(in); } },
+		new RecordCreator(UseSelFSRecord.class) { Record create(RecordInputStream in) { return new UseSelFSRecord(in); } },
+		new RecordCreator(UserSViewBegin.class) { Record create(RecordInputStream in) { return new UserSViewBegin(in); } },
+		new RecordCreator(UserSViewEnd.class) { Record create(RecordInputStream in) { return new UserSViewEnd(in); } },
+		new RecordCreator(ValueRangeRecord.class) { Record create(RecordInputStream in) { return new ValueRangeRecord(in); } },
+		new RecordCreator(VCenterRecord.class) { Record create(RecordInputStream in) { return new VCenterRecord(in); } },
+		new RecordCreator(VerticalPageBreakRecord.class) { Record create(RecordInputStream in) { return new VerticalPageBreakRecord(in); } },
+		new RecordCreator(WindowOneRecord.class) { Record create(RecordInputStream in) { return new WindowOneRecord(in); } },
+		new RecordCreator(WindowProtectRecord.class) { Record create(RecordInputStream in) { return new WindowProtectRecord(in); } },
+		new RecordCreator(WindowTwoRecord.class) { Record create(RecordInputStream in) { return new WindowTwoRecord(in); } },
+		new RecordCreator(WriteAccessRecord.class) { Record create(RecordInputStream in) { return new WriteAccessRecord(in); } },
+		new RecordCreator(WriteProtectRecord.class) { Record create(RecordInputStream in) { return new WriteProtectRecord(in); } },
+		new RecordCreator(WSBoolRecord.class) { Record create(RecordInputStream in) { return new WSBoolRecord(in); } },
 
 		// chart records
-		BeginRecord.class,
-		ChartFRTInfoRecord.class,
-		ChartStartBlockRecord.class,
-		ChartEndBlockRecord.class,
+		new RecordCreator(BeginRecord.class) { Record create(RecordInputStream in) { return new BeginRecord(in); } },
+		new RecordCreator(ChartFRTInfoRecord.class) { Record create(RecordInputStream in) { return new ChartFRTInfoRecord(in); } },
+		new RecordCreator(ChartStartBlockRecord.class) { Record create(RecordInputStream in) { return new ChartStartBlockRecord(in); } },
+		new RecordCreator(ChartEndBlockRecord.class) { Record create(RecordInputStream in) { return new ChartEndBlockRecord(in); } },
 // TODO ChartFormatRecord.class,
-		ChartStartObjectRecord.class,
-		ChartEndObjectRecord.class,
-		CatLabRecord.class,
-      DataFormatRecord.class,
-		EndRecord.class,
-		LinkedDataRecord.class,
-		SeriesToChartGroupRecord.class,
+		new RecordCreator(ChartStartObjectRecord.class) { Record create(RecordInputStream in) { return new ChartStartObjectRecord(in); } },
+		new RecordCreator(ChartEndObjectRecord.class) { Record create(RecordInputStream in) { return new ChartEndObjectRecord(in); } },
+		new RecordCreator(CatLabRecord.class) { Record create(RecordInputStream in) { return new CatLabRecord(in); } },
+		new RecordCreator(DataFormatRecord.class) { Record create(RecordInputStream in) { return new DataFormatRecord(in); } },
+		new RecordCreator(EndRecord.class) { Record create(RecordInputStream in) { return new EndRecord(in); } },
+		new RecordCreator(LinkedDataRecord.class) { Record create(RecordInputStream in) { return new LinkedDataRecord(in); } },
+		new RecordCreator(SeriesToChartGroupRecord.class) { Record create(RecordInputStream in) { return new SeriesToChartGroupRecord(in); } },
 
 		// pivot table records
-		DataItemRecord.class,
-		ExtendedPivotTableViewFieldsRecord.class,
-		PageItemRecord.class,
-		StreamIDRecord.class,
-		ViewDefinitionRecord.class,
-		ViewFieldsRecord.class,
-		ViewSourceRecord.class,
+		new RecordCreator(DataItemRecord.class) { Record create(RecordInputStream in) { return new DataItemRecord(in); } },
+		new RecordCreator(ExtendedPivotTableViewFieldsRecord.class) { Record create(RecordInputStream in) { return new ExtendedPivotTableViewFieldsRecord(in); } },
+		new RecordCreator(PageItemRecord.class) { Record create(RecordInputStream in) { return new PageItemRecord(in); } },
+		new RecordCreator(StreamIDRecord.class) { Record create(RecordInputStream in) { return new StreamIDRecord(in); } },
+		new RecordCreator(ViewDefinitionRecord.class) { Record create(RecordInputStream in) { return new ViewDefinitionRecord(in); } },
+		new RecordCreator(ViewFieldsRecord.class) { Record create(RecordInputStream in) { return new ViewFieldsRecord(in); } },
+		new RecordCreator(ViewSourceRecord.class) { Record create(RecordInputStream in) { return new ViewSourceRecord(in); } },
+
 	};
 
 	/**
-	 * cache of the recordsToMap();
+	 * the record creators indexed by SID, from recordsToTable()
 	 */
-	private static final Map<Integer, I_RecordCreator> _recordCreatorsById  = recordsToMap(recordClasses);
+	private static final RecordCreator[] _recordCreatorsBySid = recordsToTable(recordCreators);
 
 	private static short[] _allKnownRecordSIDs;
 
@@ -265,7 +219,7 @@ public final class RecordFactory {
 	 * <code>null</code> if the specified record is not interpreted by POI.
 	 */
 	public static Class<? extends Record> getRecordClass(int sid) {
-		I_RecordCreator rc = _recordCreatorsById.get(Integer.valueOf(sid));
+		RecordCreator rc = getRecordCreator(sid);
 		if (rc == null) {
 			return null;
 		}
@@ -292,13 +246,25 @@ public final class RecordFactory {
 	}
 
 	public static Record createSingleRecord(RecordInputStream in) {
-		I_RecordCreator constructor = _recordCreatorsById.get(Integer.valueOf(in.getSid()));
+		RecordCreator creator = getRecordCreator(in.getSid());
 
-		if (constructor == null) {
+		if (creator == null) {
 			return new UnknownRecord(in);
 		}
 
-		return constructor.create(in);
+		try {
+			return creator.create(in);
+		} catch (RuntimeException e) {
+			// as reported when the records were constructed by reflection
+			throw new RecordFormatException("Unable to construct record instance" , e);
+		}
+	}
+
+	private static RecordCreator getRecordCreator(int sid) {
+		if (sid < 0 || sid >= _recordCreatorsBySid.length) {
+			return null;
+		}
+		return _recordCreatorsBySid[sid];
 	}
 
 	/**
@@ -353,15 +319,15 @@ public final class RecordFactory {
 	 */
 	public static short[] getAllKnownRecordSIDs() {
 		if (_allKnownRecordSIDs == null) {
-			short[] results = new short[ _recordCreatorsById.size() ];
+			short[] results = new short[ recordCreators.length ];
 			int i = 0;
 
-			for (Iterator<Integer> iterator = _recordCreatorsById.keySet().iterator(); iterator.hasNext(); ) {
-				Integer sid = iterator.next();
-
-				results[i++] = sid.shortValue();
+			// the table is indexed by SID, so this finds them in order
+			for (int sid = 0; sid < _recordCreatorsBySid.length; sid++) {
+				if (_recordCreatorsBySid[sid] != null) {
+					results[i++] = (short) sid;
+				}
 			}
-			Arrays.sort(results);
  			_allKnownRecordSIDs = results;
 		}
 
@@ -369,23 +335,19 @@ public final class RecordFactory {
 	}
 
 	/**
-	 * gets the record constructors and sticks them in the map by SID
-	 * @return map of SIDs to short,short,byte[] constructors for Record classes
+	 * puts the record creators in a table indexed by SID, which is small enough as the
+	 * largest SID of the records we parse is only a few thousand
+	 * @return table of SIDs to creators for Record classes
 	 * most of org.apache.poi.hssf.record.*
 	 */
-	private static Map<Integer, I_RecordCreator> recordsToMap(Class<? extends Record> [] records) {
-		Map<Integer, I_RecordCreator> result = new HashMap<Integer, I_RecordCreator>();
-		Set<Class<?>> uniqueRecClasses = new HashSet<Class<?>>(records.length * 3 / 2);
+	private static RecordCreator[] recordsToTable(RecordCreator[] creators) {
+		Set<Class<?>> uniqueRecClasses = new HashSet<Class<?>>(creators.length * 3 / 2);
+		int[] sids = new int[creators.length];
+		int maxSid = 0;
 
-		for (int i = 0; i < records.length; i++) {
+		for (int i = 0; i < creators.length; i++) {
 
-			Class<? extends Record> recClass = records[ i ];
-			if(!Record.class.isAssignableFrom(recClass)) {
-				throw new RuntimeException("Invalid record sub-class (" + recClass.getName() + ")");
-			}
-			if(Modifier.isAbstract(recClass.getModifiers())) {
-				throw new RuntimeException("Invalid record class (" + recClass.getName() + ") - must not be abstract");
-			}
+			Class<? extends Record> recClass = creators[ i ].getRecordClass();
 			if(!uniqueRecClasses.add(recClass)) {
 				throw new RuntimeException("duplicate record class (" + recClass.getName() + ")");
 			}
@@ -397,33 +359,27 @@ public final class RecordFactory {
 				throw new RecordFormatException(
 					"Unable to determine record types");
 			}
-			Integer key = Integer.valueOf(sid);
-			if (result.containsKey(key)) {
-				Class<?> prevClass = result.get(key).getRecordClass();
+			if (sid < 0) {
+				throw new RuntimeException("Invalid record sid 0x" + Integer.toHexString(sid).toUpperCase()
+						+ " for class (" + recClass.getName() + ")");
+			}
+			sids[i] = sid;
+			maxSid = Math.max(maxSid, sid);
+		}
+
+		RecordCreator[] result = new RecordCreator[maxSid + 1];
+		for (int i = 0; i < creators.length; i++) {
+			int sid = sids[i];
+			if (result[sid] != null) {
+				Class<?> prevClass = result[sid].getRecordClass();
 				throw new RuntimeException("duplicate record sid 0x" + Integer.toHexString(sid).toUpperCase()
-						+ " for classes (" + recClass.getName() + ") and (" + prevClass.getName() + ")");
+						+ " for classes (" + creators[i].getRecordClass().getName() + ") and (" + prevClass.getName() + ")");
 			}
-			result.put(key, getRecordCreator(recClass));
+			result[sid] = creators[i];
 		}
-//		result.put(Integer.valueOf(0x0406), result.get(Integer.valueOf(0x06)));
 		return result;
 	}
 
-	private static I_RecordCreator getRecordCreator(Class<? extends Record> recClass) {
-		try {
-			Constructor<? extends Record> constructor;
-			constructor = recClass.getConstructor(CONSTRUCTOR_ARGS);
-			return new ReflectionConstructorRecordCreator(constructor);
-		} catch (NoSuchMethodException e) {
-			// fall through and look for other construction methods
-		}
-		try {
-			Method m = recClass.getDeclaredMethod("create", CONSTRUCTOR_ARGS);
-			return new ReflectionMethodRecordCreator(m);
-		} catch (NoSuchMethodException e) {
-			throw new RuntimeException("Failed to find constructor or create method for (" + recClass.getName() + ").");
-		}
-	}
 	/**
 	 * Create an array of records from an input stream
 	 *
@@ -170,6 +170,17 @@ public final class RecordFactoryInputStream {
 
 	private boolean _lastRecordWasEOFLevelZero;
 
+	/**
+	 * Which record sids (as unsigned shorts) need to be built, or <code>null</code> for all.
+	 * The others are skipped without being parsed.
+	 */
+	private final boolean[] _requiredSids;
+	/**
+	 * Whether the most recent record other than a {@link ContinueRecord} was skipped,
+	 * in which case any continue records following it are skipped too
+	 */
+	private boolean _lastRecordSkipped;
+
 
 	/**
 	 * @param shouldIncludeContinueRecords caller can pass <code>false</code> if loose
@@ -177,6 +188,19 @@ public final class RecordFactoryInputStream {
 	 * processing).
 	 */
 	public RecordFactoryInputStream(InputStream in, boolean shouldIncludeContinueRecords) {
+		this(in, shouldIncludeContinueRecords, null);
+	}
+
+	/**
+	 * @param shouldIncludeContinueRecords caller can pass <code>false</code> if loose
+	 * {@link ContinueRecord}s should be skipped (this is sometimes useful in event based
+	 * processing).
+	 * @param sids the sids of the records the caller is interested in, or <code>null</code>
+	 * for all of them. Other records are skipped without being parsed, except where they are
+	 * needed to find the end of the stream or to build the requested ones (e.g. {@link RKRecord}s
+	 * for {@link NumberRecord}s). A few records at the start of the stream are always returned.
+	 */
+	public RecordFactoryInputStream(InputStream in, boolean shouldIncludeContinueRecords, short[] sids) {
 		RecordInputStream rs = new RecordInputStream(in);
 		List<Record> records = new ArrayList<Record>();
 		StreamEncryptionInfo sei = new StreamEncryptionInfo(rs, records);
@@ -194,6 +218,7 @@ public final class RecordFactoryInputStream {
 		_recStream = rs;
 		_shouldIncludeContinueRecords = shouldIncludeContinueRecords;
 		_lastRecord = sei.getLastRecord();
+		_requiredSids = sids == null ? null : getRequiredSids(sids);
 
 		/*
 		* How to recognise end of stream?
@@ -248,6 +273,11 @@ public final class RecordFactoryInputStream {
             // step underlying RecordInputStream to the next record
             _recStream.nextRecord();
 
+			if (shouldSkip(_recStream.getSid())) {
+				_recStream.skipRemainder();
+				_lastRecordWasEOFLevelZero = false;
+				continue;
+			}
 			r = readNextRecord();
 			if (r == null) {
 				// some record types may get skipped (e.g. DBCellRecord and ContinueRecord)
@@ -257,6 +287,46 @@ public final class RecordFactoryInputStream {
 		}
 	}
 
+	private static boolean[] getRequiredSids(short[] sids) {
+		boolean[] result = new boolean[0x10000];
+		for (int i = 0; i < sids.length; i++) {
+			result[sids[i] & 0xFFFF] = true;
+		}
+		// needed to find the end of the workbook stream
+		result[BOFRecord.sid] = true;
+		result[EOFRecord.sid] = true;
+		// number records are also made out of RK records
+		if (result[NumberRecord.sid]) {
+			result[RKRecord.sid] = true;
+			result[MulRKRecord.sid] = true;
+		}
+		// continues following these records belong to the last drawing record
+		if (result[DrawingRecord.sid]) {
+			result[ObjRecord.sid] = true;
+			result[TextObjectRecord.sid] = true;
+		}
+		return result;
+	}
+
+	/**
+	 * @return <code>true</code> if the record just stepped to isn't needed
+	 */
+	private boolean shouldSkip(int sid) {
+		if (_requiredSids == null) {
+			return false;
+		}
+		if (sid == ContinueRecord.sid) {
+			// these belong to the record before them
+			return _lastRecordSkipped;
+		}
+		_lastRecordSkipped = !_requiredSids[sid & 0xFFFF];
+		if (_lastRecordSkipped) {
+			// as if the skipped record had been read, so it doesn't get joined with the next one
+			_lastRecord = null;
+		}
+		return _lastRecordSkipped;
+	}
+
 	/**
 	 * @return the next {@link Record} from the multiple record group as expanded from
 	 * a recently read {@link MulRKRecord}. <code>null</code> if not present.
@@ -324,6 +394,10 @@ public final class RecordFactoryInputStream {
 		}
 		if (record.getSid() == ContinueRecord.sid) {
 			ContinueRecord contRec = (ContinueRecord) record;
+			if (_lastRecord == null) {
+				// the record this continues was skipped
+				return null;
+			}
 
 			if (_lastRecord instanceof ObjRecord || _lastRecord instanceof TextObjectRecord) {
 				// Drawing records have a very strange continue behaviour.
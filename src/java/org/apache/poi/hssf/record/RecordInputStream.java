@@ -31,6 +31,10 @@ import org.apache.poi.util.LittleEndianInputStream;
  * Title:  Record Input Stream<P>
  * Description:  Wraps a stream and provides helper methods for the construction of records.<P>
  *
+ * The data of each record is read from the wrapped stream in one go, into a buffer which
+ * is reused for all the records of the stream, and the fields and strings of the record
+ * are then decoded straight from that buffer.<P>
+ *
  * @author Jason Height (jheight @ apache dot org)
  */
 public final class RecordInputStream implements LittleEndianInput {
@@ -80,6 +84,11 @@ public final class RecordInputStream implements LittleEndianInput {
 	 * index within the data section of the current BIFF record
 	 */
 	private int _currentDataOffset;
+	/**
+	 * The data section of the current BIFF record. This grows as needed, up to
+	 * {@link #MAX_RECORD_DATA_SIZE}, and is reused for the following records.
+	 */
+	private byte[] _data = EMPTY_BYTE_ARRAY;
 
 	private static final class SimpleHeaderInput implements BiffHeaderInput {
 
@@ -200,6 +209,13 @@ public final class RecordInputStream implements LittleEndianInput {
 			throw new RecordFormatException("The content of an excel record cannot exceed "
 					+ MAX_RECORD_DATA_SIZE + " bytes");
 		}
+		if (_data.length < _currentDataLength) {
+			int newSize = Math.max(_currentDataLength, _data.length * 2);
+			_data = new byte[Math.min(newSize, MAX_RECORD_DATA_SIZE)];
+		}
+		// a single bulk read, rather than one per field, also lets the
+		//  decrypting stream work on the whole record at once
+		_dataInput.readFully(_data, 0, _currentDataLength);
 	}
 
 	private void checkRecordPosition(int requiredByteCount) {
@@ -222,8 +238,7 @@ public final class RecordInputStream implements LittleEndianInput {
 	 */
 	public byte readByte() {
 		checkRecordPosition(LittleEndian.BYTE_SIZE);
-		_currentDataOffset += LittleEndian.BYTE_SIZE;
-		return _dataInput.readByte();
+		return _data[_currentDataOffset++];
 	}
 
 	/**
@@ -231,8 +246,9 @@ public final class RecordInputStream implements LittleEndianInput {
 	 */
 	public short readShort() {
 		checkRecordPosition(LittleEndian.SHORT_SIZE);
+		short result = LittleEndian.getShort(_data, _currentDataOffset);
 		_currentDataOffset += LittleEndian.SHORT_SIZE;
-		return _dataInput.readShort();
+		return result;
 	}
 
 	/**
@@ -240,8 +256,9 @@ public final class RecordInputStream implements LittleEndianInput {
 	 */
 	public int readInt() {
 		checkRecordPosition(LittleEndian.INT_SIZE);
+		int result = LittleEndian.getInt(_data, _currentDataOffset);
 		_currentDataOffset += LittleEndian.INT_SIZE;
-		return _dataInput.readInt();
+		return result;
 	}
 
 	/**
@@ -249,8 +266,9 @@ public final class RecordInputStream implements LittleEndianInput {
 	 */
 	public long readLong() {
 		checkRecordPosition(LittleEndian.LONG_SIZE);
+		long result = LittleEndian.getLong(_data, _currentDataOffset);
 		_currentDataOffset += LittleEndian.LONG_SIZE;
-		return _dataInput.readLong();
+		return result;
 	}
 
 	/**
@@ -265,8 +283,9 @@ public final class RecordInputStream implements LittleEndianInput {
 	 */
 	public int readUShort() {
 		checkRecordPosition(LittleEndian.SHORT_SIZE);
+		int result = LittleEndian.getUShort(_data, _currentDataOffset);
 		_currentDataOffset += LittleEndian.SHORT_SIZE;
-		return _dataInput.readUShort();
+		return result;
 	}
 
 	public double readDouble() {
@@ -286,7 +305,7 @@ public final class RecordInputStream implements LittleEndianInput {
 
 	public void readFully(byte[] buf, int off, int len) {
 		checkRecordPosition(len);
-		_dataInput.readFully(buf, off, len);
+		System.arraycopy(_data, _currentDataOffset, buf, off, len);
 		_currentDataOffset+=len;
 	}
 
@@ -327,31 +346,13 @@ public final class RecordInputStream implements LittleEndianInput {
 			int availableChars =isCompressedEncoding ?  remaining() : remaining() / LittleEndian.SHORT_SIZE;
 			if (requestedLength - curLen <= availableChars) {
 				// enough space in current record, so just read it out
-				while(curLen < requestedLength) {
-					char ch;
-					if (isCompressedEncoding) {
-						ch = (char)readUByte();
-					} else {
-						ch = (char)readShort();
-					}
-					buf[curLen] = ch;
-					curLen++;
-				}
+				readChars(buf, curLen, requestedLength - curLen, isCompressedEncoding);
 				return new String(buf);
 			}
 			// else string has been spilled into next continue record
 			// so read what's left of the current record
-			while(availableChars > 0) {
-				char ch;
-				if (isCompressedEncoding) {
-					ch = (char)readUByte();
-				} else {
-					ch = (char)readShort();
-				}
-				buf[curLen] = ch;
-				curLen++;
-				availableChars--;
-			}
+			readChars(buf, curLen, availableChars, isCompressedEncoding);
+			curLen += availableChars;
 			if (!isContinueNext()) {
 				throw new RecordFormatException("Expected to find a ContinueRecord in order to read remaining "
 						+ (requestedLength-curLen) + " of " + requestedLength + " chars");
@@ -366,6 +367,26 @@ public final class RecordInputStream implements LittleEndianInput {
 		}
 	}
 
+	/**
+	 * Decodes characters straight from the data of the current record, which the caller
+	 * has checked holds enough of them
+	 */
+	private void readChars(char[] buf, int off, int nChars, boolean isCompressedEncoding) {
+		byte[] data = _data;
+		int pos = _currentDataOffset;
+		if (isCompressedEncoding) {
+			for (int i = off; i < off + nChars; i++) {
+				buf[i] = (char) (data[pos++] & 0xFF);
+			}
+		} else {
+			for (int i = off; i < off + nChars; i++) {
+				buf[i] = (char) ((data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8));
+				pos += 2;
+			}
+		}
+		_currentDataOffset = pos;
+	}
+
 	/** Returns the remaining bytes for the current record.
 	 *
 	  * @return The remaining bytes of the current record.
@@ -380,6 +401,15 @@ public final class RecordInputStream implements LittleEndianInput {
 		return result;
 	}
 
+	/**
+	 * Moves past the remaining bytes of the current record without keeping them.
+	 * The bytes have already been read through the (possibly decrypting) input,
+	 * so the stream stays in step.
+	 */
+	public void skipRemainder() {
+		_currentDataOffset += remaining();
+	}
+
   /** Reads all byte data for the current record, including any
    *  that overlaps into any following continue records.
    *
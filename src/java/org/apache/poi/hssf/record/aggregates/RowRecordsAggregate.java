@@ -452,6 +452,14 @@ public final class RowRecordsAggregate extends RecordAggregate {
 		return _valuesAgg.getValueRecords();
 	}
 
+	/**
+	 * @return the aggregate of the cell values, for access to single cells without
+	 * creating the records of all the others
+	 */
+	public ValueRecordsAggregate getValueRecordsAggregate() {
+		return _valuesAgg;
+	}
+
 	public IndexRecord createIndexRecord(int indexRecordOffset, int sizeOfInitialSheetRecords) {
 		IndexRecord result = new IndexRecord();
 		result.setFirstRow(_firstrow);
@@ -25,7 +25,9 @@ import org.apache.poi.hssf.model.RecordStream;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
 import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RecordBase;
 import org.apache.poi.hssf.record.StringRecord;
@@ -35,7 +37,12 @@ import org.apache.poi.ss.formula.ptg.Ptg;
 
 /**
  *
- * Aggregate value records together.  Things are easier to handle that way.
+ * Aggregate value records together.  Things are easier to handle that way.<p/>
+ *
+ * The number, blank and (shared) string cells read from a file are not kept as records,
+ * but as their values in a {@link PackedRow} for each row, which takes a fraction of the
+ * memory. A record is only created for such a cell when it is asked for, after which the
+ * record is kept instead, or temporarily when the cells are serialized.
  *
  * @author  andy
  * @author  Glen Stampoultzis (glens at apache.org)
@@ -47,6 +54,77 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	private int firstcell = INDEX_NOT_SET;
 	private int lastcell  = INDEX_NOT_SET;
 	private CellValueRecordInterface[][] records;
+	/** the packed cells of each row, <code>null</code> for rows without any */
+	private PackedRow[] packedRows;
+	private int packedCellCount;
+
+	/**
+	 * The number, blank and string cells of one row, as primitive values indexed by column
+	 */
+	private static final class PackedRow {
+		private static final byte NONE = 0;
+		private static final byte NUMBER = 1;
+		private static final byte BLANK = 2;
+		private static final byte LABEL_SST = 3;
+
+		byte[] types;
+		short[] xfIndexes;
+		/** the number of a NUMBER cell, or the SST index of a LABEL_SST cell */
+		double[] values;
+		int count;
+
+		PackedRow(int size) {
+			types = new byte[size];
+			xfIndexes = new short[size];
+			values = new double[size];
+		}
+
+		void ensureSize(int size) {
+			if (size <= types.length) {
+				return;
+			}
+			int newSize = Math.max(types.length * 2, size);
+			byte[] oldTypes = types;
+			short[] oldXfIndexes = xfIndexes;
+			double[] oldValues = values;
+			types = new byte[newSize];
+			xfIndexes = new short[newSize];
+			values = new double[newSize];
+			System.arraycopy(oldTypes, 0, types, 0, oldTypes.length);
+			System.arraycopy(oldXfIndexes, 0, xfIndexes, 0, oldXfIndexes.length);
+			System.arraycopy(oldValues, 0, values, 0, oldValues.length);
+		}
+
+		boolean has(int column) {
+			return column < types.length && types[column] != NONE;
+		}
+
+		CellValueRecordInterface createRecord(int row, int column) {
+			switch (types[column]) {
+				case NUMBER:
+					NumberRecord nr = new NumberRecord();
+					nr.setRow(row);
+					nr.setColumn((short) column);
+					nr.setXFIndex(xfIndexes[column]);
+					nr.setValue(values[column]);
+					return nr;
+				case BLANK:
+					BlankRecord br = new BlankRecord();
+					br.setRow(row);
+					br.setColumn((short) column);
+					br.setXFIndex(xfIndexes[column]);
+					return br;
+				case LABEL_SST:
+					LabelSSTRecord lr = new LabelSSTRecord();
+					lr.setRow(row);
+					lr.setColumn((short) column);
+					lr.setXFIndex(xfIndexes[column]);
+					lr.setSSTIndex((int) values[column]);
+					return lr;
+			}
+			throw new IllegalStateException("No packed cell in column " + column);
+		}
+	}
 
 	/** Creates a new instance of ValueRecordsAggregate */
 
@@ -62,6 +140,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	public void insertCell(CellValueRecordInterface cell) {
 		short column = cell.getColumn();
 		int row = cell.getRow();
+		removePackedCell(row, column);
 		if (row >= records.length) {
 			CellValueRecordInterface[][] oldRecords = records;
 			int newSize = oldRecords.length * 2;
@@ -90,6 +169,10 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		}
 		rowCells[column] = cell;
 
+		updateFirstAndLastCell(column);
+	}
+
+	private void updateFirstAndLastCell(int column) {
 		if (column < firstcell || firstcell == INDEX_NOT_SET) {
 			firstcell = column;
 		}
@@ -98,11 +181,171 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		}
 	}
 
+	/**
+	 * Adds a number, blank or string cell as a packed cell, replacing any existing cell
+	 * @return <code>false</code> if the cell is of another type, and was not added
+	 */
+	private boolean insertPackedCell(CellValueRecordInterface cell) {
+		byte type;
+		double value;
+		if (cell instanceof NumberRecord) {
+			type = PackedRow.NUMBER;
+			value = ((NumberRecord) cell).getValue();
+		} else if (cell instanceof BlankRecord) {
+			type = PackedRow.BLANK;
+			value = 0;
+		} else if (cell instanceof LabelSSTRecord) {
+			type = PackedRow.LABEL_SST;
+			value = ((LabelSSTRecord) cell).getSSTIndex();
+		} else {
+			return false;
+		}
+		insertPackedCell(cell.getRow(), cell.getColumn(), type, cell.getXFIndex(), value);
+		return true;
+	}
+
+	private void insertPackedCell(int row, int column, byte type, short xfIndex, double value) {
+		if (row < records.length && records[row] != null && column < records[row].length) {
+			records[row][column] = null;
+		}
+		if (packedRows == null) {
+			packedRows = new PackedRow[Math.max(records.length, row + 1)];
+		} else if (row >= packedRows.length) {
+			PackedRow[] oldRows = packedRows;
+			packedRows = new PackedRow[Math.max(oldRows.length * 2, row + 1)];
+			System.arraycopy(oldRows, 0, packedRows, 0, oldRows.length);
+		}
+		PackedRow packed = packedRows[row];
+		if (packed == null) {
+			packed = new PackedRow(Math.max(column + 1, 10));
+			packedRows[row] = packed;
+		}
+		packed.ensureSize(column + 1);
+		if (packed.types[column] == PackedRow.NONE) {
+			packed.count++;
+			packedCellCount++;
+		}
+		packed.types[column] = type;
+		packed.xfIndexes[column] = xfIndex;
+		packed.values[column] = value;
+		updateFirstAndLastCell(column);
+	}
+
+	private PackedRow getPackedRow(int row) {
+		if (packedRows == null || row < 0 || row >= packedRows.length) {
+			return null;
+		}
+		return packedRows[row];
+	}
+
+	private boolean removePackedCell(int row, int column) {
+		PackedRow packed = getPackedRow(row);
+		if (packed == null || !packed.has(column)) {
+			return false;
+		}
+		packed.types[column] = PackedRow.NONE;
+		packedCellCount--;
+		if (--packed.count == 0) {
+			packedRows[row] = null;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the record of the cell at the specified position, which is created (and kept)
+	 * now if the cell was packed, or <code>null</code> if there is no cell there
+	 */
+	public CellValueRecordInterface getCell(int rowIndex, int columnIndex) {
+		if (rowIndex >= 0 && rowIndex < records.length) {
+			CellValueRecordInterface[] rowCells = records[rowIndex];
+			if (rowCells != null && columnIndex < rowCells.length && rowCells[columnIndex] != null) {
+				return rowCells[columnIndex];
+			}
+		}
+		PackedRow packed = getPackedRow(rowIndex);
+		if (packed == null || columnIndex < 0 || !packed.has(columnIndex)) {
+			return null;
+		}
+		CellValueRecordInterface cell = packed.createRecord(rowIndex, columnIndex);
+		insertCell(cell);
+		return cell;
+	}
+
+	/**
+	 * @return the number of cells in all rows which have no records yet
+	 */
+	public int getPackedCellCount() {
+		return packedCellCount;
+	}
+
+	/**
+	 * @return the number of cells in the specified row which have no records yet
+	 */
+	public int getPackedCellCount(int rowIndex) {
+		PackedRow packed = getPackedRow(rowIndex);
+		return packed == null ? 0 : packed.count;
+	}
+
+	/**
+	 * @return the column of the first cell in the specified row which has no record yet,
+	 * or -1 if there is none
+	 */
+	public int getFirstPackedCellNum(int rowIndex) {
+		PackedRow packed = getPackedRow(rowIndex);
+		if (packed != null) {
+			for (int i = 0; i < packed.types.length; i++) {
+				if (packed.types[i] != PackedRow.NONE) {
+					return i;
+				}
+			}
+		}
+		return INDEX_NOT_SET;
+	}
+
+	/**
+	 * @return the column of the last cell in the specified row which has no record yet,
+	 * or -1 if there is none
+	 */
+	public int getLastPackedCellNum(int rowIndex) {
+		PackedRow packed = getPackedRow(rowIndex);
+		if (packed != null) {
+			for (int i = packed.types.length - 1; i >= 0; i--) {
+				if (packed.types[i] != PackedRow.NONE) {
+					return i;
+				}
+			}
+		}
+		return INDEX_NOT_SET;
+	}
+
+	/**
+	 * Creates the records of all the packed cells
+	 */
+	private void unpackAllCells() {
+		if (packedCellCount == 0) {
+			return;
+		}
+		for (int rowIx = 0; rowIx < packedRows.length; rowIx++) {
+			PackedRow packed = packedRows[rowIx];
+			if (packed == null) {
+				continue;
+			}
+			for (int colIx = 0; colIx < packed.types.length && packedRows[rowIx] != null; colIx++) {
+				if (packed.types[colIx] != PackedRow.NONE) {
+					insertCell(packed.createRecord(rowIx, colIx));
+				}
+			}
+		}
+	}
+
 	public void removeCell(CellValueRecordInterface cell) {
 		if (cell == null) {
 			throw new IllegalArgumentException("cell must not be null");
 		}
 		int row = cell.getRow();
+		if (removePackedCell(row, cell.getColumn())) {
+			return;
+		}
 		if (row >= records.length) {
 			throw new RuntimeException("cell row is out of range");
 		}
@@ -122,6 +365,11 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 			throw new IllegalArgumentException("Specified rowIndex " + rowIndex
 					+ " is outside the allowable range (0.." +MAX_ROW_INDEX + ")");
 		}
+		PackedRow packed = getPackedRow(rowIndex);
+		if (packed != null) {
+			packedCellCount -= packed.count;
+			packedRows[rowIndex] = null;
+		}
 		if (rowIndex >= records.length) {
 			// this can happen when the client code has created a row,
 			// and then removes/replaces it before adding any cells. (see bug 46312)
@@ -133,7 +381,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 
 
 	public int getPhysicalNumberOfCells() {
-		int count = 0;
+		int count = packedCellCount;
 		for (int r = 0; r < records.length; r++) {
 			CellValueRecordInterface[] rowCells = records[r];
 			if (rowCells != null) {
@@ -156,12 +404,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 
 	public void addMultipleBlanks(MulBlankRecord mbr) {
 		for (int j = 0; j < mbr.getNumColumns(); j++) {
-			BlankRecord br = new BlankRecord();
-
-			br.setColumn(( short ) (j + mbr.getFirstColumn()));
-			br.setRow(mbr.getRow());
-			br.setXFIndex(mbr.getXFAt(j));
-			insertCell(br);
+			insertPackedCell(mbr.getRow(), j + mbr.getFirstColumn(), PackedRow.BLANK, mbr.getXFAt(j), 0);
 		}
 	}
 
@@ -181,7 +424,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 				cachedText = null;
 			}
 			insertCell(new FormulaRecordAggregate(formulaRec, cachedText, sfh));
-		} else {
+		} else if (!insertPackedCell(rec)) {
 			insertCell(rec);
 		}
 	}
@@ -191,14 +434,17 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	 */
 	public int getRowCellBlockSize(int startRow, int endRow) {
 		int result = 0;
-		for(int rowIx=startRow; rowIx<=endRow && rowIx<records.length; rowIx++) {
-			result += getRowSerializedSize(records[rowIx]);
+		for(int rowIx=startRow; rowIx<=endRow; rowIx++) {
+			result += getRowSerializedSize(getRowCellsForWrite(rowIx));
 		}
 		return result;
 	}
 
 	/** Returns true if the row has cells attached to it */
 	public boolean rowHasCells(int row) {
+		if (getPackedRow(row) != null) {
+			return true;
+		}
 		if (row >= records.length) {
 			return false;
 		}
@@ -233,7 +479,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 
 	public void visitCellsForRow(int rowIndex, RecordVisitor rv) {
 
-		CellValueRecordInterface[] rowCells = records[rowIndex];
+		CellValueRecordInterface[] rowCells = getRowCellsForWrite(rowIndex);
 		if(rowCells == null) {
 			throw new IllegalArgumentException("Row [" + rowIndex + "] is empty");
 		}
@@ -257,6 +503,32 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		}
 	}
 
+	/**
+	 * @return the records of the specified row, with temporary ones for any packed cells,
+	 * or <code>null</code> if the row has no cells
+	 */
+	private CellValueRecordInterface[] getRowCellsForWrite(int rowIndex) {
+		CellValueRecordInterface[] rowCells = rowIndex < records.length ? records[rowIndex] : null;
+		PackedRow packed = getPackedRow(rowIndex);
+		if (packed == null) {
+			return rowCells;
+		}
+		int size = packed.types.length;
+		if (rowCells != null && rowCells.length > size) {
+			size = rowCells.length;
+		}
+		CellValueRecordInterface[] result = new CellValueRecordInterface[size];
+		if (rowCells != null) {
+			System.arraycopy(rowCells, 0, result, 0, rowCells.length);
+		}
+		for (int i = 0; i < packed.types.length; i++) {
+			if (packed.types[i] != PackedRow.NONE) {
+				result[i] = packed.createRecord(rowIndex, i);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * @return the number of <em>consecutive</em> {@link BlankRecord}s in the specified row
 	 * starting from startIx.
@@ -354,8 +626,20 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 		}
 	}
 
-	/** value iterator */
+	/**
+	 * value iterator, which creates the records of all the packed cells first
+	 */
 	public Iterator<CellValueRecordInterface> iterator() {
+		unpackAllCells();
+		return new ValueIterator();
+	}
+
+	/**
+	 * @return an iterator over the cells which have records, leaving the packed cells as
+	 * they are
+	 * @see #getCell(int, int)
+	 */
+	public Iterator<CellValueRecordInterface> getCellRecordIterator() {
 		return new ValueIterator();
 	}
 
@@ -366,6 +650,7 @@ public final class ValueRecordsAggregate implements Iterable<CellValueRecordInte
 	 */
 	@Deprecated
 	public CellValueRecordInterface[] getValueRecords() {
+		unpackAllCells();
 		List<CellValueRecordInterface> temp = new ArrayList<CellValueRecordInterface>();
 
 		for (int rowIx = 0; rowIx < records.length; rowIx++) {
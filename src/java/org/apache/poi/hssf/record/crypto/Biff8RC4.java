@@ -118,6 +118,13 @@ final class Biff8RC4 {
 	}
 
 	public void xor(byte[] buf, int pOffset, int pLen) {
+		if (_shouldSkipEncryptionOnCurrentRecord) {
+			// step past the bytes, as when they are read one field at a time
+			for (int i = 0; i < pLen; i++) {
+				getNextRC4Byte();
+			}
+			return;
+		}
 		int nLeftInBlock;
 		nLeftInBlock = _nextRC4BlockStart - _streamPos;
 		if (pLen <= nLeftInBlock) {
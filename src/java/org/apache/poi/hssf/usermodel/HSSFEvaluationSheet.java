@@ -47,4 +47,7 @@ final class HSSFEvaluationSheet implements EvaluationSheet {
 		}
 		return new HSSFEvaluationCell(cell, this);
 	}
+	public int getLastRowNum() {
+		return _hs.getLastRowNum();
+	}
 }
\ No newline at end of file
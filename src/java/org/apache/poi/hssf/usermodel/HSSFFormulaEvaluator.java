@@ -17,8 +17,13 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment;
+import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.IStabilityClassifier;
+import org.apache.poi.ss.formula.ParallelWorkbookEvaluator;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -346,12 +351,51 @@ public class HSSFFormulaEvaluator implements FormulaEvaluator  {
       evaluateAllFormulaCells(_book, this);
    }
 
+   /**
+    * As {@link #evaluateAll()}, but evaluates independent formula
+    *  cells on several threads at once, and then saves all the
+    *  results in one go. The results are the same as for the
+    *  serial version.
+    * The workbook must not be changed whilst this is running.
+    *
+    * @param nThreads the number of threads to evaluate with
+    * @see ParallelWorkbookEvaluator
+    */
+   public void evaluateAll(int nThreads) {
+      List<Cell> cells = new ArrayList<Cell>();
+      List<EvaluationCell> evalCells = new ArrayList<EvaluationCell>();
+      for(int i=0; i<_book.getNumberOfSheets(); i++) {
+         HSSFSheet sheet = _book.getSheetAt(i);
+         HSSFEvaluationSheet evalSheet = new HSSFEvaluationSheet(sheet);
+
+         // Iterating over a row creates all of its packed cells, so
+         //  that the evaluating threads only ever read the rows
+         for(Row r : sheet) {
+            for (Cell c : r) {
+               if (c.getCellType() == HSSFCell.CELL_TYPE_FORMULA) {
+                  cells.add(c);
+                  evalCells.add(new HSSFEvaluationCell((HSSFCell)c, evalSheet));
+               }
+            }
+         }
+      }
+
+      ValueEval[] results = ParallelWorkbookEvaluator.evaluateAll(_bookEvaluator,
+            evalCells.toArray(new EvaluationCell[evalCells.size()]), nThreads);
+      for(int i=0; i<results.length; i++) {
+         setCellValue(cells.get(i), toCellValue(results[i]));
+      }
+   }
+
 	/**
 	 * Returns a CellValue wrapper around the supplied ValueEval instance.
 	 * @param eval
 	 */
 	private CellValue evaluateFormulaCellValue(Cell cell) {
-		ValueEval eval = _bookEvaluator.evaluate(new HSSFEvaluationCell((HSSFCell)cell));
+		return toCellValue(_bookEvaluator.evaluate(new HSSFEvaluationCell((HSSFCell)cell)));
+	}
+
+	private static CellValue toCellValue(ValueEval eval) {
 		if (eval instanceof NumberEval) {
 			NumberEval ne = (NumberEval) eval;
 			return new CellValue(ne.getNumberValue());
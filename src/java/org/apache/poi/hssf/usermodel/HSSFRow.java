@@ -23,6 +23,7 @@ import java.util.NoSuchElementException;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.ExtendedFormatRecord;
 import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.aggregates.ValueRecordsAggregate;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
@@ -44,6 +45,12 @@ public final class HSSFRow implements Row {
 
     private int rowNum;
     private HSSFCell[] cells;
+    /**
+     * <code>true</code> while some of the cells read from the file have no {@link HSSFCell}
+     *  yet, as they are only kept as values by the sheet (see {@link ValueRecordsAggregate}).
+     *  Their cells are created as they are asked for.
+     */
+    private boolean hasPackedCells;
 
     /**
      * reference to low level representation
@@ -170,6 +177,7 @@ public final class HSSFRow implements Row {
         if(column < 0) {
             throw new RuntimeException("Negative cell indexes not allowed");
         }
+        unpackCells();
         if(column >= cells.length || cell != cells[column]) {
             throw new RuntimeException("Specified cell is not from this row");
         }
@@ -196,6 +204,7 @@ public final class HSSFRow implements Row {
      *  records too.
      */
     protected void removeAllCells() {
+        unpackCells();
         for(int i=0; i<cells.length; i++) {
             if(cells[i] != null) {
                 removeCell(cells[i], true);
@@ -231,6 +240,41 @@ public final class HSSFRow implements Row {
         return hcell;
     }
 
+    /**
+     * Notes that the sheet holds packed cells for this row, between the specified
+     *  columns, for which the {@link HSSFCell}s will be created on first use.
+     *  Should only be called from HSSFSheet when reading in a file.
+     */
+    void setPackedCells(int firstCol, int lastCol) {
+        hasPackedCells = true;
+        boolean isEmpty = row.isEmpty();
+        if (isEmpty || firstCol < row.getFirstCol()) {
+            row.setFirstCol(firstCol);
+        }
+        if (isEmpty || lastCol >= row.getLastCol()) {
+            row.setLastCol(lastCol + 1);
+        }
+    }
+
+    /**
+     * Creates the {@link HSSFCell}s of any packed cells, before changes which
+     *  need all of the cells of the row
+     */
+    private void unpackCells() {
+        if (!hasPackedCells) {
+            return;
+        }
+        int lastCol = row.getLastCol();
+        for (int i = row.getFirstCol(); i < lastCol; i++) {
+            retrieveCell(i);
+        }
+        hasPackedCells = false;
+    }
+
+    private ValueRecordsAggregate getValueRecordsAggregate() {
+        return sheet.getSheet().getRowsAggregate().getValueRecordsAggregate();
+    }
+
     /**
      * set the row number of this row.
      * @param rowIndex  the row number (0-based)
@@ -242,6 +286,7 @@ public final class HSSFRow implements Row {
           throw new IllegalArgumentException("Invalid row number (" + rowIndex
                   + ") outside allowable range (0.." + maxrow + ")");
         }
+        unpackCells();
         rowNum = rowIndex;
         if (row != null) {
             row.setRowNumber(rowIndex);   // used only for KEY comparison (HSSFRow)
@@ -284,6 +329,7 @@ public final class HSSFRow implements Row {
      * @param newColumn The new column number (0 based)
      */
     public void moveCell(HSSFCell cell, short newColumn) {
+        unpackCells();
         // Ensure the destination is free
         if(cells.length > newColumn && cells[newColumn] != null) {
             throw new IllegalArgumentException("Asked to move cell to column " + newColumn + " but there's already a cell there");
@@ -340,10 +386,17 @@ public final class HSSFRow implements Row {
      * @return HSSFCell representing that column or null if undefined.
      */
     private HSSFCell retrieveCell(int cellIndex) {
-        if(cellIndex<0||cellIndex>=cells.length) {
+        if(cellIndex<0) {
             return null;
         }
-        return cells[cellIndex];
+        HSSFCell cell = cellIndex < cells.length ? cells[cellIndex] : null;
+        if (cell == null && hasPackedCells) {
+            CellValueRecordInterface cval = getValueRecordsAggregate().getCell(rowNum, cellIndex);
+            if (cval != null) {
+                cell = createCellFromRecord(cval);
+            }
+        }
+        return cell;
     }
 
     /**
@@ -444,6 +497,9 @@ public final class HSSFRow implements Row {
     public int getPhysicalNumberOfCells()
     {
       int count=0;
+      if (hasPackedCells) {
+        count = getValueRecordsAggregate().getPackedCellCount(rowNum);
+      }
       for(int i=0;i<cells.length;i++)
       {
         if(cells[i]!=null) count++;
@@ -615,6 +671,7 @@ public final class HSSFRow implements Row {
      */
     public Iterator<Cell> cellIterator()
     {
+      unpackCells();
       return new CellIterator();
     }
     /**
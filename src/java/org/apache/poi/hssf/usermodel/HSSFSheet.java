@@ -31,6 +31,7 @@ import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.record.*;
 import org.apache.poi.hssf.record.aggregates.DataValidityTable;
 import org.apache.poi.hssf.record.aggregates.FormulaRecordAggregate;
+import org.apache.poi.hssf.record.aggregates.ValueRecordsAggregate;
 import org.apache.poi.hssf.record.aggregates.WorksheetProtectionBlock;
 import org.apache.poi.ss.formula.FormulaShifter;
 import org.apache.poi.ss.formula.ptg.MemFuncPtg;
@@ -169,7 +170,14 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
             row = sheet.getNextRow();
         }
 
-        Iterator<CellValueRecordInterface> iter = sheet.getCellValueIterator();
+        ValueRecordsAggregate values = sheet.getRowsAggregate().getValueRecordsAggregate();
+        Iterator<CellValueRecordInterface> iter;
+        if (rowRecordsAlreadyPresent) {
+            // the number, blank and string cells are only created as they're used
+            iter = values.getCellRecordIterator();
+        } else {
+            iter = values.iterator();
+        }
         long timestart = System.currentTimeMillis();
 
         if (log.check( POILogger.DEBUG )) {
@@ -215,6 +223,21 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
 			}
 
         }
+        if (values.getPackedCellCount() > 0) {
+            int packedCellCount = 0;
+            for (HSSFRow hrow : _rows.values()) {
+                int rowIx = hrow.getRowNum();
+                int nCells = values.getPackedCellCount(rowIx);
+                if (nCells > 0) {
+                    hrow.setPackedCells(values.getFirstPackedCellNum(rowIx), values.getLastPackedCellNum(rowIx));
+                    packedCellCount += nCells;
+                }
+            }
+            if (packedCellCount != values.getPackedCellCount()) {
+                // if at least one row record is present, all should be present.
+                throw new RuntimeException("Unexpected missing row when some rows already present");
+            }
+        }
         if (log.check( POILogger.DEBUG )) {
             log.log(DEBUG, "total sheet cell creation took ",
                 Long.valueOf(System.currentTimeMillis() - timestart));
@@ -17,7 +17,6 @@
 
 package org.apache.poi.hssf.usermodel;
 
-import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -47,6 +46,8 @@ import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.util.CellReference;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.poifs.filesystem.POIFSWriterEvent;
+import org.apache.poi.poifs.filesystem.POIFSWriterListener;
 import org.apache.poi.ss.formula.FormulaShifter;
 import org.apache.poi.ss.formula.FormulaType;
 import org.apache.poi.ss.formula.SheetNameFormatter;
@@ -1161,6 +1162,10 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      * Method write - write out this workbook to an Outputstream.  Constructs
      * a new POI POIFSFileSystem, passes in the workbook binary representation  and
      * writes it out.
+     * <p>
+     * The Workbook stream is serialized record by record straight into the
+     * POIFSFileSystem's output as it is written, so unlike {@link #getBytes()}
+     * the whole stream is never held in memory at once.
      *
      * @param stream - the java OutputStream you wish to write the XLS to
      *
@@ -1171,15 +1176,16 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
     public void write(OutputStream stream)
             throws IOException
     {
-        byte[] bytes = getBytes();
         POIFSFileSystem fs = new POIFSFileSystem();
 
         // For tracking what we've written out, used if we're
         //  going to be preserving nodes
         List<String> excepts = new ArrayList<String>(1);
 
-        // Write out the Workbook stream
-        fs.createDocument(new ByteArrayInputStream(bytes), "Workbook");
+        // Write out the Workbook stream. The records are only
+        //  serialized once the filesystem asks for the contents
+        WorkbookStreamWriter wbWriter = new WorkbookStreamWriter();
+        fs.createDocument("Workbook", wbWriter.getSize(), wbWriter);
 
         // Write out our HPFS properties, if we have them
         writeProperties(fs, excepts);
@@ -1201,6 +1207,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
             fs.getRoot().setStorageClsid(this.directory.getStorageClsid());
         }
         fs.writeFilesystem(stream);
+        wbWriter.checkWritten();
     }
 
     /**
@@ -1234,6 +1241,139 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
     }
 
 
+    /**
+     * Serializes sheet records straight to a stream as they are visited,
+     *  re-using the one buffer, and totals up how much has been written
+     */
+    private static final class SheetRecordWriter implements RecordVisitor {
+
+        private final OutputStream _out;
+        private byte[] _buffer;
+        private int _totalSize;
+
+        public SheetRecordWriter(OutputStream out, byte[] buffer) {
+            _out = out;
+            _buffer = buffer;
+            _totalSize = 0;
+        }
+        public int getTotalSize() {
+            return _totalSize;
+        }
+        public byte[] getBuffer() {
+            return _buffer;
+        }
+        public void visitRecord(Record r) {
+            int size = r.getRecordSize();
+            if (size > _buffer.length) {
+                _buffer = new byte[Math.max(size, _buffer.length * 2)];
+            }
+            int written = r.serialize(0, _buffer);
+            try {
+                _out.write(_buffer, 0, written);
+            } catch (IOException e) {
+                // visitRecord can't throw it, so carry it out to the WorkbookStreamWriter
+                throw new WriteFailure(e);
+            }
+            _totalSize += written;
+        }
+    }
+
+    /**
+     * Carries an {@link IOException} out of a {@link RecordVisitor}
+     */
+    private static final class WriteFailure extends RuntimeException {
+        public WriteFailure(IOException cause) {
+            super(cause);
+        }
+        public IOException getIOException() {
+            return (IOException)getCause();
+        }
+    }
+
+    /**
+     * Writes the Workbook stream when the POIFSFileSystem asks for it. The
+     *  sheet sizes (and so the BOF offsets) are worked out up-front, but
+     *  the sheet records are only visited and serialized one sheet at
+     *  a time, as the stream is written.
+     */
+    private final class WorkbookStreamWriter implements POIFSWriterListener {
+
+        private final HSSFSheet[] _sheets;
+        private final int[] _sheetSizes;
+        private final int _workbookSize;
+        private final int _totalSize;
+        private IOException _failure;
+
+        public WorkbookStreamWriter() {
+            _sheets = getSheets();
+            preSerialize(_sheets);
+
+            _workbookSize = workbook.getSize();
+            _sheetSizes = new int[_sheets.length];
+
+            // pre-calculate all the sheet sizes and set BOF indexes,
+            //  without holding on to any of the records
+            int totalsize = _workbookSize;
+            for (int k = 0; k < _sheets.length; k++) {
+                workbook.setSheetBof(k, totalsize);
+                SheetRecordCollector src = new SheetRecordCollector();
+                _sheets[k].getSheet().visitContainedRecords(src, totalsize);
+                _sheetSizes[k] = src.getTotalSize();
+                totalsize += _sheetSizes[k];
+            }
+            _totalSize = totalsize;
+        }
+        public int getSize() {
+            return _totalSize;
+        }
+        public void processPOIFSWriterEvent(POIFSWriterEvent event) {
+            OutputStream out = event.getStream();
+            try {
+                byte[] buffer = new byte[_workbookSize];
+                int pos = workbook.serialize(0, buffer);
+                out.write(buffer, 0, pos);
+
+                for (int k = 0; k < _sheets.length; k++) {
+                    SheetRecordWriter srw = new SheetRecordWriter(out, buffer);
+                    _sheets[k].getSheet().visitContainedRecords(srw, pos);
+                    if (srw.getTotalSize() != _sheetSizes[k]) {
+                        // As with getBytes(), the BOF offsets would now be wrong
+                        throw new IllegalStateException("Actual serialized sheet size (" + srw.getTotalSize()
+                                + ") differs from pre-calculated size (" + _sheetSizes[k]
+                                + ") for sheet (" + k + ")");
+                    }
+                    buffer = srw.getBuffer();
+                    pos += srw.getTotalSize();
+                }
+            } catch (IOException e) {
+                // the listener can't throw it, so it's passed on by checkWritten()
+                _failure = e;
+            } catch (WriteFailure e) {
+                _failure = e.getIOException();
+            }
+        }
+        /**
+         * Throws the exception, if any, that stopped the stream being written
+         */
+        public void checkWritten() throws IOException {
+            if (_failure != null) {
+                throw _failure;
+            }
+        }
+    }
+
+    /**
+     * Tells the workbook and sheets that serialization is about to occur.
+     * This must be done before any sizes are calculated.
+     */
+    private void preSerialize(HSSFSheet[] sheets) {
+        workbook.preSerialize();
+        for (int i = 0; i < sheets.length; i++) {
+            sheets[i].getSheet().preSerialize();
+            sheets[i].preSerialize();
+        }
+    }
+
     /**
      * Method getBytes - get the bytes of just the HSSF portions of the XLS file.
      * Use this to construct a POI POIFSFileSystem yourself.
@@ -1253,11 +1393,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
 
         // before getting the workbook size we must tell the sheets that
         // serialization is about to occur.
-        workbook.preSerialize();
-        for (int i = 0; i < nSheets; i++) {
-            sheets[i].getSheet().preSerialize();
-            sheets[i].preSerialize();
-        }
+        preSerialize(sheets);
 
         int totalsize = workbook.getSize();
 
@@ -210,10 +210,37 @@ public final class NDocumentInputStream extends DocumentInputStream {
 		}
 		
 		long rval = new_offset - _current_offset;
-		
-		// TODO Do this better
-		byte[] skip = new byte[(int)rval];
-		readFully(skip);
+		int toSkip = (int)rval;
+
+		// Use up what's left of the current block
+		if(_buffer != null) {
+		   int limit = Math.min(toSkip, _buffer.remaining());
+		   _buffer.position(_buffer.position() + limit);
+		   _current_offset += limit;
+		   toSkip -= limit;
+		}
+
+		// Step over whole blocks without reading them in
+		if(_data instanceof NPOIFSStream.StreamBlockByteBufferIterator) {
+		   NPOIFSStream.StreamBlockByteBufferIterator blocks =
+		         (NPOIFSStream.StreamBlockByteBufferIterator)_data;
+		   int blockSize = blocks.getBlockSize();
+		   while(toSkip >= blockSize) {
+		      blocks.skipBlock();
+		      _current_block_count++;
+		      _buffer = null;
+		      _current_offset += blockSize;
+		      toSkip -= blockSize;
+		   }
+		}
+
+		// Position within the block we end up in
+		if(toSkip > 0) {
+		   _buffer = _data.next();
+		   _current_block_count++;
+		   _buffer.position(_buffer.position() + toSkip);
+		   _current_offset += toSkip;
+		}
 		return rval;
 	}
 
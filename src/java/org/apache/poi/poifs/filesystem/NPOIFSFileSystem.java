@@ -43,6 +43,7 @@ import org.apache.poi.poifs.dev.POIFSViewable;
 import org.apache.poi.poifs.nio.ByteArrayBackedDataSource;
 import org.apache.poi.poifs.nio.DataSource;
 import org.apache.poi.poifs.nio.FileBackedDataSource;
+import org.apache.poi.poifs.nio.MappedFileDataSource;
 import org.apache.poi.poifs.property.DirectoryProperty;
 import org.apache.poi.poifs.property.NPropertyTable;
 import org.apache.poi.poifs.storage.BATBlock;
@@ -159,13 +160,47 @@ public class NPOIFSFileSystem extends BlockStore
      */
     public NPOIFSFileSystem(File file, boolean readOnly)
          throws IOException
+    {
+       this(file, readOnly, false);
+    }
+    
+    /**
+     * Creates a POIFSFileSystem from a <tt>File</tt>, optionally memory
+     *  mapping it rather than reading it block by block.
+     * 
+     * A memory mapped file must be opened read-only. Blocks are then
+     *  handed out as slices of the mapping with no copying, and
+     *  several threads may read (different or the same) documents
+     *  from the one FileSystem at the same time.
+     *  
+     * Note that with this constructor, you will need to call {@link #close()}
+     *  when you're done to have the underlying file closed, as the file is
+     *  kept open during normal operation to read the data out. 
+     *  
+     * @param file the File from which to read the data
+     * @param readOnly whether the File should be opened read-only
+     * @param memoryMapped whether the File should be memory mapped
+     *
+     * @exception IOException on errors reading, or on invalid data
+     */
+    public NPOIFSFileSystem(File file, boolean readOnly, boolean memoryMapped)
+         throws IOException
     {
        this(
-           (new RandomAccessFile(file, readOnly? "r" : "rw")).getChannel(),
-           true
+           openChannel(file, readOnly, memoryMapped),
+           true, memoryMapped
        );
     }
     
+    private static FileChannel openChannel(File file, boolean readOnly, boolean memoryMapped)
+         throws IOException
+    {
+       if(memoryMapped && !readOnly) {
+          throw new IllegalArgumentException("Memory mapped files may only be opened read-only");
+       }
+       return (new RandomAccessFile(file, readOnly? "r" : "rw")).getChannel();
+    }
+    
     /**
      * Creates a POIFSFileSystem from an open <tt>FileChannel</tt>. This uses 
      *  less memory than creating from an <tt>InputStream</tt>.
@@ -181,10 +216,10 @@ public class NPOIFSFileSystem extends BlockStore
     public NPOIFSFileSystem(FileChannel channel)
          throws IOException
     {
-       this(channel, false);
+       this(channel, false, false);
     }
     
-    private NPOIFSFileSystem(FileChannel channel, boolean closeChannelOnError)
+    private NPOIFSFileSystem(FileChannel channel, boolean closeChannelOnError, boolean memoryMapped)
          throws IOException
     {
        this(false);
@@ -198,7 +233,11 @@ public class NPOIFSFileSystem extends BlockStore
           _header = new HeaderBlock(headerBuffer);
           
           // Now process the various entries
-          _data = new FileBackedDataSource(channel);
+          if(memoryMapped) {
+             _data = new MappedFileDataSource(channel);
+          } else {
+             _data = new FileBackedDataSource(channel);
+          }
           readCoreContents();
        } catch(IOException e) {
           if(closeChannelOnError) {
@@ -662,6 +701,11 @@ public class NPOIFSFileSystem extends BlockStore
     {
        if(_data instanceof FileBackedDataSource) {
           // Good, correct type
+       } else if(_data instanceof MappedFileDataSource) {
+          throw new IllegalArgumentException(
+                "POIFS opened from a memory mapped file, which is read-only, " +
+                "so writeFilesystem() may not be called"
+          );
        } else {
           throw new IllegalArgumentException(
                 "POIFS opened from an inputstream, so writeFilesystem() may " +
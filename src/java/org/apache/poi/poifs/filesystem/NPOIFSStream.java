@@ -218,6 +218,21 @@ public class NPOIFSStream implements Iterable<ByteBuffer>
          }
       }
 
+      /**
+       * Moves on past the next block, without reading it in
+       */
+      void skipBlock() {
+         if(nextBlock == POIFSConstants.END_OF_CHAIN) {
+            throw new IndexOutOfBoundsException("Can't skip past the end of the stream");
+         }
+         loopDetector.claim(nextBlock);
+         nextBlock = blockStore.getNextBlock(nextBlock);
+      }
+
+      int getBlockSize() {
+         return blockStore.getBlockStoreBlockSize();
+      }
+
       public void remove() {
          throw new UnsupportedOperationException();
       }
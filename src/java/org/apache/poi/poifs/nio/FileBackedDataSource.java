@@ -27,8 +27,6 @@ import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 
-import org.apache.poi.util.IOUtils;
-
 /**
  * A POIFS {@link DataSource} backed by a File
  */
@@ -50,13 +48,20 @@ public class FileBackedDataSource extends DataSource {
          throw new IllegalArgumentException("Position " + position + " past the end of the file");
       }
 
-      // Read
-      channel.position(position);
+      // Read, using positional reads so that the channel's own
+      //  position is untouched, and concurrent readers are safe
       ByteBuffer dst = ByteBuffer.allocate(length);
-      int worked = IOUtils.readFully(channel, dst);
+      int worked = 0;
+      while(dst.hasRemaining()) {
+         int got = channel.read(dst, position + worked);
+         if(got < 0) {
+            break;
+         }
+         worked += got;
+      }
       
       // Check
-      if(worked == -1) {
+      if(worked == 0) {
          throw new IllegalArgumentException("Position " + position + " past the end of the file");
       }
       
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.poifs.nio;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A read-only POIFS {@link DataSource} backed by a memory mapped File.
+ * <p>
+ * The file is mapped in chunks, and reads hand back read-only slices
+ *  of those mappings, so no data is copied onto the heap. As neither
+ *  the mappings nor the channel position are changed by a read, a
+ *  single instance may safely be read from by several threads at once.
+ */
+public class MappedFileDataSource extends DataSource {
+   /**
+    * Default size of each mapped region. This is a multiple of
+    *  all the big block sizes, so blocks never span two regions.
+    */
+   public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+   private FileChannel channel;
+   private MappedByteBuffer[] chunks;
+   private final long size;
+   private final int chunkSize;
+
+   public MappedFileDataSource(File file) throws IOException {
+      this(openChannel(file), DEFAULT_CHUNK_SIZE);
+   }
+   public MappedFileDataSource(FileChannel channel) throws IOException {
+      this(channel, DEFAULT_CHUNK_SIZE);
+   }
+   public MappedFileDataSource(FileChannel channel, int chunkSize) throws IOException {
+      if(chunkSize <= 0) {
+         throw new IllegalArgumentException("Chunk size must be positive, but was " + chunkSize);
+      }
+      this.channel = channel;
+      this.chunkSize = chunkSize;
+      this.size = channel.size();
+
+      // Map the whole file up-front, so that reads never need to
+      //  modify any shared state
+      int numChunks = (int)((size + chunkSize - 1) / chunkSize);
+      chunks = new MappedByteBuffer[numChunks];
+      for(int i=0; i<numChunks; i++) {
+         long start = (long)i * chunkSize;
+         long length = Math.min(chunkSize, size - start);
+         chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      }
+   }
+
+   private static FileChannel openChannel(File file) throws FileNotFoundException {
+      if(!file.exists()) {
+         throw new FileNotFoundException(file.toString());
+      }
+      return (new RandomAccessFile(file, "r")).getChannel();
+   }
+
+   public ByteBuffer read(int length, long position) throws IOException {
+      if(position >= size) {
+         throw new IllegalArgumentException("Position " + position + " past the end of the file");
+      }
+      int toRead = (int)Math.min(length, size - position);
+
+      int chunkIndex = (int)(position / chunkSize);
+      int chunkOffset = (int)(position % chunkSize);
+      if(chunkOffset + toRead <= chunkSize) {
+         // Normal case, slice from within the one mapping
+         ByteBuffer dst = chunks[chunkIndex].duplicate();
+         dst.position(chunkOffset);
+         dst.limit(chunkOffset + toRead);
+         return dst.slice();
+      }
+
+      // Spans two mappings, so stitch the parts together
+      ByteBuffer dst = ByteBuffer.allocate(toRead);
+      while(dst.hasRemaining()) {
+         ByteBuffer src = chunks[chunkIndex].duplicate();
+         src.position(chunkOffset);
+         if(src.remaining() > dst.remaining()) {
+            src.limit(chunkOffset + dst.remaining());
+         }
+         dst.put(src);
+         chunkIndex++;
+         chunkOffset = 0;
+      }
+      dst.position(0);
+      return dst.asReadOnlyBuffer();
+   }
+
+   public void write(ByteBuffer src, long position) throws IOException {
+      throw new UnsupportedOperationException("Memory mapped data sources are read-only");
+   }
+
+   public void copyTo(OutputStream stream) throws IOException {
+      // Wrap the OutputSteam as a channel
+      WritableByteChannel out = Channels.newChannel(stream);
+      // Now do the transfer
+      channel.transferTo(0, size, out);
+   }
+
+   public long size() throws IOException {
+      return size;
+   }
+
+   public void close() throws IOException {
+      // The mappings are released once they're garbage collected
+      chunks = null;
+      channel.close();
+   }
+}
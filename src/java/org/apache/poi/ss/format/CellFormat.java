@@ -25,8 +25,6 @@ import javax.swing.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -112,9 +110,15 @@ public class CellFormat {
         }
     };
 
-    /** Maps a format string to its parsed version for efficiencies sake. */
-    private static final Map<String, CellFormat> formatCache =
-            new WeakHashMap<String, CellFormat>();
+    /** The most parsed formats to keep in {@link #formatCache}. */
+    private static final int FORMAT_CACHE_SIZE = 1024;
+
+    /**
+     * Maps a format string to its parsed version for efficiencies sake.
+     * This is shared by all threads.
+     */
+    private static final FormatCache<String, CellFormat> formatCache =
+            new FormatCache<String, CellFormat>(FORMAT_CACHE_SIZE);
 
     /**
      * Returns a {@link CellFormat} that applies the given format.  Two calls
@@ -131,7 +135,7 @@ public class CellFormat {
                 fmt = GENERAL_FORMAT;
             else
                 fmt = new CellFormat(format);
-            formatCache.put(format, fmt);
+            fmt = formatCache.put(format, fmt);
         }
         return fmt;
     }
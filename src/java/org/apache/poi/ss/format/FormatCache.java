@@ -0,0 +1,92 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.format;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread safe cache of parsed formats, which holds at most a fixed number
+ * of entries, so that it can be shared by every formatter in the JVM.
+ * <p>
+ * Lookups don't lock. Once the cache is full, some of the entries are
+ * dropped to make room for new ones; the entries to drop are not chosen by
+ * how recently they were used, as workbooks rarely use more than a few
+ * hundred formats, so this should only happen when many different
+ * workbooks are processed.
+ *
+ * @param <K> the type of the keys, which must be immutable
+ * @param <V> the type of the parsed formats
+ */
+public final class FormatCache<K, V> {
+    private final ConcurrentHashMap<K, V> _map;
+    private final int _maxSize;
+
+    /**
+     * @param maxSize the maximum number of entries to hold
+     */
+    public FormatCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive, but was " + maxSize);
+        }
+        _maxSize = maxSize;
+        _map = new ConcurrentHashMap<K, V>();
+    }
+
+    /**
+     * @return the cached value for the key, or <code>null</code> if there isn't one
+     */
+    public V get(K key) {
+        return _map.get(key);
+    }
+
+    /**
+     * Caches the value for the key, unless another thread has already cached
+     * one, in which case that is returned instead so that all callers share it.
+     *
+     * @return the value now cached for the key
+     */
+    public V put(K key, V value) {
+        if (_map.size() >= _maxSize) {
+            evict();
+        }
+        V existing = _map.putIfAbsent(key, value);
+        return existing == null ? value : existing;
+    }
+
+    public int size() {
+        return _map.size();
+    }
+
+    public void clear() {
+        _map.clear();
+    }
+
+    /**
+     * Drops a quarter of the entries
+     */
+    private void evict() {
+        int toRemove = Math.max(1, _maxSize / 4);
+        Iterator<K> it = _map.keySet().iterator();
+        while (toRemove > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            toRemove--;
+        }
+    }
+}
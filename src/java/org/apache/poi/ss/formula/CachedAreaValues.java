@@ -0,0 +1,111 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+
+/**
+ * The values of all the cells in an area, read in one go and kept in the evaluation cache
+ * until any of those cells change.<p/>
+ *
+ * Functions which search a range (VLOOKUP, MATCH, COUNTIF, ...) can build indexes over these
+ * values once, and keep them here, rather than re-scanning the range for every formula
+ * that refers to it. The cache entry for the area depends on every cell in it, and each
+ * formula using it depends on the area, so the usual cache invalidation also clears these.<p/>
+ *
+ * Only the rows up to the last row of the sheet are read, as those after it are all blank,
+ * so whole column references such as <tt>A:A</tt> don't hold a value for every row.
+ */
+public final class CachedAreaValues {
+
+	private final FormulaCellCacheEntry _cacheEntry;
+	private final int _width;
+	private final int _height;
+	private ValueEval[] _values;
+	private Map<Object, Object> _indexes;
+
+	/* package */ CachedAreaValues(int width, int height) {
+		_cacheEntry = new FormulaCellCacheEntry();
+		_width = width;
+		_height = height;
+	}
+
+	/**
+	 * @return the cached values for the supplied area, or <code>null</code> if they are
+	 * not available (the area isn't a cell range from a workbook, or it is too large, or it
+	 * is currently being read further up the evaluation stack)
+	 */
+	public static CachedAreaValues forArea(TwoDEval area) {
+		if (area instanceof LazyAreaEval) {
+			return ((LazyAreaEval) area).getCachedValues();
+		}
+		return null;
+	}
+
+	public int getWidth() {
+		return _width;
+	}
+	public int getHeight() {
+		return _height;
+	}
+	/**
+	 * @return the number of rows which were read. The rows after these are all blank.
+	 */
+	public int getUsedHeight() {
+		return _values == null ? 0 : _values.length / _width;
+	}
+	public ValueEval getValue(int rowIndex, int columnIndex) {
+		int i = rowIndex * _width + columnIndex;
+		return i < _values.length ? _values[i] : BlankEval.instance;
+	}
+
+	/**
+	 * @return the index previously stored with the specified key, or <code>null</code> if
+	 * there isn't one (indexes are dropped whenever the values are read again)
+	 */
+	public Object getIndex(Object key) {
+		return _indexes == null ? null : _indexes.get(key);
+	}
+	public void putIndex(Object key, Object index) {
+		if (_indexes == null) {
+			_indexes = new HashMap<Object, Object>();
+		}
+		_indexes.put(key, index);
+	}
+
+	/* package */ FormulaCellCacheEntry getCacheEntry() {
+		return _cacheEntry;
+	}
+	/**
+	 * @return <code>false</code> if the values need to be (re-)read
+	 */
+	/* package */ boolean isValid() {
+		return _values != null && _cacheEntry.getValue() != null;
+	}
+	/**
+	 * @param values the values of the first {@link #getUsedHeight()} rows, row by row
+	 */
+	/* package */ void setValues(ValueEval[] values) {
+		_values = values;
+		_indexes = null;
+	}
+}
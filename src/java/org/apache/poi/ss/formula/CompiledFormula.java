@@ -0,0 +1,384 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.EvaluationException;
+import org.apache.poi.ss.formula.eval.MissingArgEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
+import org.apache.poi.ss.formula.functions.IfFunc;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPtg;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.AttrPtg;
+import org.apache.poi.ss.formula.ptg.BoolPtg;
+import org.apache.poi.ss.formula.ptg.ControlPtg;
+import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
+import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
+import org.apache.poi.ss.formula.ptg.ErrPtg;
+import org.apache.poi.ss.formula.ptg.FuncVarPtg;
+import org.apache.poi.ss.formula.ptg.IntPtg;
+import org.apache.poi.ss.formula.ptg.MemAreaPtg;
+import org.apache.poi.ss.formula.ptg.MemErrPtg;
+import org.apache.poi.ss.formula.ptg.MemFuncPtg;
+import org.apache.poi.ss.formula.ptg.MissingArgPtg;
+import org.apache.poi.ss.formula.ptg.NumberPtg;
+import org.apache.poi.ss.formula.ptg.OperationPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPtg;
+import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.StringPtg;
+import org.apache.poi.ss.formula.ptg.UnionPtg;
+
+/**
+ * A formula which has been converted once from its RPN tokens into a tree of
+ * evaluation nodes, so that repeated evaluations of the same cell don't need to
+ * re-interpret the {@link Ptg}s, or allocate an operand stack and argument arrays.<p/>
+ *
+ * Formulas using tokens that the tree form doesn't handle (e.g. the optimised
+ * <tt>CHOOSE()</tt> jump table, or the union operator) are evaluated by the
+ * {@link WorkbookEvaluator}'s interpreter instead.<p/>
+ *
+ * Instances belong to a single {@link FormulaCellCacheEntry}, and the argument
+ * arrays are re-used between evaluations. This is safe because the evaluator never
+ * re-enters the evaluation of a cell which is already being evaluated (that is
+ * reported as a circular reference instead).
+ */
+final class CompiledFormula {
+
+	/** only kept if the formula must be interpreted */
+	private final Ptg[] _ptgs;
+	/** <code>null</code> if the formula must be interpreted */
+	private final Node _root;
+
+	private CompiledFormula(Ptg[] ptgs, Node root) {
+		_ptgs = root == null ? ptgs : null;
+		_root = root;
+	}
+
+	/**
+	 * @return never <code>null</code>. If the tokens cannot be compiled, the result
+	 * delegates to {@link WorkbookEvaluator#evaluateFormula(OperationEvaluationContext, Ptg[])}
+	 */
+	public static CompiledFormula compile(Ptg[] ptgs) {
+		return new CompiledFormula(ptgs, compileTree(ptgs));
+	}
+
+	public boolean isInterpreted() {
+		return _root == null;
+	}
+
+	public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+		if (_root == null) {
+			return evaluator.evaluateFormula(ec, _ptgs);
+		}
+		ValueEval value = _root.evaluate(evaluator, ec);
+		return WorkbookEvaluator.dereferenceResult(value, ec.getRowIndex(), ec.getColumnIndex());
+	}
+
+	/**
+	 * @return <code>null</code> if the tokens contain anything which needs the interpreter
+	 */
+	private static Node compileTree(Ptg[] ptgs) {
+		List<Node> stack = new ArrayList<Node>();
+		// compile stack positions of the conditions of any optimised IFs seen so far
+		List<Integer> ifConditions = new ArrayList<Integer>();
+
+		for (int i = 0; i < ptgs.length; i++) {
+			Ptg ptg = ptgs[i];
+			if (ptg instanceof AttrPtg) {
+				AttrPtg attrPtg = (AttrPtg) ptg;
+				if (attrPtg.isSum()) {
+					ptg = FuncVarPtg.SUM;
+				} else if (attrPtg.isOptimizedIf()) {
+					if (stack.isEmpty()) {
+						return null;
+					}
+					ifConditions.add(Integer.valueOf(stack.size() - 1));
+					continue;
+				} else if (attrPtg.isSkip()) {
+					// only expected at the end of an optimised IF branch
+					if (ifConditions.isEmpty()) {
+						return null;
+					}
+					continue;
+				} else if (attrPtg.isOptimizedChoose()) {
+					return null;
+				}
+			}
+			if (ptg instanceof ControlPtg
+					|| ptg instanceof MemFuncPtg || ptg instanceof MemAreaPtg || ptg instanceof MemErrPtg) {
+				// skipped by the interpreter too
+				continue;
+			}
+			if (ptg instanceof UnionPtg) {
+				return null;
+			}
+
+			if (ptg instanceof OperationPtg) {
+				OperationPtg optg = (OperationPtg) ptg;
+				int numops = optg.getNumberOfOperands();
+				int firstArg = stack.size() - numops;
+				if (firstArg < 0) {
+					return null;
+				}
+				Node[] args = new Node[numops];
+				for (int j = 0; j < numops; j++) {
+					args[j] = stack.get(firstArg + j);
+				}
+				for (int j = 0; j < numops; j++) {
+					stack.remove(stack.size() - 1);
+				}
+
+				Node node;
+				if (isIf(optg) && !ifConditions.isEmpty()
+						&& ifConditions.get(ifConditions.size() - 1).intValue() == firstArg) {
+					ifConditions.remove(ifConditions.size() - 1);
+					if (numops < 2) {
+						return null;
+					}
+					node = new IfNode(args[0], args[1], numops > 2 ? args[2] : null);
+				} else {
+					node = new OperationNode(optg, args);
+				}
+				stack.add(node);
+			} else {
+				stack.add(createOperandNode(ptg));
+			}
+		}
+		if (stack.size() != 1 || !ifConditions.isEmpty()) {
+			// let the interpreter report the problem
+			return null;
+		}
+		return stack.get(0);
+	}
+
+	private static boolean isIf(OperationPtg optg) {
+		return optg instanceof AbstractFunctionPtg
+			&& ((AbstractFunctionPtg) optg).getFunctionIndex() == FunctionMetadataRegistry.FUNCTION_INDEX_IF;
+	}
+
+	private static Node createOperandNode(Ptg ptg) {
+		// Constants can be created up-front
+		if (ptg instanceof IntPtg) {
+			return new ConstantNode(new NumberEval(((IntPtg)ptg).getValue()));
+		}
+		if (ptg instanceof NumberPtg) {
+			return new ConstantNode(new NumberEval(((NumberPtg)ptg).getValue()));
+		}
+		if (ptg instanceof StringPtg) {
+			return new ConstantNode(new StringEval(((StringPtg) ptg).getValue()));
+		}
+		if (ptg instanceof BoolPtg) {
+			return new ConstantNode(BoolEval.valueOf(((BoolPtg) ptg).getValue()));
+		}
+		if (ptg instanceof ErrPtg) {
+			return new ConstantNode(ErrorEval.valueOf(((ErrPtg) ptg).getErrorCode()));
+		}
+		if (ptg instanceof MissingArgPtg) {
+			return new ConstantNode(MissingArgEval.instance);
+		}
+		if (ptg instanceof AreaErrPtg ||ptg instanceof RefErrorPtg
+				|| ptg instanceof DeletedArea3DPtg || ptg instanceof DeletedRef3DPtg) {
+			return new ConstantNode(ErrorEval.REF_INVALID);
+		}
+
+		// The commonest references get their own nodes
+		if (ptg instanceof Ref3DPtg) {
+			return new Ref3DNode((Ref3DPtg) ptg);
+		}
+		if (ptg instanceof Area3DPtg) {
+			return new Area3DNode((Area3DPtg) ptg);
+		}
+		if (ptg instanceof RefPtg) {
+			return new RefNode((RefPtg) ptg);
+		}
+		if (ptg instanceof AreaPtg) {
+			return new AreaNode((AreaPtg) ptg);
+		}
+
+		// Anything else (names etc) goes via the evaluator
+		return new PtgNode(ptg);
+	}
+
+	private static abstract class Node {
+		/**
+		 * @return never <code>null</code>
+		 */
+		public abstract ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec);
+	}
+
+	private static final class ConstantNode extends Node {
+		private final ValueEval _value;
+		public ConstantNode(ValueEval value) {
+			_value = value;
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return _value;
+		}
+	}
+
+	private static final class RefNode extends Node {
+		private final int _row;
+		private final int _column;
+		public RefNode(RefPtg ptg) {
+			_row = ptg.getRow();
+			_column = ptg.getColumn();
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return ec.getRefEval(_row, _column);
+		}
+	}
+
+	private static final class Ref3DNode extends Node {
+		private final int _row;
+		private final int _column;
+		private final int _externSheetIndex;
+		public Ref3DNode(Ref3DPtg ptg) {
+			_row = ptg.getRow();
+			_column = ptg.getColumn();
+			_externSheetIndex = ptg.getExternSheetIndex();
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return ec.getRef3DEval(_row, _column, _externSheetIndex);
+		}
+	}
+
+	private static final class AreaNode extends Node {
+		private final int _firstRow;
+		private final int _firstColumn;
+		private final int _lastRow;
+		private final int _lastColumn;
+		public AreaNode(AreaPtg ptg) {
+			_firstRow = ptg.getFirstRow();
+			_firstColumn = ptg.getFirstColumn();
+			_lastRow = ptg.getLastRow();
+			_lastColumn = ptg.getLastColumn();
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return ec.getAreaEval(_firstRow, _firstColumn, _lastRow, _lastColumn);
+		}
+	}
+
+	private static final class Area3DNode extends Node {
+		private final int _firstRow;
+		private final int _firstColumn;
+		private final int _lastRow;
+		private final int _lastColumn;
+		private final int _externSheetIndex;
+		public Area3DNode(Area3DPtg ptg) {
+			_firstRow = ptg.getFirstRow();
+			_firstColumn = ptg.getFirstColumn();
+			_lastRow = ptg.getLastRow();
+			_lastColumn = ptg.getLastColumn();
+			_externSheetIndex = ptg.getExternSheetIndex();
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return ec.getArea3DEval(_firstRow, _firstColumn, _lastRow, _lastColumn, _externSheetIndex);
+		}
+	}
+
+	private static final class PtgNode extends Node {
+		private final Ptg _ptg;
+		public PtgNode(Ptg ptg) {
+			_ptg = ptg;
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			return evaluator.getEvalForPtg(_ptg, ec);
+		}
+	}
+
+	private static final class OperationNode extends Node {
+		private final OperationPtg _ptg;
+		private final Node[] _args;
+		/** re-used between evaluations, see the class comment */
+		private final ValueEval[] _argValues;
+		public OperationNode(OperationPtg ptg, Node[] args) {
+			_ptg = ptg;
+			_args = args;
+			_argValues = new ValueEval[args.length];
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			ValueEval[] argValues = _argValues;
+			for (int i = 0; i < _args.length; i++) {
+				argValues[i] = _args[i].evaluate(evaluator, ec);
+			}
+			ValueEval result;
+			try {
+				result = OperationEvaluatorFactory.evaluate(_ptg, argValues, ec);
+			} finally {
+				// don't hold on to the operands between evaluations
+				for (int i = 0; i < argValues.length; i++) {
+					argValues[i] = null;
+				}
+			}
+			if (result == null) {
+				throw new RuntimeException("Evaluation result must not be null");
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * An <tt>IF()</tt> which was encoded with tAttrIf, so only the selected
+	 * branch gets evaluated
+	 */
+	private static final class IfNode extends Node {
+		private final Node _condition;
+		private final Node _ifTrue;
+		/** <code>null</code> if the IF had no false parameter */
+		private final Node _ifFalse;
+		public IfNode(Node condition, Node ifTrue, Node ifFalse) {
+			_condition = condition;
+			_ifTrue = ifTrue;
+			_ifFalse = ifFalse;
+		}
+		public ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+			ValueEval arg0 = _condition.evaluate(evaluator, ec);
+			boolean evaluatedPredicate;
+			try {
+				evaluatedPredicate = IfFunc.evaluateFirstArg(arg0, ec.getRowIndex(), ec.getColumnIndex());
+			} catch (EvaluationException e) {
+				return e.getErrorEval();
+			}
+			ValueEval result;
+			if (evaluatedPredicate) {
+				result = _ifTrue.evaluate(evaluator, ec);
+			} else if (_ifFalse == null) {
+				return BoolEval.FALSE;
+			} else {
+				result = _ifFalse.evaluate(evaluator, ec);
+			}
+			// as done by the interpreter on reaching the tAttrSkip
+			if (result == MissingArgEval.instance) {
+				return BlankEval.instance;
+			}
+			return result;
+		}
+	}
+}
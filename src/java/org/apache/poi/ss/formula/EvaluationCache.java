@@ -17,6 +17,9 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -39,6 +42,8 @@ final class EvaluationCache {
 
 	private final PlainCellCache _plainCellCache;
 	private final FormulaCellCache _formulaCellCache;
+	/** values of whole areas, as used by lookup functions */
+	private final Map<AreaLoc, CachedAreaValues> _areaValues;
 	/** only used for testing. <code>null</code> otherwise */
 	final IEvaluationListener _evaluationListener;
 
@@ -46,6 +51,7 @@ final class EvaluationCache {
 		_evaluationListener = evaluationListener;
 		_plainCellCache = new PlainCellCache();
 		_formulaCellCache = new FormulaCellCache();
+		_areaValues = new HashMap<AreaLoc, CachedAreaValues>();
 	}
 
 	public void notifyUpdateCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
@@ -53,8 +59,8 @@ final class EvaluationCache {
 
 		int rowIndex = cell.getRowIndex();
 		int columnIndex = cell.getColumnIndex();
-		Loc loc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
-		PlainValueCellCacheEntry pcce = _plainCellCache.get(loc);
+		long bookSheetColumn = Loc.toBookSheetColumn(bookIndex, sheetIndex, columnIndex);
+		PlainValueCellCacheEntry pcce = _plainCellCache.get(bookSheetColumn, rowIndex);
 
 		if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
 			if (fcce == null) {
@@ -71,13 +77,15 @@ final class EvaluationCache {
 			} else {
 				fcce.recurseClearCachedFormulaResults(_evaluationListener);
 				fcce.clearFormulaEntry();
+				// the formula itself may have changed
+				fcce.setCompiledFormula(null);
 			}
 			if (pcce == null) {
 				// was formula cell before - no change of type
 			} else {
 				// changing from plain cell to formula cell
 				pcce.recurseClearCachedFormulaResults(_evaluationListener);
-				_plainCellCache.remove(loc);
+				_plainCellCache.remove(bookSheetColumn, rowIndex);
 			}
 		} else {
 			ValueEval value = WorkbookEvaluator.getValueFromNonFormulaCell(cell);
@@ -94,14 +102,14 @@ final class EvaluationCache {
 						updateAnyBlankReferencingFormulas(bookIndex, sheetIndex,
 								rowIndex, columnIndex);
 					}
-					_plainCellCache.put(loc, pcce);
+					_plainCellCache.put(bookSheetColumn, rowIndex, pcce);
 				}
 			} else {
 				if (pcce.updateValue(value)) {
 					pcce.recurseClearCachedFormulaResults(_evaluationListener);
 				}
 				if (value == BlankEval.instance) {
-					_plainCellCache.remove(loc);
+					_plainCellCache.remove(bookSheetColumn, rowIndex);
 				}
 			}
 			if (fcce == null) {
@@ -124,16 +132,38 @@ final class EvaluationCache {
 				entry.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
 			}
 		});
+		for (Map.Entry<AreaLoc, CachedAreaValues> me : _areaValues.entrySet()) {
+			CachedAreaValues areaValues = me.getValue();
+			FormulaCellCacheEntry cce = areaValues.getCacheEntry();
+			if (me.getKey().isAfterUsedRows(bookIndex, sheetIndex, rowIndex, columnIndex, areaValues)) {
+				// the blank rows after the last row of the sheet weren't read, so aren't used blank cells
+				cce.clearFormulaEntry();
+				cce.recurseClearCachedFormulaResults(_evaluationListener);
+			} else {
+				cce.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
+			}
+		}
+	}
+
+	public CachedAreaValues getOrCreateAreaValues(int bookIndex, int sheetIndex, int firstRow,
+			int firstColumn, int lastRow, int lastColumn) {
+		AreaLoc loc = new AreaLoc(bookIndex, sheetIndex, firstRow, firstColumn, lastRow, lastColumn);
+		CachedAreaValues result = _areaValues.get(loc);
+		if (result == null) {
+			result = new CachedAreaValues(lastColumn - firstColumn + 1, lastRow - firstRow + 1);
+			_areaValues.put(loc, result);
+		}
+		return result;
 	}
 
 	public PlainValueCellCacheEntry getPlainValueEntry(int bookIndex, int sheetIndex,
 			int rowIndex, int columnIndex, ValueEval value) {
 
-		Loc loc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
-		PlainValueCellCacheEntry result = _plainCellCache.get(loc);
+		long bookSheetColumn = Loc.toBookSheetColumn(bookIndex, sheetIndex, columnIndex);
+		PlainValueCellCacheEntry result = _plainCellCache.get(bookSheetColumn, rowIndex);
 		if (result == null) {
 			result = new PlainValueCellCacheEntry(value);
-			_plainCellCache.put(loc, result);
+			_plainCellCache.put(bookSheetColumn, rowIndex, result);
 			if (_evaluationListener != null) {
 				_evaluationListener.onReadPlainValue(sheetIndex, rowIndex, columnIndex, result);
 			}
@@ -194,6 +224,7 @@ final class EvaluationCache {
 		}
 		_plainCellCache.clear();
 		_formulaCellCache.clear();
+		_areaValues.clear();
 	}
 	public void notifyDeleteCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
 
@@ -206,8 +237,8 @@ final class EvaluationCache {
 				fcce.recurseClearCachedFormulaResults(_evaluationListener);
 			}
 		} else {
-			Loc loc = new Loc(bookIndex, sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
-			PlainValueCellCacheEntry pcce = _plainCellCache.get(loc);
+			long bookSheetColumn = Loc.toBookSheetColumn(bookIndex, sheetIndex, cell.getColumnIndex());
+			PlainValueCellCacheEntry pcce = _plainCellCache.get(bookSheetColumn, cell.getRowIndex());
 
 			if (pcce == null) {
 				// cache entry doesn't exist. nothing to do
@@ -216,4 +247,79 @@ final class EvaluationCache {
 			}
 		}
 	}
+
+	/**
+	 * Describes how much is currently cached, with a rough estimate of the heap used by the
+	 * cache (assuming a 64-bit JVM with compressed references). The dependency sets between
+	 * entries and the cached values themselves are not included, as these are shared.
+	 *
+	 * @return a one line summary, suitable for logging
+	 */
+	public String getMemoryUsageReport() {
+		int nPlain = _plainCellCache.size();
+		int nFormula = _formulaCellCache.size();
+		int nAreas = _areaValues.size();
+		// key arrays plus entry array of each table
+		long plainTableBytes = (8L + 4 + 4) * _plainCellCache.getCapacity();
+		long formulaTableBytes = (4L + 4) * _formulaCellCache.getCapacity();
+		// each entry object, plus its (initially empty) set of consuming cells
+		long plainEntryBytes = (24L + 24) * nPlain;
+		long formulaEntryBytes = (40L + 24) * nFormula;
+		long areaBytes = 0;
+		for (CachedAreaValues areaValues : _areaValues.values()) {
+			// key, map entry, values object and array of values
+			areaBytes += 32 + 32 + 32 + 4L * areaValues.getWidth() * areaValues.getUsedHeight();
+		}
+		long total = plainTableBytes + formulaTableBytes + plainEntryBytes + formulaEntryBytes + areaBytes;
+
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(getClass().getName()).append(" [");
+		sb.append("plain cells=").append(nPlain);
+		sb.append(" (").append(plainTableBytes + plainEntryBytes).append(" bytes)");
+		sb.append(", formula cells=").append(nFormula);
+		sb.append(" (").append(formulaTableBytes + formulaEntryBytes).append(" bytes)");
+		sb.append(", cached areas=").append(nAreas);
+		sb.append(" (").append(areaBytes).append(" bytes)");
+		sb.append(", total=").append(total).append(" bytes]");
+		return sb.toString();
+	}
+
+	private static final class AreaLoc {
+		private final int _bookIndex;
+		private final int _sheetIndex;
+		private final int _firstRow;
+		private final int _firstColumn;
+		private final int _lastRow;
+		private final int _lastColumn;
+
+		public AreaLoc(int bookIndex, int sheetIndex, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+			_bookIndex = bookIndex;
+			_sheetIndex = sheetIndex;
+			_firstRow = firstRow;
+			_firstColumn = firstColumn;
+			_lastRow = lastRow;
+			_lastColumn = lastColumn;
+		}
+
+		/**
+		 * @return <code>true</code> if the cell is in the area, in a row after those read
+		 */
+		public boolean isAfterUsedRows(int bookIndex, int sheetIndex, int rowIndex, int columnIndex,
+				CachedAreaValues areaValues) {
+			return bookIndex == _bookIndex && sheetIndex == _sheetIndex
+					&& columnIndex >= _firstColumn && columnIndex <= _lastColumn
+					&& rowIndex <= _lastRow && rowIndex >= _firstRow + areaValues.getUsedHeight();
+		}
+
+		public int hashCode() {
+			return ((((_bookIndex * 31 + _sheetIndex) * 31 + _firstRow) * 31 + _firstColumn) * 31 + _lastRow) * 31 + _lastColumn;
+		}
+
+		public boolean equals(Object obj) {
+			AreaLoc other = (AreaLoc) obj;
+			return _bookIndex == other._bookIndex && _sheetIndex == other._sheetIndex
+					&& _firstRow == other._firstRow && _firstColumn == other._firstColumn
+					&& _lastRow == other._lastRow && _lastColumn == other._lastColumn;
+		}
+	}
 }
@@ -30,4 +30,9 @@ public interface EvaluationSheet {
 	 * @return <code>null</code> if there is no cell at the specified coordinates
 	 */
 	EvaluationCell getCell(int rowIndex, int columnIndex);
+
+	/**
+	 * @return the index of the last row that may have cells. All the rows after it are blank.
+	 */
+	int getLastRowNum();
 }
@@ -17,9 +17,7 @@
 
 package org.apache.poi.ss.formula;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * 
@@ -31,43 +29,150 @@ final class FormulaCellCache {
 		void processEntry(FormulaCellCacheEntry entry);
 	}
 
-	private final Map<Object, FormulaCellCacheEntry> _formulaEntriesByCell;
+	private static final int INITIAL_CAPACITY = 64;
+
+	/*
+	 * Open addressing (linear probing) over parallel arrays, so that no entry objects are
+	 * allocated as a HashMap would. A slot is free when its key is null.
+	 * Assumes the object returned by EvaluationCell.getIdentityKey() has a well behaved hashCode+equals
+	 */
+	private Object[] _keys;
+	private FormulaCellCacheEntry[] _entries;
+	private int _size;
 
 	public FormulaCellCache() {
-		// assumes the object returned by EvaluationCell.getIdentityKey() has a well behaved hashCode+equals
-		_formulaEntriesByCell = new HashMap<Object, FormulaCellCacheEntry>();
+		allocate(INITIAL_CAPACITY);
+	}
+	private void allocate(int capacity) {
+		_keys = new Object[capacity];
+		_entries = new FormulaCellCacheEntry[capacity];
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the slot of the specified key, or the free slot where it would go
+	 */
+	private int findSlot(Object key) {
+		int mask = _keys.length - 1;
+		int i = hash(key) & mask;
+		while (true) {
+			Object k = _keys[i];
+			if (k == null || k == key || k.equals(key)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
 	}
 
 	public CellCacheEntry[] getCacheEntries() {
 
-		FormulaCellCacheEntry[] result = new FormulaCellCacheEntry[_formulaEntriesByCell.size()];
-		_formulaEntriesByCell.values().toArray(result);
+		FormulaCellCacheEntry[] result = new FormulaCellCacheEntry[_size];
+		int j = 0;
+		for (int i = 0; i < _entries.length; i++) {
+			if (_keys[i] != null) {
+				result[j++] = _entries[i];
+			}
+		}
 		return result;
 	}
 
 	public void clear() {
-		_formulaEntriesByCell.clear();
+		if (_keys.length > INITIAL_CAPACITY) {
+			// don't hang on to the memory of a previous large evaluation
+			allocate(INITIAL_CAPACITY);
+		} else {
+			Arrays.fill(_keys, null);
+			Arrays.fill(_entries, null);
+		}
+		_size = 0;
 	}
 
 	/**
 	 * @return <code>null</code> if not found
 	 */
 	public FormulaCellCacheEntry get(EvaluationCell cell) {
-		return _formulaEntriesByCell.get(cell.getIdentityKey());
+		return _entries[findSlot(cell.getIdentityKey())];
 	}
 
 	public void put(EvaluationCell cell, FormulaCellCacheEntry entry) {
-		_formulaEntriesByCell.put(cell.getIdentityKey(), entry);
+		Object key = cell.getIdentityKey();
+		int i = findSlot(key);
+		if (_keys[i] == null) {
+			if ((_size + 1) * 4 > _keys.length * 3) {
+				grow();
+				i = findSlot(key);
+			}
+			_keys[i] = key;
+			_size++;
+		}
+		_entries[i] = entry;
+	}
+	private void grow() {
+		Object[] oldKeys = _keys;
+		FormulaCellCacheEntry[] oldEntries = _entries;
+		allocate(oldKeys.length * 2);
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != null) {
+				int i = findSlot(oldKeys[j]);
+				_keys[i] = oldKeys[j];
+				_entries[i] = oldEntries[j];
+			}
+		}
 	}
 
 	public FormulaCellCacheEntry remove(EvaluationCell cell) {
-		return _formulaEntriesByCell.remove(cell.getIdentityKey());
+		int mask = _keys.length - 1;
+		int i = findSlot(cell.getIdentityKey());
+		if (_keys[i] == null) {
+			return null;
+		}
+		FormulaCellCacheEntry result = _entries[i];
+		_keys[i] = null;
+		_entries[i] = null;
+		_size--;
+		// shift back any following entries which can no longer be reached past the new gap
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (_keys[j] == null) {
+				return result;
+			}
+			int home = hash(_keys[j]) & mask;
+			// the entry at j may fill the gap at i unless its home slot lies cyclically in (i, j]
+			boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!reachable) {
+				_keys[i] = _keys[j];
+				_entries[i] = _entries[j];
+				_keys[j] = null;
+				_entries[j] = null;
+				i = j;
+			}
+		}
 	}
 
 	public void applyOperation(IEntryOperation operation) {
-		Iterator<FormulaCellCacheEntry> i = _formulaEntriesByCell.values().iterator();
-		while (i.hasNext()) {
-			operation.processEntry(i.next());
+		FormulaCellCacheEntry[] entries = _entries;
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i] != null) {
+				operation.processEntry(entries[i]);
+			}
 		}
 	}
+
+	/**
+	 * @return the number of cached formula cells
+	 */
+	public int size() {
+		return _size;
+	}
+	/**
+	 * @return the number of slots in the hash table
+	 */
+	public int getCapacity() {
+		return _keys.length;
+	}
 }
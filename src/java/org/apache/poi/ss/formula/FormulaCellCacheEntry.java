@@ -41,9 +41,26 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 
 	private FormulaUsedBlankCellSet _usedBlankCellGroup;
 
+	/**
+	 * The formula tokens of the cell, prepared for evaluation. Only needs to be
+	 * cleared when the formula itself changes, not when its inputs do.
+	 */
+	private CompiledFormula _compiledFormula;
+
 	public FormulaCellCacheEntry() {
 		// leave fields un-set
 	}
+
+	/**
+	 * @return <code>null</code> if the formula has not been compiled yet
+	 */
+	public CompiledFormula getCompiledFormula() {
+		return _compiledFormula;
+	}
+
+	public void setCompiledFormula(CompiledFormula compiledFormula) {
+		_compiledFormula = compiledFormula;
+	}
 	
 	public boolean isInputSensitive() {
 		if (_sensitiveInputCells != null) {
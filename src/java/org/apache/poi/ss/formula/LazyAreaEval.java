@@ -74,6 +74,13 @@ final class LazyAreaEval extends AreaEvalBase {
 		return new LazyAreaEval(getFirstRow(), absColIx, getLastRow(), absColIx, _evaluator);
 	}
 
+	/**
+	 * @return <code>null</code> if the values of this area can't be cached
+	 */
+	CachedAreaValues getCachedValues() {
+		return _evaluator.getCachedAreaValues(getFirstRow(), getFirstColumn(), getLastRow(), getLastColumn());
+	}
+
 	public String toString() {
 		CellReference crA = new CellReference(getFirstRow(), getFirstColumn());
 		CellReference crB = new CellReference(getLastRow(), getLastColumn());
@@ -0,0 +1,480 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+
+/**
+ * Evaluates a whole set of formula cells (typically every formula cell in a workbook)
+ * using several threads.<p/>
+ *
+ * {@link WorkbookEvaluator} and its cache assume a single thread, so each thread gets its
+ * own evaluator over the same {@link EvaluationWorkbook}. The dependencies between the
+ * formula cells are worked out up-front from their tokens, and the cells are then evaluated
+ * one dependency level at a time, so that each cell is only evaluated once all the formula
+ * cells it refers to are done. Those results are shared between the evaluators, so no cell
+ * is evaluated more than once.<p/>
+ *
+ * Cells whose inputs can't be worked out from their tokens (INDIRECT, OFFSET, references to
+ * other workbooks), cells on circular references, and all the cells depending on those, are
+ * left until the end, and then evaluated in the supplied order by the workbook's own
+ * evaluator. This gives the same results as evaluating every cell in turn.<p/>
+ *
+ * The workbook must not be changed whilst the cells are evaluated, and any user defined
+ * functions must be safe to call from several threads at once. Reading a cell must not
+ * change the workbook either, so any cells which are only created when first read (packed
+ * HSSF cells, lazily loaded XSSF rows) must all have been created on the calling thread
+ * beforehand, as the <tt>evaluateAll(int)</tt> methods of the formula evaluators do.
+ */
+public final class ParallelWorkbookEvaluator {
+
+	/** levels with fewer cells than this are evaluated on the calling thread */
+	private static final int MIN_CELLS_PER_TASK = 32;
+	/**
+	 * Long chains of cumulative ranges (e.g. <tt>SUM($A$1:A1000)</tt> copied down) give a
+	 * quadratic number of dependencies, and can't be evaluated in parallel anyway. Past this
+	 * many dependencies per cell the analysis is abandoned and the cells evaluated in turn.
+	 */
+	private static final int MAX_AVERAGE_DEPENDENCIES = 64;
+	/** limits following names that are defined in terms of other names */
+	private static final int MAX_NAME_DEPTH = 16;
+	private static final int FUNCTION_INDEX_OFFSET = 78;
+
+	private final WorkbookEvaluator _bookEvaluator;
+	private final EvaluationWorkbook _workbook;
+	private final EvaluationCell[] _cells;
+	private final int _nThreads;
+
+	/** formula cell locations, by sheet index */
+	private final Map<Integer, SheetFormulaCells> _cellsBySheet;
+	/** for each cell, the (indexes of) formula cells which refer to it */
+	private final int[][] _dependents;
+	private final int[] _nDependencies;
+	/** cells that have to be evaluated in the final serial pass */
+	private final boolean[] _isSerial;
+	private int _nEdges;
+	private int _maxEdges;
+
+	private ParallelWorkbookEvaluator(WorkbookEvaluator bookEvaluator, EvaluationCell[] cells, int nThreads) {
+		_bookEvaluator = bookEvaluator;
+		_workbook = bookEvaluator.getWorkbook();
+		_cells = cells;
+		_nThreads = nThreads;
+		_cellsBySheet = new HashMap<Integer, SheetFormulaCells>();
+		_dependents = new int[cells.length][];
+		_nDependencies = new int[cells.length];
+		_isSerial = new boolean[cells.length];
+		_maxEdges = cells.length * MAX_AVERAGE_DEPENDENCIES;
+	}
+
+	/**
+	 * Evaluates the supplied formula cells, using up to <tt>nThreads</tt> threads.
+	 *
+	 * @param bookEvaluator the evaluator of the workbook containing the cells. This is
+	 * only used from the calling thread. Its cached results are cleared if any cells have
+	 * to be evaluated by it.
+	 * @param cells the formula cells to evaluate, in the order they would be evaluated serially
+	 * @return the result for each of the supplied cells, as returned by
+	 * {@link WorkbookEvaluator#evaluate(EvaluationCell)}
+	 */
+	public static ValueEval[] evaluateAll(WorkbookEvaluator bookEvaluator, EvaluationCell[] cells, int nThreads) {
+		if (nThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive, but was " + nThreads);
+		}
+		return new ParallelWorkbookEvaluator(bookEvaluator, cells, nThreads).evaluateAll();
+	}
+
+	private ValueEval[] evaluateAll() {
+		ValueEval[] results = new ValueEval[_cells.length];
+		if (!buildDependencies()) {
+			for (int i = 0; i < _cells.length; i++) {
+				results[i] = _bookEvaluator.evaluate(_cells[i]);
+			}
+			return results;
+		}
+
+		Map<Object, ValueEval> sharedResults = new ConcurrentHashMap<Object, ValueEval>(_cells.length * 4 / 3 + 1);
+		boolean[] isDone = new boolean[_cells.length];
+		ExecutorService executor = _nThreads > 1 ? Executors.newFixedThreadPool(_nThreads) : null;
+		try {
+			WorkbookEvaluator[] evaluators = new WorkbookEvaluator[_nThreads];
+			for (int i = 0; i < evaluators.length; i++) {
+				evaluators[i] = new WorkbookEvaluator(_workbook, _bookEvaluator.getStabilityClassifier(), null);
+				evaluators[i].setIgnoreMissingWorkbooks(_bookEvaluator.isIgnoreMissingWorkbooks());
+				evaluators[i].setPrecalculatedResults(sharedResults);
+			}
+
+			int[] level = firstLevel();
+			while (level.length > 0) {
+				evaluateLevel(level, evaluators, executor, sharedResults, results);
+				for (int i = 0; i < level.length; i++) {
+					isDone[level[i]] = true;
+				}
+				level = nextLevel(level);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+
+		// whatever is left goes through the workbook's own evaluator
+		boolean usedBookEvaluator = false;
+		try {
+			for (int i = 0; i < _cells.length; i++) {
+				if (isDone[i]) {
+					continue;
+				}
+				if (!usedBookEvaluator) {
+					_bookEvaluator.setPrecalculatedResults(sharedResults);
+					usedBookEvaluator = true;
+				}
+				results[i] = _bookEvaluator.evaluate(_cells[i]);
+			}
+		} finally {
+			if (usedBookEvaluator) {
+				_bookEvaluator.setPrecalculatedResults(null);
+				// the precalculated results were cached without their inputs
+				_bookEvaluator.clearAllCachedResultValues();
+			}
+		}
+		return results;
+	}
+
+	private void evaluateLevel(int[] level, WorkbookEvaluator[] evaluators, ExecutorService executor,
+			Map<Object, ValueEval> sharedResults, ValueEval[] results) {
+		int nTasks = Math.min(evaluators.length, level.length / MIN_CELLS_PER_TASK);
+		if (executor == null || nTasks < 2) {
+			new LevelTask(evaluators[0], level, 0, level.length, sharedResults, results).call();
+			return;
+		}
+		List<Future<Object>> futures = new ArrayList<Future<Object>>(nTasks);
+		int start = 0;
+		for (int i = 0; i < nTasks; i++) {
+			int end = (int) ((long) level.length * (i + 1) / nTasks);
+			futures.add(executor.submit(new LevelTask(evaluators[i], level, start, end, sharedResults, results)));
+			start = end;
+		}
+		try {
+			for (Future<Object> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted whilst evaluating formulas", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Evaluates a run of cells from one level with a single evaluator
+	 */
+	private final class LevelTask implements Callable<Object> {
+		private final WorkbookEvaluator _evaluator;
+		private final int[] _level;
+		private final int _start;
+		private final int _end;
+		private final Map<Object, ValueEval> _sharedResults;
+		private final ValueEval[] _results;
+
+		public LevelTask(WorkbookEvaluator evaluator, int[] level, int start, int end,
+				Map<Object, ValueEval> sharedResults, ValueEval[] results) {
+			_evaluator = evaluator;
+			_level = level;
+			_start = start;
+			_end = end;
+			_sharedResults = sharedResults;
+			_results = results;
+		}
+
+		public Object call() {
+			for (int i = _start; i < _end; i++) {
+				EvaluationCell cell = _cells[_level[i]];
+				ValueEval result = _evaluator.evaluate(cell);
+				_results[_level[i]] = result;
+				_sharedResults.put(cell.getIdentityKey(), result);
+			}
+			return null;
+		}
+	}
+
+	private int[] firstLevel() {
+		IntList result = new IntList();
+		for (int i = 0; i < _cells.length; i++) {
+			if (_nDependencies[i] == 0 && !_isSerial[i]) {
+				result.add(i);
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * @return the cells whose last outstanding dependency was in the supplied level
+	 */
+	private int[] nextLevel(int[] level) {
+		IntList result = new IntList();
+		for (int i = 0; i < level.length; i++) {
+			int[] dependents = _dependents[level[i]];
+			if (dependents == null) {
+				continue;
+			}
+			for (int j = 0; j < dependents.length; j++) {
+				int dependent = dependents[j];
+				if (--_nDependencies[dependent] == 0 && !_isSerial[dependent]) {
+					result.add(dependent);
+				}
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Works out which formula cells refer to which.
+	 * @return <code>false</code> if there were too many dependencies to bother
+	 */
+	private boolean buildDependencies() {
+		int[] sheetIndexes = new int[_cells.length];
+		Map<Integer, Map<Integer, IntList>> cellsBySheetAndColumn = new HashMap<Integer, Map<Integer, IntList>>();
+		for (int i = 0; i < _cells.length; i++) {
+			int sheetIndex = _workbook.getSheetIndex(_cells[i].getSheet());
+			sheetIndexes[i] = sheetIndex;
+			Integer sheetKey = Integer.valueOf(sheetIndex);
+			Map<Integer, IntList> cellsByColumn = cellsBySheetAndColumn.get(sheetKey);
+			if (cellsByColumn == null) {
+				cellsByColumn = new HashMap<Integer, IntList>();
+				cellsBySheetAndColumn.put(sheetKey, cellsByColumn);
+			}
+			Integer columnKey = Integer.valueOf(_cells[i].getColumnIndex());
+			IntList column = cellsByColumn.get(columnKey);
+			if (column == null) {
+				column = new IntList();
+				cellsByColumn.put(columnKey, column);
+			}
+			column.add(i);
+		}
+		for (Map.Entry<Integer, Map<Integer, IntList>> me : cellsBySheetAndColumn.entrySet()) {
+			_cellsBySheet.put(me.getKey(), new SheetFormulaCells(me.getValue(), _cells));
+		}
+
+		IntList[] dependents = new IntList[_cells.length];
+		for (int i = 0; i < _cells.length; i++) {
+			Ptg[] ptgs = _workbook.getFormulaTokens(_cells[i]);
+			if (!addDependencies(i, sheetIndexes[i], ptgs, 0, dependents)) {
+				return false;
+			}
+		}
+		for (int i = 0; i < _cells.length; i++) {
+			if (dependents[i] != null) {
+				_dependents[i] = dependents[i].toArray();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the formula cells referred to by the supplied tokens as dependencies of a cell,
+	 * or marks it for the serial pass if they can't be worked out.
+	 * @return <code>false</code> if there are too many dependencies in total
+	 */
+	private boolean addDependencies(int cellIx, int sheetIndex, Ptg[] ptgs, int nameDepth, IntList[] dependents) {
+		for (int i = 0; i < ptgs.length; i++) {
+			Ptg ptg = ptgs[i];
+			if (ptg instanceof RefPtg) {
+				RefPtg rptg = (RefPtg) ptg;
+				if (!addAreaDependencies(cellIx, sheetIndex, rptg.getRow(), rptg.getColumn(),
+						rptg.getRow(), rptg.getColumn(), dependents)) {
+					return false;
+				}
+			} else if (ptg instanceof AreaPtg) {
+				AreaPtg aptg = (AreaPtg) ptg;
+				if (!addAreaDependencies(cellIx, sheetIndex, aptg.getFirstRow(), aptg.getFirstColumn(),
+						aptg.getLastRow(), aptg.getLastColumn(), dependents)) {
+					return false;
+				}
+			} else if (ptg instanceof Ref3DPtg) {
+				Ref3DPtg rptg = (Ref3DPtg) ptg;
+				int otherSheetIndex = getInternalSheetIndex(rptg.getExternSheetIndex());
+				if (otherSheetIndex < 0) {
+					_isSerial[cellIx] = true;
+				} else if (!addAreaDependencies(cellIx, otherSheetIndex, rptg.getRow(), rptg.getColumn(),
+						rptg.getRow(), rptg.getColumn(), dependents)) {
+					return false;
+				}
+			} else if (ptg instanceof Area3DPtg) {
+				Area3DPtg aptg = (Area3DPtg) ptg;
+				int otherSheetIndex = getInternalSheetIndex(aptg.getExternSheetIndex());
+				if (otherSheetIndex < 0) {
+					_isSerial[cellIx] = true;
+				} else if (!addAreaDependencies(cellIx, otherSheetIndex, aptg.getFirstRow(), aptg.getFirstColumn(),
+						aptg.getLastRow(), aptg.getLastColumn(), dependents)) {
+					return false;
+				}
+			} else if (ptg instanceof NamePtg) {
+				EvaluationName name = _workbook.getName((NamePtg) ptg);
+				if (name.isFunctionName() || !name.hasFormula()) {
+					continue;
+				}
+				if (nameDepth >= MAX_NAME_DEPTH) {
+					_isSerial[cellIx] = true;
+				} else if (!addDependencies(cellIx, sheetIndex, name.getNameDefinition(), nameDepth + 1, dependents)) {
+					return false;
+				}
+			} else if (ptg instanceof NameXPtg) {
+				if (_workbook.getExternalSheet(((NameXPtg) ptg).getSheetRefIndex()) != null) {
+					_isSerial[cellIx] = true;
+				}
+			} else if (ptg instanceof AbstractFunctionPtg) {
+				int functionIndex = ((AbstractFunctionPtg) ptg).getFunctionIndex();
+				if (functionIndex == FunctionMetadataRegistry.FUNCTION_INDEX_INDIRECT
+						|| functionIndex == FUNCTION_INDEX_OFFSET) {
+					_isSerial[cellIx] = true;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the index of the referenced sheet, or -1 if it is in another workbook
+	 */
+	private int getInternalSheetIndex(int externSheetIndex) {
+		if (_workbook.getExternalSheet(externSheetIndex) != null) {
+			return -1;
+		}
+		return _workbook.convertFromExternSheetIndex(externSheetIndex);
+	}
+
+	private boolean addAreaDependencies(int cellIx, int sheetIndex, int firstRow, int firstColumn,
+			int lastRow, int lastColumn, IntList[] dependents) {
+		SheetFormulaCells sheetCells = _cellsBySheet.get(Integer.valueOf(sheetIndex));
+		if (sheetCells == null) {
+			return true;
+		}
+		int[] columns = sheetCells._columns;
+		for (int c = lowerBound(columns, firstColumn); c < columns.length && columns[c] <= lastColumn; c++) {
+			int[] rows = sheetCells._rows[c];
+			int[] cellIndexes = sheetCells._cellIndexes[c];
+			for (int r = lowerBound(rows, firstRow); r < rows.length && rows[r] <= lastRow; r++) {
+				int dependency = cellIndexes[r];
+				if (dependents[dependency] == null) {
+					dependents[dependency] = new IntList();
+				}
+				dependents[dependency].add(cellIx);
+				_nDependencies[cellIx]++;
+				if (++_nEdges > _maxEdges) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the index of the first element of the sorted array not less than <tt>key</tt>
+	 */
+	private static int lowerBound(int[] values, int key) {
+		int ix = Arrays.binarySearch(values, key);
+		return ix < 0 ? -(ix + 1) : ix;
+	}
+
+	/**
+	 * The formula cells of one sheet, sorted by column then row
+	 */
+	private static final class SheetFormulaCells {
+		final int[] _columns;
+		final int[][] _rows;
+		final int[][] _cellIndexes;
+
+		public SheetFormulaCells(Map<Integer, IntList> cellsByColumn, EvaluationCell[] cells) {
+			int nColumns = cellsByColumn.size();
+			_columns = new int[nColumns];
+			int i = 0;
+			for (Integer column : cellsByColumn.keySet()) {
+				_columns[i++] = column.intValue();
+			}
+			Arrays.sort(_columns);
+			_rows = new int[nColumns][];
+			_cellIndexes = new int[nColumns][];
+			for (i = 0; i < nColumns; i++) {
+				int[] cellIndexes = cellsByColumn.get(Integer.valueOf(_columns[i])).toArray();
+				// cells are usually supplied row by row, so these are normally sorted already
+				long[] keys = new long[cellIndexes.length];
+				for (int j = 0; j < cellIndexes.length; j++) {
+					keys[j] = ((long) cells[cellIndexes[j]].getRowIndex() << 32) | cellIndexes[j];
+				}
+				Arrays.sort(keys);
+				int[] rows = new int[keys.length];
+				for (int j = 0; j < keys.length; j++) {
+					rows[j] = (int) (keys[j] >>> 32);
+					cellIndexes[j] = (int) keys[j];
+				}
+				_rows[i] = rows;
+				_cellIndexes[i] = cellIndexes;
+			}
+		}
+	}
+
+	private static final class IntList {
+		private int[] _values = new int[4];
+		private int _size;
+
+		public void add(int value) {
+			if (_size == _values.length) {
+				int[] newValues = new int[_size * 2];
+				System.arraycopy(_values, 0, newValues, 0, _size);
+				_values = newValues;
+			}
+			_values[_size++] = value;
+		}
+
+		public int[] toArray() {
+			int[] result = new int[_size];
+			System.arraycopy(_values, 0, result, 0, _size);
+			return result;
+		}
+	}
+}
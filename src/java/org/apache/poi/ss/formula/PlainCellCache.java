@@ -17,10 +17,10 @@
 
 package org.apache.poi.ss.formula;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
+ * Cache entries of plain value cells, keyed by their location
  *
  * @author Josh Micich
  */
@@ -75,21 +75,143 @@ final class PlainCellCache {
         }
 	}
 
-	private Map<Loc, PlainValueCellCacheEntry> _plainValueEntriesByLoc;
+	private static final int INITIAL_CAPACITY = 64;
+
+	/*
+	 * Open addressing (linear probing) over parallel arrays, keyed by the packed book, sheet and
+	 * column plus the row index. Unlike a HashMap this needs no key or entry objects, either
+	 * to store an entry or to look one up. A slot is free when its entry is null.
+	 */
+	private long[] _bookSheetColumns;
+	private int[] _rowIndexes;
+	private PlainValueCellCacheEntry[] _entries;
+	private int _size;
 
 	public PlainCellCache() {
-		_plainValueEntriesByLoc = new HashMap<Loc, PlainValueCellCacheEntry>();
+		allocate(INITIAL_CAPACITY);
 	}
-	public void put(Loc key, PlainValueCellCacheEntry cce) {
-		_plainValueEntriesByLoc.put(key, cce);
+	private void allocate(int capacity) {
+		_bookSheetColumns = new long[capacity];
+		_rowIndexes = new int[capacity];
+		_entries = new PlainValueCellCacheEntry[capacity];
+	}
+
+	private static int hash(long bookSheetColumn, int rowIndex) {
+		long h = (bookSheetColumn * 31 + rowIndex) * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * @return the slot of the specified cell, or the free slot where it would go
+	 */
+	private int findSlot(long bookSheetColumn, int rowIndex) {
+		int mask = _entries.length - 1;
+		int i = hash(bookSheetColumn, rowIndex) & mask;
+		while (_entries[i] != null) {
+			if (_bookSheetColumns[i] == bookSheetColumn && _rowIndexes[i] == rowIndex) {
+				break;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
 	}
+
+	public void put(long bookSheetColumn, int rowIndex, PlainValueCellCacheEntry cce) {
+		if (cce == null) {
+			throw new IllegalArgumentException("cache entry must not be null");
+		}
+		int i = findSlot(bookSheetColumn, rowIndex);
+		if (_entries[i] == null) {
+			if ((_size + 1) * 4 > _entries.length * 3) {
+				grow();
+				i = findSlot(bookSheetColumn, rowIndex);
+			}
+			_bookSheetColumns[i] = bookSheetColumn;
+			_rowIndexes[i] = rowIndex;
+			_size++;
+		}
+		_entries[i] = cce;
+	}
+	private void grow() {
+		long[] oldBookSheetColumns = _bookSheetColumns;
+		int[] oldRowIndexes = _rowIndexes;
+		PlainValueCellCacheEntry[] oldEntries = _entries;
+		allocate(oldEntries.length * 2);
+		for (int j = 0; j < oldEntries.length; j++) {
+			if (oldEntries[j] != null) {
+				int i = findSlot(oldBookSheetColumns[j], oldRowIndexes[j]);
+				_bookSheetColumns[i] = oldBookSheetColumns[j];
+				_rowIndexes[i] = oldRowIndexes[j];
+				_entries[i] = oldEntries[j];
+			}
+		}
+	}
+
 	public void clear() {
-		_plainValueEntriesByLoc.clear();
+		if (_entries.length > INITIAL_CAPACITY) {
+			// don't hang on to the memory of a previous large evaluation
+			allocate(INITIAL_CAPACITY);
+		} else {
+			Arrays.fill(_entries, null);
+		}
+		_size = 0;
+	}
+
+	/**
+	 * @return <code>null</code> if not found
+	 */
+	public PlainValueCellCacheEntry get(long bookSheetColumn, int rowIndex) {
+		return _entries[findSlot(bookSheetColumn, rowIndex)];
+	}
+
+	public void remove(long bookSheetColumn, int rowIndex) {
+		int mask = _entries.length - 1;
+		int i = findSlot(bookSheetColumn, rowIndex);
+		if (_entries[i] == null) {
+			return;
+		}
+		_entries[i] = null;
+		_size--;
+		// shift back any following entries which can no longer be reached past the new gap
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (_entries[j] == null) {
+				return;
+			}
+			int home = hash(_bookSheetColumns[j], _rowIndexes[j]) & mask;
+			// the entry at j may fill the gap at i unless its home slot lies cyclically in (i, j]
+			boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!reachable) {
+				_bookSheetColumns[i] = _bookSheetColumns[j];
+				_rowIndexes[i] = _rowIndexes[j];
+				_entries[i] = _entries[j];
+				_entries[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	public void put(Loc key, PlainValueCellCacheEntry cce) {
+		put(key._bookSheetColumn, key._rowIndex, cce);
 	}
 	public PlainValueCellCacheEntry get(Loc key) {
-		return _plainValueEntriesByLoc.get(key);
+		return get(key._bookSheetColumn, key._rowIndex);
 	}
 	public void remove(Loc key) {
-		_plainValueEntriesByLoc.remove(key);
+		remove(key._bookSheetColumn, key._rowIndex);
+	}
+
+	/**
+	 * @return the number of cached cells
+	 */
+	public int size() {
+		return _size;
+	}
+	/**
+	 * @return the number of slots in the hash table
+	 */
+	public int getCapacity() {
+		return _entries.length;
 	}
 }
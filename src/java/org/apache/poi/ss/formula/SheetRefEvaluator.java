@@ -51,6 +51,11 @@ final class SheetRefEvaluator {
 		return _bookEvaluator.evaluateReference(getSheet(), _sheetIndex, rowIndex, columnIndex, _tracker);
 	}
 
+	public CachedAreaValues getCachedAreaValues(int firstRow, int firstColumn, int lastRow, int lastColumn) {
+		return _bookEvaluator.getCachedAreaValues(getSheet(), _sheetIndex, firstRow, firstColumn,
+				lastRow, lastColumn, _tracker);
+	}
+
 	private EvaluationSheet getSheet() {
 		if (_sheet == null) {
 			_sheet = _bookEvaluator.getSheet(_sheetIndex);
@@ -76,6 +76,9 @@ public final class WorkbookEvaluator {
 	
 	private static final POILogger LOG = POILogFactory.getLogger(WorkbookEvaluator.class);
 
+	/** larger areas are not worth holding in the cache */
+	private static final int MAX_CACHED_AREA_SIZE = 1 << 21;
+
     private final EvaluationWorkbook _workbook;
 	private EvaluationCache _cache;
 	/** part of cache entry key (useful when evaluating multiple workbooks) */
@@ -90,6 +93,12 @@ public final class WorkbookEvaluator {
 
     private boolean _ignoreMissingWorkbooks = false;
 
+	/**
+	 * Formula results already calculated elsewhere (keyed by cell identity key), used
+	 * by {@link ParallelWorkbookEvaluator}. <code>null</code> when not in use.
+	 */
+	private Map<Object, ValueEval> _precalculatedResults;
+
 	/**
 	 * @param udfFinder pass <code>null</code> for default (AnalysisToolPak only)
 	 */
@@ -126,6 +135,26 @@ public final class WorkbookEvaluator {
 		return _workbook.getSheet(sheetIndex);
 	}
 	
+	/* package */ IStabilityClassifier getStabilityClassifier() {
+		return _stabilityClassifier;
+	}
+
+	/* package */ boolean isIgnoreMissingWorkbooks() {
+		return _ignoreMissingWorkbooks;
+	}
+
+	/**
+	 * Makes this evaluator take the results of the given formula cells as known, rather
+	 * than evaluating them itself. Note - the cached results don't record their inputs, so
+	 * the cache must be cleared once the supplied map is no longer in use.
+	 *
+	 * @param results formula results keyed by {@link EvaluationCell#getIdentityKey()},
+	 * or <code>null</code> to stop using them
+	 */
+	/* package */ void setPrecalculatedResults(Map<Object, ValueEval> results) {
+		_precalculatedResults = results;
+	}
+
 	/* package */ EvaluationWorkbook getWorkbook() {
 		return _workbook;
 	}
@@ -195,6 +224,13 @@ public final class WorkbookEvaluator {
 		_sheetIndexesBySheet.clear();
 	}
 
+	/**
+	 * @return a summary of the number of cached cells and the heap they take, to help
+	 * size the memory needed to evaluate large workbooks
+	 */
+	public String getCacheMemoryUsageReport() {
+		return _cache.getMemoryUsageReport();
+	}
 	/**
 	 * Should be called to tell the cell value cache that the specified (value or formula) cell
 	 * has changed.
@@ -276,6 +312,13 @@ public final class WorkbookEvaluator {
 		IEvaluationListener evalListener = _evaluationListener;
 		ValueEval result;
 		if (cce.getValue() == null) {
+			if (_precalculatedResults != null) {
+				ValueEval known = _precalculatedResults.get(srcCell.getIdentityKey());
+				if (known != null) {
+					cce.updateFormulaResult(known, CellCacheEntry.EMPTY_ARRAY, null);
+					return known;
+				}
+			}
 			if (!tracker.startEvaluate(cce)) {
 				return ErrorEval.CIRCULAR_REF_ERROR;
 			}
@@ -283,12 +326,11 @@ public final class WorkbookEvaluator {
 
 			try {
 
-				Ptg[] ptgs = _workbook.getFormulaTokens(srcCell);
 				if (evalListener == null) {
-					result = evaluateFormula(ec, ptgs);
+					result = evaluateFormulaCell(ec, srcCell, cce);
 				} else {
 					evalListener.onStartEvaluate(srcCell, cce);
-					result = evaluateFormula(ec, ptgs);
+					result = evaluateFormulaCell(ec, srcCell, cce);
 					evalListener.onEndEvaluate(cce, result);
 				}
 
@@ -397,6 +439,24 @@ public final class WorkbookEvaluator {
 	// current indent level for evalution; negative value for no output
 	private int dbgEvaluationOutputIndent = -1;
 
+	/**
+	 * Evaluates the formula of a cell, compiling it on first use so that later
+	 * evaluations (after changes to its inputs) don't need to re-interpret the tokens.
+	 */
+	private ValueEval evaluateFormulaCell(OperationEvaluationContext ec, EvaluationCell srcCell,
+			FormulaCellCacheEntry cce) {
+		if (dbgEvaluationOutputForNextEval || dbgEvaluationOutputIndent > 0) {
+			// only the interpreter knows how to log each step
+			return evaluateFormula(ec, _workbook.getFormulaTokens(srcCell));
+		}
+		CompiledFormula compiled = cce.getCompiledFormula();
+		if (compiled == null) {
+			compiled = CompiledFormula.compile(_workbook.getFormulaTokens(srcCell));
+			cce.setCompiledFormula(compiled);
+		}
+		return compiled.evaluate(this, ec);
+	}
+
 	// visibility raised for testing
 	/* package */ ValueEval evaluateFormula(OperationEvaluationContext ec, Ptg[] ptgs) {
 
@@ -609,7 +669,7 @@ public final class WorkbookEvaluator {
 	 * StringPtg, BoolPtg <br/>special Note: OperationPtg subtypes cannot be
 	 * passed here!
 	 */
-	private ValueEval getEvalForPtg(Ptg ptg, OperationEvaluationContext ec) {
+	/* package */ ValueEval getEvalForPtg(Ptg ptg, OperationEvaluationContext ec) {
 		//  consider converting all these (ptg instanceof XxxPtg) expressions to (ptg.getClass() == XxxPtg.class)
 
 		if (ptg instanceof NamePtg) {
@@ -692,6 +752,52 @@ public final class WorkbookEvaluator {
 	  return evaluateFormula(ec, ptgs);
 	}
 
+	/**
+	 * Reads all the values of an area in one go, for functions that index them.
+	 * The current formula is made to depend on the whole area. Only the rows up to the
+	 * last row of the sheet are read, the cache notices when the rows after it are filled.
+	 *
+	 * @return <code>null</code> if the area is too large to cache, or if it is already
+	 * being read further up the evaluation stack (i.e. a circular reference)
+	 */
+	/* package */ CachedAreaValues getCachedAreaValues(EvaluationSheet sheet, int sheetIndex,
+			int firstRow, int firstColumn, int lastRow, int lastColumn, EvaluationTracker tracker) {
+		int width = lastColumn - firstColumn + 1;
+		int lastUsedRow = Math.min(lastRow, sheet.getLastRowNum());
+		int usedHeight = Math.max(0, lastUsedRow - firstRow + 1);
+		if ((long) width * usedHeight > MAX_CACHED_AREA_SIZE) {
+			return null;
+		}
+		CachedAreaValues result = _cache.getOrCreateAreaValues(_workbookIx, sheetIndex, firstRow, firstColumn, lastRow, lastColumn);
+		FormulaCellCacheEntry cce = result.getCacheEntry();
+		if (!result.isValid()) {
+			if (!tracker.startEvaluate(cce)) {
+				return null;
+			}
+			try {
+				ValueEval[] values = new ValueEval[width * usedHeight];
+				int i = 0;
+				for (int rowIndex = firstRow; rowIndex <= lastUsedRow; rowIndex++) {
+					for (int columnIndex = firstColumn; columnIndex <= lastColumn; columnIndex++) {
+						ValueEval value = evaluateReference(sheet, sheetIndex, rowIndex, columnIndex, tracker);
+						if (value == ErrorEval.CIRCULAR_REF_ERROR) {
+							// not the real value of the cell, so must not be cached
+							return null;
+						}
+						values[i++] = value;
+					}
+				}
+				result.setValues(values);
+				// the area has no value of its own, but the cache entry needs one to be valid
+				tracker.updateCacheResult(BlankEval.instance);
+			} finally {
+				tracker.endEvaluate(cce);
+			}
+		}
+		tracker.acceptFormulaDependency(cce);
+		return result;
+	}
+
 	/**
 	 * Used by the lazy ref evals whenever they need to get the value of a contained cell.
 	 */
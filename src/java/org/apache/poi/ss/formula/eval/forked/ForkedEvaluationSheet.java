@@ -60,6 +60,11 @@ final class ForkedEvaluationSheet implements EvaluationSheet {
 		return result;
 	}
 
+	public int getLastRowNum() {
+		// only cells which exist in the master sheet can be updated
+		return _masterSheet.getLastRowNum();
+	}
+
 	public ForkedEvaluationCell getOrCreateUpdatableCell(int rowIndex, int columnIndex) {
 		RowColKey key = new RowColKey(rowIndex, columnIndex);
 
@@ -17,8 +17,11 @@
 
 package org.apache.poi.ss.formula.functions;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
+import org.apache.poi.ss.formula.CachedAreaValues;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -165,6 +168,25 @@ public final class Countif extends Fixed2ArgFunction {
 		protected final boolean evaluate(boolean cmpResult) {
 			return _operator.evaluate(cmpResult);
 		}
+		/**
+		 * @return <code>true</code> if this matches values equal to a single value
+		 * (as opposed to ordering comparisons, not-equals, etc)
+		 */
+		protected final boolean isEquality() {
+			switch (getCode()) {
+				case CmpOp.NONE:
+				case CmpOp.EQ:
+					return true;
+			}
+			return false;
+		}
+		/**
+		 * @return the positions of the matching values, or <code>null</code> if they
+		 * can't be looked up in an index
+		 */
+		protected int[] getMatchingPositions(EqualityIndex index) {
+			return null;
+		}
 		@Override
 		public final String toString() {
 			StringBuffer sb = new StringBuffer(64);
@@ -183,12 +205,19 @@ public final class Countif extends Fixed2ArgFunction {
 
 		public NumberMatcher(double value, CmpOp operator) {
 			super(operator);
-			_value = value;
+			_value = withoutNegativeZero(value);
 		}
 		@Override
 		protected String getValueText() {
 			return String.valueOf(_value);
 		}
+		@Override
+		protected int[] getMatchingPositions(EqualityIndex index) {
+			if (!isEquality()) {
+				return null;
+			}
+			return index.getNumberPositions(_value);
+		}
 
 		public boolean matches(ValueEval x) {
 			double testValue;
@@ -217,7 +246,7 @@ public final class Countif extends Fixed2ArgFunction {
 				return _value == val.doubleValue();
 			} else if((x instanceof NumberEval)) {
 				NumberEval ne = (NumberEval) x;
-				testValue = ne.getNumberValue();
+				testValue = withoutNegativeZero(ne.getNumberValue());
             } else if((x instanceof BlankEval)) {
                 switch (getCode()) {
                     case CmpOp.NE:
@@ -248,6 +277,13 @@ public final class Countif extends Fixed2ArgFunction {
 		private static int boolToInt(boolean value) {
 			return value ? 1 : 0;
 		}
+		@Override
+		protected int[] getMatchingPositions(EqualityIndex index) {
+			if (!isEquality()) {
+				return null;
+			}
+			return index.getPositions(Boolean.valueOf(_value == 1));
+		}
 
 		public boolean matches(ValueEval x) {
 			int testValue;
@@ -301,6 +337,13 @@ public final class Countif extends Fixed2ArgFunction {
 		protected String getValueText() {
 			return ErrorConstants.getText(_value);
 		}
+		@Override
+		protected int[] getMatchingPositions(EqualityIndex index) {
+			if (!isEquality()) {
+				return null;
+			}
+			return index.getPositions(ErrorEval.valueOf(_value));
+		}
 
 		public boolean matches(ValueEval x) {
 			if(x instanceof ErrorEval) {
@@ -336,6 +379,14 @@ public final class Countif extends Fixed2ArgFunction {
 			}
 			return _pattern.pattern();
 		}
+		@Override
+		protected int[] getMatchingPositions(EqualityIndex index) {
+			// blank cells and empty strings have their own rules
+			if (!isEquality() || _pattern != null || _value.length() < 1) {
+				return null;
+			}
+			return index.getPositions(LookupUtils.foldCase(_value));
+		}
 
 		public boolean matches(ValueEval x) {
 			if (x instanceof BlankEval) {
@@ -431,6 +482,150 @@ public final class Countif extends Fixed2ArgFunction {
 		}
 	}
 
+	/**
+	 * Excel has no negative zero, so -0.0 is matched (and indexed) as 0.0,
+	 * rather than being kept apart by <tt>Double.compare</tt> and <tt>Double.equals</tt>
+	 */
+	/* package */ static double withoutNegativeZero(double value) {
+		return value == 0.0 ? 0.0 : value;
+	}
+
+	/**
+	 * The positions (in row-major order) of the values in an area, keyed by the single value
+	 * that equality criteria would match them with. Numbers are keyed by <tt>Double</tt>,
+	 * strings by their case-folded text, booleans by <tt>Boolean</tt> and errors by
+	 * <tt>ErrorEval</tt>.  Strings that look like numbers are also kept by their number value,
+	 * as numeric criteria match those too.
+	 */
+	/* package */ static final class EqualityIndex {
+		private static final int[] NO_POSITIONS = { };
+
+		private final Map<Object, int[]> _positions;
+		private final Map<Double, int[]> _numericTextPositions;
+
+		public EqualityIndex(CachedAreaValues values) {
+			Map<Object, IntList> positions = new HashMap<Object, IntList>();
+			Map<Double, IntList> numericTextPositions = new HashMap<Double, IntList>();
+			int width = values.getWidth();
+			// blanks aren't indexed, and all the rows after these are blank
+			int height = values.getUsedHeight();
+			for (int r = 0, i = 0; r < height; r++) {
+				for (int c = 0; c < width; c++, i++) {
+					ValueEval ve = values.getValue(r, c);
+					if (ve instanceof NumberEval) {
+						add(positions, Double.valueOf(withoutNegativeZero(((NumberEval) ve).getNumberValue())), i);
+					} else if (ve instanceof StringEval) {
+						String text = ((StringEval) ve).getStringValue();
+						add(positions, LookupUtils.foldCase(text), i);
+						Double d = OperandResolver.parseDouble(text);
+						if (d != null && !d.isNaN()) {
+							add(numericTextPositions, Double.valueOf(withoutNegativeZero(d.doubleValue())), i);
+						}
+					} else if (ve instanceof BoolEval) {
+						add(positions, Boolean.valueOf(((BoolEval) ve).getBooleanValue()), i);
+					} else if (ve instanceof ErrorEval) {
+						add(positions, ve, i);
+					}
+				}
+			}
+			_positions = toArrays(positions);
+			_numericTextPositions = toArrays(numericTextPositions);
+		}
+
+		public static EqualityIndex forValues(CachedAreaValues values) {
+			EqualityIndex result = (EqualityIndex) values.getIndex(EqualityIndex.class);
+			if (result == null) {
+				result = new EqualityIndex(values);
+				values.putIndex(EqualityIndex.class, result);
+			}
+			return result;
+		}
+
+		private static <K> void add(Map<K, IntList> map, K key, int position) {
+			IntList list = map.get(key);
+			if (list == null) {
+				list = new IntList();
+				map.put(key, list);
+			}
+			list.add(position);
+		}
+		private static <K> Map<K, int[]> toArrays(Map<K, IntList> map) {
+			Map<K, int[]> result = new HashMap<K, int[]>(map.size() * 4 / 3 + 1);
+			for (Map.Entry<K, IntList> me : map.entrySet()) {
+				result.put(me.getKey(), me.getValue().toArray());
+			}
+			return result;
+		}
+
+		public int[] getPositions(Object key) {
+			int[] result = _positions.get(key);
+			return result == null ? NO_POSITIONS : result;
+		}
+
+		/**
+		 * @return the positions of both the numbers and the numeric strings equal to the supplied value
+		 */
+		public int[] getNumberPositions(double value) {
+			int[] numbers = getPositions(Double.valueOf(withoutNegativeZero(value)));
+			if (Double.isNaN(value)) {
+				return numbers;
+			}
+			int[] numericText = _numericTextPositions.get(Double.valueOf(withoutNegativeZero(value)));
+			if (numericText == null) {
+				return numbers;
+			}
+			// merge, keeping the positions in order
+			int[] result = new int[numbers.length + numericText.length];
+			int i = 0, j = 0, k = 0;
+			while (i < numbers.length && j < numericText.length) {
+				result[k++] = numbers[i] < numericText[j] ? numbers[i++] : numericText[j++];
+			}
+			while (i < numbers.length) {
+				result[k++] = numbers[i++];
+			}
+			while (j < numericText.length) {
+				result[k++] = numericText[j++];
+			}
+			return result;
+		}
+	}
+
+	private static final class IntList {
+		private int[] _values = new int[4];
+		private int _size;
+
+		public void add(int value) {
+			if (_size == _values.length) {
+				int[] newValues = new int[_size * 2];
+				System.arraycopy(_values, 0, newValues, 0, _size);
+				_values = newValues;
+			}
+			_values[_size++] = value;
+		}
+		public int[] toArray() {
+			int[] result = new int[_size];
+			System.arraycopy(_values, 0, result, 0, _size);
+			return result;
+		}
+	}
+
+	/**
+	 * Uses an index over the cached values of the area where possible
+	 * @return the (row-major) positions of the matching values, or <code>null</code> if the
+	 * criteria can't be looked up in an index
+	 */
+	/* package */ static int[] getMatchingPositions(CachedAreaValues values, I_MatchPredicate criteriaPredicate) {
+		if (!(criteriaPredicate instanceof MatcherBase)) {
+			return null;
+		}
+		MatcherBase matcher = (MatcherBase) criteriaPredicate;
+		if (!matcher.isEquality()) {
+			// avoid building an index that won't be used
+			return null;
+		}
+		return matcher.getMatchingPositions(EqualityIndex.forValues(values));
+	}
+
 	public ValueEval evaluate(int srcRowIndex, int srcColumnIndex, ValueEval arg0, ValueEval arg1) {
 
 		I_MatchPredicate mp = createCriteriaPredicate(arg1, srcRowIndex, srcColumnIndex);
@@ -449,12 +644,38 @@ public final class Countif extends Fixed2ArgFunction {
 		if (rangeArg instanceof RefEval) {
 			return CountUtils.countMatchingCell((RefEval) rangeArg, criteriaPredicate);
 		} else if (rangeArg instanceof TwoDEval) {
+			CachedAreaValues values = CachedAreaValues.forArea((TwoDEval) rangeArg);
+			if (values != null) {
+				return countMatchingCells(values, criteriaPredicate);
+			}
 			return CountUtils.countMatchingCellsInArea((TwoDEval) rangeArg, criteriaPredicate);
 		} else {
 			throw new IllegalArgumentException("Bad range arg type (" + rangeArg.getClass().getName() + ")");
 		}
 	}
 
+	private static int countMatchingCells(CachedAreaValues values, I_MatchPredicate criteriaPredicate) {
+		int[] positions = getMatchingPositions(values, criteriaPredicate);
+		if (positions != null) {
+			return positions.length;
+		}
+		int result = 0;
+		int usedHeight = values.getUsedHeight();
+		int width = values.getWidth();
+		for (int r = 0; r < usedHeight; r++) {
+			for (int c = 0; c < width; c++) {
+				if (criteriaPredicate.matches(values.getValue(r, c))) {
+					result++;
+				}
+			}
+		}
+		// the rows after the used ones are all blank
+		if (usedHeight < values.getHeight() && criteriaPredicate.matches(BlankEval.instance)) {
+			result += (values.getHeight() - usedHeight) * width;
+		}
+		return result;
+	}
+
 	/**
 	 * Creates a criteria predicate object for the supplied criteria arg
 	 * @return <code>null</code> if the arg evaluates to blank.
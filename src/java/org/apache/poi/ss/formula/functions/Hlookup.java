@@ -55,7 +55,10 @@ public final class Hlookup extends Var3or4ArgFunction  {
 			ValueEval lookupValue = OperandResolver.getSingleValue(arg0, srcRowIndex, srcColumnIndex);
 			TwoDEval tableArray = LookupUtils.resolveTableArrayArg(arg1);
 			boolean isRangeLookup = LookupUtils.resolveRangeLookupArg(arg3, srcRowIndex, srcColumnIndex);
-			int colIndex = LookupUtils.lookupIndexOfValue(lookupValue, LookupUtils.createRowVector(tableArray, 0), isRangeLookup);
+			// (exact matches are found with an index shared by all lookups on the same row)
+			ValueVector lookupRow = isRangeLookup ? LookupUtils.createRowVector(tableArray, 0)
+					: LookupUtils.createIndexedRowVector(tableArray, 0);
+			int colIndex = LookupUtils.lookupIndexOfValue(lookupValue, lookupRow, isRangeLookup);
 			int rowIndex = LookupUtils.resolveRowOrColIndexArg(arg2, srcRowIndex, srcColumnIndex);
 			ValueVector resultCol = createResultColumnVector(tableArray, rowIndex);
 			return resultCol.getItem(colIndex);
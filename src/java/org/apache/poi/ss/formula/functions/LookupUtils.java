@@ -27,8 +27,15 @@ import org.apache.poi.ss.formula.eval.OperandResolver;
 import org.apache.poi.ss.formula.eval.RefEval;
 import org.apache.poi.ss.formula.eval.StringEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.CachedAreaValues;
 import org.apache.poi.ss.formula.TwoDEval;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -126,6 +133,252 @@ final class LookupUtils {
 		return null;
 	}
 
+	/**
+	 * Like {@link #createColumnVector(TwoDEval, int)}, but for a vector that is going to be
+	 * searched. Where possible the values of the whole column are cached, so that
+	 * repeated searches (from many formulas) can share an index over them.
+	 */
+	public static ValueVector createIndexedColumnVector(TwoDEval tableArray, int relativeColumnIndex) {
+		ValueVector result = createIndexedVector(tableArray.getColumn(relativeColumnIndex));
+		return result == null ? createColumnVector(tableArray, relativeColumnIndex) : result;
+	}
+	/**
+	 * Like {@link #createRowVector(TwoDEval, int)}, but for a vector that is going to be searched.
+	 */
+	public static ValueVector createIndexedRowVector(TwoDEval tableArray, int relativeRowIndex) {
+		ValueVector result = createIndexedVector(tableArray.getRow(relativeRowIndex));
+		return result == null ? createRowVector(tableArray, relativeRowIndex) : result;
+	}
+	/**
+	 * @param ae a single row or column
+	 * @return <code>null</code> if the values of the area can't be cached
+	 */
+	public static ValueVector createIndexedVector(TwoDEval ae) {
+		CachedAreaValues values = CachedAreaValues.forArea(ae);
+		if (values == null) {
+			return null;
+		}
+		return new CachedVector(values);
+	}
+
+	/**
+	 * A single row or column read from the evaluation cache, along with the indexes
+	 * built over it so far.
+	 */
+	private static final class CachedVector implements ValueVector {
+
+		private final CachedAreaValues _values;
+		private final boolean _isRow;
+
+		public CachedVector(CachedAreaValues values) {
+			_values = values;
+			_isRow = values.getHeight() == 1;
+		}
+
+		public ValueEval getItem(int index) {
+			return _isRow ? _values.getValue(0, index) : _values.getValue(index, 0);
+		}
+		public int getSize() {
+			return _isRow ? _values.getWidth() : _values.getHeight();
+		}
+		/**
+		 * @return the number of items read from the sheet, those after them are all blank
+		 */
+		public int getUsedSize() {
+			if (_isRow) {
+				return _values.getUsedHeight() == 0 ? 0 : _values.getWidth();
+			}
+			return _values.getUsedHeight();
+		}
+
+		public VectorIndex getIndex() {
+			VectorIndex result = (VectorIndex) _values.getIndex(VectorIndex.class);
+			if (result == null) {
+				result = new VectorIndex(this, getUsedSize());
+				_values.putIndex(VectorIndex.class, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Indexes for searching one vector: a hash of the first position of each value, for
+	 * exact matches, and sorted positions of the values of each type, for finding the
+	 * values less than or equal to the lookup value. Both are built when first needed.
+	 */
+	private static final class VectorIndex {
+
+		private final ValueVector _vector;
+		/** the items after these are blank, and so never found */
+		private final int _usedSize;
+		private Map<Object, Integer> _firstIndexes;
+		private final Map<Class<? extends ValueEval>, SortedValues> _sortedValues;
+
+		public VectorIndex(ValueVector vector, int usedSize) {
+			_vector = vector;
+			_usedSize = usedSize;
+			_sortedValues = new HashMap<Class<? extends ValueEval>, SortedValues>();
+		}
+
+		/**
+		 * @return the index of the first value with the supplied key, -1 if there is none
+		 */
+		public int indexOf(Object key) {
+			if (_firstIndexes == null) {
+				int size = _usedSize;
+				_firstIndexes = new HashMap<Object, Integer>(size * 4 / 3 + 1);
+				for (int i = size - 1; i >= 0; i--) {
+					// iterate backwards, so that the first index of each key is left
+					Object itemKey = getExactMatchKey(_vector.getItem(i));
+					if (itemKey != null) {
+						_firstIndexes.put(itemKey, Integer.valueOf(i));
+					}
+				}
+			}
+			Integer result = _firstIndexes.get(key);
+			return result == null ? -1 : result.intValue();
+		}
+
+		public SortedValues getSortedValues(Class<? extends ValueEval> valueClass) {
+			SortedValues result = _sortedValues.get(valueClass);
+			if (result == null) {
+				result = new SortedValues(_vector, _usedSize, valueClass);
+				_sortedValues.put(valueClass, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The positions of all the values of one type in a vector, sorted by value.
+	 */
+	private static final class SortedValues {
+
+		private final ValueEval[] _values;
+		/** for each prefix of <tt>_values</tt>, the lowest position within it */
+		private final int[] _minIndexes;
+		/** for each prefix of <tt>_values</tt>, the highest position within it */
+		private final int[] _maxIndexes;
+
+		public SortedValues(ValueVector vector, int size, Class<? extends ValueEval> valueClass) {
+			List<Integer> indexes = new ArrayList<Integer>();
+			for (int i = 0; i < size; i++) {
+				if (vector.getItem(i).getClass() == valueClass) {
+					indexes.add(Integer.valueOf(i));
+				}
+			}
+			final ValueVector v = vector;
+			final Comparator<ValueEval> valueComparator = getComparator(valueClass);
+			// a stable sort, so equal values stay in position order
+			Collections.sort(indexes, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return valueComparator.compare(v.getItem(a.intValue()), v.getItem(b.intValue()));
+				}
+			});
+
+			int n = indexes.size();
+			_values = new ValueEval[n];
+			_minIndexes = new int[n];
+			_maxIndexes = new int[n];
+			for (int i = 0; i < n; i++) {
+				int index = indexes.get(i).intValue();
+				_values[i] = vector.getItem(index);
+				_minIndexes[i] = i == 0 ? index : Math.min(index, _minIndexes[i - 1]);
+				_maxIndexes[i] = i == 0 ? index : Math.max(index, _maxIndexes[i - 1]);
+			}
+		}
+
+		/**
+		 * @return the number of values less than or equal to the lookup value
+		 */
+		private int countNotGreaterThan(LookupValueComparer lookupComparer) {
+			int low = 0;
+			int high = _values.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (lookupComparer.compareTo(_values[mid]).isLessThan()) {
+					high = mid;
+				} else {
+					low = mid + 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return lowest position of a value less than or equal to the lookup value, -1 if none
+		 */
+		public int getFirstIndexNotGreaterThan(LookupValueComparer lookupComparer) {
+			int count = countNotGreaterThan(lookupComparer);
+			return count == 0 ? -1 : _minIndexes[count - 1];
+		}
+		/**
+		 * @return highest position of a value less than or equal to the lookup value, -1 if none
+		 */
+		public int getLastIndexNotGreaterThan(LookupValueComparer lookupComparer) {
+			int count = countNotGreaterThan(lookupComparer);
+			return count == 0 ? -1 : _maxIndexes[count - 1];
+		}
+
+		/**
+		 * @return a comparator consistent with the lookup comparers for the specified type
+		 */
+		private static Comparator<ValueEval> getComparator(Class<? extends ValueEval> valueClass) {
+			if (valueClass == NumberEval.class) {
+				return new Comparator<ValueEval>() {
+					public int compare(ValueEval a, ValueEval b) {
+						return Double.compare(((NumberEval) a).getNumberValue(), ((NumberEval) b).getNumberValue());
+					}
+				};
+			}
+			if (valueClass == StringEval.class) {
+				return new Comparator<ValueEval>() {
+					public int compare(ValueEval a, ValueEval b) {
+						return ((StringEval) a).getStringValue().compareToIgnoreCase(((StringEval) b).getStringValue());
+					}
+				};
+			}
+			if (valueClass == BoolEval.class) {
+				return new Comparator<ValueEval>() {
+					public int compare(ValueEval a, ValueEval b) {
+						boolean aValue = ((BoolEval) a).getBooleanValue();
+						return aValue == ((BoolEval) b).getBooleanValue() ? 0 : aValue ? 1 : -1;
+					}
+				};
+			}
+			throw new IllegalArgumentException("Unexpected value class (" + valueClass.getName() + ")");
+		}
+	}
+
+	/**
+	 * @return a key such that two values have equal keys if and only if the lookup comparers
+	 * consider them equal (ignoring wildcards), or <code>null</code> for values that never match
+	 */
+	private static Object getExactMatchKey(ValueEval value) {
+		if (value instanceof NumberEval) {
+			return Double.valueOf(((NumberEval) value).getNumberValue());
+		}
+		if (value instanceof StringEval) {
+			return foldCase(((StringEval) value).getStringValue());
+		}
+		if (value instanceof BoolEval) {
+			return Boolean.valueOf(((BoolEval) value).getBooleanValue());
+		}
+		return null;
+	}
+
+	/**
+	 * @return a string that equals the result for another string if and only if the two are equal
+	 * according to {@link String#compareToIgnoreCase(String)}
+	 */
+	/* package */ static String foldCase(String value) {
+		char[] chars = value.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
 	/**
 	 * Enumeration to support <b>4</b> valued comparison results.<p/>
 	 * Excel lookup functions have complex behaviour in the case where the lookup array has mixed
@@ -253,6 +506,14 @@ final class LookupUtils {
 		protected abstract CompareResult compareSameType(ValueEval other);
 		/** used only for debug purposes */
 		protected abstract String getValueAsString();
+		/**
+		 * @return the key of the values this comparer considers equal (see {@link LookupUtils#getExactMatchKey(ValueEval)}),
+		 * or <code>null</code> if the comparison is not a simple ordering (i.e. wildcards)
+		 */
+		protected abstract Object getExactMatchKey();
+		public final Class<? extends ValueEval> getTargetClass() {
+			return _targetClass;
+		}
 	}
 
 
@@ -290,6 +551,12 @@ final class LookupUtils {
 		protected String getValueAsString() {
 			return _value;
 		}
+		protected Object getExactMatchKey() {
+			if (_wildCardPattern != null && (_isMatchFunction || !_matchExact)) {
+				return null;
+			}
+			return foldCase(_value);
+		}
 	}
 	private static final class NumberLookupComparer extends LookupValueComparerBase {
 		private double _value;
@@ -305,6 +572,9 @@ final class LookupUtils {
 		protected String getValueAsString() {
 			return String.valueOf(_value);
 		}
+		protected Object getExactMatchKey() {
+			return Double.valueOf(_value);
+		}
 	}
 	private static final class BooleanLookupComparer extends LookupValueComparerBase {
 		private boolean _value;
@@ -328,6 +598,9 @@ final class LookupUtils {
 		protected String getValueAsString() {
 			return String.valueOf(_value);
 		}
+		protected Object getExactMatchKey() {
+			return Boolean.valueOf(_value);
+		}
 	}
 
 	/**
@@ -477,8 +750,14 @@ final class LookupUtils {
 	 * 	tableArray. For HLOOKUP this is the first row of the tableArray.
 	 * @return zero based index into the vector, -1 if value cannot be found
 	 */
-	private static int lookupIndexOfExactValue(LookupValueComparer lookupComparer, ValueVector vector) {
+	/* package */ static int lookupIndexOfExactValue(LookupValueComparer lookupComparer, ValueVector vector) {
 
+		if (vector instanceof CachedVector) {
+			Object key = ((LookupValueComparerBase) lookupComparer).getExactMatchKey();
+			if (key != null) {
+				return ((CachedVector) vector).getIndex().indexOf(key);
+			}
+		}
 		// find first occurrence of lookup value
 		int size = vector.getSize();
 		for (int i = 0; i < size; i++) {
@@ -490,6 +769,54 @@ final class LookupUtils {
 	}
 
 
+	/**
+	 * Finds the first (lowest index) value of the same type as the lookup value which is less
+	 * than or equal to it.
+	 * @return zero based index into the vector, -1 if there is no such value
+	 */
+	/* package */ static int lookupFirstIndexNotGreaterThan(LookupValueComparer lookupComparer, ValueVector vector) {
+		if (vector instanceof CachedVector && isSimpleOrdering(lookupComparer)) {
+			Class<? extends ValueEval> targetClass = ((LookupValueComparerBase) lookupComparer).getTargetClass();
+			return ((CachedVector) vector).getIndex().getSortedValues(targetClass).getFirstIndexNotGreaterThan(lookupComparer);
+		}
+		int size = vector.getSize();
+		for (int i = 0; i < size; i++) {
+			CompareResult cmp = lookupComparer.compareTo(vector.getItem(i));
+			if (cmp.isEqual() || cmp.isGreaterThan()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the last (highest index) value of the same type as the lookup value which is less
+	 * than or equal to it.
+	 * @return zero based index into the vector, -1 if there is no such value
+	 */
+	/* package */ static int lookupLastIndexNotGreaterThan(LookupValueComparer lookupComparer, ValueVector vector) {
+		if (vector instanceof CachedVector && isSimpleOrdering(lookupComparer)) {
+			Class<? extends ValueEval> targetClass = ((LookupValueComparerBase) lookupComparer).getTargetClass();
+			return ((CachedVector) vector).getIndex().getSortedValues(targetClass).getLastIndexNotGreaterThan(lookupComparer);
+		}
+		// Note - backward iteration
+		for (int i = vector.getSize() - 1; i >= 0; i--) {
+			CompareResult cmp = lookupComparer.compareTo(vector.getItem(i));
+			if (cmp.isEqual() || cmp.isGreaterThan()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>false</code> if the comparer uses wildcards, in which case the values
+	 * can't be sorted to suit it
+	 */
+	private static boolean isSimpleOrdering(LookupValueComparer lookupComparer) {
+		return ((LookupValueComparerBase) lookupComparer).getExactMatchKey() != null;
+	}
+
 	/**
 	 * Encapsulates some standard binary search functionality so the unusual Excel behaviour can
 	 * be clearly distinguished.
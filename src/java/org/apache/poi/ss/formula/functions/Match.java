@@ -25,7 +25,6 @@ import org.apache.poi.ss.formula.eval.OperandResolver;
 import org.apache.poi.ss.formula.eval.RefEval;
 import org.apache.poi.ss.formula.eval.StringEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
-import org.apache.poi.ss.formula.functions.LookupUtils.CompareResult;
 import org.apache.poi.ss.formula.functions.LookupUtils.LookupValueComparer;
 import org.apache.poi.ss.formula.functions.LookupUtils.ValueVector;
 import org.apache.poi.ss.formula.TwoDEval;
@@ -132,10 +131,15 @@ public final class Match extends Var2or3ArgFunction {
 			return new SingleValueVector(re.getInnerValueEval());
 		}
 		if (eval instanceof TwoDEval) {
-			ValueVector result = LookupUtils.createVector((TwoDEval)eval);
-			if (result == null) {
+			TwoDEval ae = (TwoDEval) eval;
+			if (!ae.isColumn() && !ae.isRow()) {
 				throw new EvaluationException(ErrorEval.NA);
 			}
+			// the cached version lets lookups from many formulas share an index
+			ValueVector result = LookupUtils.createIndexedVector(ae);
+			if (result == null) {
+				result = LookupUtils.createVector(ae);
+			}
 			return result;
 		}
 
@@ -190,46 +194,36 @@ public final class Match extends Var2or3ArgFunction {
 
 		LookupValueComparer lookupComparer = createLookupComparer(lookupValue, matchExact);
 
-		int size = lookupRange.getSize();
 		if(matchExact) {
-			for (int i = 0; i < size; i++) {
-				if(lookupComparer.compareTo(lookupRange.getItem(i)).isEqual()) {
-					return i;
-				}
+			int result = LookupUtils.lookupIndexOfExactValue(lookupComparer, lookupRange);
+			if(result < 0) {
+				throw new EvaluationException(ErrorEval.NA);
 			}
-			throw new EvaluationException(ErrorEval.NA);
+			return result;
 		}
 
 		if(findLargestLessThanOrEqual) {
-			// Note - backward iteration
-			for (int i = size - 1; i>=0;  i--) {
-				CompareResult cmp = lookupComparer.compareTo(lookupRange.getItem(i));
-				if(cmp.isTypeMismatch()) {
-					continue;
-				}
-				if(!cmp.isLessThan()) {
-					return i;
-				}
+			// the last value (of the same type) not greater than the lookup value
+			int result = LookupUtils.lookupLastIndexNotGreaterThan(lookupComparer, lookupRange);
+			if(result < 0) {
+				throw new EvaluationException(ErrorEval.NA);
 			}
-			throw new EvaluationException(ErrorEval.NA);
+			return result;
 		}
 
 		// else - find smallest greater than or equal to
 		// TODO - is binary search used for (match_type==+1) ?
-		for (int i = 0; i<size; i++) {
-			CompareResult cmp = lookupComparer.compareTo(lookupRange.getItem(i));
-			if(cmp.isEqual()) {
-				return i;
-			}
-			if(cmp.isGreaterThan()) {
-				if(i<1) {
-					throw new EvaluationException(ErrorEval.NA);
-				}
-				return i-1;
-			}
+		int i = LookupUtils.lookupFirstIndexNotGreaterThan(lookupComparer, lookupRange);
+		if(i < 0) {
+			throw new EvaluationException(ErrorEval.NA);
 		}
-
-		throw new EvaluationException(ErrorEval.NA);
+		if(lookupComparer.compareTo(lookupRange.getItem(i)).isEqual()) {
+			return i;
+		}
+		if(i<1) {
+			throw new EvaluationException(ErrorEval.NA);
+		}
+		return i-1;
 	}
 
 	private static LookupValueComparer createLookupComparer(ValueEval lookupValue, boolean matchExact) {
@@ -17,6 +17,7 @@
 
 package org.apache.poi.ss.formula.functions;
 
+import org.apache.poi.ss.formula.CachedAreaValues;
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
 import org.apache.poi.ss.formula.eval.EvaluationException;
@@ -77,6 +78,19 @@ public final class Sumif extends Var2or3ArgFunction {
 		int height=aeRange.getHeight();
 		int width= aeRange.getWidth();
 
+		CachedAreaValues rangeValues = mp == null ? null : CachedAreaValues.forArea(aeRange);
+		if (rangeValues != null) {
+			int[] positions = Countif.getMatchingPositions(rangeValues, mp);
+			if (positions != null) {
+				// only visit the matching cells, in the same order as the full scan below
+				double result = 0.0;
+				for (int i = 0; i < positions.length; i++) {
+					int p = positions[i];
+					result += getAddend(aeSum, p / width, p % width);
+				}
+				return result;
+			}
+		}
 		double result = 0.0;
 		for (int r=0; r<height; r++) {
 			for (int c=0; c<width; c++) {
@@ -92,6 +106,10 @@ public final class Sumif extends Var2or3ArgFunction {
 		if (!mp.matches(aeRange.getRelativeValue(relRowIndex, relColIndex))) {
 			return 0.0;
 		}
+		return getAddend(aeSum, relRowIndex, relColIndex);
+	}
+
+	private static double getAddend(AreaEval aeSum, int relRowIndex, int relColIndex) {
 		ValueEval addend = aeSum.getRelativeValue(relRowIndex, relColIndex);
 		if (addend instanceof NumberEval) {
 			return ((NumberEval)addend).getNumberValue();
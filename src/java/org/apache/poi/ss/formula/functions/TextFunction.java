@@ -295,7 +295,11 @@ public abstract class TextFunction implements Function {
 			
 			try {
             // Ask DataFormatter to handle the String for us
-			   String formattedStr = formatter.formatRawCellContents(s0, -1, s1);
+			   // (the formatter is shared, and may be used by several evaluators at once)
+			   String formattedStr;
+			   synchronized (formatter) {
+			      formattedStr = formatter.formatRawCellContents(s0, -1, s1);
+			   }
 				return new StringEval(formattedStr);
 			} catch (Exception e) {
 				return ErrorEval.VALUE_INVALID;
@@ -56,7 +56,10 @@ public final class Vlookup extends Var3or4ArgFunction {
 			ValueEval lookupValue = OperandResolver.getSingleValue(lookup_value, srcRowIndex, srcColumnIndex);
 			TwoDEval tableArray = LookupUtils.resolveTableArrayArg(table_array);
 			boolean isRangeLookup = LookupUtils.resolveRangeLookupArg(range_lookup, srcRowIndex, srcColumnIndex);
-			int rowIndex = LookupUtils.lookupIndexOfValue(lookupValue, LookupUtils.createColumnVector(tableArray, 0), isRangeLookup);
+			// (exact matches are found with an index shared by all lookups on the same column)
+			ValueVector lookupCol = isRangeLookup ? LookupUtils.createColumnVector(tableArray, 0)
+					: LookupUtils.createIndexedColumnVector(tableArray, 0);
+			int rowIndex = LookupUtils.lookupIndexOfValue(lookupValue, lookupCol, isRangeLookup);
 			int colIndex = LookupUtils.resolveRowOrColIndexArg(col_index, srcRowIndex, srcColumnIndex);
 			ValueVector resultCol = createResultColumnVector(tableArray, colIndex);
 			return resultCol.getItem(rowIndex);
@@ -0,0 +1,395 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.usermodel;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Writes values with the most common built-in formats straight into a
+ * <code>StringBuilder</code>, without the <code>StringBuffer</code>s,
+ * <code>FieldPosition</code>s, <code>Date</code>s and <code>Calendar</code>s
+ * that going through {@link java.text.DecimalFormat} and
+ * {@link java.text.SimpleDateFormat} allocates for every value.
+ * <p>
+ * The output is the same as that of the formats which {@link DataFormatter}
+ * creates for these format strings. Numbers are rounded from their exact
+ * binary value, as <code>DecimalFormat</code> does. Dates are converted
+ * from their serial number to their fields directly, so the one difference
+ * is for the times which don't exist in the JVM's default time zone, as
+ * they fall in a daylight saving gap, which <code>SimpleDateFormat</code>
+ * shows an hour later.
+ * <p>
+ * Values which these can't be written exactly for, such as very large
+ * numbers, are left to the <code>java.text</code> formats.
+ */
+final class BuiltinFormatWriter {
+
+    /** The largest number whose whole part is written directly */
+    private static final double MAX_WHOLE = 1e15;
+    /**
+     * The largest number, once scaled by its decimal places, which is rounded
+     *  directly. Below this, the gap between neighbouring doubles is small
+     *  enough that rounding the exact value gives the same result as
+     *  DecimalFormat's rounding of the shortest decimal for the double.
+     */
+    private static final double MAX_SCALED = 1L << 48;
+    /** Excel's largest date, 31st December 9999 */
+    private static final double MAX_DATE = 2958466;
+
+    private static final double SPLITTER = (1 << 27) + 1;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * A built-in format, and how to write it
+     */
+    private static final class Kind {
+        final boolean isGeneral;
+        final int decimals;
+        final boolean grouping;
+        final boolean percent;
+        /** The SimpleDateFormat pattern which DataFormatter converts a date format to */
+        final String datePattern;
+
+        Kind(boolean isGeneral, int decimals, boolean grouping, boolean percent, String datePattern) {
+            this.isGeneral = isGeneral;
+            this.decimals = decimals;
+            this.grouping = grouping;
+            this.percent = percent;
+            this.datePattern = datePattern;
+        }
+    }
+
+    private static final Kind GENERAL = new Kind(true, 10, false, false, null);
+
+    private static final Map<String, Kind> KINDS = new HashMap<String, Kind>();
+    static {
+        KINDS.put("General", GENERAL);
+        KINDS.put("@", GENERAL);
+        KINDS.put("0", new Kind(false, 0, false, false, null));
+        KINDS.put("0.00", new Kind(false, 2, false, false, null));
+        KINDS.put("#,##0", new Kind(false, 0, true, false, null));
+        KINDS.put("#,##0.00", new Kind(false, 2, true, false, null));
+        KINDS.put("0%", new Kind(false, 0, false, true, null));
+        KINDS.put("0.00%", new Kind(false, 2, false, true, null));
+
+        putDateFormat("m/d/yy", "M/d/yy");
+        putDateFormat("d-mmm-yy", "d-MMM-yy");
+        putDateFormat("d-mmm", "d-MMM");
+        putDateFormat("mmm-yy", "MMM-yy");
+        putDateFormat("h:mm AM/PM", "h:mm a");
+        putDateFormat("h:mm:ss AM/PM", "h:mm:ss a");
+        putDateFormat("h:mm", "H:mm");
+        putDateFormat("h:mm:ss", "H:mm:ss");
+        putDateFormat("m/d/yy h:mm", "M/d/yy H:mm");
+    }
+    private static void putDateFormat(String excelFormat, String javaPattern) {
+        KINDS.put(excelFormat, new Kind(false, 0, false, false, javaPattern));
+    }
+
+    private final boolean _asciiDigits;
+    private final char _decimalSeparator;
+    private final char _groupingSeparator;
+    private final char _minusSign;
+    private final char _percent;
+    private final String[] _shortMonths;
+    private final String[] _amPm;
+
+    BuiltinFormatWriter(DecimalFormatSymbols decimalSymbols, DateFormatSymbols dateSymbols) {
+        _asciiDigits = decimalSymbols.getZeroDigit() == '0';
+        _decimalSeparator = decimalSymbols.getDecimalSeparator();
+        _groupingSeparator = decimalSymbols.getGroupingSeparator();
+        _minusSign = decimalSymbols.getMinusSign();
+        _percent = decimalSymbols.getPercent();
+        _shortMonths = dateSymbols.getShortMonths();
+        _amPm = dateSymbols.getAmPmStrings();
+    }
+
+    /**
+     * Appends the formatted value, if it's one this can write.
+     *
+     * @return <code>false</code> if nothing was written, and the value
+     *  must be formatted the usual way
+     */
+    boolean write(double value, String formatString, boolean use1904Windowing, StringBuilder out) {
+        Kind kind = KINDS.get(formatString);
+        if (kind == null || !_asciiDigits || Double.isNaN(value) || Double.isInfinite(value)) {
+            return false;
+        }
+        if (kind.datePattern != null) {
+            return writeDate(value, kind.datePattern, use1904Windowing, out);
+        }
+        if (kind.isGeneral && value == Math.floor(value)) {
+            // the "#" format for whole numbers
+            return writeNumber(value, 0, false, true, out);
+        }
+        if (kind.percent) {
+            // as DecimalFormat does, before rounding
+            value *= 100;
+        }
+        if (!writeNumber(value, kind.decimals, kind.grouping, kind.isGeneral, out)) {
+            return false;
+        }
+        if (kind.percent) {
+            out.append(_percent);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the number rounded to the given number of decimal places,
+     *  either all of them, or without trailing zeros for the General format,
+     *  whose rounding is half-even rather than the half-up of the others.
+     */
+    private boolean writeNumber(double value, int decimals, boolean grouping, boolean general,
+            StringBuilder out) {
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        double abs = Math.abs(value);
+        if (abs >= MAX_WHOLE || (decimals > 0 && abs * POWERS_OF_TEN[decimals] >= MAX_SCALED)) {
+            return false;
+        }
+        if (general && abs > 0 && abs * POWERS_OF_TEN[decimals] < 1) {
+            // DecimalFormat's half-even rounding of these, to their first
+            //  significant digit, doesn't always follow the exact value
+            return false;
+        }
+
+        long scaled = roundScaled(abs, decimals, general);
+        long divisor = POWERS_OF_TEN[decimals];
+        long whole = scaled / divisor;
+        long fraction = scaled % divisor;
+        int fractionDigits = decimals;
+        if (general) {
+            while (fractionDigits > 0 && fraction % 10 == 0) {
+                fraction /= 10;
+                fractionDigits--;
+            }
+        }
+
+        if (negative) {
+            out.append(_minusSign);
+        }
+        appendWhole(whole, grouping, out);
+        if (fractionDigits > 0) {
+            out.append(_decimalSeparator);
+            for (long p = POWERS_OF_TEN[fractionDigits - 1]; p > 0; p /= 10) {
+                out.append((char)('0' + (fraction / p) % 10));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rounds <code>abs * 10^decimals</code> to a whole number, deciding which
+     *  way from the exact product, so the result is that of rounding the
+     *  exact binary value of <code>abs</code> to that many decimal places.
+     */
+    private static long roundScaled(double abs, int decimals, boolean halfEven) {
+        if (decimals == 0) {
+            long floor = (long)abs;
+            return roundUp(floor, abs - floor - 0.5, 0, halfEven) ? floor + 1 : floor;
+        }
+        if (abs < 1e-100) {
+            // far too small for the product to matter
+            return 0;
+        }
+
+        // hi + lo is exactly abs * scale (Dekker's product)
+        double scale = POWERS_OF_TEN[decimals];
+        double hi = abs * scale;
+        double a = SPLITTER * abs;
+        double aHi = a - (a - abs);
+        double aLo = abs - aHi;
+        double b = SPLITTER * scale;
+        double bHi = b - (b - scale);
+        double bLo = scale - bHi;
+        double lo = ((aHi * bHi - hi) + aHi * bLo + aLo * bHi) + aLo * bLo;
+
+        long floor = (long)Math.floor(hi);
+        double fraction = hi - floor;
+        if (fraction == 0 && lo < 0) {
+            floor--;
+            fraction = 1;
+        }
+        return roundUp(floor, fraction - 0.5, lo, halfEven) ? floor + 1 : floor;
+    }
+
+    /**
+     * @param aboveHalf with <code>lo</code>, how far the exact value is
+     *  above the point halfway to the next whole number
+     */
+    private static boolean roundUp(long floor, double aboveHalf, double lo, boolean halfEven) {
+        if (aboveHalf > -lo) {
+            return true;
+        }
+        if (aboveHalf < -lo) {
+            return false;
+        }
+        return !halfEven || (floor & 1) == 1;
+    }
+
+    private void appendWhole(long whole, boolean grouping, StringBuilder out) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && POWERS_OF_TEN[digits] <= whole) {
+            digits++;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            out.append((char)('0' + (whole / POWERS_OF_TEN[i]) % 10));
+            if (grouping && i > 0 && i % 3 == 0) {
+                out.append(_groupingSeparator);
+            }
+        }
+    }
+
+    /**
+     * Writes a date with a SimpleDateFormat pattern, which may only hold
+     *  the fields used by the built-in formats
+     */
+    private boolean writeDate(double value, String pattern, boolean use1904Windowing, StringBuilder out) {
+        if (!DateUtil.isValidExcelDate(value) || value >= MAX_DATE) {
+            return false;
+        }
+        // As DateUtil.getJavaCalendar works it out
+        int wholeDays = (int)Math.floor(value);
+        int millisecondsInDay = (int)((value - wholeDays) * DateUtil.DAY_MILLISECONDS + 0.5);
+        int startYear = 1900;
+        int dayAdjust = -1; // Excel thinks 2/29/1900 is a valid date, which it isn't
+        if (use1904Windowing) {
+            startYear = 1904;
+            dayAdjust = 1;
+        } else if (wholeDays < 61) {
+            dayAdjust = 0;
+        }
+        long day = daysFromCivil(startYear, 1, 1) + wholeDays + dayAdjust - 1
+                + millisecondsInDay / DateUtil.DAY_MILLISECONDS;
+        int secondsInDay = (int)(millisecondsInDay % DateUtil.DAY_MILLISECONDS) / 1000;
+        if (!isLocalTime(day * DateUtil.DAY_MILLISECONDS + millisecondsInDay % DateUtil.DAY_MILLISECONDS)) {
+            // Calendar moves times the clocks skip on past the change, so
+            //  leave those to the java.text formats
+            return false;
+        }
+
+        // civil from days, for the proleptic Gregorian calendar
+        long z = day + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int dayOfMonth = (int)(doy - (153 * mp + 2) / 5 + 1);
+        int month = (int)(mp < 10 ? mp + 3 : mp - 9);
+        int year = (int)(yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+        int hour = secondsInDay / 3600;
+        int minute = (secondsInDay / 60) % 60;
+        int second = secondsInDay % 60;
+
+        int len = pattern.length();
+        for (int i = 0; i < len; ) {
+            char c = pattern.charAt(i);
+            int count = 1;
+            while (i + count < len && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            switch (c) {
+                case 'M':
+                    if (count >= 3) {
+                        out.append(_shortMonths[month - 1]);
+                    } else {
+                        appendPadded(month, count, out);
+                    }
+                    break;
+                case 'd':
+                    appendPadded(dayOfMonth, count, out);
+                    break;
+                case 'y':
+                    appendPadded(year % 100, 2, out);
+                    break;
+                case 'H':
+                    appendPadded(hour, count, out);
+                    break;
+                case 'h':
+                    appendPadded(hour % 12 == 0 ? 12 : hour % 12, count, out);
+                    break;
+                case 'm':
+                    appendPadded(minute, count, out);
+                    break;
+                case 's':
+                    appendPadded(second, count, out);
+                    break;
+                case 'a':
+                    out.append(_amPm[hour < 12 ? 0 : 1]);
+                    break;
+                default:
+                    for (int j = 0; j < count; j++) {
+                        out.append(c);
+                    }
+            }
+            i += count;
+        }
+        return true;
+    }
+
+    private static void appendPadded(int value, int minDigits, StringBuilder out) {
+        if (minDigits >= 2 && value < 10) {
+            out.append('0');
+        }
+        if (value >= 10) {
+            out.append((char)('0' + value / 10));
+        }
+        out.append((char)('0' + value % 10));
+    }
+
+    /**
+     * @return the number of days from 1970-01-01 to the given date
+     */
+    /**
+     * @param localMillis a local time, in milliseconds since 1970 as if it was UTC
+     * @return <code>false</code> if the local time is skipped in the default time
+     *  zone, when the clocks go forward
+     */
+    private static boolean isLocalTime(long localMillis) {
+        TimeZone tz = TimeZone.getDefault();
+        int offset = tz.getOffset(localMillis - tz.getRawOffset());
+        int actualOffset = tz.getOffset(localMillis - offset);
+        if (actualOffset == offset) {
+            return true;
+        }
+        // it may be just the other side of a change
+        return tz.getOffset(localMillis - actualOffset) == actualOffset;
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+}
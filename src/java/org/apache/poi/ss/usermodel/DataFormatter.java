@@ -32,14 +32,18 @@ import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.poi.ss.format.FormatCache;
+
 
 /**
  * DataFormatter contains methods for formatting the value stored in an
@@ -165,15 +169,49 @@ public class DataFormatter {
     /** <em>General</em> format for decimal numbers. */
     private final Format generalDecimalNumFormat;
 
+    /** Writes the common built-in formats without creating any objects. */
+    private final BuiltinFormatWriter builtinFormatWriter;
+
+    /**
+     * Whether a subclass formats raw values itself, which the
+     *  {@link StringBuilder} variant must then go through too.
+     */
+    private final boolean rawFormattingOverridden;
+
     /** A default format to use when a number pattern cannot be parsed. */
-    private Format defaultNumFormat;
+    private volatile Format defaultNumFormat;
 
     /**
-     * A map to cache formats.
+     * A map of the formats added to this formatter, and of those which
+     *  depend on its settings rather than just on the format string.
      *  Map<String,Format> formats
      */
     private final Map<String,Format> formats;
 
+    /** The most formats to keep in {@link #sharedFormats}. */
+    private static final int SHARED_FORMATS_SIZE = 2048;
+
+    /**
+     * The formats created from format strings by all formatters, so that
+     *  each format string is only parsed once for each locale, even by
+     *  formatters used by different threads.
+     */
+    private static final FormatCache<FormatKey,Format> sharedFormats =
+            new FormatCache<FormatKey,Format>(SHARED_FORMATS_SIZE);
+
+    /**
+     * Each thread's own copies of the formats, keyed by the format they were
+     *  copied from. java.text formats aren't thread safe, so the cached
+     *  formats are only ever copied, and never used to format values.
+     */
+    private final ThreadLocal<Map<Format,Format>> threadFormats = new ThreadLocal<Map<Format,Format>>() {
+        protected Map<Format,Format> initialValue() {
+            return new IdentityHashMap<Format,Format>();
+        }
+    };
+
+    private final Locale locale;
+
     private boolean emulateCsv = false;
 
     /**
@@ -207,12 +245,15 @@ public class DataFormatter {
      * Creates a formatter using the given locale.
      */
     public DataFormatter(Locale locale) {
+        this.locale = locale;
         dateSymbols = new DateFormatSymbols(locale);
         decimalSymbols = new DecimalFormatSymbols(locale);
         generalWholeNumFormat = new DecimalFormat("#", decimalSymbols);
         generalDecimalNumFormat = new DecimalFormat("#.##########", decimalSymbols);
+        builtinFormatWriter = new BuiltinFormatWriter(decimalSymbols, dateSymbols);
+        rawFormattingOverridden = overridesRawFormatting();
 
-        formats = new HashMap<String,Format>();
+        formats = new ConcurrentHashMap<String,Format>();
 
         // init built-in formats
 
@@ -232,6 +273,20 @@ public class DataFormatter {
         addFormat("000-00-0000", ssnFormat);
     }
 
+    private boolean overridesRawFormatting() {
+        if (getClass() == DataFormatter.class) {
+            return false;
+        }
+        try {
+            return getClass().getMethod("formatRawCellContents",
+                        double.class, int.class, String.class).getDeclaringClass() != DataFormatter.class
+                || getClass().getMethod("formatRawCellContents",
+                        double.class, int.class, String.class, boolean.class).getDeclaringClass() != DataFormatter.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Return a Format for the given cell if one exists, otherwise try to
      * create one. This method will return <code>null</code> if the any of the
@@ -258,7 +313,31 @@ public class DataFormatter {
         return getFormat(cell.getNumericCellValue(), formatIndex, formatStr);
     }
 
-    private Format getFormat(double cellValue, int formatIndex, String formatStrIn) {
+    private Format getFormat(double cellValue, int formatIndex, String formatStr) {
+        return getThreadFormat(getCachedFormat(cellValue, formatIndex, formatStr));
+    }
+
+    /**
+     * @return this thread's own copy of the format
+     */
+    private Format getThreadFormat(Format format) {
+        if (format == null) {
+            return null;
+        }
+        Map<Format,Format> copies = threadFormats.get();
+        Format copy = copies.get(format);
+        if (copy == null) {
+            if (copies.size() >= SHARED_FORMATS_SIZE) {
+                // most are likely to be for formats dropped from the cache
+                copies.clear();
+            }
+            copy = (Format)format.clone();
+            copies.put(format, copy);
+        }
+        return copy;
+    }
+
+    private Format getCachedFormat(double cellValue, int formatIndex, String formatStrIn) {
 //      // Might be better to separate out the n p and z formats, falling back to p when n and z are not set.
 //      // That however would require other code to be re factored.
 //      String[] formatBits = formatStrIn.split(";");
@@ -306,11 +385,26 @@ public class DataFormatter {
             }
             return generalDecimalNumFormat;
         }
+
+        // date formats take the default time zone when they're created
+        FormatKey key = new FormatKey(locale, TimeZone.getDefault().getID(), emulateCsv, formatIndex, formatStr);
+        format = sharedFormats.get(key);
+        if (format != null) {
+            return format;
+        }
         
         // Build a formatter, and cache it
         format = createFormat(cellValue, formatIndex, formatStr);
-        formats.put(formatStr, format);
-        return format;
+        if (format == null) {
+            return null;
+        }
+        if (format == generalWholeNumFormat || format == generalDecimalNumFormat
+                || format == defaultNumFormat) {
+            // these belong to this formatter, see setDefaultNumberFormat
+            formats.put(formatStr, format);
+            return format;
+        }
+        return sharedFormats.put(key, format);
     }
 
     /**
@@ -319,12 +413,25 @@ public class DataFormatter {
      *
      * @param cell The Excel cell
      * @return A Format representing the excel format. May return null.
+     *  It is the caller's own copy, so changing it doesn't affect this
+     *  formatter.
      */
     public Format createFormat(Cell cell) {
 
         int formatIndex = cell.getCellStyle().getDataFormat();
         String formatStr = cell.getCellStyle().getDataFormatString();
-        return createFormat(cell.getNumericCellValue(), formatIndex, formatStr);
+        return copyFormat(createFormat(cell.getNumericCellValue(), formatIndex, formatStr));
+    }
+
+    /**
+     * The formats used internally are shared with other threads, so
+     *  callers only ever get a copy of them
+     */
+    private static Format copyFormat(Format format) {
+        if (format == null) {
+            return null;
+        }
+        return (Format)format.clone();
     }
 
     private Format createFormat(double cellValue, int formatIndex, String sFormat) {
@@ -640,10 +747,10 @@ public class DataFormatter {
     /**
      * Returns a default format for a cell.
      * @param cell The cell
-     * @return a default format
+     * @return a copy of the default format
      */
     public Format getDefaultFormat(Cell cell) {
-        return getDefaultFormat(cell.getNumericCellValue());
+        return copyFormat(getDefaultFormat(cell.getNumericCellValue()));
     }
     private Format getDefaultFormat(double cellValue) {
         // for numeric cells try user supplied default
@@ -662,13 +769,24 @@ public class DataFormatter {
      * Performs Excel-style date formatting, using the
      *  supplied Date and format
      */
-    private String performDateFormatting(Date d, Format dateFormat) {
+    private String performDateFormatting(Date d, Format dateFormat, double cellValue) {
        if(dateFormat != null) {
+          if(dateFormat instanceof ExcelStyleDateFormatter) {
+             // Hint about the raw excel value
+             ((ExcelStyleDateFormatter)dateFormat).setDateToBeFormatted(cellValue);
+          }
           return dateFormat.format(d);
       }
       return d.toString();
     }
 
+    /**
+     * Formats a number with this thread's copy of a format
+     */
+    private static String performNumberFormatting(double value, Format numberFormat) {
+        return numberFormat.format(new Double(value));
+    }
+
     /**
      * Returns the formatted value of an Excel date as a <tt>String</tt> based
      * on the cell's <code>DataFormat</code>. i.e. "Thursday, January 02, 2003"
@@ -679,14 +797,8 @@ public class DataFormatter {
      */
     private String getFormattedDateString(Cell cell) {
         Format dateFormat = getFormat(cell);
-        if(dateFormat instanceof ExcelStyleDateFormatter) {
-           // Hint about the raw excel value
-           ((ExcelStyleDateFormatter)dateFormat).setDateToBeFormatted(
-                 cell.getNumericCellValue()
-           );
-        }
         Date d = cell.getDateCellValue();
-        return performDateFormatting(d, dateFormat);
+        return performDateFormatting(d, dateFormat, cell.getNumericCellValue());
     }
 
     /**
@@ -705,7 +817,7 @@ public class DataFormatter {
         if (numberFormat == null) {
             return String.valueOf(d);
         }
-        return numberFormat.format(new Double(d));
+        return performNumberFormatting(d, numberFormat);
     }
 
     /**
@@ -726,12 +838,8 @@ public class DataFormatter {
         if(DateUtil.isADateFormat(formatIndex,formatString)) {
             if(DateUtil.isValidExcelDate(value)) {
                 Format dateFormat = getFormat(value, formatIndex, formatString);
-                if(dateFormat instanceof ExcelStyleDateFormatter) {
-                   // Hint about the raw excel value
-                   ((ExcelStyleDateFormatter)dateFormat).setDateToBeFormatted(value);
-                }
                 Date d = DateUtil.getJavaDate(value, use1904Windowing);
-                return performDateFormatting(d, dateFormat);
+                return performDateFormatting(d, dateFormat, value);
             }
              // RK: Invalid dates are 255 #s.
              if (emulateCsv) {
@@ -744,13 +852,44 @@ public class DataFormatter {
                 return String.valueOf(value);
             }
             // RK: This hack handles scientific notation by adding the missing + back.
-            String result = numberFormat.format(new Double(value));
+            String result = performNumberFormatting(value, numberFormat);
             if (result.contains("E") && !result.contains("E-")) {
                 result = result.replaceFirst("E", "E+");
             }
             return result;
     }
 
+    /**
+     * Formats the given raw cell value, based on the supplied
+     *  format index and string, according to excel style rules,
+     *  and appends it to the given buffer.
+     * <p>
+     * Values with the General, 0, 0.00, #,##0, #,##0.00, 0% and 0.00%
+     *  formats, and with the built-in date and time formats, are written
+     *  straight into the buffer, without creating any objects, so this is
+     *  much cheaper than {@link #formatRawCellContents(double, int, String, boolean)}
+     *  when a buffer is reused for many values, as when streaming a sheet.
+     *  The text is the same as that method gives.
+     * <p>
+     * If a subclass overrides {@link #formatRawCellContents(double, int, String)}
+     *  or {@link #formatRawCellContents(double, int, String, boolean)}, every
+     *  value is formatted by the overriding method instead.
+     * @see #formatCellValue(Cell)
+     */
+    public void formatRawCellContents(double value, int formatIndex, String formatString,
+            boolean use1904Windowing, StringBuilder out) {
+        // Formats added to this formatter take priority over the built-in ones
+        if (!rawFormattingOverridden && formatString != null && !formats.containsKey(formatString)
+                && builtinFormatWriter.write(value, formatString, use1904Windowing, out)) {
+            return;
+        }
+        if (use1904Windowing) {
+            out.append(formatRawCellContents(value, formatIndex, formatString, true));
+        } else {
+            out.append(formatRawCellContents(value, formatIndex, formatString));
+        }
+    }
+
     /**
      * <p>
      * Returns the formatted value of a cell as a <tt>String</tt> regardless
@@ -908,6 +1047,43 @@ public class DataFormatter {
        }
     }
 
+    /**
+     * Identifies a format in {@link #sharedFormats}, by everything that
+     * {@link #createFormat(double, int, String)} depends on
+     */
+    private static final class FormatKey {
+        private final Locale locale;
+        private final String timeZoneId;
+        private final boolean emulateCsv;
+        private final int formatIndex;
+        private final String formatStr;
+
+        public FormatKey(Locale locale, String timeZoneId, boolean emulateCsv, int formatIndex, String formatStr) {
+            this.locale = locale;
+            this.timeZoneId = timeZoneId;
+            this.emulateCsv = emulateCsv;
+            this.formatIndex = formatIndex;
+            this.formatStr = formatStr;
+        }
+
+        public int hashCode() {
+            return ((formatStr.hashCode() * 31 + formatIndex) * 31 + locale.hashCode()) * 31
+                + timeZoneId.hashCode() + (emulateCsv ? 1 : 0);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FormatKey)) {
+                return false;
+            }
+            FormatKey other = (FormatKey)obj;
+            return formatIndex == other.formatIndex
+                && emulateCsv == other.emulateCsv
+                && formatStr.equals(other.formatStr)
+                && locale.equals(other.locale)
+                && timeZoneId.equals(other.timeZoneId);
+        }
+    }
+
     /**
      * Format class for Excel's SSN format. This class mimics Excel's built-in
      * SSN formatting.
@@ -917,13 +1093,13 @@ public class DataFormatter {
     @SuppressWarnings("serial")
    private static final class SSNFormat extends Format {
         public static final Format instance = new SSNFormat();
-        private static final DecimalFormat df = createIntegerOnlyFormat("000000000");
+        private DecimalFormat df = createIntegerOnlyFormat("000000000");
         private SSNFormat() {
             // enforce singleton
         }
 
         /** Format a number as an SSN */
-        public static String format(Number num) {
+        public String format(Number num) {
             String result = df.format(num);
             StringBuffer sb = new StringBuffer();
             sb.append(result.substring(0, 3)).append('-');
@@ -939,6 +1115,12 @@ public class DataFormatter {
         public Object parseObject(String source, ParsePosition pos) {
             return df.parseObject(source, pos);
         }
+
+        public Object clone() {
+            SSNFormat copy = (SSNFormat)super.clone();
+            copy.df = (DecimalFormat)df.clone();
+            return copy;
+        }
     }
 
     /**
@@ -949,13 +1131,13 @@ public class DataFormatter {
     @SuppressWarnings("serial")
    private static final class ZipPlusFourFormat extends Format {
         public static final Format instance = new ZipPlusFourFormat();
-        private static final DecimalFormat df = createIntegerOnlyFormat("000000000");
+        private DecimalFormat df = createIntegerOnlyFormat("000000000");
         private ZipPlusFourFormat() {
             // enforce singleton
         }
 
         /** Format a number as Zip + 4 */
-        public static String format(Number num) {
+        public String format(Number num) {
             String result = df.format(num);
             StringBuffer sb = new StringBuffer();
             sb.append(result.substring(0, 5)).append('-');
@@ -970,6 +1152,12 @@ public class DataFormatter {
         public Object parseObject(String source, ParsePosition pos) {
             return df.parseObject(source, pos);
         }
+
+        public Object clone() {
+            ZipPlusFourFormat copy = (ZipPlusFourFormat)super.clone();
+            copy.df = (DecimalFormat)df.clone();
+            return copy;
+        }
     }
 
     /**
@@ -980,13 +1168,13 @@ public class DataFormatter {
     @SuppressWarnings("serial")
    private static final class PhoneFormat extends Format {
         public static final Format instance = new PhoneFormat();
-        private static final DecimalFormat df = createIntegerOnlyFormat("##########");
+        private DecimalFormat df = createIntegerOnlyFormat("##########");
         private PhoneFormat() {
             // enforce singleton
         }
 
         /** Format a number as a phone number */
-        public static String format(Number num) {
+        public String format(Number num) {
             String result = df.format(num);
             StringBuffer sb = new StringBuffer();
             String seg1, seg2, seg3;
@@ -1016,6 +1204,12 @@ public class DataFormatter {
         public Object parseObject(String source, ParsePosition pos) {
             return df.parseObject(source, pos);
         }
+
+        public Object clone() {
+            PhoneFormat copy = (PhoneFormat)super.clone();
+            copy.df = (DecimalFormat)df.clone();
+            return copy;
+        }
     }
     
 
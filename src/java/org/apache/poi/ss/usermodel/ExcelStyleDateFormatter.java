@@ -72,6 +72,18 @@ public class ExcelStyleDateFormatter extends SimpleDateFormat {
         super(processFormatPattern(pattern), locale);
     }
 
+    /**
+     * Copies the digit formats too, so the copy can be used in another thread
+     */
+    public Object clone() {
+        ExcelStyleDateFormatter copy = (ExcelStyleDateFormatter) super.clone();
+        copy.format1digit = (DecimalFormat) format1digit.clone();
+        copy.format2digits = (DecimalFormat) format2digits.clone();
+        copy.format3digit = (DecimalFormat) format3digit.clone();
+        copy.format4digits = (DecimalFormat) format4digits.clone();
+        return copy;
+    }
+
     /**
      * Takes a format String, and replaces Excel specific bits
      * with our detection sequences
@@ -0,0 +1,287 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only list of strings which are kept in memory mapped temporary
+ * files rather than on the heap, for tables with millions of entries, such
+ * as the shared strings of a very large spreadsheet.
+ * <p>
+ * Each string is stored as its UTF-8 bytes, preceded by their length, in a
+ * data file, and the position of each string is stored in an index file,
+ * so that looking up a string by its index needs no heap other than the
+ * returned String. The only per-string heap cost is that of the optional
+ * dedupe table used by {@link #addUnique(String)}, a single int per slot.
+ * <p>
+ * All methods are synchronized, so one table may be shared by several
+ * threads. Call {@link #close()} once the table is no longer needed, to
+ * delete the temporary files.
+ */
+public final class MappedStringTable extends AbstractList<String> {
+    /**
+     * Default size of each mapped region of the files. Strings never span
+     *  two regions, so this also bounds the length of a single string.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int INDEX_ENTRY_SIZE = 8;
+    private static final int LENGTH_SIZE = 4;
+    private static final int INITIAL_SLOTS = 1024;
+
+    private final int _chunkSize;
+    private final int _indexEntriesPerChunk;
+    private final File _dataFile;
+    private final File _indexFile;
+    private RandomAccessFile _data;
+    private RandomAccessFile _index;
+    private final List<MappedByteBuffer> _dataChunks = new ArrayList<MappedByteBuffer>();
+    private final List<MappedByteBuffer> _indexChunks = new ArrayList<MappedByteBuffer>();
+    /** the position at which the next string will be written */
+    private long _dataEnd;
+    private int _size;
+
+    /**
+     * Open addressing table of (index + 1) of the strings added through
+     * {@link #addUnique(String)}, keyed by the hash of their UTF-8 bytes.
+     * Zero marks an empty slot.
+     */
+    private int[] _slots;
+    private int _slotsUsed;
+
+    public MappedStringTable() throws IOException {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+    public MappedStringTable(int chunkSize) throws IOException {
+        if (chunkSize < 1024 || chunkSize % INDEX_ENTRY_SIZE != 0) {
+            throw new IllegalArgumentException("Chunk size must be a multiple of "
+                    + INDEX_ENTRY_SIZE + " of at least 1024, but was " + chunkSize);
+        }
+        _chunkSize = chunkSize;
+        _indexEntriesPerChunk = chunkSize / INDEX_ENTRY_SIZE;
+        _dataFile = TempFile.createTempFile("poi-strings", ".dat");
+        _indexFile = TempFile.createTempFile("poi-strings", ".idx");
+        _data = new RandomAccessFile(_dataFile, "rw");
+        _index = new RandomAccessFile(_indexFile, "rw");
+    }
+
+    /**
+     * @return the string at the given index
+     */
+    public synchronized String get(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range 0.." + (_size - 1));
+        }
+        return decode(readBytes(getPosition(index)));
+    }
+
+    public synchronized int size() {
+        return _size;
+    }
+
+    /**
+     * Appends the string, without checking for an equal one already in the
+     * table. The new string will not be found by {@link #addUnique(String)}.
+     *
+     * @return always <code>true</code>
+     */
+    public synchronized boolean add(String s) {
+        append(encode(s));
+        return true;
+    }
+
+    /**
+     * Returns the index of an equal string previously added by this method,
+     * or appends the string if there isn't one.
+     *
+     * @return the index of the string in this table
+     */
+    public synchronized int addUnique(String s) {
+        byte[] bytes = encode(s);
+        if (_slots == null) {
+            _slots = new int[INITIAL_SLOTS];
+        }
+        int mask = _slots.length - 1;
+        int slot = hash(bytes, 0, bytes.length) & mask;
+        while (_slots[slot] != 0) {
+            int index = _slots[slot] - 1;
+            if (equalsAt(getPosition(index), bytes)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int index = append(bytes);
+        _slots[slot] = index + 1;
+        _slotsUsed++;
+        if (_slotsUsed * 4 >= _slots.length * 3) {
+            rehash(_slots.length * 2);
+        }
+        return index;
+    }
+
+    /**
+     * Releases the mappings and deletes the temporary files. The table may
+     * not be used afterwards.
+     */
+    public synchronized void close() throws IOException {
+        if (_data == null) {
+            return;
+        }
+        // The mappings are released once they're garbage collected, until
+        //  then some platforms won't delete the files, which are also
+        //  marked for deletion on exit
+        _dataChunks.clear();
+        _indexChunks.clear();
+        _slots = null;
+        _size = 0;
+        _data.close();
+        _index.close();
+        _data = null;
+        _index = null;
+        _dataFile.delete();
+        _indexFile.delete();
+    }
+
+    private int append(byte[] bytes) {
+        int recordSize = LENGTH_SIZE + bytes.length;
+        if (recordSize > _chunkSize) {
+            throw new IllegalArgumentException("String of " + bytes.length
+                    + " bytes does not fit in chunks of " + _chunkSize);
+        }
+        if (_data == null) {
+            throw new IllegalStateException("The table has been closed");
+        }
+        long chunkStart = _dataEnd - (_dataEnd % _chunkSize);
+        if (_dataEnd + recordSize > chunkStart + _chunkSize) {
+            // Start the next chunk, rather than split the string
+            _dataEnd = chunkStart + _chunkSize;
+        }
+        ByteBuffer chunk = getChunk(_data, _dataChunks, (int)(_dataEnd / _chunkSize));
+        int offset = (int)(_dataEnd % _chunkSize);
+        chunk.putInt(offset, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            chunk.put(offset + LENGTH_SIZE + i, bytes[i]);
+        }
+
+        int index = _size;
+        ByteBuffer indexChunk = getChunk(_index, _indexChunks, index / _indexEntriesPerChunk);
+        indexChunk.putLong((index % _indexEntriesPerChunk) * INDEX_ENTRY_SIZE, _dataEnd);
+
+        _dataEnd += recordSize;
+        _size++;
+        return index;
+    }
+
+    private ByteBuffer getChunk(RandomAccessFile file, List<MappedByteBuffer> chunks, int chunkIndex) {
+        while (chunks.size() <= chunkIndex) {
+            long start = (long)chunks.size() * _chunkSize;
+            try {
+                chunks.add(file.getChannel().map(FileChannel.MapMode.READ_WRITE, start, _chunkSize));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not extend the string table", e);
+            }
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private long getPosition(int index) {
+        ByteBuffer indexChunk = _indexChunks.get(index / _indexEntriesPerChunk);
+        return indexChunk.getLong((index % _indexEntriesPerChunk) * INDEX_ENTRY_SIZE);
+    }
+
+    private byte[] readBytes(long position) {
+        ByteBuffer chunk = _dataChunks.get((int)(position / _chunkSize)).duplicate();
+        int offset = (int)(position % _chunkSize);
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.position(offset + LENGTH_SIZE);
+        chunk.get(bytes);
+        return bytes;
+    }
+
+    private boolean equalsAt(long position, byte[] bytes) {
+        ByteBuffer chunk = _dataChunks.get((int)(position / _chunkSize));
+        int offset = (int)(position % _chunkSize);
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        offset += LENGTH_SIZE;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int newLength) {
+        int[] oldSlots = _slots;
+        _slots = new int[newLength];
+        int mask = newLength - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            int entry = oldSlots[i];
+            if (entry == 0) {
+                continue;
+            }
+            byte[] bytes = readBytes(getPosition(entry - 1));
+            int slot = hash(bytes, 0, bytes.length) & mask;
+            while (_slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            _slots[slot] = entry;
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // spread the bits, as only the low ones pick the slot
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    private static byte[] encode(String s) {
+        if (s == null) {
+            throw new IllegalArgumentException("The table cannot hold null strings");
+        }
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decode(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
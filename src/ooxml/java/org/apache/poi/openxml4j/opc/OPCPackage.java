@@ -52,6 +52,7 @@ import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPackagePropertiesMar
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.PackagePropertiesUnmarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.UnmarshallContext;
 import org.apache.poi.openxml4j.util.Nullable;
+import org.apache.poi.openxml4j.util.TempFileZipEntrySource;
 import org.apache.poi.util.POILogger;
 import org.apache.poi.util.POILogFactory;
 
@@ -271,6 +272,36 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 		return pack;
 	}
 
+	/**
+	 * Open a package from a stream, without holding the whole of it in
+	 * memory as {@link #open(InputStream)} does.
+	 *
+	 * The stream is copied to a temporary file, from which each part is only
+	 * decompressed when it's read. The file is deleted when the package is
+	 * closed or reverted.
+	 *
+	 * @param in
+	 *            The InputStream to read the package from, which is closed
+	 * @return A PackageBase object
+	 */
+	public static OPCPackage openWithTempFile(InputStream in)
+			throws InvalidFormatException, IOException {
+		OPCPackage pack = new ZipPackage(new TempFileZipEntrySource(in),
+				PackageAccess.READ_WRITE);
+		try {
+			if (pack.partList == null) {
+				pack.getParts();
+			}
+		} catch (InvalidFormatException e) {
+			pack.revert();
+			throw e;
+		} catch (RuntimeException e) {
+			pack.revert();
+			throw e;
+		}
+		return pack;
+	}
+
 	/**
 	 * Opens a package if it exists, else it creates one.
 	 *
@@ -39,6 +39,7 @@ import org.apache.poi.openxml4j.opc.internal.ZipContentTypeManager;
 import org.apache.poi.openxml4j.opc.internal.ZipHelper;
 import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPackagePropertiesMarshaller;
 import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPartMarshaller;
+import org.apache.poi.openxml4j.util.TempFileZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipFileZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource;
@@ -85,6 +86,20 @@ public final class ZipPackage extends Package {
 		);
 	}
 
+	/**
+	 * Constructor. Opens a Zip based Open XML document from the given
+	 * source of its entries.
+	 *
+	 * @param zipEntrySource
+	 *            Where the entries of the zip are read from.
+	 * @param access
+	 *            The package access mode.
+	 */
+	ZipPackage(ZipEntrySource zipEntrySource, PackageAccess access) {
+		super(access);
+		this.zipArchive = zipEntrySource;
+	}
+
    /**
     * Constructor. Opens a Zip based Open XML document.
     *
@@ -349,6 +364,22 @@ public final class ZipPackage extends Package {
 		} 
 	}
 
+	/**
+	 * Close and save the package, as {@link OPCPackage#close()} does, and
+	 * then delete the temporary copy of a package read from a stream, which
+	 * is otherwise kept until the package is reverted.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			if (this.zipArchive instanceof TempFileZipEntrySource) {
+				this.zipArchive.close();
+			}
+		}
+	}
+
 	/**
 	 * Create a unique identifier to be use as a temp file name.
 	 *
@@ -0,0 +1,165 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.opc.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The data of a {@link MemoryPackagePart}, held in a list of chunks which
+ * grow in size as more is written, so that appending never copies what's
+ * already there, unlike growing a single array.
+ */
+final class ChunkedByteArray {
+	private static final int MIN_CHUNK_SIZE = 4096;
+	private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+	private byte[] current;
+	private int currentUsed;
+	private int length;
+
+	public int length() {
+		return length;
+	}
+
+	public void write(int b) {
+		ensureSpace();
+		current[currentUsed++] = (byte) b;
+		length++;
+	}
+
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			ensureSpace();
+			int count = Math.min(len, current.length - currentUsed);
+			System.arraycopy(b, off, current, currentUsed, count);
+			currentUsed += count;
+			length += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Appends everything left in the stream, reading it straight into the
+	 * chunks
+	 */
+	public void readFrom(InputStream in) throws IOException {
+		while (true) {
+			ensureSpace();
+			int read = in.read(current, currentUsed, current.length - currentUsed);
+			if (read == -1) {
+				return;
+			}
+			currentUsed += read;
+			length += read;
+		}
+	}
+
+	/**
+	 * @return a stream of the data written so far
+	 */
+	public InputStream getInputStream() {
+		return new ChunkedInputStream(length);
+	}
+
+	private void ensureSpace() {
+		if (current == null || currentUsed == current.length) {
+			// Each new chunk is as big as all the previous ones together
+			current = new byte[Math.min(MAX_CHUNK_SIZE,
+					Math.max(MIN_CHUNK_SIZE, length))];
+			chunks.add(current);
+			currentUsed = 0;
+		}
+	}
+
+	private final class ChunkedInputStream extends InputStream {
+		private final int end;
+		private int pos;
+		private int chunkIndex;
+		private int chunkPos;
+
+		ChunkedInputStream(int end) {
+			this.end = end;
+		}
+
+		@Override
+		public int read() {
+			if (pos >= end) {
+				return -1;
+			}
+			nextChunkIfDone();
+			pos++;
+			return chunks.get(chunkIndex)[chunkPos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (pos >= end) {
+				return -1;
+			}
+			int total = 0;
+			while (len > 0 && pos < end) {
+				nextChunkIfDone();
+				byte[] chunk = chunks.get(chunkIndex);
+				int count = Math.min(len,
+						Math.min(chunk.length - chunkPos, end - pos));
+				System.arraycopy(chunk, chunkPos, b, off, count);
+				chunkPos += count;
+				pos += count;
+				off += count;
+				len -= count;
+				total += count;
+			}
+			return total;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = 0;
+			while (n > 0 && pos < end) {
+				nextChunkIfDone();
+				int count = (int) Math.min(n, Math.min(
+						chunks.get(chunkIndex).length - chunkPos, end - pos));
+				chunkPos += count;
+				pos += count;
+				n -= count;
+				skipped += count;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return end - pos;
+		}
+
+		private void nextChunkIfDone() {
+			if (chunkPos == chunks.get(chunkIndex).length) {
+				chunkIndex++;
+				chunkPos = 0;
+			}
+		}
+	}
+}
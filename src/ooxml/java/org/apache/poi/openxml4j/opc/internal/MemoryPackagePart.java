@@ -17,8 +17,6 @@
 
 package org.apache.poi.openxml4j.opc.internal;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,7 +27,6 @@ import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackagePartName;
 import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPartMarshaller;
-import org.apache.poi.util.IOUtils;
 
 /**
  * Memory version of a package part. Use to
@@ -42,12 +39,7 @@ public final class MemoryPackagePart extends PackagePart {
 	/**
 	 * Storage for the part data.
 	 */
-	protected byte[] data;
-
-	/**
-	 * Size of data.
-	 */
-	protected int length;
+	protected ChunkedByteArray data;
 
 	/**
 	 * Constructor.
@@ -92,9 +84,9 @@ public final class MemoryPackagePart extends PackagePart {
 		// not
 		// initialize, so we do it now.
 		if (data == null) {
-			data = new byte[0];
+			data = new ChunkedByteArray();
 		}
-		return new ByteArrayInputStream(data);
+		return data.getInputStream();
 	}
 
 	@Override
@@ -104,12 +96,11 @@ public final class MemoryPackagePart extends PackagePart {
 
 	@Override
 	public long getSize() {
-		return length;
+		return data == null ? 0 : data.length();
 	}
 
 	public void clear() {
 		data = null;
-		length = 0;
 	}
 
 	@Override
@@ -119,17 +110,16 @@ public final class MemoryPackagePart extends PackagePart {
 
 	@Override
 	public boolean load(InputStream ios) throws InvalidFormatException {
-	   // Grab the data
-	   ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	   // Grab the data, straight into our storage
+	   ChunkedByteArray newData = new ChunkedByteArray();
 	   try {
-	      IOUtils.copy(ios, baos);
+	      newData.readFrom(ios);
 	   } catch(IOException e) {
 	      throw new InvalidFormatException(e.getMessage());
 	   }
 	   
 	   // Save it
-	   data = baos.toByteArray();
-	   length = data.length;
+	   data = newData;
 	   
 	   // All done
 	   return true;
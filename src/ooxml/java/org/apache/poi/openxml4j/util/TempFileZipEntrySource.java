@@ -0,0 +1,121 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.openxml4j.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
+
+/**
+ * A ZipEntrySource for a zip that's only available as a stream,
+ *  which copies the stream to a temporary file and then reads
+ *  that as a ZipFile.
+ * Unlike {@link ZipInputStreamZipEntrySource}, the entries aren't
+ *  all decompressed into memory up front, but only when, and each
+ *  time, they're read, so the memory used doesn't depend on the
+ *  size of the zip.
+ * The temporary file is deleted when this is closed.
+ */
+public class TempFileZipEntrySource implements ZipEntrySource {
+	private static POILogger logger = POILogFactory.getLogger(TempFileZipEntrySource.class);
+
+	private File tempFile;
+	private ZipEntrySource source;
+
+	/**
+	 * Copies the stream to a temporary file, and closes it
+	 */
+	public TempFileZipEntrySource(InputStream inp) throws IOException {
+		tempFile = TempFile.createTempFile("poi-zip-", ".tmp");
+		try {
+			OutputStream out = new FileOutputStream(tempFile);
+			try {
+				IOUtils.copy(inp, out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			deleteTempFile();
+			throw e;
+		} finally {
+			inp.close();
+		}
+
+		try {
+			source = new ZipFileZipEntrySource(new ZipFile(tempFile));
+		} catch (ZipException e) {
+			// ZipInputStream copes with some zips that ZipFile doesn't,
+			//  such as those without a central directory
+			logger.log(POILogger.WARN, "Zip can't be read from the temporary file, so reading it into memory", e);
+			try {
+				source = new ZipInputStreamZipEntrySource(
+						new ZipInputStream(new FileInputStream(tempFile)));
+			} finally {
+				deleteTempFile();
+			}
+		}
+	}
+
+	public Enumeration<? extends ZipEntry> getEntries() {
+		if (source == null)
+			throw new IllegalStateException("Zip File is closed");
+
+		return source.getEntries();
+	}
+
+	public InputStream getInputStream(ZipEntry entry) throws IOException {
+		if (source == null)
+			throw new IllegalStateException("Zip File is closed");
+
+		return source.getInputStream(entry);
+	}
+
+	/**
+	 * Closes the zip, and deletes the temporary file
+	 */
+	public void close() throws IOException {
+		try {
+			if (source != null) {
+				source.close();
+			}
+		} finally {
+			source = null;
+			deleteTempFile();
+		}
+	}
+
+	private void deleteTempFile() {
+		if (tempFile != null && !tempFile.delete() && tempFile.exists()) {
+			logger.log(POILogger.WARN, "The temporary file '"
+					+ tempFile.getAbsolutePath() + "' cannot be deleted");
+		}
+		tempFile = null;
+	}
+}
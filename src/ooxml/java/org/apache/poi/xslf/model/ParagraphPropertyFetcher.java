@@ -21,7 +21,10 @@ package org.apache.poi.xslf.model;
 
 import org.apache.poi.xslf.usermodel.XSLFSimpleShape;
 import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTTextBody;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTTextListStyle;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTTextParagraphProperties;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
 
 /**
  *
@@ -35,18 +38,43 @@ public abstract class ParagraphPropertyFetcher<T> extends PropertyFetcher<T> {
     }
 
     public boolean fetch(XSLFSimpleShape shape) {
-
-        XmlObject[] o = shape.getXmlObject().selectPath(
-                "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
-                "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
-                ".//p:txBody/a:lstStyle/a:lvl" + (_level + 1) + "pPr"
-        );
-        if (o.length == 1) {
-            CTTextParagraphProperties props = (CTTextParagraphProperties) o[0];
-            return fetch(props);
+        // Walk down to p:txBody/a:lstStyle/a:lvlXpPr, rather than running an
+        //  XPath query, as this is done for every property of every paragraph
+        XmlObject xml = shape.getXmlObject();
+        if (xml instanceof CTShape) {
+            CTTextBody txBody = ((CTShape) xml).getTxBody();
+            if (txBody != null) {
+                CTTextParagraphProperties props = getLevelProperties(txBody.getLstStyle(), _level);
+                if (props != null) {
+                    return fetch(props);
+                }
+            }
         }
         return false;
     }
 
     public abstract boolean fetch(CTTextParagraphProperties props);
+
+    /**
+     * @param style the list style, may be <code>null</code>
+     * @param level the 0 based indent level
+     * @return the paragraph properties of the level, or <code>null</code> if not set
+     */
+    public static CTTextParagraphProperties getLevelProperties(CTTextListStyle style, int level) {
+        if (style == null) {
+            return null;
+        }
+        switch (level) {
+            case 0: return style.getLvl1PPr();
+            case 1: return style.getLvl2PPr();
+            case 2: return style.getLvl3PPr();
+            case 3: return style.getLvl4PPr();
+            case 4: return style.getLvl5PPr();
+            case 5: return style.getLvl6PPr();
+            case 6: return style.getLvl7PPr();
+            case 7: return style.getLvl8PPr();
+            case 8: return style.getLvl9PPr();
+            default: return null;
+        }
+    }
 }
\ No newline at end of file
@@ -21,7 +21,9 @@ package org.apache.poi.xslf.model;
 
 import org.apache.poi.xslf.usermodel.XSLFSimpleShape;
 import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTTextBody;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTTextBodyProperties;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
 
 /**
  * Created by IntelliJ IDEA.
@@ -33,15 +35,13 @@ import org.openxmlformats.schemas.drawingml.x2006.main.CTTextBodyProperties;
 public abstract class TextBodyPropertyFetcher<T> extends PropertyFetcher<T> {
 
     public boolean fetch(XSLFSimpleShape shape) {
-
-        XmlObject[] o = shape.getXmlObject().selectPath(
-                "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
-                "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
-                ".//p:txBody/a:bodyPr"
-        );
-        if (o.length == 1) {
-            CTTextBodyProperties props = (CTTextBodyProperties) o[0];
-            return fetch(props);
+        // Walk down to p:txBody/a:bodyPr, rather than running an XPath query
+        XmlObject xml = shape.getXmlObject();
+        if (xml instanceof CTShape) {
+            CTTextBody txBody = ((CTShape) xml).getTxBody();
+            if (txBody != null && txBody.getBodyPr() != null) {
+                return fetch(txBody.getBodyPr());
+            }
         }
 
         return false;
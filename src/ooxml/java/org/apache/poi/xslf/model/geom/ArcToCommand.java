@@ -48,6 +48,13 @@ public class ArcToCommand implements PathCommand {
         swAng = arc.getSwAng().toString();
     }
 
+    ArcToCommand(String wR, String hR, String stAng, String swAng){
+        this.wr = wR;
+        this.hr = hR;
+        this.stAng = stAng;
+        this.swAng = swAng;
+    }
+
     public void execute(GeneralPath path, Context ctx){
         double rx = ctx.getValue(wr);
         double ry = ctx.getValue(hr);
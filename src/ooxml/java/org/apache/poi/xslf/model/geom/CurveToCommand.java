@@ -40,6 +40,15 @@ public class CurveToCommand implements PathCommand {
         arg6 = pt3.getY().toString();
     }
 
+    CurveToCommand(String s1, String s2, String s3, String s4, String s5, String s6){
+        arg1 = s1;
+        arg2 = s2;
+        arg3 = s3;
+        arg4 = s4;
+        arg5 = s5;
+        arg6 = s6;
+    }
+
     public void execute(GeneralPath path, Context ctx){
         double x1 = ctx.getValue(arg1);
         double y1 = ctx.getValue(arg2);
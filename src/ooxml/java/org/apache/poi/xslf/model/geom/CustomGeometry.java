@@ -36,6 +36,12 @@ public class CustomGeometry implements Iterable<Path>{
     List<Path> paths = new ArrayList<Path>();
     Path textBounds;
 
+    /**
+     * An empty geometry, to be filled in by {@link PresetGeometries}
+     */
+    CustomGeometry() {
+    }
+
     public CustomGeometry(CTCustomGeometry2D geom) {
         CTGeomGuideList avLst = geom.getAvLst();
         if(avLst != null) for(CTGeomGuide gd : avLst.getGdList()){
@@ -54,20 +60,20 @@ public class CustomGeometry implements Iterable<Path>{
 
         if(geom.isSetRect()) {
             CTGeomRect rect = geom.getRect();
-            textBounds = new Path();
-            textBounds.addCommand(
-                    new MoveToCommand(rect.getL().toString(), rect.getT().toString()));
-            textBounds.addCommand(
-                    new LineToCommand(rect.getR().toString(), rect.getT().toString()));
-            textBounds.addCommand(
-                    new LineToCommand(rect.getR().toString(), rect.getB().toString()));
-            textBounds.addCommand(
-                    new LineToCommand(rect.getL().toString(), rect.getB().toString()));
-            textBounds.addCommand(
-                    new ClosePathCommand());
+            setTextBounds(rect.getL().toString(), rect.getT().toString(),
+                    rect.getR().toString(), rect.getB().toString());
         }
     }
 
+    void setTextBounds(String l, String t, String r, String b){
+        textBounds = new Path();
+        textBounds.addCommand(new MoveToCommand(l, t));
+        textBounds.addCommand(new LineToCommand(r, t));
+        textBounds.addCommand(new LineToCommand(r, b));
+        textBounds.addCommand(new LineToCommand(l, b));
+        textBounds.addCommand(new ClosePathCommand());
+    }
+
 
 
     public Iterator<Path> iterator() {
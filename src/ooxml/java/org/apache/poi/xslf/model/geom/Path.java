@@ -42,9 +42,13 @@ public class Path {
     }
 
     public Path(boolean fill, boolean stroke){
+        this(fill, stroke, -1, -1);
+    }
+
+    Path(boolean fill, boolean stroke, long w, long h){
         commands = new ArrayList<PathCommand>();
-        _w = -1;
-        _h = -1;
+        _w = w;
+        _h = h;
         _fill = fill;
         _stroke = stroke;
     }
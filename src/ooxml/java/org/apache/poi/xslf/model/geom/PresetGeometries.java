@@ -19,49 +19,257 @@
 
 package org.apache.poi.xslf.model.geom;
 
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.xmlbeans.XmlObject;
-import org.openxmlformats.schemas.drawingml.x2006.main.CTCustomGeometry2D;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import java.io.InputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Date: 10/25/11
+ * The preset shape geometries, by name, read from presetShapeDefinitions.xml.
+ * <p>
+ * The definitions are read once with a plain SAX parser, into a compact list of
+ *  the drawing operations of each shape, and each {@link CustomGeometry} is only
+ *  built the first time it's asked for. The instance is shared and may be used
+ *  from several threads at once; the map is read only.
  *
  * @author Yegor Kozlov
  */
-public class PresetGeometries extends LinkedHashMap<String, CustomGeometry> {
-    private static PresetGeometries _inst;
+public class PresetGeometries extends AbstractMap<String, CustomGeometry> {
+    // The operations of a definition, each recorded as its code followed by its arguments
+    private static final String ADJUST = "a";
+    private static final String GUIDE = "g";
+    private static final String PATH = "p";
+    private static final String MOVE_TO = "m";
+    private static final String LINE_TO = "l";
+    private static final String ARC_TO = "r";
+    private static final String QUAD_TO = "q";
+    private static final String CURVE_TO = "c";
+    private static final String CLOSE = "z";
+    private static final String TEXT_BOUNDS = "t";
+
+    private static final POILogger _logger = POILogFactory.getLogger(PresetGeometries.class);
+
+    /**
+     * Created when first used, which the JVM makes sure happens only once
+     */
+    private static final class InstanceHolder {
+        static final PresetGeometries INSTANCE = new PresetGeometries();
+    }
+
+    private final Map<String, String[][]> definitions;
+    private final ConcurrentHashMap<String, CustomGeometry> geometries =
+            new ConcurrentHashMap<String, CustomGeometry>();
 
     private PresetGeometries(){
         try {
             InputStream is =
                     XMLSlideShow.class.getResourceAsStream("presetShapeDefinitions.xml");
-            read(is);
+            try {
+                definitions = Collections.unmodifiableMap(read(is));
+            } finally {
+                is.close();
+            }
         } catch (Exception e){
             throw new RuntimeException(e);
         }
     }
 
-    private void read(InputStream is) throws Exception {
-        XmlObject obj = XmlObject.Factory.parse(is);
-        for (XmlObject def : obj.selectPath("*/*")) {
+    private static Map<String, String[][]> read(InputStream is) throws Exception {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        SAXParser parser = factory.newSAXParser();
+        DefinitionsHandler handler = new DefinitionsHandler();
+        parser.parse(is, handler);
+        return handler.definitions;
+    }
+
+    public static PresetGeometries getInstance(){
+        return InstanceHolder.INSTANCE;
+    }
 
-            String name = def.getDomNode().getLocalName();
-            CTCustomGeometry2D geom = CTCustomGeometry2D.Factory.parse(def.toString());
+    @Override
+    public int size() {
+        return definitions.size();
+    }
 
-            if(containsKey(name)) {
-                System.out.println("Duplicate definoition of " + name) ;
+    @Override
+    public boolean containsKey(Object name) {
+        return definitions.containsKey(name);
+    }
+
+    /**
+     * @return the geometry with the given name, built when first asked for,
+     *  or <code>null</code> if there's no such preset
+     */
+    @Override
+    public CustomGeometry get(Object name) {
+        CustomGeometry geom = geometries.get(name);
+        if (geom == null) {
+            String[][] ops = definitions.get(name);
+            if (ops == null) {
+                return null;
+            }
+            // Should two threads race to build it, both get the same one
+            geom = build(ops);
+            CustomGeometry existing = geometries.putIfAbsent((String)name, geom);
+            if (existing != null) {
+                geom = existing;
             }
-            put(name, new CustomGeometry(geom));
         }
+        return geom;
     }
 
-    public static PresetGeometries getInstance(){
-        if(_inst == null) _inst = new PresetGeometries();
+    @Override
+    public Set<String> keySet() {
+        return definitions.keySet();
+    }
 
-        return _inst;
+    /**
+     * Going through the entries builds all the geometries
+     */
+    @Override
+    public Set<Entry<String, CustomGeometry>> entrySet() {
+        Map<String, CustomGeometry> all = new LinkedHashMap<String, CustomGeometry>();
+        for (String name : definitions.keySet()) {
+            all.put(name, get(name));
+        }
+        return Collections.unmodifiableMap(all).entrySet();
     }
 
+    private static CustomGeometry build(String[][] ops) {
+        CustomGeometry geom = new CustomGeometry();
+        Path path = null;
+        for (String[] op : ops) {
+            String code = op[0];
+            if (code.equals(ADJUST)) {
+                geom.adjusts.add(new AdjustValue(op[1], op[2]));
+            } else if (code.equals(GUIDE)) {
+                geom.guides.add(new Guide(op[1], op[2]));
+            } else if (code.equals(PATH)) {
+                path = new Path(Boolean.parseBoolean(op[1]), Boolean.parseBoolean(op[2]),
+                        Long.parseLong(op[3]), Long.parseLong(op[4]));
+                geom.paths.add(path);
+            } else if (code.equals(MOVE_TO)) {
+                path.addCommand(new MoveToCommand(op[1], op[2]));
+            } else if (code.equals(LINE_TO)) {
+                path.addCommand(new LineToCommand(op[1], op[2]));
+            } else if (code.equals(ARC_TO)) {
+                path.addCommand(new ArcToCommand(op[1], op[2], op[3], op[4]));
+            } else if (code.equals(QUAD_TO)) {
+                path.addCommand(new QuadToCommand(op[1], op[2], op[3], op[4]));
+            } else if (code.equals(CURVE_TO)) {
+                path.addCommand(new CurveToCommand(op[1], op[2], op[3], op[4], op[5], op[6]));
+            } else if (code.equals(CLOSE)) {
+                path.addCommand(new ClosePathCommand());
+            } else if (code.equals(TEXT_BOUNDS)) {
+                geom.setTextBounds(op[1], op[2], op[3], op[4]);
+            }
+        }
+        return geom;
+    }
+
+    /**
+     * Records the operations of each shape definition in the file
+     */
+    private static final class DefinitionsHandler extends DefaultHandler {
+        final Map<String, String[][]> definitions = new LinkedHashMap<String, String[][]>();
+
+        private final List<String[]> ops = new ArrayList<String[]>();
+        private final List<String> points = new ArrayList<String>();
+        private String name;
+        private String list;
+        private String segment;
+        private int depth;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) {
+            depth++;
+            if (depth == 2) {
+                name = localName;
+                ops.clear();
+            } else if (depth == 3) {
+                list = localName;
+                if (localName.equals("rect")) {
+                    ops.add(new String[]{TEXT_BOUNDS, attrs.getValue("l"), attrs.getValue("t"),
+                            attrs.getValue("r"), attrs.getValue("b")});
+                }
+            } else if (depth == 4) {
+                if (localName.equals("gd")) {
+                    if (list.equals("avLst")) {
+                        ops.add(new String[]{ADJUST, attrs.getValue("name"), attrs.getValue("fmla")});
+                    } else if (list.equals("gdLst")) {
+                        ops.add(new String[]{GUIDE, attrs.getValue("name"), attrs.getValue("fmla")});
+                    }
+                } else if (localName.equals("path") && list.equals("pathLst")) {
+                    String fill = attrs.getValue("fill");
+                    String stroke = attrs.getValue("stroke");
+                    String w = attrs.getValue("w");
+                    String h = attrs.getValue("h");
+                    ops.add(new String[]{PATH,
+                            String.valueOf(!"none".equals(fill)),
+                            String.valueOf(!"false".equals(stroke) && !"0".equals(stroke)),
+                            w == null ? "-1" : w,
+                            h == null ? "-1" : h});
+                }
+            } else if (depth == 5 && list.equals("pathLst")) {
+                segment = localName;
+                points.clear();
+                if (localName.equals("arcTo")) {
+                    ops.add(new String[]{ARC_TO, attrs.getValue("wR"), attrs.getValue("hR"),
+                            attrs.getValue("stAng"), attrs.getValue("swAng")});
+                } else if (localName.equals("close")) {
+                    ops.add(new String[]{CLOSE});
+                } else if (!localName.equals("moveTo") && !localName.equals("lnTo")
+                        && !localName.equals("quadBezTo") && !localName.equals("cubicBezTo")) {
+                    throw new IllegalStateException("Unsupported path segment: " + localName);
+                }
+            } else if (depth == 6 && localName.equals("pt") && list.equals("pathLst")) {
+                points.add(attrs.getValue("x"));
+                points.add(attrs.getValue("y"));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (depth == 2) {
+                if (definitions.containsKey(name)) {
+                    _logger.log(POILogger.WARN, "Duplicate definition of " + name);
+                }
+                definitions.put(name, ops.toArray(new String[ops.size()][]));
+            } else if (depth == 5 && list.equals("pathLst")) {
+                String code = null;
+                if (segment.equals("moveTo")) {
+                    code = MOVE_TO;
+                } else if (segment.equals("lnTo")) {
+                    code = LINE_TO;
+                } else if (segment.equals("quadBezTo")) {
+                    code = QUAD_TO;
+                } else if (segment.equals("cubicBezTo")) {
+                    code = CURVE_TO;
+                }
+                if (code != null) {
+                    String[] op = new String[points.size() + 1];
+                    op[0] = code;
+                    for (int i = 0; i < points.size(); i++) {
+                        op[i + 1] = points.get(i);
+                    }
+                    ops.add(op);
+                }
+            }
+            depth--;
+        }
+    }
 }
@@ -38,6 +38,13 @@ public class QuadToCommand implements PathCommand {
         arg4 = pt2.getY().toString();
     }
 
+    QuadToCommand(String s1, String s2, String s3, String s4){
+        arg1 = s1;
+        arg2 = s2;
+        arg3 = s3;
+        arg4 = s4;
+    }
+
     public void execute(GeneralPath path, Context ctx){
         double x1 = ctx.getValue(arg1);
         double y1 = ctx.getValue(arg2);
@@ -30,6 +30,7 @@ import org.apache.poi.xslf.model.geom.Guide;
 import org.apache.poi.xslf.model.geom.IAdjustableShape;
 import org.apache.poi.xslf.model.geom.Outline;
 import org.apache.poi.xslf.model.geom.Path;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTBlip;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTBlipFillProperties;
@@ -332,13 +333,31 @@ class RenderableShape {
     Paint getPaint(Graphics2D graphics, XmlObject spPr, CTSchemeColor phClr) {
 
         Paint paint = null;
-        for (XmlObject obj : spPr.selectPath("*")) {
-            paint = selectPaint(graphics, obj, phClr, _shape.getSheet().getPackagePart());
-            if(paint != null) break;
+        // Go through the child elements with a cursor, rather than an XPath query
+        XmlCursor cur = spPr.newCursor();
+        try {
+            if (cur.toFirstChild()) do {
+                paint = selectPaint(graphics, cur.getObject(), phClr, _shape.getSheet().getPackagePart());
+            } while (paint == null && cur.toNextSibling());
+        } finally {
+            cur.dispose();
         }
         return paint == NO_PAINT ? null : paint;
     }
 
+    /**
+     * @param index the 0 based index of the child element
+     * @return the child element at that index, or <code>null</code> if there are fewer
+     */
+    private static XmlObject getChild(XmlObject xml, int index) {
+        XmlCursor cur = xml.newCursor();
+        try {
+            return cur.toChild(index) ? cur.getObject() : null;
+        } finally {
+            cur.dispose();
+        }
+    }
+
 
     /**
      * fetch shape fill as a java.awt.Paint
@@ -381,11 +400,11 @@ class RenderableShape {
                 XSLFTheme theme = sheet.getTheme();
                 XmlObject fillProps = null;
                 if(idx >= 1 && idx <= 999){
-                    fillProps = theme.getXmlObject().
-                            getThemeElements().getFmtScheme().getFillStyleLst().selectPath("*")[idx - 1];
+                    fillProps = getChild(theme.getXmlObject().
+                            getThemeElements().getFmtScheme().getFillStyleLst(), idx - 1);
                 } else if (idx >= 1001 ){
-                    fillProps = theme.getXmlObject().
-                            getThemeElements().getFmtScheme().getBgFillStyleLst().selectPath("*")[idx - 1001];
+                    fillProps = getChild(theme.getXmlObject().
+                            getThemeElements().getFmtScheme().getBgFillStyleLst(), idx - 1001);
                 }
                 if(fillProps != null) {
                     paint = selectPaint(graphics, fillProps, phClr, sheet.getPackagePart());
@@ -427,9 +446,11 @@ class RenderableShape {
                 CTSchemeColor phClr = lnRef.getSchemeClr();
                 if(idx > 0){
                     XSLFTheme theme = _shape.getSheet().getTheme();
-                    XmlObject lnProps = theme.getXmlObject().
-                            getThemeElements().getFmtScheme().getLnStyleLst().selectPath("*")[idx - 1];
-                    paint = getPaint(graphics, lnProps, phClr);
+                    XmlObject lnProps = getChild(theme.getXmlObject().
+                            getThemeElements().getFmtScheme().getLnStyleLst(), idx - 1);
+                    if (lnProps != null) {
+                        paint = getPaint(graphics, lnProps, phClr);
+                    }
                 }
             }
         }
@@ -24,8 +24,8 @@ import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.*;
 import org.apache.poi.util.*;
 import org.apache.poi.xslf.XSLFSlideShow;
+import org.apache.poi.xslf.model.ParagraphPropertyFetcher;
 import org.apache.xmlbeans.XmlException;
-import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
 import org.openxmlformats.schemas.drawingml.x2006.main.CTTextParagraphProperties;
 import org.openxmlformats.schemas.officeDocument.x2006.relationships.STRelationshipId;
@@ -370,14 +370,7 @@ public class XMLSlideShow  extends POIXMLDocument {
     }
 
     CTTextParagraphProperties getDefaultParagraphStyle(int level) {
-        XmlObject[] o = _presentation.selectPath(
-                "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
-                "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
-                ".//p:defaultTextStyle/a:lvl" +(level+1)+ "pPr");
-        if(o.length == 1){
-            return (CTTextParagraphProperties)o[0];
-        }
-        return null;
+        return ParagraphPropertyFetcher.getLevelProperties(_presentation.getDefaultTextStyle(), level);
     }
 
 }
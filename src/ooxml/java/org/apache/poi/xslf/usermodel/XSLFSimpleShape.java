@@ -26,12 +26,14 @@ import org.apache.poi.xslf.model.geom.CustomGeometry;
 import org.apache.poi.xslf.model.geom.Outline;
 import org.apache.poi.xslf.model.geom.Path;
 import org.apache.poi.xslf.model.geom.PresetGeometries;
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlObject;
 import org.openxmlformats.schemas.drawingml.x2006.main.*;
 import org.openxmlformats.schemas.presentationml.x2006.main.CTPlaceholder;
 import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
 import org.openxmlformats.schemas.presentationml.x2006.main.STPlaceholderType;
 
+import javax.xml.namespace.QName;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
@@ -48,6 +50,10 @@ import java.util.List;
 @Beta
 public abstract class XSLFSimpleShape extends XSLFShape {
     private static CTOuterShadowEffect NO_SHADOW = CTOuterShadowEffect.Factory.newInstance();
+    private static final QName NV_PR =
+            new QName("http://schemas.openxmlformats.org/presentationml/2006/main", "nvPr");
+    private static final QName PH =
+            new QName("http://schemas.openxmlformats.org/presentationml/2006/main", "ph");
 
     private final XmlObject _shape;
     private final XSLFSheet _sheet;
@@ -138,15 +144,36 @@ public abstract class XSLFSimpleShape extends XSLFShape {
 
     protected CTPlaceholder getCTPlaceholder() {
         if (_ph == null) {
-            XmlObject[] obj = _shape.selectPath(
-                    "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' .//*/p:nvPr/p:ph");
-            if (obj.length == 1) {
-                _ph = (CTPlaceholder) obj[0];
-            }
+            _ph = findCTPlaceholder();
         }
         return _ph;
     }
 
+    /**
+     * Finds the p:nvPr/p:ph of the shape by walking its children, rather than
+     *  with an XPath query, as it's needed for every inherited property
+     *
+     * @return the placeholder, or <code>null</code> if this isn't one
+     */
+    CTPlaceholder findCTPlaceholder() {
+        CTPlaceholder ph = null;
+        XmlCursor cur = _shape.newCursor();
+        try {
+            // The nvPr is in the nvSpPr, nvCxnSpPr or nvPicPr, depending on the shape
+            if (cur.toFirstChild()) do {
+                if (cur.toChild(NV_PR)) {
+                    if (cur.toChild(PH)) {
+                        ph = (CTPlaceholder) cur.getObject();
+                    }
+                    break;
+                }
+            } while (cur.toNextSibling());
+        } finally {
+            cur.dispose();
+        }
+        return ph;
+    }
+
     CTTransform2D getXfrm() {
         PropertyFetcher<CTTransform2D> fetcher = new PropertyFetcher<CTTransform2D>() {
             public boolean fetch(XSLFSimpleShape shape) {
@@ -23,6 +23,7 @@ import org.apache.poi.xslf.model.ParagraphPropertyFetcher;
 import org.apache.xmlbeans.XmlObject;
 import org.openxmlformats.schemas.drawingml.x2006.main.*;
 import org.openxmlformats.schemas.presentationml.x2006.main.CTPlaceholder;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTSlideMasterTextStyles;
 import org.openxmlformats.schemas.presentationml.x2006.main.STPlaceholderType;
 
 import java.awt.Color;
@@ -968,39 +969,45 @@ public class XSLFTextParagraph implements Iterable<XSLFTextRun>{
     }
 
     CTTextParagraphProperties getDefaultMasterStyle(){
+        // wind up and find the root master sheet which must be slide master
+        XSLFSheet masterSheet = _shape.getSheet();
+        while (masterSheet.getMasterSheet() != null){
+            masterSheet = masterSheet.getMasterSheet();
+        }
+        CTSlideMasterTextStyles txStyles = masterSheet instanceof XSLFSlideMaster
+                ? ((XSLFSlideMaster)masterSheet).getXmlObject().getTxStyles() : null;
+
         CTPlaceholder ph = _shape.getCTPlaceholder();
         String defaultStyleSelector;
-        if(ph == null) defaultStyleSelector = "otherStyle";   // no placeholder means plain text box
-        else {
+        CTTextListStyle defaultStyle;
+        if(ph == null) {
+            // no placeholder means plain text box
+            defaultStyleSelector = "otherStyle";
+            defaultStyle = txStyles == null ? null : txStyles.getOtherStyle();
+        } else {
             switch(ph.getType().intValue()){
                 case STPlaceholderType.INT_TITLE:
                 case STPlaceholderType.INT_CTR_TITLE:
                     defaultStyleSelector = "titleStyle";
+                    defaultStyle = txStyles == null ? null : txStyles.getTitleStyle();
                     break;
                 case STPlaceholderType.INT_FTR:
                 case STPlaceholderType.INT_SLD_NUM:
                 case STPlaceholderType.INT_DT:
                     defaultStyleSelector = "otherStyle";
+                    defaultStyle = txStyles == null ? null : txStyles.getOtherStyle();
                     break;
                 default:
                     defaultStyleSelector = "bodyStyle";
+                    defaultStyle = txStyles == null ? null : txStyles.getBodyStyle();
                     break;
             }
         }
         int level = getLevel();
 
-        // wind up and find the root master sheet which must be slide master
-        XSLFSheet masterSheet = _shape.getSheet();
-        while (masterSheet.getMasterSheet() != null){
-            masterSheet = masterSheet.getMasterSheet();
-        }
-
-        XmlObject[] o = masterSheet.getXmlObject().selectPath(
-                "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
-                "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
-                ".//p:txStyles/p:" + defaultStyleSelector +"/a:lvl" +(level+1)+ "pPr");
-        if(o.length == 1){
-            return (CTTextParagraphProperties)o[0];
+        CTTextParagraphProperties props = ParagraphPropertyFetcher.getLevelProperties(defaultStyle, level);
+        if(props != null){
+            return props;
         }
         throw new IllegalArgumentException("Failed to fetch default style for " +
                 defaultStyleSelector + " and level=" + level);
@@ -412,11 +412,9 @@ public abstract class XSLFTextShape extends XSLFSimpleShape implements Iterable<
 
 
     public Placeholder getTextType(){
-        CTPlaceholder ph;
-        XmlObject[] obj = getXmlObject().selectPath(
-                "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' .//*/p:nvPr/p:ph");
-        if(obj.length == 1){
-            ph = (CTPlaceholder)obj[0];
+        // Not the cached one, as setPlaceholder() may have changed it
+        CTPlaceholder ph = findCTPlaceholder();
+        if(ph != null){
             int val = ph.getType().intValue();
             return Placeholder.values()[val - 1];
         }
@@ -28,6 +28,7 @@ import javax.xml.parsers.SAXParserFactory;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.util.MappedStringTable;
 import org.apache.poi.xssf.usermodel.XSSFRelation;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
 import org.xml.sax.Attributes;
@@ -74,7 +75,12 @@ import org.xml.sax.helpers.DefaultHandler;
  &lt;/si>
 &lt;/sst>
 * </pre>
- *
+ * <p>For workbooks with very many unique strings, the table can be
+ *  held in memory mapped temporary files rather than on the heap,
+ *  see {@link #ReadOnlySharedStringsTable(OPCPackage, boolean)}. Such
+ *  tables should be {@link #close() closed} when no longer needed.
+ * <p>Once read, the table isn't changed, so it can be shared by several
+ *  threads, see {@link XSSFParallelSheetProcessor}.
  */
 public class ReadOnlySharedStringsTable extends DefaultHandler {
     /**
@@ -95,6 +101,11 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     private List<String> strings;
 
+    /**
+     * Whether the strings are held in a {@link MappedStringTable}
+     */
+    private final boolean mapped;
+
     /**
      * @param pkg
      * @throws IOException
@@ -103,6 +114,19 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(OPCPackage pkg)
             throws IOException, SAXException {
+        this(pkg, false);
+    }
+
+    /**
+     * @param pkg
+     * @param mapped whether to hold the strings in memory mapped temporary
+     *  files rather than on the heap, for very large tables
+     * @throws IOException
+     * @throws SAXException
+     */
+    public ReadOnlySharedStringsTable(OPCPackage pkg, boolean mapped)
+            throws IOException, SAXException {
+        this.mapped = mapped;
         ArrayList<PackagePart> parts =
                 pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
 
@@ -122,6 +146,7 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
      */
     public ReadOnlySharedStringsTable(PackagePart part, PackageRelationship rel_ignored)
             throws IOException, SAXException {
+        this.mapped = false;
         readFrom(part.getInputStream());
     }
 
@@ -182,6 +207,16 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
         return strings;
     }
 
+    /**
+     * Deletes the temporary files of a table read with memory
+     *  mapped storage. Does nothing for tables held on the heap.
+     */
+    public void close() throws IOException {
+        if (strings instanceof MappedStringTable) {
+            ((MappedStringTable)strings).close();
+        }
+    }
+
     //// ContentHandler methods ////
 
     private StringBuffer characters;
@@ -195,7 +230,15 @@ public class ReadOnlySharedStringsTable extends DefaultHandler {
             String uniqueCount = attributes.getValue("uniqueCount");
             if(uniqueCount != null) this.uniqueCount = Integer.parseInt(uniqueCount);
 
-            this.strings = new ArrayList<String>(this.uniqueCount);
+            if (mapped) {
+                try {
+                    this.strings = new MappedStringTable();
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            } else {
+                this.strings = new ArrayList<String>(this.uniqueCount);
+            }
 
             characters = new StringBuffer();
         } else if ("si".equals(name)) {
@@ -0,0 +1,323 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Parses the sheets of an .xlsx file on several threads at once, for
+ *  workbooks with many large sheets.
+ * <p>
+ * The shared strings and styles are read once, and shared by all the
+ *  threads, as neither is changed by the parsing. Each sheet then gets its
+ *  own {@link XSSFSheetXMLHandler}, as those hold the state of the parse,
+ *  and its own {@link SheetContentsHandler}, from the given
+ *  {@link SheetHandlerFactory}.
+ * <p>
+ * The cell events can either be delivered on the parsing threads, see
+ *  {@link #processSheets(SheetHandlerFactory)}, or on the calling thread
+ *  in workbook order, see {@link #processSheetsInOrder(SheetHandlerFactory)}.
+ */
+public class XSSFParallelSheetProcessor {
+    /**
+     * Creates the handler for the events of each sheet
+     */
+    public interface SheetHandlerFactory {
+        /**
+         * @param sheetIndex the 0 based position of the sheet in the workbook
+         * @param sheetName the name of the sheet
+         * @return where the events of the sheet should go
+         */
+        SheetContentsHandler createSheetHandler(int sheetIndex, String sheetName);
+    }
+
+    private final ReadOnlySharedStringsTable strings;
+    private final StylesTable styles;
+    private final List<String> sheetNames = new ArrayList<String>();
+    private final List<PackagePart> sheetParts = new ArrayList<PackagePart>();
+    private final int threads;
+
+    private DataFormatter formatter = new DataFormatter();
+    private boolean formulasNotResults;
+
+    /**
+     * Reads the shared strings, styles and list of sheets of the package
+     *
+     * @param pkg the package to process, which must stay open until all
+     *  the sheets have been processed
+     * @param threads how many sheets to parse at once
+     */
+    public XSSFParallelSheetProcessor(OPCPackage pkg, int threads)
+            throws IOException, SAXException, OpenXML4JException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, but was " + threads);
+        }
+        this.threads = threads;
+        this.strings = new ReadOnlySharedStringsTable(pkg);
+
+        XSSFReader reader = new XSSFReader(pkg);
+        this.styles = reader.getStylesTable();
+        XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (iter.hasNext()) {
+            // Only the parts are wanted here, the sheets are read later
+            iter.next().close();
+            sheetNames.add(iter.getSheetName());
+            sheetParts.add(iter.getSheetPart());
+        }
+    }
+
+    /**
+     * Sets the formatter used for numeric cell values. It's shared by all
+     *  the threads, as {@link DataFormatter} is thread safe.
+     */
+    public void setDataFormatter(DataFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    /**
+     * Should we return the formula itself, and not
+     *  the result it produces? Default is false
+     */
+    public void setFormulasNotResults(boolean formulasNotResults) {
+        this.formulasNotResults = formulasNotResults;
+    }
+
+    public int getSheetCount() {
+        return sheetNames.size();
+    }
+
+    public String getSheetName(int sheetIndex) {
+        return sheetNames.get(sheetIndex);
+    }
+
+    /**
+     * Parses all the sheets, sending the events of each to its own handler
+     *  on the thread that parses it. The handlers are all created up front,
+     *  on the calling thread, in sheet order.
+     * <p>
+     * Each handler only ever sees the events of its own sheet, from one
+     *  thread, but different handlers are called at the same time, so must
+     *  synchronize any state they share.
+     */
+    public void processSheets(SheetHandlerFactory factory) throws IOException, SAXException {
+        List<SheetContentsHandler> handlers = new ArrayList<SheetContentsHandler>();
+        for (int i = 0; i < sheetNames.size(); i++) {
+            handlers.add(factory.createSheetHandler(i, sheetNames.get(i)));
+        }
+
+        ExecutorService executor = createExecutor();
+        try {
+            List<Future<SheetContentsHandler>> results = new ArrayList<Future<SheetContentsHandler>>();
+            for (int i = 0; i < sheetParts.size(); i++) {
+                results.add(executor.submit(new SheetTask(sheetParts.get(i), handlers.get(i))));
+            }
+            for (Future<SheetContentsHandler> result : results) {
+                waitFor(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses all the sheets on several threads, but sends their events on
+     *  the calling thread, one sheet after another in workbook order. Each
+     *  sheet's handler is created just before its events are sent, so the
+     *  factory may hand out the same handler for every sheet.
+     * <p>
+     * The events of the sheets which have been parsed ahead of those still
+     *  being sent are held in memory until their turn.
+     */
+    public void processSheetsInOrder(SheetHandlerFactory factory) throws IOException, SAXException {
+        ExecutorService executor = createExecutor();
+        try {
+            List<Future<SheetContentsHandler>> results = new ArrayList<Future<SheetContentsHandler>>();
+            for (PackagePart sheetPart : sheetParts) {
+                results.add(executor.submit(new SheetTask(sheetPart, new BufferedSheetContents())));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                BufferedSheetContents events = (BufferedSheetContents) waitFor(results.get(i));
+                // Let the buffer go as soon as it's been sent
+                results.set(i, null);
+                events.sendTo(factory.createSheetHandler(i, sheetNames.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(threads, sheetParts.size())));
+    }
+
+    /**
+     * Waits for a sheet to be parsed, passing on anything it threw
+     */
+    private static SheetContentsHandler waitFor(Future<SheetContentsHandler> result)
+            throws IOException, SAXException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while processing sheets");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SAXException) {
+                throw (SAXException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new POIXMLException(cause);
+        }
+    }
+
+    /**
+     * Parses one sheet, with its own parser and sheet handler
+     */
+    private final class SheetTask implements Callable<SheetContentsHandler> {
+        private final PackagePart sheetPart;
+        private final SheetContentsHandler output;
+
+        SheetTask(PackagePart sheetPart, SheetContentsHandler output) {
+            this.sheetPart = sheetPart;
+            this.output = output;
+        }
+
+        public SheetContentsHandler call() throws IOException, SAXException {
+            InputStream stream = sheetPart.getInputStream();
+            try {
+                SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+                SAXParser saxParser = saxFactory.newSAXParser();
+                XMLReader sheetParser = saxParser.getXMLReader();
+                sheetParser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, strings, output, formatter, formulasNotResults));
+                sheetParser.parse(new InputSource(stream));
+            } catch (ParserConfigurationException e) {
+                throw new RuntimeException("SAX parser appears to be broken - " + e.getMessage());
+            } finally {
+                stream.close();
+            }
+            return output;
+        }
+    }
+
+    /**
+     * Holds the events of a sheet until they can be sent on
+     */
+    private static final class BufferedSheetContents implements SheetContentsHandler {
+        private static final int START_ROW = 0;
+        private static final int END_ROW = 1;
+        private static final int CELL = 2;
+        private static final int HEADER = 3;
+        private static final int FOOTER = 4;
+
+        private int[] types = new int[64];
+        private int[] rowNums = new int[64];
+        private final List<String> texts = new ArrayList<String>();
+        private int size;
+
+        public void startRow(int rowNum) {
+            add(START_ROW, rowNum);
+        }
+
+        public void endRow() {
+            add(END_ROW, 0);
+        }
+
+        public void cell(String cellReference, String formattedValue) {
+            add(CELL, 0);
+            texts.add(cellReference);
+            texts.add(formattedValue);
+        }
+
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+            add(isHeader ? HEADER : FOOTER, 0);
+            texts.add(text);
+            texts.add(tagName);
+        }
+
+        private void add(int type, int rowNum) {
+            if (size == types.length) {
+                int[] newTypes = new int[size * 2];
+                int[] newRowNums = new int[size * 2];
+                System.arraycopy(types, 0, newTypes, 0, size);
+                System.arraycopy(rowNums, 0, newRowNums, 0, size);
+                types = newTypes;
+                rowNums = newRowNums;
+            }
+            types[size] = type;
+            rowNums[size] = rowNum;
+            size++;
+        }
+
+        void sendTo(SheetContentsHandler handler) {
+            int text = 0;
+            for (int i = 0; i < size; i++) {
+                switch (types[i]) {
+                    case START_ROW:
+                        handler.startRow(rowNums[i]);
+                        break;
+                    case END_ROW:
+                        handler.endRow();
+                        break;
+                    case CELL:
+                        handler.cell(texts.get(text), texts.get(text + 1));
+                        text += 2;
+                        break;
+                    default:
+                        handler.headerFooter(texts.get(text), types[i] == HEADER, texts.get(text + 1));
+                        text += 2;
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -81,6 +81,8 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
    private StringBuffer value = new StringBuffer();
    private StringBuffer formula = new StringBuffer();
    private StringBuffer headerFooter = new StringBuffer();
+   // Reused for the formatted numbers
+   private final StringBuilder formatted = new StringBuilder();
 
    /**
     * Accepts objects needed while parsing.
@@ -248,7 +250,7 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
                          try {
                             // Try to use the value as a formattable number
                             double d = Double.parseDouble(fv);
-                            thisStr = formatter.formatRawCellContents(d, this.formatIndex, this.formatString);
+                            thisStr = formatNumber(d);
                          } catch(NumberFormatException e) {
                             // Formula is a String result not a Numeric one
                             thisStr = fv;
@@ -281,7 +283,7 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
                case NUMBER:
                    String n = value.toString();
                    if (this.formatString != null)
-                       thisStr = formatter.formatRawCellContents(Double.parseDouble(n), this.formatIndex, this.formatString);
+                       thisStr = formatNumber(Double.parseDouble(n));
                    else
                        thisStr = n;
                    break;
@@ -329,6 +331,18 @@ public class XSSFSheetXMLHandler extends DefaultHandler {
        }
    }
 
+   /**
+    * Formats a numeric value with the current cell's format, in
+    *  the reused buffer. A formatter which overrides
+    *  {@link DataFormatter#formatRawCellContents(double, int, String)}
+    *  is still used through that method.
+    */
+   private String formatNumber(double d) {
+       formatted.setLength(0);
+       formatter.formatRawCellContents(d, this.formatIndex, this.formatString, false, formatted);
+       return formatted.toString();
+   }
+
    /**
     * You need to implement this to handle the results
     *  of the sheet parsing.
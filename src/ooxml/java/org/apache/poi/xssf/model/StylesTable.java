@@ -55,6 +55,17 @@ import org.apache.poi.openxml4j.opc.PackageRelationship;
 
 /**
  * Table of styles shared across all sheets in a workbook.
+ * <p>
+ * The methods which look up and register the individual formats, fonts, fills, borders
+ * and styles are synchronized, so that styles may be created from several threads, e.g.
+ * while filling different sheets of a streaming workbook at the same time.
+ * <p>
+ * Existing formats, fonts, fills, borders and styles are found through hash indexes kept
+ * alongside the lists, so registering them doesn't get slower as the workbook gains styles.
+ * Entries are indexed by their content as it is the first time they're looked for after
+ * being added, so fonts customised straight after {@link XSSFFont#registerTo(StylesTable)}
+ * are found as customised. An entry which is changed again after that may not be re-used
+ * for an identical new one, which then gets registered as a separate entry.
  *
  * @author ugo
  */
@@ -68,6 +79,41 @@ public class StylesTable extends POIXMLDocumentPart {
 
 	private final List<CTDxf> dxfs = new ArrayList<CTDxf>();
 
+	private final Map<String, Integer> numberFormatIds = new HashMap<String, Integer>();
+	private final HashIndex<XSSFFont> fontIndex = new HashIndex<XSSFFont>() {
+		@Override
+		protected int modCountOf(XSSFFont font) {
+			return font.getModCount();
+		}
+	};
+	private final HashIndex<XSSFFont> fontAttributesIndex = new HashIndex<XSSFFont>() {
+		@Override
+		protected Object keyOf(XSSFFont font) {
+			return new FontAttributes(font.getBoldweight(), font.getColor(), font.getFontHeight(),
+					font.getFontName(), font.getItalic(), font.getStrikeout(),
+					font.getTypeOffset(), font.getUnderline());
+		}
+		@Override
+		protected int modCountOf(XSSFFont font) {
+			return font.getModCount();
+		}
+	};
+	private final HashIndex<XSSFCellFill> fillIndex = new HashIndex<XSSFCellFill>() {
+		@Override
+		protected int modCountOf(XSSFCellFill fill) {
+			return fill.getModCount();
+		}
+	};
+	private final HashIndex<XSSFCellBorder> borderIndex = new HashIndex<XSSFCellBorder>() {
+		@Override
+		protected int modCountOf(XSSFCellBorder border) {
+			return border.getModCount();
+		}
+	};
+	/** The position of each xf, xfs are only ever compared by identity */
+	private final Map<CTXf, Integer> xfIndex = new IdentityHashMap<CTXf, Integer>();
+	private int xfsIndexed;
+
 	/**
 	 * The first style id available for use as a custom style
 	 */
@@ -172,19 +218,21 @@ public class StylesTable extends POIXMLDocumentPart {
 	//  Start of style related getters and setters
 	// ===========================================================
 
-	public String getNumberFormatAt(int idx) {
+	public synchronized String getNumberFormatAt(int idx) {
 		return numberFormats.get(idx);
 	}
 
-	public int putNumberFormat(String fmt) {
-		if (numberFormats.containsValue(fmt)) {
-			// Find the key, and return that
-			for(Integer key : numberFormats.keySet() ) {
-				if(numberFormats.get(key).equals(fmt)) {
-					return key;
-				}
+	public synchronized int putNumberFormat(String fmt) {
+		Integer key = numberFormatIds.get(fmt);
+		if (key == null || !fmt.equals(numberFormats.get(key))) {
+			// The formats may have been changed through getNumberFormats()
+			if (numberFormatIds.size() != numberFormats.size() || key != null) {
+				indexNumberFormats();
+				key = numberFormatIds.get(fmt);
 			}
-			throw new IllegalStateException("Found the format, but couldn't figure out where - should never happen!");
+		}
+		if (key != null) {
+			return key;
 		}
 
 		// Find a spare key, and add that
@@ -193,10 +241,21 @@ public class StylesTable extends POIXMLDocumentPart {
 			newKey++;
 		}
 		numberFormats.put(newKey, fmt);
+		numberFormatIds.put(fmt, newKey);
 		return newKey;
 	}
 
-	public XSSFFont getFontAt(int idx) {
+	private void indexNumberFormats() {
+		numberFormatIds.clear();
+		for (Entry<Integer, String> fmt : numberFormats.entrySet()) {
+			// The first id wins, as the formats are searched in order
+			if (!numberFormatIds.containsKey(fmt.getValue())) {
+				numberFormatIds.put(fmt.getValue(), fmt.getKey());
+			}
+		}
+	}
+
+	public synchronized XSSFFont getFontAt(int idx) {
 		return fonts.get(idx);
 	}
 
@@ -210,10 +269,10 @@ public class StylesTable extends POIXMLDocumentPart {
 	 * Note - End Users probably want to call
 	 *  {@link XSSFFont#registerTo(StylesTable)}
 	 */
-	public int putFont(XSSFFont font, boolean forceRegistration) {
+	public synchronized int putFont(XSSFFont font, boolean forceRegistration) {
 		int idx = -1;
 		if(!forceRegistration) {
-			idx = fonts.indexOf(font);
+			idx = fontIndex.indexOf(fonts, font);
 		}
 
 		if (idx != -1) {
@@ -224,11 +283,11 @@ public class StylesTable extends POIXMLDocumentPart {
 		fonts.add(font);
 		return idx;
 	}
-	public int putFont(XSSFFont font) {
+	public synchronized int putFont(XSSFFont font) {
 		return putFont(font, false);
 	}
 
-	public XSSFCellStyle getStyleAt(int idx) {
+	public synchronized XSSFCellStyle getStyleAt(int idx) {
 		int styleXfId = 0;
 
 		// 0 is the empty default
@@ -238,21 +297,31 @@ public class StylesTable extends POIXMLDocumentPart {
 
 		return new XSSFCellStyle(idx, styleXfId, this, theme);
 	}
-	public int putStyle(XSSFCellStyle style) {
+	public synchronized int putStyle(XSSFCellStyle style) {
 		CTXf mainXF = style.getCoreXf();
 
-		if(! xfs.contains(mainXF)) {
+		// Index any xfs added since the last time
+		for (; xfsIndexed < xfs.size(); xfsIndexed++) {
+			CTXf xf = xfs.get(xfsIndexed);
+			if (!xfIndex.containsKey(xf)) {
+				xfIndex.put(xf, xfsIndexed);
+			}
+		}
+
+		Integer idx = xfIndex.get(mainXF);
+		if (idx == null) {
+			idx = xfs.size();
 			xfs.add(mainXF);
 		}
-		return xfs.indexOf(mainXF);
+		return idx;
 	}
 
-	public XSSFCellBorder getBorderAt(int idx) {
+	public synchronized XSSFCellBorder getBorderAt(int idx) {
 		return borders.get(idx);
 	}
 
-	public int putBorder(XSSFCellBorder border) {
-		int idx = borders.indexOf(border);
+	public synchronized int putBorder(XSSFCellBorder border) {
+		int idx = borderIndex.indexOf(borders, border);
 		if (idx != -1) {
 			return idx;
 		}
@@ -261,7 +330,7 @@ public class StylesTable extends POIXMLDocumentPart {
 		return borders.size() - 1;
 	}
 
-	public XSSFCellFill getFillAt(int idx) {
+	public synchronized XSSFCellFill getFillAt(int idx) {
 		return fills.get(idx);
 	}
 
@@ -281,8 +350,8 @@ public class StylesTable extends POIXMLDocumentPart {
 		return numberFormats;
 	}
 
-	public int putFill(XSSFCellFill fill) {
-		int idx = fills.indexOf(fill);
+	public synchronized int putFill(XSSFCellFill fill) {
+		int idx = fillIndex.indexOf(fills, fill);
 		if (idx != -1) {
 			return idx;
 		}
@@ -290,32 +359,49 @@ public class StylesTable extends POIXMLDocumentPart {
 		return fills.size() - 1;
 	}
 
-	public CTXf getCellXfAt(int idx) {
+	public synchronized CTXf getCellXfAt(int idx) {
 		return xfs.get(idx);
 	}
-	public int putCellXf(CTXf cellXf) {
+	public synchronized int putCellXf(CTXf cellXf) {
 		xfs.add(cellXf);
 		return xfs.size();
 	}
-   public void replaceCellXfAt(int idx, CTXf cellXf) {
-      xfs.set(idx, cellXf);
+   public synchronized void replaceCellXfAt(int idx, CTXf cellXf) {
+      CTXf old = xfs.set(idx, cellXf);
+      if (idx < xfsIndexed) {
+         Integer oldIdx = xfIndex.get(old);
+         if (oldIdx != null && oldIdx == idx) {
+            xfIndex.remove(old);
+            // It may still be used further on
+            for (int i = idx + 1; i < xfsIndexed; i++) {
+               if (xfs.get(i) == old) {
+                  xfIndex.put(old, i);
+                  break;
+               }
+            }
+         }
+         Integer newIdx = xfIndex.get(cellXf);
+         if (newIdx == null || newIdx > idx) {
+            xfIndex.put(cellXf, idx);
+         }
+      }
    }
 
-	public CTXf getCellStyleXfAt(int idx) {
+	public synchronized CTXf getCellStyleXfAt(int idx) {
 		return styleXfs.get(idx);
 	}
-	public int putCellStyleXf(CTXf cellStyleXf) {
+	public synchronized int putCellStyleXf(CTXf cellStyleXf) {
 		styleXfs.add(cellStyleXf);
 		return styleXfs.size();
 	}
-	public void replaceCellStyleXfAt(int idx, CTXf cellStyleXf) {
+	public synchronized void replaceCellStyleXfAt(int idx, CTXf cellStyleXf) {
 	   styleXfs.set(idx, cellStyleXf);
 	}
 	
 	/**
 	 * get the size of cell styles
 	 */
-	public int getNumCellStyles(){
+	public synchronized int getNumCellStyles(){
         // Each cell style has a unique xfs entry
         // Several might share the same styleXfs entry
         return xfs.size();
@@ -500,16 +586,16 @@ public class StylesTable extends POIXMLDocumentPart {
 		return xssfFont;
 	}
 
-	public CTDxf getDxfAt(int idx) {
+	public synchronized CTDxf getDxfAt(int idx) {
 		return dxfs.get(idx);
 	}
 
-	public int putDxf(CTDxf dxf) {
+	public synchronized int putDxf(CTDxf dxf) {
 		this.dxfs.add(dxf);
 		return this.dxfs.size();
 	}
 
-	public XSSFCellStyle createCellStyle() {
+	public synchronized XSSFCellStyle createCellStyle() {
 		CTXf xf = CTXf.Factory.newInstance();
 		xf.setNumFmtId(0);
 		xf.setFontId(0);
@@ -524,20 +610,193 @@ public class StylesTable extends POIXMLDocumentPart {
 	/**
 	 * Finds a font that matches the one with the supplied attributes
 	 */
-	public XSSFFont findFont(short boldWeight, short color, short fontHeight, String name, boolean italic, boolean strikeout, short typeOffset, byte underline) {
-		for (XSSFFont font : fonts) {
-			if (	(font.getBoldweight() == boldWeight)
-					&& font.getColor() == color
-					&& font.getFontHeight() == fontHeight
-					&& font.getFontName().equals(name)
-					&& font.getItalic() == italic
-					&& font.getStrikeout() == strikeout
-					&& font.getTypeOffset() == typeOffset
-					&& font.getUnderline() == underline)
-			{
-				return font;
+	public synchronized XSSFFont findFont(short boldWeight, short color, short fontHeight, String name, boolean italic, boolean strikeout, short typeOffset, byte underline) {
+		int idx = fontAttributesIndex.indexOf(fonts, new FontAttributes(
+				boldWeight, color, fontHeight, name, italic, strikeout, typeOffset, underline));
+		return idx == -1 ? null : fonts.get(idx);
+	}
+
+	/**
+	 * Finds the position of an entry in one of the lists by the hash code of
+	 *  its key, rather than by comparing it with each entry in turn.
+	 * <p>
+	 * Entries are hashed when first looked for after being added, and are
+	 *  checked against the key before being returned. Entries can still be
+	 *  changed after they have been hashed, so when nothing is found, any
+	 *  whose modification count has moved on since are hashed again, as they
+	 *  are now, and the search is repeated. Entries changed directly through
+	 *  their XML beans don't count as modified, but are hashed again if they
+	 *  turn up under their old hash code.
+	 */
+	private static abstract class HashIndex<T> {
+		/** The positions of the entries with each hash code, in order */
+		private final Map<Integer, List<Integer>> positions = new HashMap<Integer, List<Integer>>();
+		/** The hash code and modification count of each entry when last hashed */
+		private int[] hashes = new int[16];
+		private int[] modCounts = new int[16];
+		private int hashed;
+
+		/**
+		 * @return what entries are compared by, by default the entry itself
+		 */
+		protected Object keyOf(T entry) {
+			return entry;
+		}
+
+		/**
+		 * @return a count which changes whenever the entry does
+		 */
+		protected abstract int modCountOf(T entry);
+
+		/**
+		 * @return the first position in the list whose entry has the given key, or -1
+		 */
+		int indexOf(List<T> list, Object key) {
+			if (hashed > list.size()) {
+				// Entries have been removed, so the positions are all suspect
+				positions.clear();
+				hashed = 0;
+			}
+			for (; hashed < list.size(); hashed++) {
+				if (hashed == hashes.length) {
+					hashes = grow(hashes);
+					modCounts = grow(modCounts);
+				}
+				hash(list, hashed);
 			}
+
+			int found = find(list, key);
+			if (found == -1 && rehashModified(list)) {
+				found = find(list, key);
+			}
+			return found;
+		}
+
+		private int find(List<T> list, Object key) {
+			List<Integer> candidates = positions.get(key.hashCode());
+			if (candidates == null) {
+				return -1;
+			}
+			int found = -1;
+			List<Integer> changed = null;
+			for (int idx : candidates) {
+				Object current = keyOf(list.get(idx));
+				if (current.equals(key)) {
+					found = idx;
+					break;
+				}
+				if (current.hashCode() != hashes[idx]) {
+					if (changed == null) {
+						changed = new ArrayList<Integer>();
+					}
+					changed.add(idx);
+				}
+			}
+			if (changed != null) {
+				for (int idx : changed) {
+					rehash(list, idx);
+				}
+			}
+			return found;
+		}
+
+		/**
+		 * Hashes again any entries modified since they were last hashed
+		 * @return whether there were any
+		 */
+		private boolean rehashModified(List<T> list) {
+			boolean modified = false;
+			for (int idx = 0; idx < hashed; idx++) {
+				if (modCountOf(list.get(idx)) != modCounts[idx]) {
+					rehash(list, idx);
+					modified = true;
+				}
+			}
+			return modified;
+		}
+
+		private void rehash(List<T> list, int idx) {
+			List<Integer> candidates = positions.get(hashes[idx]);
+			candidates.remove(Integer.valueOf(idx));
+			if (candidates.isEmpty()) {
+				positions.remove(hashes[idx]);
+			}
+			hash(list, idx);
+		}
+
+		private void hash(List<T> list, int idx) {
+			T entry = list.get(idx);
+			modCounts[idx] = modCountOf(entry);
+			int hash = keyOf(entry).hashCode();
+			hashes[idx] = hash;
+
+			List<Integer> candidates = positions.get(hash);
+			if (candidates == null) {
+				candidates = new ArrayList<Integer>(1);
+				positions.put(hash, candidates);
+			}
+			// Keep them in order, so the first match is the first in the list
+			int insertAt = Collections.binarySearch(candidates, idx);
+			if (insertAt < 0) {
+				candidates.add(-insertAt - 1, idx);
+			}
+		}
+
+		private static int[] grow(int[] values) {
+			int[] grown = new int[values.length * 2];
+			System.arraycopy(values, 0, grown, 0, values.length);
+			return grown;
+		}
+	}
+
+	/**
+	 * The attributes of a font which {@link #findFont} matches on
+	 */
+	private static final class FontAttributes {
+		private final short boldWeight;
+		private final short color;
+		private final short fontHeight;
+		private final String name;
+		private final boolean italic;
+		private final boolean strikeout;
+		private final short typeOffset;
+		private final byte underline;
+
+		FontAttributes(short boldWeight, short color, short fontHeight, String name,
+				boolean italic, boolean strikeout, short typeOffset, byte underline) {
+			this.boldWeight = boldWeight;
+			this.color = color;
+			this.fontHeight = fontHeight;
+			this.name = name;
+			this.italic = italic;
+			this.strikeout = strikeout;
+			this.typeOffset = typeOffset;
+			this.underline = underline;
+		}
+
+		public int hashCode() {
+			int hash = boldWeight;
+			hash = 31 * hash + color;
+			hash = 31 * hash + fontHeight;
+			hash = 31 * hash + (name == null ? 0 : name.hashCode());
+			hash = 31 * hash + (italic ? 1 : 0);
+			hash = 31 * hash + (strikeout ? 1 : 0);
+			hash = 31 * hash + typeOffset;
+			return 31 * hash + underline;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof FontAttributes)) return false;
+
+			FontAttributes other = (FontAttributes) o;
+			return boldWeight == other.boldWeight
+					&& color == other.color
+					&& fontHeight == other.fontHeight
+					&& (name == null ? other.name == null : name.equals(other.name))
+					&& italic == other.italic
+					&& strikeout == other.strikeout
+					&& typeOffset == other.typeOffset
+					&& underline == other.underline;
 		}
-		return null;
 	}
 }
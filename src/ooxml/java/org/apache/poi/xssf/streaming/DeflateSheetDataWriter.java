@@ -0,0 +1,86 @@
+/*
+ *  ====================================================================
+ *    Licensed to the Apache Software Foundation (ASF) under one or more
+ *    contributor license agreements.  See the NOTICE file distributed with
+ *    this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0
+ *    (the "License"); you may not use this file except in compliance with
+ *    the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * ====================================================================
+ */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sheet writer that compresses the temp files as fast as possible. The sheet XML
+ * is very repetitive, so even the quickest deflate level shrinks it to a small
+ * fraction of its size, at much less CPU cost than {@link GZIPSheetDataWriter}.
+ */
+public class DeflateSheetDataWriter extends SheetDataWriter {
+
+    public DeflateSheetDataWriter() throws IOException {
+        super();
+    }
+
+    /**
+     * @return temp file to write sheet data
+     */
+    public File createTempFile()throws IOException {
+        File fd = File.createTempFile("poi-sxssf-sheet-xml", ".deflate");
+        return fd;
+    }
+
+    /**
+     * @return a stream deflating at {@link Deflater#BEST_SPEED}
+     */
+    public OutputStream createOutputStream(File fd)throws IOException {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        return new DeflaterOutputStream(new FileOutputStream(fd), deflater, 64 * 1024) {
+            private boolean _closed;
+
+            public void close() throws IOException {
+                if (_closed) {
+                    return;
+                }
+                _closed = true;
+                try {
+                    super.close();
+                } finally {
+                    // not done by DeflaterOutputStream when given its Deflater
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return an InflaterInputStream stream to read the compressed temp file
+     */
+    public InputStream getWorksheetXMLInputStream() throws IOException {
+        File fd = getTempFile();
+        return new InflaterInputStream(new FileInputStream(fd), new Inflater(), 64 * 1024) {
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ *  ====================================================================
+ *    Licensed to the Apache Software Foundation (ASF) under one or more
+ *    contributor license agreements.  See the NOTICE file distributed with
+ *    this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0
+ *    (the "License"); you may not use this file except in compliance with
+ *    the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * ====================================================================
+ */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Writes a zip file from entries which have already been deflated (as raw deflate data,
+ * without the zlib wrapper), so that the expensive compression of the entries can be
+ * done elsewhere, e.g. in parallel. java.util.zip.ZipOutputStream can't do this, as it
+ * insists on compressing the data itself.
+ * <p>
+ * The sizes and CRC of each entry are known up front, so they go in the local headers and
+ * no data descriptors are needed. Zip64 extensions are used where sizes or offsets need them.
+ */
+final class DeflatedZipWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int DEFLATED = 8;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    /** general purpose flag: the name is UTF-8 encoded */
+    private static final int FLAG_UTF8 = 0x0800;
+    /** sizes, offsets and counts from these up only fit in the zip64 records */
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+    /** marks a field whose value is in the zip64 records */
+    private static final int ZIP64_MAGIC = 0xFFFFFFFF;
+    private static final int ZIP64_MAGIC_16 = 0xFFFF;
+
+    private static final class Entry {
+        final byte[] _name;
+        final int _flags;
+        final long _crc;
+        final long _size;
+        final long _compressedSize;
+        final long _offset;
+
+        Entry(byte[] name, int flags, long crc, long size, long compressedSize, long offset) {
+            _name = name;
+            _flags = flags;
+            _crc = crc;
+            _size = size;
+            _compressedSize = compressedSize;
+            _offset = offset;
+        }
+        boolean hasZip64Sizes() {
+            return _size >= MAX_32 || _compressedSize >= MAX_32;
+        }
+    }
+
+    private final OutputStream _out;
+    private final List<Entry> _entries = new ArrayList<Entry>();
+    private final byte[] _buf = new byte[64 * 1024];
+    private final int _dosTime;
+    private long _written;
+
+    DeflatedZipWriter(OutputStream out) {
+        _out = out;
+        _dosTime = toDosTime(Calendar.getInstance());
+    }
+
+    private static int toDosTime(Calendar cal) {
+        int year = cal.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (cal.get(Calendar.MONTH) + 1) << 21 |
+               cal.get(Calendar.DAY_OF_MONTH) << 16 | cal.get(Calendar.HOUR_OF_DAY) << 11 |
+               cal.get(Calendar.MINUTE) << 5 | cal.get(Calendar.SECOND) >> 1;
+    }
+
+    /**
+     * Writes the next entry
+     *
+     * @param name the entry name
+     * @param crc the CRC-32 of the uncompressed data
+     * @param size the size of the uncompressed data
+     * @param compressedSize the number of bytes in <code>deflatedData</code>
+     * @param deflatedData the raw deflated data, which is read to the end but not closed
+     */
+    void writeEntry(String name, long crc, long size, long compressedSize, InputStream deflatedData)
+            throws IOException {
+        byte[] nameBytes = name.getBytes("UTF-8");
+        int flags = nameBytes.length == name.length() ? 0 : FLAG_UTF8;
+        Entry e = new Entry(nameBytes, flags, crc, size, compressedSize, _written);
+        _entries.add(e);
+
+        boolean zip64 = e.hasZip64Sizes();
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+        writeShort(flags);
+        writeShort(DEFLATED);
+        writeInt(_dosTime);
+        writeInt((int) crc);
+        writeInt(zip64 ? ZIP64_MAGIC : (int) compressedSize);
+        writeInt(zip64 ? ZIP64_MAGIC : (int) size);
+        writeShort(nameBytes.length);
+        writeShort(zip64 ? 20 : 0);
+        write(nameBytes, 0, nameBytes.length);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(size);
+            writeLong(compressedSize);
+        }
+
+        long remaining = compressedSize;
+        while (remaining > 0) {
+            int count = deflatedData.read(_buf, 0, (int) Math.min(_buf.length, remaining));
+            if (count < 0) {
+                throw new IOException("Deflated data of " + name + " ended " + remaining + " bytes early");
+            }
+            write(_buf, 0, count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is flushed, but not closed.
+     */
+    void finish() throws IOException {
+        long centralOffset = _written;
+        for (Entry e : _entries) {
+            boolean zip64Sizes = e.hasZip64Sizes();
+            boolean zip64Offset = e._offset >= MAX_32;
+            int extraSize = (zip64Sizes ? 16 : 0) + (zip64Offset ? 8 : 0);
+            writeInt(CENTRAL_HEADER_SIGNATURE);
+            writeShort(extraSize > 0 ? VERSION_ZIP64 : VERSION); // made by
+            writeShort(extraSize > 0 ? VERSION_ZIP64 : VERSION); // needed to extract
+            writeShort(e._flags);
+            writeShort(DEFLATED);
+            writeInt(_dosTime);
+            writeInt((int) e._crc);
+            writeInt(zip64Sizes ? ZIP64_MAGIC : (int) e._compressedSize);
+            writeInt(zip64Sizes ? ZIP64_MAGIC : (int) e._size);
+            writeShort(e._name.length);
+            writeShort(extraSize == 0 ? 0 : extraSize + 4);
+            writeShort(0); // comment length
+            writeShort(0); // disk number
+            writeShort(0); // internal attributes
+            writeInt(0);   // external attributes
+            writeInt(zip64Offset ? ZIP64_MAGIC : (int) e._offset);
+            write(e._name, 0, e._name.length);
+            if (extraSize > 0) {
+                writeShort(ZIP64_EXTRA_ID);
+                writeShort(extraSize);
+                if (zip64Sizes) {
+                    writeLong(e._size);
+                    writeLong(e._compressedSize);
+                }
+                if (zip64Offset) {
+                    writeLong(e._offset);
+                }
+            }
+        }
+        long centralSize = _written - centralOffset;
+        int nEntries = _entries.size();
+
+        boolean zip64 = nEntries >= MAX_16 || centralOffset >= MAX_32 || centralSize >= MAX_32;
+        if (zip64) {
+            long zip64EndOffset = _written;
+            writeInt(ZIP64_END_SIGNATURE);
+            writeLong(44); // size of the rest of this record
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0); // this disk
+            writeInt(0); // disk with the central directory
+            writeLong(nEntries);
+            writeLong(nEntries);
+            writeLong(centralSize);
+            writeLong(centralOffset);
+
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0); // disk with the zip64 end record
+            writeLong(zip64EndOffset);
+            writeInt(1); // total number of disks
+        }
+        writeInt(END_SIGNATURE);
+        writeShort(0); // this disk
+        writeShort(0); // disk with the central directory
+        writeShort(nEntries >= MAX_16 ? ZIP64_MAGIC_16 : nEntries);
+        writeShort(nEntries >= MAX_16 ? ZIP64_MAGIC_16 : nEntries);
+        writeInt(zip64 ? ZIP64_MAGIC : (int) centralSize);
+        writeInt(zip64 ? ZIP64_MAGIC : (int) centralOffset);
+        writeShort(0); // comment length
+        _out.flush();
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        _out.write(b, off, len);
+        _written += len;
+    }
+    private void writeShort(int v) throws IOException {
+        _out.write(v & 0xFF);
+        _out.write((v >>> 8) & 0xFF);
+        _written += 2;
+    }
+    private void writeInt(int v) throws IOException {
+        writeShort(v & 0xFFFF);
+        writeShort(v >>> 16);
+    }
+    private void writeLong(long v) throws IOException {
+        writeInt((int) v);
+        writeInt((int) (v >>> 32));
+    }
+}
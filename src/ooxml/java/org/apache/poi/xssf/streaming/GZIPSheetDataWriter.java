@@ -43,8 +43,8 @@ public class GZIPSheetDataWriter extends SheetDataWriter {
     /**
      * @return a wrapped instance of GZIPOutputStream
      */
-    public Writer createWriter(File fd)throws IOException {
-        return new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(fd)));
+    public OutputStream createOutputStream(File fd)throws IOException {
+        return new GZIPOutputStream(new FileOutputStream(fd));
     }
 
 
@@ -65,6 +65,7 @@ public class SXSSFSheet implements Sheet, Cloneable
         _workbook=workbook;
         _sh=xSheet;
         _writer = workbook.createSheetDataWriter();
+        _writer.setSharedStrings(workbook.getSharedStrings());
         setRandomAccessWindowSize(_workbook.getRandomAccessWindowSize());
 
     }
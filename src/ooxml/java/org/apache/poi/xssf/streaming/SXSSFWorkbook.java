@@ -25,17 +25,35 @@ import org.apache.poi.ss.usermodel.Name;
 import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.PictureData;
 import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.FileOutputStream;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 import java.util.zip.ZipEntry;
@@ -43,9 +61,18 @@ import java.util.zip.ZipEntry;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.MappedStringTable;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
 
 /**
  * Streaming version of XSSFWorkbook implementing the "BigGridDemo" strategy.
+ * <p>
+ * Different sheets may be filled from different threads at the same time, as long as
+ * each sheet (and its rows and cells) is only used by one thread at a time. Sheets
+ * should be created up front, but creating styles, fonts and data formats is safe from
+ * any thread. See also {@link #write(OutputStream, int)}.
+ * </p>
  *
  * @author Alex Geller, Four J's Development Tools
 */
@@ -72,6 +99,21 @@ public class SXSSFWorkbook implements Workbook
      */
     private boolean _compressTmpFiles = false;
 
+    /**
+     * the shared strings table, or <code>null</code> if strings are written inline.
+     * The first <code>_templateStringCount</code> entries are those of the template.
+     */
+    private MappedStringTable _sharedStrings;
+    private int _templateStringCount;
+
+    private static final XmlOptions SST_ENTRY_OPTIONS = new XmlOptions();
+    static {
+        SST_ENTRY_OPTIONS.put( XmlOptions.SAVE_INNER );
+        SST_ENTRY_OPTIONS.put( XmlOptions.SAVE_AGGRESSIVE_NAMESPACES );
+        SST_ENTRY_OPTIONS.put( XmlOptions.SAVE_USE_DEFAULT_NAMESPACE );
+        SST_ENTRY_OPTIONS.setSaveImplicitNamespaces(Collections.singletonMap("", "http://schemas.openxmlformats.org/spreadsheetml/2006/main"));
+    }
+
     /**
      * Construct a new workbook
      */
@@ -165,8 +207,42 @@ public class SXSSFWorkbook implements Workbook
      * @param compressTmpFiles whether to use gzip compression for temporary files
      */
     public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles){
+    	this(workbook, rowAccessWindowSize, compressTmpFiles, false);
+    }
+
+    /**
+     * Constructs an workbook from an existing workbook, optionally writing string cells
+     * to a shared strings table rather than inline.
+     * <p>
+     * Shared strings make the file smaller when the same strings are used many times,
+     * and are what some consumers of xlsx files expect. The table is kept in memory mapped
+     * temporary files rather than on the heap, so it may hold millions of strings. The
+     * strings of the template are kept, but strings added to the template's own table
+     * later on (through the XSSF API) are not written.
+     * </p>
+     *
+     * @param rowAccessWindowSize
+     * @param compressTmpFiles whether to use gzip compression for temporary files
+     * @param useSharedStringsTable whether to write string cells to the shared strings table
+     */
+    public SXSSFWorkbook(XSSFWorkbook workbook, int rowAccessWindowSize, boolean compressTmpFiles, boolean useSharedStringsTable){
     	setRandomAccessWindowSize(rowAccessWindowSize);
     	setCompressTempFiles(compressTmpFiles);
+    	if (useSharedStringsTable)
+    	{
+    		try
+    		{
+    			_sharedStrings = new MappedStringTable();
+    		}
+    		catch (IOException ioe)
+    		{
+    			throw new RuntimeException(ioe);
+    		}
+    		if (workbook != null)
+    		{
+    			copyTemplateStrings(workbook.getSharedStringSource());
+    		}
+    	}
     	if (workbook == null)
     	{
     		_wb=new XSSFWorkbook();
@@ -234,7 +310,12 @@ public class SXSSFWorkbook implements Workbook
         _compressTmpFiles = compress;
     }
 
-    SheetDataWriter createSheetDataWriter() throws IOException {
+    /**
+     * Creates the writer for the temp file of a new sheet. Subclasses can override this
+     * to store the temp files differently, e.g. with a {@link DeflateSheetDataWriter} to
+     * compress them at less CPU cost than {@link #setCompressTempFiles(boolean)}.
+     */
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
         if(_compressTmpFiles) {
             return new GZIPSheetDataWriter();
         } else {
@@ -242,6 +323,133 @@ public class SXSSFWorkbook implements Workbook
         }
     }
 
+    /**
+     * Seeds the shared strings with those of the template, at the same indexes, so the
+     * template's cells still refer to the right strings. Only the plain ones are reused
+     * for new cells, as reusing a rich text one would also apply its formatting.
+     */
+    private void copyTemplateStrings(SharedStringsTable sst)
+    {
+        _templateStringCount = sst.getItems().size();
+        for (int i = 0; i < _templateStringCount; i++)
+        {
+            CTRst st = sst.getEntryAt(i);
+            String text = new XSSFRichTextString(st).getString();
+            // addUnique appends unless the string is a repeat of an earlier one
+            if (st.sizeOfRArray() > 0 || _sharedStrings.addUnique(text) != i)
+            {
+                _sharedStrings.add(text);
+            }
+        }
+    }
+
+    MappedStringTable getSharedStrings()
+    {
+        return _sharedStrings;
+    }
+
+    private boolean isSharedStringsEntry(String entryName)
+    {
+        return _sharedStrings != null && entryName.equals(
+                _wb.getSharedStringSource().getPackagePart().getPartName().getName().substring(1));
+    }
+
+    /**
+     * Writes the shared strings part. The template's strings are copied as they are, the
+     * rest are plain text, escaped in the same way as inline strings.
+     */
+    private void writeSharedStrings(OutputStream out) throws IOException
+    {
+        SharedStringsTable sst = _wb.getSharedStringSource();
+        int count = sst.getCount();
+        for (SXSSFSheet sheet : _sxFromXHash.keySet())
+        {
+            count += sheet._writer._numberOfSharedStringRefs;
+        }
+        int uniqueCount = _sharedStrings.size();
+
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), 64 * 1024);
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        w.write("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" count=\"");
+        w.write(Integer.toString(count));
+        w.write("\" uniqueCount=\"");
+        w.write(Integer.toString(uniqueCount));
+        w.write("\">");
+        for (int i = 0; i < uniqueCount; i++)
+        {
+            w.write("<si>");
+            if (i < _templateStringCount)
+            {
+                w.write(sst.getEntryAt(i).xmlText(SST_ENTRY_OPTIONS));
+            }
+            else
+            {
+                String value = _sharedStrings.get(i);
+                w.write("<t");
+                if (value.length() > 0 && (Character.isWhitespace(value.charAt(0))
+                        || Character.isWhitespace(value.charAt(value.length() - 1))))
+                {
+                    w.write(" xml:space=\"preserve\"");
+                }
+                w.write(">");
+                writeQuotedString(w, value);
+                w.write("</t>");
+            }
+            w.write("</si>");
+        }
+        w.write("</sst>");
+        // the caller closes the underlying stream
+        w.flush();
+    }
+
+    /**
+     * Escapes text in the same way as {@link SheetDataWriter#outputQuotedString(String)}
+     */
+    private static void writeQuotedString(Writer w, String s) throws IOException
+    {
+        int length = s.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = s.charAt(i);
+            switch (c)
+            {
+                case '<':
+                    w.write("&lt;");
+                    break;
+                case '>':
+                    w.write("&gt;");
+                    break;
+                case '&':
+                    w.write("&amp;");
+                    break;
+                case '"':
+                    w.write("&quot;");
+                    break;
+                case '\n':
+                case '\r':
+                    w.write("&#xa;");
+                    break;
+                case '\t':
+                    w.write("&#x9;");
+                    break;
+                case 0xa0:
+                    w.write("&#xa0;");
+                    break;
+                default:
+                    if (c < ' ' || Character.isLowSurrogate(c) || Character.isHighSurrogate(c) ||
+                            ('\uFFFE' <= c && c <= '\uFFFF'))
+                    {
+                        w.write('?');
+                    }
+                    else
+                    {
+                        w.write(c);
+                    }
+                    break;
+            }
+        }
+    }
+
     XSSFSheet getXSSFSheet(SXSSFSheet sheet)
     {
         XSSFSheet result=_sxFromXHash.get(sheet);
@@ -289,7 +497,11 @@ public class SXSSFWorkbook implements Workbook
                     zos.putNextEntry(new ZipEntry(ze.getName()));
                     InputStream is = zip.getInputStream(ze);
                     XSSFSheet xSheet=getSheetFromZipEntryName(ze.getName());
-                    if(xSheet!=null)
+                    if(isSharedStringsEntry(ze.getName()))
+                    {
+                        writeSharedStrings(zos);
+                    }
+                    else if(xSheet!=null)
                     {
                         SXSSFSheet sxSheet=getSXSSFSheet(xSheet);
                         InputStream xis = sxSheet.getWorksheetXMLInputStream();
@@ -319,6 +531,249 @@ public class SXSSFWorkbook implements Workbook
             zip.close();
         }
     }
+    /**
+     * Like {@link #injectData(File, OutputStream)}, but the zip entries are deflated by
+     * the supplied executor, and then written out in order.
+     */
+    private void injectDataInParallel(File zipfile, OutputStream out, ExecutorService executor) throws IOException
+    {
+        final ZipFile zip = new ZipFile(zipfile);
+        List<Future<DeflatedEntry>> futures = new ArrayList<Future<DeflatedEntry>>();
+        int next = 0;
+        try
+        {
+            @SuppressWarnings("unchecked")
+            Enumeration<ZipEntry> en = (Enumeration<ZipEntry>) zip.entries();
+            while (en.hasMoreElements())
+            {
+                final ZipEntry ze = en.nextElement();
+                XSSFSheet xSheet=getSheetFromZipEntryName(ze.getName());
+                final SXSSFSheet sxSheet = xSheet == null ? null : getSXSSFSheet(xSheet);
+                final boolean sharedStrings = isSharedStringsEntry(ze.getName());
+                futures.add(executor.submit(new Callable<DeflatedEntry>() {
+                    public DeflatedEntry call() throws IOException {
+                        return deflateEntry(zip, ze, sxSheet, sharedStrings);
+                    }
+                }));
+            }
+
+            DeflatedZipWriter zw = new DeflatedZipWriter(out);
+            while (next < futures.size())
+            {
+                DeflatedEntry de = getResult(futures.get(next++));
+                try
+                {
+                    InputStream is = de.openDeflatedData();
+                    try
+                    {
+                        zw.writeEntry(de._name, de._crc, de._size, de._compressedSize, is);
+                    }
+                    finally
+                    {
+                        is.close();
+                    }
+                }
+                finally
+                {
+                    de.dispose();
+                }
+            }
+            zw.finish();
+        }
+        finally
+        {
+            // on failure, skip the entries not yet started, and wait for the running
+            // ones (they read from the zip) to drop them
+            for (int i = next; i < futures.size(); i++)
+            {
+                futures.get(i).cancel(false);
+            }
+            for (int i = next; i < futures.size(); i++)
+            {
+                if (futures.get(i).isCancelled())
+                {
+                    continue;
+                }
+                try
+                {
+                    futures.get(i).get().dispose();
+                }
+                catch (Exception e)
+                {
+                    // already failing with an earlier exception
+                }
+            }
+            zip.close();
+        }
+    }
+
+    private static DeflatedEntry getResult(Future<DeflatedEntry> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted whilst writing the workbook", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Sheets and shared strings can be very large, so are deflated to a temp file.
+     * Everything else is kept in memory.
+     */
+    private DeflatedEntry deflateEntry(ZipFile zip, ZipEntry ze, SXSSFSheet sxSheet, boolean sharedStrings) throws IOException
+    {
+        DeflatedEntry de = new DeflatedEntry(ze.getName());
+        OutputStream sink;
+        if (sxSheet != null || sharedStrings)
+        {
+            de._file = File.createTempFile("poi-sxssf-sheet-part", ".deflate");
+            sink = new FileOutputStream(de._file);
+        }
+        else
+        {
+            de._bytes = new ByteArrayOutputStream();
+            sink = de._bytes;
+        }
+        CountingOutputStream compressed = new CountingOutputStream(new BufferedOutputStream(sink, 64 * 1024));
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true /* raw, as in zip files */);
+        boolean success = false;
+        try
+        {
+            CountingOutputStream uncompressed = new CountingOutputStream(
+                    new DeflaterOutputStream(compressed, deflater, 64 * 1024));
+            InputStream is = zip.getInputStream(ze);
+            try
+            {
+                if (sharedStrings)
+                {
+                    writeSharedStrings(uncompressed);
+                }
+                else if (sxSheet != null)
+                {
+                    InputStream xis = sxSheet.getWorksheetXMLInputStream();
+                    try
+                    {
+                        copyStreamAndInjectWorksheet(is,uncompressed,xis);
+                    }
+                    finally
+                    {
+                        xis.close();
+                    }
+                }
+                else
+                {
+                    copyStream(is, uncompressed);
+                }
+            }
+            finally
+            {
+                is.close();
+            }
+            uncompressed.close();
+            de._crc = uncompressed._crc.getValue();
+            de._size = uncompressed._count;
+            de._compressedSize = compressed._count;
+            success = true;
+        }
+        finally
+        {
+            deflater.end();
+            if (!success)
+            {
+                try
+                {
+                    compressed.close();
+                }
+                catch (IOException e)
+                {
+                    // already failing with an earlier exception
+                }
+                de.dispose();
+            }
+        }
+        return de;
+    }
+
+    /**
+     * A zip entry which has been deflated, ready to be written
+     */
+    private static final class DeflatedEntry
+    {
+        final String _name;
+        long _crc;
+        long _size;
+        long _compressedSize;
+        /** where sheet data is kept */
+        File _file;
+        /** where everything else is kept */
+        ByteArrayOutputStream _bytes;
+
+        DeflatedEntry(String name)
+        {
+            _name = name;
+        }
+        InputStream openDeflatedData() throws IOException
+        {
+            if (_file != null)
+            {
+                return new BufferedInputStream(new FileInputStream(_file), 64 * 1024);
+            }
+            return new ByteArrayInputStream(_bytes.toByteArray());
+        }
+        void dispose()
+        {
+            if (_file != null)
+            {
+                _file.delete();
+            }
+            _bytes = null;
+        }
+    }
+
+    /**
+     * Counts the bytes passing through, and their CRC-32
+     */
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        final CRC32 _crc = new CRC32();
+        long _count;
+
+        CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            _crc.update(b);
+            _count++;
+        }
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            _crc.update(b, off, len);
+            _count += len;
+        }
+    }
+
     private static void copyStream(InputStream in, OutputStream out) throws IOException {
         byte[] chunk = new byte[1024];
         int count;
@@ -552,7 +1007,7 @@ public class SXSSFWorkbook implements Workbook
      *
      * @return Sheet representing the new sheet.
      */
-    public Sheet createSheet()
+    public synchronized Sheet createSheet()
     {
         return createAndRegisterSXSSFSheet(_wb.createSheet());
     }
@@ -579,7 +1034,7 @@ public class SXSSFWorkbook implements Workbook
      * @return Sheet representing the new sheet.
      * @throws IllegalArgumentException if the name is greater than 31 chars or contains <code>/\?*[]</code>
      */
-    public Sheet createSheet(String sheetname)
+    public synchronized Sheet createSheet(String sheetname)
     {
         return createAndRegisterSXSSFSheet(_wb.createSheet(sheetname));
     }
@@ -753,6 +1208,7 @@ public class SXSSFWorkbook implements Workbook
      */
     public void write(OutputStream stream) throws IOException
     {
+        checkSheetDataAvailable();
     	for (SXSSFSheet sheet : _xFromSxHash.values())
     	{
     		sheet.flushRows();
@@ -781,6 +1237,76 @@ public class SXSSFWorkbook implements Workbook
         }
     }
     
+    /**
+     * Write out this workbook to an Outputstream, using several threads to finish off and
+     * compress the sheets. The sheets are compressed to temp files in parallel, and then
+     * copied into the output one after the other, so with enough threads the time taken
+     * is about that of the largest sheet, rather than that of all the sheets together.
+     *
+     * @param stream - the java OutputStream you wish to write to
+     * @param nThreads - the number of threads to use. 1 is the same as {@link #write(OutputStream)}
+     * @exception IOException if anything can't be written.
+     */
+    public void write(OutputStream stream, int nThreads) throws IOException
+    {
+        if (nThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive, but was " + nThreads);
+        }
+        if (nThreads == 1) {
+            write(stream);
+            return;
+        }
+        checkSheetDataAvailable();
+        if (_sharedStrings != null)
+        {
+            // all the strings must be in the table before it's written out
+            for (SXSSFSheet sheet : _xFromSxHash.values())
+            {
+                sheet.flushRows();
+            }
+        }
+        //Save the template
+        File tmplFile = File.createTempFile("poi-sxssf-template", ".xlsx");
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try
+        {
+            FileOutputStream os = new FileOutputStream(tmplFile);
+            try
+            {
+                _wb.write(os);
+            }
+            finally
+            {
+                os.close();
+            }
+
+            // the remaining rows of each sheet are flushed by the threads compressing them
+            BufferedOutputStream bos = new BufferedOutputStream(stream, 64 * 1024);
+            injectDataInParallel(tmplFile, bos, executor);
+            bos.flush();
+        }
+        finally
+        {
+            executor.shutdown();
+            tmplFile.delete();
+        }
+    }
+
+    /**
+     * The sheet data is moved into the output as the workbook is written, so it
+     * can only be written once, and not after {@link #dispose()}
+     */
+    private void checkSheetDataAvailable() throws IOException
+    {
+        for (SXSSFSheet sheet : _xFromSxHash.values())
+        {
+            if (sheet.getSheetDataWriter().isClosed())
+            {
+                throw new IOException("The workbook has already been written or disposed");
+            }
+        }
+    }
+
     /**
      * Dispose of temporary files backing this workbook on disk.
      * Calling this method will render the workbook unusable.
@@ -793,6 +1319,17 @@ public class SXSSFWorkbook implements Workbook
         {
             success = sheet.dispose() && success;
         }
+        if (_sharedStrings != null)
+        {
+            try
+            {
+                _sharedStrings.close();
+            }
+            catch (IOException ioe)
+            {
+                success = false;
+            }
+        }
         return success;
     }
 
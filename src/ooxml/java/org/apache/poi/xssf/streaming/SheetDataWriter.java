@@ -22,11 +22,8 @@ package org.apache.poi.xssf.streaming;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FormulaError;
-import org.apache.poi.ss.util.CellReference;
-import org.apache.xmlbeans.XmlCursor;
-import org.openxmlformats.schemas.spreadsheetml.x2006.main.STXstring;
+import org.apache.poi.util.MappedStringTable;
 
-import javax.xml.namespace.QName;
 import java.io.*;
 import java.util.Iterator;
 
@@ -35,10 +32,23 @@ import java.util.Iterator;
  * Unlike the original code which wrote the entire document,
  * this class only writes the "sheetData" document fragment
  * so that it was renamed to "SheetDataWriter"
+ * <p>
+ * The XML is encoded as UTF-8 straight into a reusable byte buffer, and cell
+ * references and numbers are formatted into it digit by digit, so writing a
+ * cell creates (almost) no garbage. How the temp file is stored is up to
+ * subclasses, see {@link #createOutputStream(File)} and
+ * {@link #getWorksheetXMLInputStream()}.
  */
 public class SheetDataWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** the longest run of bytes written by any single append, e.g. an escaped char or a number */
+    private static final int MAX_ITEM_SIZE = 32;
+
     private final File _fd;
-    private final Writer _out;
+    private final OutputStream _out;
+    private final byte[] _buf = new byte[BUFFER_SIZE];
+    private int _pos;
+    private boolean _closed;
     private int _rownum;
     private boolean _rowContainedNullCells = false;
     int _numberOfFlushedRows;
@@ -46,9 +56,28 @@ public class SheetDataWriter {
     int _numberOfCellsOfLastFlushedRow; // meaningful only of _numberOfFlushedRows>0
     int _numberLastFlushedRow = -1; // meaningful only of _numberOfFlushedRows>0
 
+    /**
+     * The workbook's shared strings, or <code>null</code> if strings are written inline
+     */
+    private MappedStringTable _sharedStrings;
+    int _numberOfSharedStringRefs;
+
     public SheetDataWriter() throws IOException {
         _fd = createTempFile();
-        _out = createWriter(_fd);
+        _out = overridesCreateWriter() ? new WriterOutputStream(createWriter(_fd)) : createOutputStream(_fd);
+    }
+
+    /**
+     * Subclasses written before {@link #createOutputStream(File)} was added override
+     * {@link #createWriter(File)}, which is still honoured for them
+     */
+    private boolean overridesCreateWriter() {
+        try {
+            return getClass().getMethod("createWriter", File.class).getDeclaringClass() != SheetDataWriter.class
+                    && getClass().getMethod("createOutputStream", File.class).getDeclaringClass() == SheetDataWriter.class;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
@@ -64,11 +93,29 @@ public class SheetDataWriter {
         return fd;
     }
 
+    /**
+     * Create the stream that the UTF-8 encoded sheet data is written to. Subclasses
+     * can override it to compress (or otherwise encode) the temp file, in which case
+     * {@link #getWorksheetXMLInputStream()} must be overridden to match.
+     * <p>
+     * The sheet data is buffered before it gets here, so there is no need to
+     * wrap the returned stream in a <code>BufferedOutputStream</code>.
+     *
+     * @param  fd the file to write to
+     */
+    public OutputStream createOutputStream(File fd) throws IOException {
+        return new FileOutputStream(fd);
+    }
+
     /**
      * Create a writer for the sheet data.
      * 
      * @param  fd the file to write to
+     * @deprecated override {@link #createOutputStream(File)} instead. A subclass that
+     *  overrides only this method still has its writer used, and is given the sheet
+     *  data as ASCII, with other characters written as numeric character references.
      */
+    @Deprecated
     public Writer createWriter(File fd)throws IOException {
         return new BufferedWriter(new FileWriter(fd));
     }
@@ -78,8 +125,28 @@ public class SheetDataWriter {
      * This method <em>must</em> be invoked before calling {@link #getWorksheetXMLInputStream()}
      */
     public void close() throws IOException{
+        if (_closed) {
+            throw new IOException("Stream closed");
+        }
+        flushBuffer();
         _out.flush();
         _out.close();
+        _closed = true;
+    }
+
+    /**
+     * @return whether the sheet data has been closed, by {@link #close()} or {@link #dispose()},
+     *  so nothing more can be written to it
+     */
+    boolean isClosed() {
+        return _closed;
+    }
+
+    /**
+     * Write string cells as references to the supplied table, rather than inline
+     */
+    void setSharedStrings(MappedStringTable sharedStrings) {
+        _sharedStrings = sharedStrings;
     }
 
     File getTempFile(){
@@ -136,25 +203,33 @@ public class SheetDataWriter {
     }
 
     void beginRow(int rownum, SXSSFRow row) throws IOException {
-        _out.write("<row r=\"" + (rownum + 1) + "\"");
-        if (row.hasCustomHeight())
-            _out.write(" customHeight=\"true\"  ht=\"" + row.getHeightInPoints() + "\"");
+        writeAscii("<row r=\"");
+        writeInt(rownum + 1);
+        writeAscii("\"");
+        if (row.hasCustomHeight()) {
+            writeAscii(" customHeight=\"true\"  ht=\"");
+            writeAscii(String.valueOf(row.getHeightInPoints()));
+            writeAscii("\"");
+        }
         if (row.getZeroHeight())
-            _out.write(" hidden=\"true\"");
+            writeAscii(" hidden=\"true\"");
         if (row.isFormatted()) {
-            _out.write(" s=\"" + row._style + "\"");
-            _out.write(" customFormat=\"1\"");
+            writeAscii(" s=\"");
+            writeInt(row._style);
+            writeAscii("\" customFormat=\"1\"");
         }
         if (row.getOutlineLevel() != 0) {
-            _out.write(" outlineLevel=\"" + row.getOutlineLevel() + "\"");
+            writeAscii(" outlineLevel=\"");
+            writeInt(row.getOutlineLevel());
+            writeAscii("\"");
         }
-        _out.write(">\n");
+        writeAscii(">\n");
         this._rownum = rownum;
         _rowContainedNullCells = false;
     }
 
     void endRow() throws IOException {
-        _out.write("</row>\n");
+        writeAscii("</row>\n");
     }
 
     public void writeCell(int columnIndex, Cell cell) throws IOException {
@@ -162,64 +237,78 @@ public class SheetDataWriter {
             _rowContainedNullCells = true;
             return;
         }
-        String ref = new CellReference(_rownum, columnIndex).formatAsString();
-        _out.write("<c r=\"" + ref + "\"");
+        writeAscii("<c r=\"");
+        writeCellReference(_rownum, columnIndex);
+        writeAscii("\"");
         CellStyle cellStyle = cell.getCellStyle();
-        if (cellStyle.getIndex() != 0) _out.write(" s=\"" + cellStyle.getIndex() + "\"");
+        if (cellStyle.getIndex() != 0) {
+            writeAscii(" s=\"");
+            writeInt(cellStyle.getIndex());
+            writeAscii("\"");
+        }
         int cellType = cell.getCellType();
         switch (cellType) {
             case Cell.CELL_TYPE_BLANK: {
-                _out.write(">");
+                writeAscii(">");
                 break;
             }
             case Cell.CELL_TYPE_FORMULA: {
-                _out.write(">");
-                _out.write("<f>");
+                writeAscii("><f>");
                 outputQuotedString(cell.getCellFormula());
-                _out.write("</f>");
+                writeAscii("</f>");
                 switch (cell.getCachedFormulaResultType()) {
                     case Cell.CELL_TYPE_NUMERIC:
                         double nval = cell.getNumericCellValue();
                         if (!Double.isNaN(nval)) {
-                            _out.write("<v>" + nval + "</v>");
+                            writeAscii("<v>");
+                            writeDouble(nval);
+                            writeAscii("</v>");
                         }
                         break;
                 }
                 break;
             }
             case Cell.CELL_TYPE_STRING: {
-                _out.write(" t=\"inlineStr\">");
-                _out.write("<is><t");
-                if(hasLeadingTrailingSpaces(cell.getStringCellValue())) {
-                    _out.write(" xml:space=\"preserve\"");
+                if (_sharedStrings != null) {
+                    writeAscii(" t=\"s\"><v>");
+                    writeInt(_sharedStrings.addUnique(cell.getStringCellValue()));
+                    writeAscii("</v>");
+                    _numberOfSharedStringRefs++;
+                    break;
+                }
+                writeAscii(" t=\"inlineStr\"><is><t");
+                String value = cell.getStringCellValue();
+                if(hasLeadingTrailingSpaces(value)) {
+                    writeAscii(" xml:space=\"preserve\"");
                 }
-                _out.write(">");
-                outputQuotedString(cell.getStringCellValue());
-                _out.write("</t></is>");
+                writeAscii(">");
+                outputQuotedString(value);
+                writeAscii("</t></is>");
                 break;
             }
             case Cell.CELL_TYPE_NUMERIC: {
-                _out.write(" t=\"n\">");
-                _out.write("<v>" + cell.getNumericCellValue() + "</v>");
+                writeAscii(" t=\"n\"><v>");
+                writeDouble(cell.getNumericCellValue());
+                writeAscii("</v>");
                 break;
             }
             case Cell.CELL_TYPE_BOOLEAN: {
-                _out.write(" t=\"b\">");
-                _out.write("<v>" + (cell.getBooleanCellValue() ? "1" : "0") + "</v>");
+                writeAscii(cell.getBooleanCellValue() ? " t=\"b\"><v>1</v>" : " t=\"b\"><v>0</v>");
                 break;
             }
             case Cell.CELL_TYPE_ERROR: {
                 FormulaError error = FormulaError.forInt(cell.getErrorCellValue());
 
-                _out.write(" t=\"e\">");
-                _out.write("<v>" + error.getString() + "</v>");
+                writeAscii(" t=\"e\"><v>");
+                writeAscii(error.getString());
+                writeAscii("</v>");
                 break;
             }
             default: {
                 throw new RuntimeException("Huh?");
             }
         }
-        _out.write("</c>");
+        writeAscii("</c>");
     }
 
 
@@ -236,96 +325,266 @@ public class SheetDataWriter {
         return false;
     }
 
+    /**
+     * Writes the string as XML text, escaping the markup characters and line breaks.
+     * Characters outside of ASCII are written as UTF-8.
+     */
     //Taken from jdk1.3/src/javax/swing/text/html/HTMLWriter.java
     protected void outputQuotedString(String s) throws IOException {
         if (s == null || s.length() == 0) {
             return;
         }
 
-        char[] chars = s.toCharArray();
-        int last = 0;
         int length = s.length();
         for (int counter = 0; counter < length; counter++) {
-            char c = chars[counter];
+            if (_pos + MAX_ITEM_SIZE > _buf.length) {
+                flushBuffer();
+            }
+            char c = s.charAt(counter);
             switch (c) {
                 case '<':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    last = counter + 1;
-                    _out.write("&lt;");
+                    appendAscii("&lt;");
                     break;
                 case '>':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    last = counter + 1;
-                    _out.write("&gt;");
+                    appendAscii("&gt;");
                     break;
                 case '&':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    last = counter + 1;
-                    _out.write("&amp;");
+                    appendAscii("&amp;");
                     break;
                 case '"':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    last = counter + 1;
-                    _out.write("&quot;");
+                    appendAscii("&quot;");
                     break;
                 // Special characters
                 case '\n':
                 case '\r':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    _out.write("&#xa;");
-                    last = counter + 1;
+                    appendAscii("&#xa;");
                     break;
                 case '\t':
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    _out.write("&#x9;");
-                    last = counter + 1;
+                    appendAscii("&#x9;");
                     break;
                 case 0xa0:
-                    if (counter > last) {
-                        _out.write(chars, last, counter - last);
-                    }
-                    _out.write("&#xa0;");
-                    last = counter + 1;
+                    appendAscii("&#xa0;");
                     break;
                 default:
-                    // YK: XmlBeans silently replaces all ISO control characters ( < 32) with question marks.
-                    // the same rule applies to unicode surrogates and "not a character" symbols.
-                    if( c < ' ' || Character.isLowSurrogate(c) || Character.isHighSurrogate(c) ||
+                    if (c < 0x80) {
+                        // YK: XmlBeans silently replaces all ISO control characters ( < 32) with question marks.
+                        _buf[_pos++] = (byte) (c < ' ' ? '?' : c);
+                    } else if (c < 0x800) {
+                        _buf[_pos++] = (byte) (0xC0 | (c >> 6));
+                        _buf[_pos++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isLowSurrogate(c) || Character.isHighSurrogate(c) ||
                             ('\uFFFE' <= c && c <= '\uFFFF')) {
-                        if (counter > last) {
-                            _out.write(chars, last, counter - last);
-                        }
-                        _out.write('?');
-                        last = counter + 1;
-                    }
-                    else if (c > 127) {
-                        if (counter > last) {
-                            _out.write(chars, last, counter - last);
-                        }
-                        last = counter + 1;
-                        // If the character is outside of ascii, write the
-                        // numeric value.
-                        _out.write("&#");
-                        _out.write(String.valueOf((int) c));
-                        _out.write(";");
+                        // the same rule applies to unicode surrogates and "not a character" symbols.
+                        _buf[_pos++] = '?';
+                    } else {
+                        _buf[_pos++] = (byte) (0xE0 | (c >> 12));
+                        _buf[_pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        _buf[_pos++] = (byte) (0x80 | (c & 0x3F));
                     }
                     break;
             }
         }
-        if (last < length) {
-            _out.write(chars, last, length - last);
+    }
+
+    /**
+     * Writes a string which is known to only contain ASCII characters that need no escaping
+     */
+    private void writeAscii(String s) throws IOException {
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            if (_pos == _buf.length) {
+                flushBuffer();
+            }
+            int end = Math.min(length, i + _buf.length - _pos);
+            while (i < end) {
+                _buf[_pos++] = (byte) s.charAt(i++);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #writeAscii(String)} for short strings, where the caller has made sure
+     * there is room in the buffer
+     */
+    private void appendAscii(String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            _buf[_pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeLong(value);
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (_pos + MAX_ITEM_SIZE > _buf.length) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                appendAscii(Long.toString(value));
+                return;
+            }
+            _buf[_pos++] = '-';
+            value = -value;
+        }
+        appendDigits(value);
+    }
+
+    /**
+     * Writes the digits of a non-negative number
+     */
+    private void appendDigits(long value) {
+        int nDigits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            nDigits++;
+        }
+        int end = _pos + nDigits;
+        for (int i = end - 1; i >= _pos; i--) {
+            _buf[i] = (byte) ('0' + (int) (value % 10));
+            value /= 10;
+        }
+        _pos = end;
+    }
+
+    /**
+     * Writes an A1 style cell reference, e.g. "AB12" for row 11 and column 27
+     */
+    private void writeCellReference(int rowIndex, int columnIndex) throws IOException {
+        if (_pos + MAX_ITEM_SIZE > _buf.length) {
+            flushBuffer();
+        }
+        // bijective base-26 column letters, as in CellReference.convertNumToColString
+        int nLetters = 0;
+        for (int c = columnIndex + 1; c > 0; c = (c - 1) / 26) {
+            nLetters++;
+        }
+        int end = _pos + nLetters;
+        for (int i = end - 1, c = columnIndex + 1; i >= _pos; i--, c = (c - 1) / 26) {
+            _buf[i] = (byte) ('A' + (c - 1) % 26);
+        }
+        _pos = end;
+        appendDigits(rowIndex + 1);
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+    };
+    /**
+     * Decimals with fewer significant digits than this are the only ones of their length
+     * which read back as their double, so are what {@link Double#toString(double)} gives
+     */
+    private static final double MAX_UNIQUE_DIGITS = 1e15;
+
+    /**
+     * Writes a number exactly as {@link Double#toString(double)} does. Numbers with a few
+     * decimal places (by far the most common case) are written without creating any Strings,
+     * anything else, including numbers that toString() writes in E notation, falls back to it.
+     */
+    private void writeDouble(double value) throws IOException {
+        if (_pos + MAX_ITEM_SIZE > _buf.length) {
+            flushBuffer();
+        }
+        double abs = Math.abs(value);
+        if (abs >= 1e-3 && abs < 1e7) {
+            for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+                double pow = POWERS_OF_TEN[scale];
+                double scaled = Math.rint(abs * pow);
+                // The decimal below reads back as the double nearest to scaled/10^scale, as does
+                // the (correctly rounded) division itself. So if that gives the value back, the
+                // decimal is an exact representation of it.
+                if (scaled < MAX_UNIQUE_DIGITS && scaled / pow == abs) {
+                    appendDecimal(value < 0, (long) scaled, scale);
+                    return;
+                }
+            }
+        }
+        appendAscii(Double.toString(value));
+    }
+
+    /**
+     * Writes unscaledValue * 10^-scale
+     */
+    private void appendDecimal(boolean negative, long unscaledValue, int scale) {
+        if (negative) {
+            _buf[_pos++] = '-';
+        }
+        if (scale == 0) {
+            appendDigits(unscaledValue);
+            _buf[_pos++] = '.';
+            _buf[_pos++] = '0';
+            return;
+        }
+        long divisor = (long) POWERS_OF_TEN[scale];
+        appendDigits(unscaledValue / divisor);
+        _buf[_pos++] = '.';
+        long fraction = unscaledValue % divisor;
+        // leading zeros of the fraction
+        for (long d = divisor / 10; d > fraction && d > 1; d /= 10) {
+            _buf[_pos++] = '0';
+        }
+        // trailing zeros were stripped by using the smallest possible scale
+        appendDigits(fraction);
+    }
+
+    private void flushBuffer() throws IOException {
+        if (_pos > 0) {
+            _out.write(_buf, 0, _pos);
+            _pos = 0;
+        }
+    }
+
+    /**
+     * Passes the UTF-8 sheet data on to a {@link Writer} from a subclass's
+     * {@link SheetDataWriter#createWriter(File)}, with the characters outside of ASCII
+     * written as numeric character references, as the writer's encoding isn't known.
+     * They only ever occur in text content, where those are allowed.
+     */
+    private static final class WriterOutputStream extends OutputStream {
+        private final Writer _writer;
+        /** the bits of the character decoded so far, and how many bytes of it are still to come */
+        private int _char;
+        private int _pending;
+
+        WriterOutputStream(Writer writer) {
+            _writer = writer;
+        }
+
+        public void write(int b) throws IOException {
+            b &= 0xFF;
+            if (_pending > 0) {
+                _char = (_char << 6) | (b & 0x3F);
+                if (--_pending == 0) {
+                    _writer.write("&#");
+                    _writer.write(String.valueOf(_char));
+                    _writer.write(';');
+                }
+            } else if (b < 0x80) {
+                _writer.write(b);
+            } else if (b < 0xE0) {
+                _char = b & 0x1F;
+                _pending = 1;
+            } else {
+                // no 4 byte sequences are written, as surrogates become '?'
+                _char = b & 0x0F;
+                _pending = 2;
+            }
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        public void flush() throws IOException {
+            _writer.flush();
+        }
+
+        public void close() throws IOException {
+            _writer.close();
         }
     }
 
@@ -335,6 +594,7 @@ public class SheetDataWriter {
      */
     boolean dispose() {
         try {
+            _closed = true;
             _out.close();
             return _fd.delete();
         } catch (IOException e){
@@ -0,0 +1,237 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The rows of a sheet, or the cells of a row, keyed by their (0 based) index and kept in
+ * ascending order in a pair of arrays, rather than in a <code>TreeMap</code> of boxed keys.
+ * <p>
+ * An entry may hold the xml bean of a row or cell instead of its wrapper, in which case
+ * the wrapper is only created the first time the entry is accessed. This lets a large
+ * sheet be opened without creating objects for the rows and cells that are never used.
+ * </p>
+ *
+ * @param <V> the type of the wrappers, {@link XSSFRow} or {@link XSSFCell}
+ */
+abstract class LazyIntMap<V> {
+    private final Class<V> _type;
+    private int[] _keys;
+    private Object[] _values;
+    private int _size;
+    private int _modCount;
+
+    LazyIntMap(Class<V> type, int initialCapacity) {
+        _type = type;
+        _keys = new int[Math.max(initialCapacity, 4)];
+        _values = new Object[_keys.length];
+    }
+
+    /**
+     * Creates the wrapper for an entry that was added by {@link #putBean(int, Object)}
+     */
+    protected abstract V wrap(int key, Object bean);
+
+    public V get(int key) {
+        int i = indexOf(key);
+        return i < 0 ? null : valueAt(i);
+    }
+
+    public void put(int key, V value) {
+        putObject(key, value);
+    }
+
+    /**
+     * Adds an entry whose wrapper will be created on first access
+     */
+    public void putBean(int key, Object bean) {
+        putObject(key, bean);
+    }
+
+    public void remove(int key) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            removeAt(i);
+        }
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    public int firstKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _keys[0];
+    }
+
+    public int lastKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _keys[_size - 1];
+    }
+
+    /**
+     * @return the number of entries with keys less than the given one, which is also the
+     *  position of that key's bean in the parent xml bean if the beans are in order
+     */
+    public int headSize(int key) {
+        int i = indexOf(key);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    /**
+     * @return all the wrappers in ascending order of their keys, creating any that don't
+     *  exist yet as the iteration reaches them
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+            public int size() {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * @return the wrappers which have been created so far, in ascending order of their keys
+     */
+    public List<V> getWrappedValues() {
+        List<V> result = new ArrayList<V>();
+        for (int i = 0; i < _size; i++) {
+            if (_type.isInstance(_values[i])) {
+                result.add(_type.cast(_values[i]));
+            }
+        }
+        return result;
+    }
+
+    private V valueAt(int i) {
+        Object value = _values[i];
+        if (_type.isInstance(value)) {
+            return _type.cast(value);
+        }
+        V wrapper = wrap(_keys[i], value);
+        _values[i] = wrapper;
+        return wrapper;
+    }
+
+    private int indexOf(int key) {
+        // entries are mostly added and looked up in order, so check the end first
+        if (_size > 0 && key > _keys[_size - 1]) {
+            return -(_size + 1);
+        }
+        int low = 0;
+        int high = _size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = _keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void putObject(int key, Object value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            _values[i] = value;
+            return;
+        }
+        i = -(i + 1);
+        if (_size == _keys.length) {
+            int newLength = _keys.length * 2;
+            int[] keys = new int[newLength];
+            Object[] values = new Object[newLength];
+            System.arraycopy(_keys, 0, keys, 0, _size);
+            System.arraycopy(_values, 0, values, 0, _size);
+            _keys = keys;
+            _values = values;
+        }
+        System.arraycopy(_keys, i, _keys, i + 1, _size - i);
+        System.arraycopy(_values, i, _values, i + 1, _size - i);
+        _keys[i] = key;
+        _values[i] = value;
+        _size++;
+        _modCount++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(_keys, i + 1, _keys, i, _size - i - 1);
+        System.arraycopy(_values, i + 1, _values, i, _size - i - 1);
+        _size--;
+        _values[_size] = null;
+        _modCount++;
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private int _next;
+        private int _last = -1;
+        private int _expectedModCount = _modCount;
+
+        public boolean hasNext() {
+            return _next < _size;
+        }
+
+        public V next() {
+            checkForComodification();
+            if (_next >= _size) {
+                throw new NoSuchElementException();
+            }
+            _last = _next++;
+            return valueAt(_last);
+        }
+
+        public void remove() {
+            if (_last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(_last);
+            _next = _last;
+            _last = -1;
+            _expectedModCount = _modCount;
+        }
+
+        private void checkForComodification() {
+            if (_modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
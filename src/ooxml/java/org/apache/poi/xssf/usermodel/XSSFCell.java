@@ -114,6 +114,22 @@ public final class XSSFCell implements Cell {
         _stylesSource = row.getSheet().getWorkbook().getStylesSource();
     }
 
+    /**
+     * Construct a XSSFCell whose column index is already known, as when the cells
+     * of a row are only wrapped on first access.
+     *
+     * @param row the parent row.
+     * @param cell the xml bean containing information about the cell.
+     * @param cellNum the 0-based column index of the cell.
+     */
+    XSSFCell(XSSFRow row, CTCell cell, int cellNum) {
+        _cell = cell;
+        _row = row;
+        _cellNum = cellNum;
+        _sharedStringSource = row.getSheet().getWorkbook().getSharedStringSource();
+        _stylesSource = row.getSheet().getWorkbook().getStylesSource();
+    }
+
     /**
      * @return table of strings shared across this workbook
      */
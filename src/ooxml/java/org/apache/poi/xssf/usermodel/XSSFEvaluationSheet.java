@@ -47,4 +47,7 @@ final class XSSFEvaluationSheet implements EvaluationSheet {
 		}
 		return new XSSFEvaluationCell(cell, this);
 	}
+	public int getLastRowNum() {
+		return _xs.getLastRowNum();
+	}
 }
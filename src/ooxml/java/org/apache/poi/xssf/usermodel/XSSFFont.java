@@ -63,6 +63,8 @@ public class XSSFFont implements Font {
     private ThemesTable _themes;
     private CTFont _ctFont;
     private short _index;
+    /** Bumped by each of the setters */
+    private int _modCount;
 
     /**
      * Create a new XSSFFont
@@ -96,6 +98,16 @@ public class XSSFFont implements Font {
         return _ctFont;
     }
 
+    /**
+     * How many times this font has been changed through its setters, which
+     *  lets the styles table tell when a font it has indexed needs indexing again.
+     * Changes made directly to the {@link #getCTFont() CTFont} are not counted.
+     */
+    @Internal
+    public int getModCount() {
+        return _modCount;
+    }
+
     /**
      * get a boolean value for the boldness to use.
      *
@@ -271,6 +283,7 @@ public class XSSFFont implements Font {
      * @param bold - boldness to use
      */
     public void setBold(boolean bold) {
+        _modCount++;
         if(bold){
             CTBooleanProperty ctBold = _ctFont.sizeOfBArray() == 0 ? _ctFont.addNewB() : _ctFont.getBArray(0);
             ctBold.setVal(bold);
@@ -330,6 +343,7 @@ public class XSSFFont implements Font {
      * @param charSet
      */
     public void setCharSet(FontCharset charSet) {
+       _modCount++;
        CTIntProperty charsetProperty;
        if(_ctFont.sizeOfCharsetArray() == 0) {
           charsetProperty = _ctFont.addNewCharset();
@@ -349,6 +363,7 @@ public class XSSFFont implements Font {
      * @see IndexedColors
      */
     public void setColor(short color) {
+        _modCount++;
         CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
         switch (color) {
             case Font.COLOR_NORMAL: {
@@ -370,6 +385,7 @@ public class XSSFFont implements Font {
      * @param color - color to use
      */
     public void setColor(XSSFColor color) {
+        _modCount++;
         if(color == null) _ctFont.setColorArray(null);
         else {
             CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
@@ -392,6 +408,7 @@ public class XSSFFont implements Font {
      * @param height - height in points
      */
     public void setFontHeight(double height) {
+        _modCount++;
         CTFontSize fontSize = _ctFont.sizeOfSzArray() == 0 ? _ctFont.addNewSz() : _ctFont.getSzArray(0);
         fontSize.setVal(height);
     }
@@ -411,6 +428,7 @@ public class XSSFFont implements Font {
      * @param theme - theme color to use
      */
     public void setThemeColor(short theme) {
+        _modCount++;
         CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
         ctColor.setTheme(theme);
     }
@@ -427,6 +445,7 @@ public class XSSFFont implements Font {
      * @see #DEFAULT_FONT_NAME
      */
     public void setFontName(String name) {
+        _modCount++;
         CTFontName fontName = _ctFont.sizeOfNameArray() == 0 ? _ctFont.addNewName() : _ctFont.getNameArray(0);
         fontName.setVal(name == null ? DEFAULT_FONT_NAME : name);
     }
@@ -439,6 +458,7 @@ public class XSSFFont implements Font {
      * @param italic - value for italics or not
      */
     public void setItalic(boolean italic) {
+        _modCount++;
         if(italic){
             CTBooleanProperty bool = _ctFont.sizeOfIArray() == 0 ? _ctFont.addNewI() : _ctFont.getIArray(0);
             bool.setVal(italic);
@@ -455,6 +475,7 @@ public class XSSFFont implements Font {
      * @param strikeout - value for strikeout or not
      */
     public void setStrikeout(boolean strikeout) {
+        _modCount++;
         if(!strikeout) _ctFont.setStrikeArray(null);
         else {
             CTBooleanProperty strike = _ctFont.sizeOfStrikeArray() == 0 ? _ctFont.addNewStrike() : _ctFont.getStrikeArray(0);
@@ -473,6 +494,7 @@ public class XSSFFont implements Font {
      * @see #SS_SUB
      */
     public void setTypeOffset(short offset) {
+        _modCount++;
         if(offset == Font.SS_NONE){
             _ctFont.setVertAlignArray(null);
         } else {
@@ -510,6 +532,7 @@ public class XSSFFont implements Font {
      * @param underline - FontUnderline enum value
      */
     public void setUnderline(FontUnderline underline) {
+        _modCount++;
         if(underline == FontUnderline.NONE && _ctFont.sizeOfUArray() > 0){
             _ctFont.setUArray(null);
         } else {
@@ -563,6 +586,7 @@ public class XSSFFont implements Font {
      * @see FontScheme
      */
     public void setScheme(FontScheme scheme) {
+        _modCount++;
         CTFontScheme ctFontScheme = _ctFont.sizeOfSchemeArray() == 0 ? _ctFont.addNewScheme() : _ctFont.getSchemeArray(0);
         STFontScheme.Enum val = STFontScheme.Enum.forInt(scheme.getValue());
         ctFontScheme.setVal(val);
@@ -588,6 +612,7 @@ public class XSSFFont implements Font {
      * @see FontFamily
      */
     public void setFamily(int value) {
+        _modCount++;
         CTIntProperty family = _ctFont.sizeOfFamilyArray() == 0 ? _ctFont.addNewFamily() : _ctFont.getFamilyArray(0);
         family.setVal(value);
     }
@@ -17,8 +17,13 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.IStabilityClassifier;
+import org.apache.poi.ss.formula.ParallelWorkbookEvaluator;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -29,6 +34,7 @@ import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Workbook;
 
 /**
@@ -252,6 +258,42 @@ public class XSSFFormulaEvaluator implements FormulaEvaluator {
       HSSFFormulaEvaluator.evaluateAllFormulaCells(_book);
    }
 
+   /**
+    * As {@link #evaluateAll()}, but evaluates independent formula
+    *  cells on several threads at once, and then saves all the
+    *  results in one go. The results are the same as for the
+    *  serial version.
+    * The workbook must not be changed whilst this is running.
+    *
+    * @param nThreads the number of threads to evaluate with
+    * @see ParallelWorkbookEvaluator
+    */
+   public void evaluateAll(int nThreads) {
+      List<Cell> cells = new ArrayList<Cell>();
+      List<EvaluationCell> evalCells = new ArrayList<EvaluationCell>();
+      for(int i=0; i<_book.getNumberOfSheets(); i++) {
+         XSSFSheet sheet = _book.getSheetAt(i);
+         XSSFEvaluationSheet evalSheet = new XSSFEvaluationSheet(sheet);
+
+         // Iterating over the rows and cells wraps any of them which were
+         //  loaded lazily, so that the evaluating threads only ever read them
+         for(Row r : sheet) {
+            for (Cell c : r) {
+               if (c.getCellType() == XSSFCell.CELL_TYPE_FORMULA) {
+                  cells.add(c);
+                  evalCells.add(new XSSFEvaluationCell((XSSFCell)c, evalSheet));
+               }
+            }
+         }
+      }
+
+      ValueEval[] results = ParallelWorkbookEvaluator.evaluateAll(_bookEvaluator,
+            evalCells.toArray(new EvaluationCell[evalCells.size()]), nThreads);
+      for(int i=0; i<results.length; i++) {
+         setCellValue(cells.get(i), toCellValue(results[i]));
+      }
+   }
+
 	/**
 	 * Returns a CellValue wrapper around the supplied ValueEval instance.
 	 */
@@ -261,7 +303,10 @@ public class XSSFFormulaEvaluator implements FormulaEvaluator {
                     " Only XSSFCells can be evaluated.");
         }
 
-		ValueEval eval = _bookEvaluator.evaluate(new XSSFEvaluationCell((XSSFCell) cell));
+		return toCellValue(_bookEvaluator.evaluate(new XSSFEvaluationCell((XSSFCell) cell)));
+	}
+
+	private static CellValue toCellValue(ValueEval eval) {
 		if (eval instanceof NumberEval) {
 			NumberEval ne = (NumberEval) eval;
 			return new CellValue(ne.getNumberValue());
@@ -18,7 +18,6 @@
 package org.apache.poi.xssf.usermodel;
 
 import java.util.Iterator;
-import java.util.TreeMap;
 
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
@@ -45,10 +44,9 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     private final CTRow _row;
 
     /**
-     * Cells of this row keyed by their column indexes.
-     * The TreeMap ensures that the cells are ordered by columnIndex in the ascending order.
+     * Cells of this row keyed by their column indexes, in ascending order.
      */
-    private final TreeMap<Integer, XSSFCell> _cells;
+    private final LazyIntMap<XSSFCell> _cells;
 
     /**
      * the parent sheet
@@ -61,15 +59,39 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
      * @param row the xml bean containing all cell definitions for this row.
      * @param sheet the parent sheet.
      */
-    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
     protected XSSFRow(CTRow row, XSSFSheet sheet) {
+        this(row, sheet, false);
+    }
+
+    /**
+     * Construct a XSSFRow, optionally leaving its cells to be wrapped on first access.
+     * The sheet must then have read the formulas of the row by itself.
+     *
+     * @param row the xml bean containing all cell definitions for this row.
+     * @param sheet the parent sheet.
+     * @param lazy whether to wrap the cells on first access
+     */
+    @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
+    XSSFRow(CTRow row, XSSFSheet sheet, boolean lazy) {
         _row = row;
         _sheet = sheet;
-        _cells = new TreeMap<Integer, XSSFCell>();
-        for (CTCell c : row.getCArray()) {
-            XSSFCell cell = new XSSFCell(this, c);
-            _cells.put(cell.getColumnIndex(), cell);
-            sheet.onReadCell(cell);
+        CTCell[] cArray = row.getCArray();
+        _cells = new LazyIntMap<XSSFCell>(XSSFCell.class, cArray.length) {
+            protected XSSFCell wrap(int columnIndex, Object bean) {
+                return new XSSFCell(XSSFRow.this, (CTCell)bean, columnIndex);
+            }
+        };
+        for (CTCell c : cArray) {
+            if (lazy) {
+                // same as the XSSFCell constructor: cells without a reference follow the last one
+                int columnIndex = c.getR() != null ? new CellReference(c.getR()).getCol()
+                        : _cells.isEmpty() ? 0 : _cells.lastKey() + 1;
+                _cells.putBean(columnIndex, c);
+            } else {
+                XSSFCell cell = new XSSFCell(this, c);
+                _cells.put(cell.getColumnIndex(), cell);
+                sheet.onReadCell(cell);
+            }
         }
     }
 
@@ -202,7 +224,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     public XSSFCell getCell(int cellnum, MissingCellPolicy policy) {
     	if(cellnum < 0) throw new IllegalArgumentException("Cell index must be >= 0");
 
-        XSSFCell cell = (XSSFCell)_cells.get(cellnum);
+        XSSFCell cell = _cells.get(cellnum);
     	if(policy == RETURN_NULL_AND_BLANK) {
     		return cell;
     	}
@@ -59,7 +59,9 @@ import org.apache.poi.xssf.model.CommentsTable;
 import org.apache.poi.xssf.usermodel.helpers.ColumnHelper;
 import org.apache.poi.xssf.usermodel.helpers.XSSFRowShifter;
 
+import org.apache.xmlbeans.XmlCursor;
 import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
 
 import org.openxmlformats.schemas.officeDocument.x2006.relationships.STRelationshipId;
@@ -81,7 +83,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
     protected CTSheet sheet;
     protected CTWorksheet worksheet;
 
-    private TreeMap<Integer, XSSFRow> _rows;
+    private LazyIntMap<XSSFRow> _rows;
     private List<XSSFHyperlink> hyperlinks;
     private ColumnHelper columnHelper;
     private CommentsTable sheetComments;
@@ -178,13 +180,63 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
     @SuppressWarnings("deprecation") //YK: getXYZArray() array accessors are deprecated in xmlbeans with JDK 1.5 support
     private void initRows(CTWorksheet worksheet) {
-        _rows = new TreeMap<Integer, XSSFRow>();
+        CTRow[] rows = worksheet.getSheetData().getRowArray();
+        _rows = newRowMap(rows.length);
         tables = new TreeMap<String, XSSFTable>();
         sharedFormulas = new HashMap<Integer, CTCellFormula>();
         arrayFormulas = new ArrayList<CellRangeAddress>();
-        for (CTRow row : worksheet.getSheetData().getRowArray()) {
-            XSSFRow r = new XSSFRow(row, this);
-            _rows.put(r.getRowNum(), r);
+        boolean lazy = getParent() != null && getWorkbook().isLazyRows();
+        for (CTRow row : rows) {
+            if (lazy) {
+                _rows.putBean((int) (row.getR() - 1), row);
+            } else {
+                XSSFRow r = new XSSFRow(row, this);
+                _rows.put(r.getRowNum(), r);
+            }
+        }
+        if (lazy) {
+            readFormulas();
+        }
+    }
+
+    private LazyIntMap<XSSFRow> newRowMap(int initialCapacity) {
+        return new LazyIntMap<XSSFRow>(XSSFRow.class, initialCapacity) {
+            protected XSSFRow wrap(int rownum, Object bean) {
+                return new XSSFRow((CTRow)bean, XSSFSheet.this, true);
+            }
+        };
+    }
+
+    /**
+     * Does what {@link #onReadCell(XSSFCell)} does for every cell when the rows are wrapped
+     * on first access, without creating beans or wrappers for the cells that have no formula
+     */
+    private void readFormulas() {
+        XmlObject[] formulas = worksheet.getSheetData().selectPath(
+                "declare namespace s='" + CTWorksheet.type.getName().getNamespaceURI() + "' $this/s:row/s:c/s:f");
+        for (XmlObject f : formulas) {
+            XmlCursor cur = f.newCursor();
+            CTCell ct;
+            CTRow ctRow;
+            try {
+                cur.toParent();
+                ct = (CTCell)cur.getObject();
+                cur.toParent();
+                ctRow = (CTRow)cur.getObject();
+            } finally {
+                cur.dispose();
+            }
+            int rownum = (int) (ctRow.getR() - 1);
+            if (ct.getR() != null) {
+                onReadCell(ct, rownum, new CellReference(ct.getR()).getCol());
+            } else {
+                // the column follows from the cells before it, so let the row work it out
+                for (Cell cell : _rows.get(rownum)) {
+                    if (((XSSFCell)cell).getCTCell() == ct) {
+                        onReadCell((XSSFCell)cell);
+                    }
+                }
+            }
         }
     }
 
@@ -538,7 +590,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         	} else {
         		// get number of rows where row index < rownum
         		// --> this tells us where our row should go
-        		int idx = _rows.headMap(rownum).size();
+        		int idx = _rows.headSize(rownum);
         		ctRow = worksheet.getSheetData().insertNewRow(idx);
         	}
         }
@@ -1472,7 +1524,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
         for(XSSFCell cell : cellsToDelete) row.removeCell(cell);
 
-        int idx = _rows.headMap(row.getRowNum()).size();
+        int idx = _rows.headSize(row.getRowNum());
         _rows.remove(row.getRowNum());
         worksheet.getSheetData().removeRow(idx);
     }
@@ -2347,7 +2399,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
 
             if (removeRow(startRow, endRow, n, rownum)) {
             	// remove row from worksheet.getSheetData row array
-            	int idx = _rows.headMap(row.getRowNum()).size();
+            	int idx = _rows.headSize(row.getRowNum());
                 worksheet.getSheetData().removeRow(idx);
                 // remove row from _rows
                 it.remove();
@@ -2379,7 +2431,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
         rowShifter.updateConditionalFormatting(shifter);
 
         //rebuild the _rows map
-        TreeMap<Integer, XSSFRow> map = new TreeMap<Integer, XSSFRow>();
+        LazyIntMap<XSSFRow> map = newRowMap(_rows.size());
         for(XSSFRow r : _rows.values()) {
             map.put(r.getRowNum(), r);
         }
@@ -2649,15 +2701,18 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
     }
 
     void onReadCell(XSSFCell cell){
+        onReadCell(cell.getCTCell(), cell.getRowIndex(), cell.getColumnIndex());
+    }
+
+    private void onReadCell(CTCell ct, int rowIndex, int columnIndex){
         //collect cells holding shared formulas
-        CTCell ct = cell.getCTCell();
         CTCellFormula f = ct.getF();
         if (f != null && f.getT() == STCellFormulaType.SHARED && f.isSetRef() && f.getStringValue() != null) {
             // save a detached  copy to avoid XmlValueDisconnectedException,
             // this may happen when the master cell of a shared formula is changed
             CTCellFormula sf = (CTCellFormula)f.copy();
             CellRangeAddress sfRef = CellRangeAddress.valueOf(sf.getRef());
-            CellReference cellRef = new CellReference(cell);
+            CellReference cellRef = new CellReference(rowIndex, columnIndex);
             // If the shared formula range preceeds the master cell then the preceding  part is discarded, e.g.
             // if the cell is E60 and the shared formula range is C60:M85 then the effective range is E60:M85
             // see more details in https://issues.apache.org/bugzilla/show_bug.cgi?id=51710
@@ -2709,7 +2764,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet {
             worksheet.getHyperlinks().setHyperlinkArray(ctHls);
         }
 
-        for(XSSFRow row : _rows.values()){
+        // rows which were never wrapped can't have changed
+        for(XSSFRow row : _rows.getWrappedValues()){
             row.onDocumentWrite();
         }
 
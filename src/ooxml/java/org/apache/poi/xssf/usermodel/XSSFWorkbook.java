@@ -166,6 +166,11 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      */
     private List<XSSFPivotTable> pivotTables;
 
+    /**
+     * Whether the rows and cells of the sheets read in are wrapped on first access
+     */
+    private boolean lazyRows;
+
 
     /**
      * Create a new SpreadsheetML workbook.
@@ -175,6 +180,14 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
         onWorkbookCreate();
     }
 
+    /**
+     * @return whether the rows and cells of sheets read in are only created on first access
+     * @see #XSSFWorkbook(OPCPackage, boolean)
+     */
+    boolean isLazyRows() {
+        return lazyRows;
+    }
+
     /**
      * Constructs a XSSFWorkbook object given a OpenXML4J <code>Package</code> object,
      *  see <a href="http://poi.apache.org/oxml4j/">http://poi.apache.org/oxml4j/</a>.
@@ -188,7 +201,27 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Iterable<X
      * @param pkg the OpenXML4J <code>OPC Package</code> object.
      */
     public XSSFWorkbook(OPCPackage pkg) throws IOException {
+        this(pkg, false);
+    }
+
+    /**
+     * Constructs a XSSFWorkbook object given a OpenXML4J <code>Package</code> object,
+     *  optionally creating the rows and cells of its sheets only when they're first used.
+     * <p>
+     * Normally a {@link XSSFRow} and a {@link XSSFCell} are created for every row and cell
+     *  of every sheet as the workbook is opened, which for large sheets takes several times
+     *  the size of the file in memory. With <code>lazyRows</code> set, a sheet only keeps
+     *  the row numbers in a sorted array up front, and each row the column indexes of its
+     *  cells, so opening a large workbook to read or update a few cells is much cheaper.
+     *  Iterating over all the rows still creates them all.
+     * </p>
+     *
+     * @param pkg the OpenXML4J <code>OPC Package</code> object.
+     * @param lazyRows whether to create rows and cells on first access
+     */
+    public XSSFWorkbook(OPCPackage pkg, boolean lazyRows) throws IOException {
         super(pkg);
+        this.lazyRows = lazyRows;
         pivotTables = new ArrayList<>();
         //build a tree of POIXMLDocumentParts, this workbook being the root
         load(XSSFFactory.getInstance());
@@ -33,6 +33,8 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.STBorderStyle;
 public class XSSFCellBorder {
     private ThemesTable _theme;
     private CTBorder border;
+    /** Bumped by each of the setters */
+    private int modCount;
 
     /**
      * Creates a Cell Border from the supplied XML definition
@@ -83,6 +85,14 @@ public class XSSFCellBorder {
         return border;
     }
 
+    /**
+     * Counts the changes made by {@link #setBorderStyle} and {@link #setBorderColor}
+     */
+    @Internal
+    public int getModCount() {
+        return modCount;
+    }
+
     /**
      * Get the type of border to use for the selected border
      *
@@ -104,6 +114,7 @@ public class XSSFCellBorder {
      * @see BorderStyle
      */
     public void setBorderStyle(BorderSide side, BorderStyle style) {
+        modCount++;
         getBorder(side, true).setStyle(STBorderStyle.Enum.forInt(style.ordinal() + 1));
     }
 
@@ -135,6 +146,7 @@ public class XSSFCellBorder {
      * @param color - the color to use
      */
     public void setBorderColor(BorderSide side, XSSFColor color) {
+        modCount++;
         CTBorderPr borderPr = getBorder(side, true);
         if (color == null) borderPr.unsetColor();
         else
@@ -30,6 +30,8 @@ import org.apache.poi.util.Internal;
 public final class XSSFCellFill {
 
     private CTFill _fill;
+    /** Bumped by each of the setters */
+    private int _modCount;
 
     /**
      * Creates a CellFill from the supplied parts
@@ -66,6 +68,7 @@ public final class XSSFCellFill {
      * @param index
      */
     public void setFillBackgroundColor(int index) {
+        _modCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetBgColor() ? ptrn.getBgColor() : ptrn.addNewBgColor();
         ctColor.setIndexed(index);
@@ -77,6 +80,7 @@ public final class XSSFCellFill {
      * @param color
      */
     public void setFillBackgroundColor(XSSFColor color) {
+        _modCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setBgColor(color.getCTColor());
     }
@@ -100,6 +104,7 @@ public final class XSSFCellFill {
      * @param index - the color to use
      */
     public void setFillForegroundColor(int index) {
+        _modCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetFgColor() ? ptrn.getFgColor() : ptrn.addNewFgColor();
         ctColor.setIndexed(index);
@@ -111,6 +116,7 @@ public final class XSSFCellFill {
      * @param color - the color to use
      */
     public void setFillForegroundColor(XSSFColor color) {
+        _modCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setFgColor(color.getCTColor());
     }
@@ -131,6 +137,7 @@ public final class XSSFCellFill {
      * @param patternType fill pattern to use
      */
     public void setPatternType(STPatternType.Enum patternType) {
+        _modCount++;
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setPatternType(patternType);
     }
@@ -153,6 +160,15 @@ public final class XSSFCellFill {
         return _fill;
     }
 
+    /**
+     * @return the number of calls made to the setters so far, compared by the
+     *  styles table to spot fills that have changed since it last saw them
+     */
+    @Internal
+    public int getModCount() {
+        return _modCount;
+    }
+
 
     public int hashCode() {
         return _fill.toString().hashCode();
@@ -327,6 +327,58 @@ public final class TestPackage extends TestCase {
 		assertTrue(p.containPart(PackagingURIHelper.createPartName("/_rels/.rels")));
 	}
 
+	/**
+	 * Checks that a package read from a stream via a temporary
+	 *  file has the same parts, and saves the same, as one read
+	 *  straight from the file
+	 */
+	public void testOpenWithTempFile() throws Exception {
+		String originalFile = OpenXML4JTestDataSamples.getSampleFileName("TestPackageCommon.docx");
+		File targetFile = OpenXML4JTestDataSamples.getOutputFile("TestPackageOpenWithTempFileTMP.docx");
+
+		OPCPackage p = OPCPackage.openWithTempFile(new FileInputStream(originalFile));
+		assertEquals(12, p.getParts().size());
+		assertTrue(p.containPart(PackagingURIHelper.createPartName("/_rels/.rels")));
+
+		FileOutputStream fout = new FileOutputStream(targetFile);
+		p.save(fout);
+		fout.close();
+		p.revert();
+
+		ZipFileAssert.assertEquals(new File(originalFile), targetFile);
+		assertTrue(targetFile.delete());
+	}
+
+	/**
+	 * Memory parts may be written in many small pieces, and
+	 *  be far larger than a single chunk of their storage
+	 */
+	public void testLargeMemoryPart() throws Exception {
+		OPCPackage pkg = OPCPackage.create(new ByteArrayOutputStream());
+		PackagePart part = pkg.createPart(
+				PackagingURIHelper.createPartName("/large.bin"), "application/octet-stream");
+
+		byte[] data = new byte[3 * 1024 * 1024 + 17];
+		new Random(12345).nextBytes(data);
+		OutputStream out = part.getOutputStream();
+		out.write(data, 0, 10);
+		for (int i = 10; i < 1000; i++) {
+			out.write(data[i]);
+		}
+		out.write(data, 1000, data.length - 1000);
+		out.close();
+
+		assertEquals(data.length, part.getSize());
+		InputStream in = part.getInputStream();
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		byte[] buf = new byte[5000];
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			read.write(buf, 0, n);
+		}
+		assertTrue(Arrays.equals(data, read.toByteArray()));
+	}
+
     /**
      * TODO: fix and enable
      */
@@ -55,4 +55,31 @@ public class TestPresetGeometries extends TestCase {
             }
         }
     }
+
+    public void testBuiltOnceWhenAsked(){
+        PresetGeometries shapes = PresetGeometries.getInstance();
+        assertSame(shapes, PresetGeometries.getInstance());
+
+        assertTrue(shapes.containsKey("rect"));
+        CustomGeometry rect = shapes.get("rect");
+        assertNotNull(rect);
+        assertNotNull(rect.getTextBounds());
+        assertSame(rect, shapes.get("rect"));
+
+        assertFalse(shapes.containsKey("noSuchShape"));
+        assertNull(shapes.get("noSuchShape"));
+
+        int paths = 0;
+        for(Path p : shapes.get("flowChartMagneticDrum")) {
+            paths++;
+        }
+        assertEquals(3, paths);
+
+        try {
+            shapes.put("rect", rect);
+            fail("The presets can't be changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
 }
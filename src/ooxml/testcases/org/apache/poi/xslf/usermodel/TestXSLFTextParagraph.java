@@ -20,6 +20,13 @@ import junit.framework.TestCase;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
 import org.apache.poi.xslf.XSLFTestDataSamples;
+import org.apache.poi.xslf.model.ParagraphPropertyFetcher;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTTextBody;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTPlaceholder;
+import org.openxmlformats.schemas.presentationml.x2006.main.CTShape;
+import org.openxmlformats.schemas.presentationml.x2006.main.STPlaceholderType;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
@@ -217,6 +224,108 @@ public class TestXSLFTextParagraph extends TestCase {
         assertEquals(TextAlign.CENTER, sh3.getTextParagraphs().get(0).getTextAlign());
     }
 
+    /**
+     * The inherited properties are looked up by walking the XML beans, which
+     *  must find the same elements as the XPath queries used before
+     */
+    public void testInheritedLookups(){
+        for (String file : new String[]{"layouts.pptx", "prProps.pptx", "shapes.pptx"}) {
+            XMLSlideShow ppt = XSLFTestDataSamples.openSampleDocument(file);
+            for (XSLFSlideMaster master : ppt.getSlideMasters()) {
+                checkInheritedLookups(master);
+                for (XSLFSlideLayout layout : master.getSlideLayouts()) {
+                    checkInheritedLookups(layout);
+                }
+            }
+            for (XSLFSlide slide : ppt.getSlides()) {
+                checkInheritedLookups(slide);
+            }
+        }
+    }
+
+    private void checkInheritedLookups(XSLFSheet sheet){
+        for (XSLFShape shape : sheet.getShapes()) {
+            if (!(shape instanceof XSLFSimpleShape)) continue;
+            XSLFSimpleShape simple = (XSLFSimpleShape)shape;
+
+            XmlObject[] ph = simple.getXmlObject().selectPath(
+                    "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' .//*/p:nvPr/p:ph");
+            assertSameNode(ph.length == 1 ? ph[0] : null, simple.getCTPlaceholder());
+            if (!(shape instanceof XSLFTextShape)) continue;
+            XSLFTextShape txt = (XSLFTextShape)shape;
+            if (ph.length == 1) {
+                int type = ((CTPlaceholder)ph[0]).getType().intValue();
+                assertEquals(Placeholder.values()[type - 1], txt.getTextType());
+            } else {
+                assertNull(txt.getTextType());
+            }
+
+            // the shape's own list style
+            for (int level = 0; level < 9; level++) {
+                XmlObject[] lvl = txt.getXmlObject().selectPath(
+                        "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
+                        "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
+                        ".//p:txBody/a:lstStyle/a:lvl" + (level + 1) + "pPr");
+                CTTextBody txBody = txt.getXmlObject() instanceof CTShape ?
+                        ((CTShape)txt.getXmlObject()).getTxBody() : null;
+                assertSameNode(lvl.length == 1 ? lvl[0] : null,
+                        txBody == null ? null : ParagraphPropertyFetcher.getLevelProperties(txBody.getLstStyle(), level));
+            }
+
+            // the master's text styles
+            XSLFSheet masterSheet = sheet;
+            while (masterSheet.getMasterSheet() != null) {
+                masterSheet = masterSheet.getMasterSheet();
+            }
+            String selector = "bodyStyle";
+            if (ph.length != 1) {
+                selector = "otherStyle";
+            } else switch (((CTPlaceholder)ph[0]).getType().intValue()) {
+                case STPlaceholderType.INT_TITLE:
+                case STPlaceholderType.INT_CTR_TITLE:
+                    selector = "titleStyle";
+                    break;
+                case STPlaceholderType.INT_FTR:
+                case STPlaceholderType.INT_SLD_NUM:
+                case STPlaceholderType.INT_DT:
+                    selector = "otherStyle";
+                    break;
+            }
+            for (XSLFTextParagraph p : txt.getTextParagraphs()) {
+                XmlObject[] lvl = masterSheet.getXmlObject().selectPath(
+                        "declare namespace p='http://schemas.openxmlformats.org/presentationml/2006/main' " +
+                        "declare namespace a='http://schemas.openxmlformats.org/drawingml/2006/main' " +
+                        ".//p:txStyles/p:" + selector + "/a:lvl" + (p.getLevel() + 1) + "pPr");
+                if (lvl.length == 1) {
+                    assertSameNode(lvl[0], p.getDefaultMasterStyle());
+                } else {
+                    try {
+                        p.getDefaultMasterStyle();
+                        fail("expected IllegalArgumentException");
+                    } catch (IllegalArgumentException e) {
+                        // expected
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertSameNode(XmlObject expected, XmlObject actual){
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        XmlCursor ec = expected.newCursor();
+        XmlCursor ac = actual.newCursor();
+        try {
+            assertTrue(ec.isAtSamePositionAs(ac));
+        } finally {
+            ec.dispose();
+            ac.dispose();
+        }
+    }
+
     public void testParagraphProperties(){
         XMLSlideShow ppt = new XMLSlideShow();
         XSLFSlide slide = ppt.createSlide();
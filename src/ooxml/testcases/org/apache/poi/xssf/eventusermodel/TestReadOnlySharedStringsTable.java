@@ -55,4 +55,20 @@ public final class TestReadOnlySharedStringsTable extends TestCase {
         }
 
 	}
+
+    public void testMapped() throws Exception {
+		OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"));
+        ReadOnlySharedStringsTable tbl = new ReadOnlySharedStringsTable(pkg);
+        ReadOnlySharedStringsTable mapped = new ReadOnlySharedStringsTable(pkg, true);
+        try {
+            assertEquals(tbl.getCount(), mapped.getCount());
+            assertEquals(tbl.getUniqueCount(), mapped.getUniqueCount());
+            assertEquals(tbl.getItems(), mapped.getItems());
+            for(int i=0; i < tbl.getUniqueCount(); i++){
+                assertEquals(tbl.getEntryAt(i), mapped.getEntryAt(i));
+            }
+        } finally {
+            mapped.close();
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.eventusermodel.XSSFParallelSheetProcessor.SheetHandlerFactory;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.extractor.XSSFEventBasedExcelExtractor;
+
+/**
+ * Tests for {@link XSSFParallelSheetProcessor}
+ */
+public final class TestXSSFParallelSheetProcessor extends TestCase {
+
+    /**
+     * Writes the cells as {@link XSSFEventBasedExcelExtractor} does
+     */
+    private static final class TextHandler implements SheetContentsHandler {
+        private final StringBuffer output;
+        private boolean firstCellOfRow;
+
+        TextHandler(StringBuffer output) {
+            this.output = output;
+        }
+
+        public void startRow(int rowNum) {
+            firstCellOfRow = true;
+        }
+
+        public void endRow() {
+            output.append('\n');
+        }
+
+        public void cell(String cellReference, String formattedValue) {
+            if (!firstCellOfRow) {
+                output.append('\t');
+            }
+            firstCellOfRow = false;
+            output.append(formattedValue);
+        }
+
+        public void headerFooter(String text, boolean isHeader, String tagName) {
+        }
+    }
+
+    public void testInOrder() throws Exception {
+        OPCPackage pkg = XSSFTestDataSamples.openSamplePackage("sample.xlsx");
+        XSSFParallelSheetProcessor processor = new XSSFParallelSheetProcessor(pkg, 4);
+        assertEquals(3, processor.getSheetCount());
+        assertEquals("Sheet1", processor.getSheetName(0));
+
+        final StringBuffer text = new StringBuffer();
+        final TextHandler handler = new TextHandler(text);
+        processor.processSheetsInOrder(new SheetHandlerFactory() {
+            public SheetContentsHandler createSheetHandler(int sheetIndex, String sheetName) {
+                text.append(sheetName).append('\n');
+                return handler;
+            }
+        });
+
+        XSSFEventBasedExcelExtractor extractor = new XSSFEventBasedExcelExtractor(
+                XSSFTestDataSamples.openSamplePackage("sample.xlsx"));
+        assertEquals(extractor.getText(), text.toString());
+    }
+
+    public void testPerSheet() throws Exception {
+        OPCPackage pkg = XSSFTestDataSamples.openSamplePackage("sample.xlsx");
+        XSSFParallelSheetProcessor processor = new XSSFParallelSheetProcessor(pkg, 4);
+        processor.setFormulasNotResults(true);
+
+        final StringBuffer[] texts = new StringBuffer[processor.getSheetCount()];
+        processor.processSheets(new SheetHandlerFactory() {
+            public SheetContentsHandler createSheetHandler(int sheetIndex, String sheetName) {
+                texts[sheetIndex] = new StringBuffer();
+                return new TextHandler(texts[sheetIndex]);
+            }
+        });
+
+        XSSFEventBasedExcelExtractor extractor = new XSSFEventBasedExcelExtractor(
+                XSSFTestDataSamples.openSamplePackage("sample.xlsx"));
+        extractor.setIncludeSheetNames(false);
+        extractor.setFormulasNotResults(true);
+        StringBuffer text = new StringBuffer();
+        for (StringBuffer sheetText : texts) {
+            text.append(sheetText);
+        }
+        assertEquals(extractor.getText(), text.toString());
+    }
+
+    public void testBadThreads() throws Exception {
+        OPCPackage pkg = XSSFTestDataSamples.openSamplePackage("sample.xlsx");
+        try {
+            new XSSFParallelSheetProcessor(pkg, 0);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
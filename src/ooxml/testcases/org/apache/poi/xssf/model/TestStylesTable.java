@@ -17,8 +17,15 @@
 
 package org.apache.poi.xssf.model;
 
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
 import org.apache.poi.xssf.XSSFTestDataSamples;
 
 import junit.framework.TestCase;
@@ -148,4 +155,104 @@ public final class TestStylesTable extends TestCase {
 		assertEquals(nf1, st.putNumberFormat("YYYY-mm-dd"));
 		assertEquals(nf2, st.putNumberFormat("YYYY-mm-DD"));
 	}
+
+	public void testReuseOfExisting() {
+		XSSFWorkbook workbook = XSSFTestDataSamples.openSampleWorkbook(testFile);
+		StylesTable st = workbook.getStylesSource();
+
+		// Number formats read in are found
+		for (String fmt : st.getNumberFormats().values()) {
+			assertEquals(fmt, st.getNumberFormatAt(st.putNumberFormat(fmt)));
+		}
+		int numFormats = st._getNumberFormatSize();
+		assertEquals(st.putNumberFormat("0.0000_x"), st.putNumberFormat("0.0000_x"));
+		assertEquals(numFormats + 1, st._getNumberFormatSize());
+
+		// Fonts are found as they were customised after being registered
+		XSSFFont font = workbook.createFont();
+		font.setFontName("Courier New");
+		font.setBold(true);
+		font.setColor(IndexedColors.RED.getIndex());
+		int numFonts = st.getFonts().size();
+		assertSame(font, st.findFont(Font.BOLDWEIGHT_BOLD, IndexedColors.RED.getIndex(),
+				font.getFontHeight(), "Courier New", false, false, Font.SS_NONE, Font.U_NONE));
+		assertNull(st.findFont(Font.BOLDWEIGHT_BOLD, IndexedColors.RED.getIndex(),
+				font.getFontHeight(), "Courier New", true, false, Font.SS_NONE, Font.U_NONE));
+
+		XSSFFont same = new XSSFFont(font.getCTFont(), 0);
+		assertEquals(font.getIndex(), st.putFont(same));
+		assertEquals(numFonts, st.getFonts().size());
+		assertEquals(numFonts, st.putFont(same, true));
+		assertEquals(numFonts + 1, st.getFonts().size());
+
+		// Fills and borders are shared by styles which use the same
+		createBorderedFilledStyle(workbook);
+		int numFills = st.getFills().size();
+		int numBorders = st.getBorders().size();
+		for (int i = 0; i < 10; i++) {
+			createBorderedFilledStyle(workbook);
+		}
+		assertEquals(numFills, st.getFills().size());
+		assertEquals(numBorders, st.getBorders().size());
+		XSSFCellFill fill = st.getFillAt(numFills - 1);
+		assertEquals(numFills - 1, st.putFill(new XSSFCellFill(fill.getCTFill())));
+		XSSFCellBorder border = st.getBorderAt(numBorders - 1);
+		assertEquals(numBorders - 1, st.putBorder(new XSSFCellBorder(border.getCTBorder())));
+
+		// Styles already in the table keep their place
+		int numStyles = st.getNumCellStyles();
+		for (int i = 0; i < numStyles; i++) {
+			assertEquals(i, st.putStyle(st.getStyleAt(i)));
+		}
+		assertEquals(numStyles, st.getNumCellStyles());
+	}
+
+	public void testFindModifiedAfterLookup() {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		StylesTable st = workbook.getStylesSource();
+
+		// A font changed after it has already been looked for
+		XSSFFont font = workbook.createFont();
+		font.setFontName("Courier New");
+		assertSame(font, st.findFont(Font.BOLDWEIGHT_NORMAL, font.getColor(),
+				font.getFontHeight(), "Courier New", false, false, Font.SS_NONE, Font.U_NONE));
+		font.setBold(true);
+		assertSame(font, st.findFont(Font.BOLDWEIGHT_BOLD, font.getColor(),
+				font.getFontHeight(), "Courier New", false, false, Font.SS_NONE, Font.U_NONE));
+		assertNull(st.findFont(Font.BOLDWEIGHT_NORMAL, font.getColor(),
+				font.getFontHeight(), "Courier New", false, false, Font.SS_NONE, Font.U_NONE));
+		int numFonts = st.getFonts().size();
+		assertEquals(font.getIndex(), st.putFont(new XSSFFont(font.getCTFont(), 0)));
+		font.setItalic(true);
+		assertEquals(font.getIndex(), st.putFont(new XSSFFont(font.getCTFont(), 0)));
+		assertEquals(numFonts, st.getFonts().size());
+
+		// And a fill and a border
+		XSSFCellFill fill = new XSSFCellFill();
+		int fillIdx = st.putFill(fill);
+		assertEquals(fillIdx, st.putFill(new XSSFCellFill()));
+		fill.setFillForegroundColor(IndexedColors.AQUA.getIndex());
+		XSSFCellFill sameFill = new XSSFCellFill();
+		sameFill.setFillForegroundColor(IndexedColors.AQUA.getIndex());
+		int numFills = st.getFills().size();
+		assertEquals(fillIdx, st.putFill(sameFill));
+		assertEquals(numFills, st.getFills().size());
+
+		XSSFCellBorder border = new XSSFCellBorder();
+		int borderIdx = st.putBorder(border);
+		assertEquals(borderIdx, st.putBorder(new XSSFCellBorder()));
+		border.setBorderStyle(XSSFCellBorder.BorderSide.TOP, BorderStyle.DASHED);
+		XSSFCellBorder sameBorder = new XSSFCellBorder();
+		sameBorder.setBorderStyle(XSSFCellBorder.BorderSide.TOP, BorderStyle.DASHED);
+		int numBorders = st.getBorders().size();
+		assertEquals(borderIdx, st.putBorder(sameBorder));
+		assertEquals(numBorders, st.getBorders().size());
+	}
+
+	private static void createBorderedFilledStyle(XSSFWorkbook workbook) {
+		XSSFCellStyle style = workbook.createCellStyle();
+		style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+		style.setFillForegroundColor(IndexedColors.AQUA.getIndex());
+		style.setBorderTop(CellStyle.BORDER_MEDIUM_DASHED);
+	}
 }
@@ -24,7 +24,13 @@ import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.SXSSFITestDataProvider;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Random;
 
 public final class TestSXSSFWorkbook extends BaseTestWorkbook {
     public static final SXSSFITestDataProvider _testDataProvider = SXSSFITestDataProvider.instance;
@@ -252,6 +258,218 @@ public final class TestSXSSFWorkbook extends BaseTestWorkbook {
         }
     }
 
+    public void testSheetDataWriterCodecs() {
+        SXSSFWorkbook wb = new SXSSFWorkbook(10) {
+            protected SheetDataWriter createSheetDataWriter() throws IOException {
+                return new DeflateSheetDataWriter();
+            }
+        };
+        Sheet sh = wb.createSheet();
+        for (int i = 0; i < 100; i++) {
+            Row row = sh.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.createCell(1).setCellValue(i / 8.0);
+            row.createCell(2).setCellValue(-i * 1e20);
+            row.createCell(3).setCellValue("r<" + i + "> \u00e9\u20ac");
+            row.createCell(27).setCellValue(i % 2 == 0);
+        }
+        assertTrue(((SXSSFSheet)sh).getSheetDataWriter().getClass() == DeflateSheetDataWriter.class);
+
+        XSSFWorkbook xssfWorkbook = (XSSFWorkbook) SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+        Sheet xsh = xssfWorkbook.getSheetAt(0);
+        for (int i = 0; i < 100; i++) {
+            Row row = xsh.getRow(i);
+            assertEquals((double)i, row.getCell(0).getNumericCellValue());
+            assertEquals(i / 8.0, row.getCell(1).getNumericCellValue());
+            assertEquals(-i * 1e20, row.getCell(2).getNumericCellValue());
+            assertEquals("r<" + i + "> \u00e9\u20ac", row.getCell(3).getStringCellValue());
+            assertEquals(i % 2 == 0, row.getCell(27).getBooleanCellValue());
+        }
+        wb.dispose();
+    }
+
+    /**
+     * Fills each sheet from its own thread, then writes the workbook with several threads
+     */
+    public void testConcurrentSheetsAndParallelWrite() throws Exception {
+        final SXSSFWorkbook wb = new SXSSFWorkbook(10);
+        final int nSheets = 6;
+        final int nRows = 500;
+        for (int i = 0; i < nSheets; i++) {
+            wb.createSheet("S" + i);
+        }
+        Thread[] threads = new Thread[nSheets];
+        final Throwable[] failures = new Throwable[nSheets];
+        for (int i = 0; i < nSheets; i++) {
+            final int sheetIndex = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        Sheet sh = wb.getSheetAt(sheetIndex);
+                        // each thread registers its own style
+                        CellStyle style = wb.createCellStyle();
+                        style.setDataFormat(wb.createDataFormat().getFormat("0.0" + sheetIndex));
+                        for (int r = 0; r < nRows; r++) {
+                            Row row = sh.createRow(r);
+                            row.createCell(0).setCellValue("S" + sheetIndex + "R" + r);
+                            Cell cell = row.createCell(1);
+                            cell.setCellValue(sheetIndex * 1000 + r);
+                            cell.setCellStyle(style);
+                        }
+                    } catch (Throwable t) {
+                        failures[sheetIndex] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < nSheets; i++) {
+            threads[i].join();
+            if (failures[i] != null) {
+                throw new RuntimeException(failures[i]);
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        wb.write(baos, 4);
+        XSSFWorkbook xssfWorkbook = new XSSFWorkbook(new ByteArrayInputStream(baos.toByteArray()));
+        assertEquals(nSheets, xssfWorkbook.getNumberOfSheets());
+        for (int i = 0; i < nSheets; i++) {
+            Sheet sh = xssfWorkbook.getSheet("S" + i);
+            assertEquals(nRows - 1, sh.getLastRowNum());
+            for (int r = 0; r < nRows; r++) {
+                Row row = sh.getRow(r);
+                assertEquals("S" + i + "R" + r, row.getCell(0).getStringCellValue());
+                assertEquals((double)(i * 1000 + r), row.getCell(1).getNumericCellValue());
+                assertEquals("0.0" + i, row.getCell(1).getCellStyle().getDataFormatString());
+            }
+        }
+        assertTrue(wb.dispose());
+    }
+
+    /**
+     * A failing output stream stops the parallel write, and the error gets through
+     */
+    public void testParallelWriteFailure() {
+        // random values don't compress well, so the output fails before the last sheet
+        Random random = new Random(42);
+        SXSSFWorkbook wb = new SXSSFWorkbook(10);
+        for (int i = 0; i < 20; i++) {
+            Sheet sh = wb.createSheet("S" + i);
+            for (int r = 0; r < 5000; r++) {
+                sh.createRow(r).createCell(0).setCellValue(random.nextDouble());
+            }
+        }
+        OutputStream failing = new OutputStream() {
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        try {
+            wb.write(failing, 2);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertTrue(wb.dispose());
+    }
+
+    public void testSharedStringsTable() throws Exception {
+        // a workbook can only be written once, so each thread count gets its own
+        for (int nThreads = 1; nThreads <= 2; nThreads++) {
+            XSSFWorkbook template = new XSSFWorkbook();
+            template.createSheet("S1").createRow(0).createCell(0).setCellValue("repeated");
+            SXSSFWorkbook wb = new SXSSFWorkbook(template, 10, false, true);
+            Sheet sh = wb.getSheetAt(0);
+            for (int r = 1; r < 100; r++) {
+                Row row = sh.createRow(r);
+                row.createCell(0).setCellValue("repeated");
+                row.createCell(1).setCellValue(" <row " + (r % 10) + "> ");
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            wb.write(baos, nThreads);
+            XSSFWorkbook xssfWorkbook = new XSSFWorkbook(new ByteArrayInputStream(baos.toByteArray()));
+            // the template's string, and ten distinct ones
+            assertEquals(11, xssfWorkbook.getSharedStringSource().getUniqueCount());
+            assertEquals(199, xssfWorkbook.getSharedStringSource().getCount());
+            Sheet xsh = xssfWorkbook.getSheetAt(0);
+            assertEquals("repeated", xsh.getRow(0).getCell(0).getStringCellValue());
+            for (int r = 1; r < 100; r++) {
+                Row row = xsh.getRow(r);
+                assertEquals("repeated", row.getCell(0).getStringCellValue());
+                assertEquals(" <row " + (r % 10) + "> ", row.getCell(1).getStringCellValue());
+            }
+            assertTrue(wb.dispose());
+        }
+    }
+
+    /**
+     * Subclasses that only override the deprecated createWriter() still get it used
+     */
+    @SuppressWarnings("deprecation")
+    public void testLegacyCreateWriter() {
+        final boolean[] used = new boolean[1];
+        SXSSFWorkbook wb = new SXSSFWorkbook(10) {
+            protected SheetDataWriter createSheetDataWriter() throws IOException {
+                return new SheetDataWriter() {
+                    public Writer createWriter(File fd) throws IOException {
+                        used[0] = true;
+                        return super.createWriter(fd);
+                    }
+                };
+            }
+        };
+        Sheet sh = wb.createSheet();
+        for (int i = 0; i < 100; i++) {
+            Row row = sh.createRow(i);
+            row.createCell(0).setCellValue(i / 8.0);
+            row.createCell(1).setCellValue("r<" + i + "> \u00e9\u20ac");
+        }
+        assertTrue(used[0]);
+
+        XSSFWorkbook xssfWorkbook = (XSSFWorkbook) SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+        Sheet xsh = xssfWorkbook.getSheetAt(0);
+        for (int i = 0; i < 100; i++) {
+            Row row = xsh.getRow(i);
+            assertEquals(i / 8.0, row.getCell(0).getNumericCellValue());
+            assertEquals("r<" + i + "> \u00e9\u20ac", row.getCell(1).getStringCellValue());
+        }
+        wb.dispose();
+    }
+
+    /**
+     * The sheet data goes into the first output, so writing again must fail
+     */
+    public void testWriteTwice() throws IOException {
+        SXSSFWorkbook wb = new SXSSFWorkbook(10);
+        wb.createSheet().createRow(0).createCell(0).setCellValue(1.0);
+        wb.write(new ByteArrayOutputStream());
+        try {
+            wb.write(new ByteArrayOutputStream());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            wb.write(new ByteArrayOutputStream(), 2);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(wb.dispose());
+
+        wb = new SXSSFWorkbook(10);
+        wb.createSheet().createRow(0).createCell(0).setCellValue(1.0);
+        assertTrue(wb.dispose());
+        try {
+            wb.write(new ByteArrayOutputStream());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
     public void testWorkbookDispose()
     {
         SXSSFWorkbook wb = new SXSSFWorkbook();
@@ -17,6 +17,12 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.XSSFITestDataProvider;
@@ -86,4 +92,57 @@ public final class TestXSSFFormulaEvaluation extends BaseTestFormulaEvaluator {
         }
 
     }
+
+    /**
+     * With lazy rows, rows and cells are wrapped on first access, which must all happen
+     *  before the evaluating threads read them
+     */
+    public void testEvaluateAllInParallelLazyRows() throws Exception {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        for (String sheetName : new String[] { "First", "Second" }) {
+            XSSFSheet sheet = wb.createSheet(sheetName);
+            for (int r = 0; r < 500; r++) {
+                XSSFRow row = sheet.createRow(r);
+                int excelRow = r + 1;
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellFormula("A" + excelRow + "*2");
+                row.createCell(2).setCellFormula("B" + excelRow + "+First!A" + (500 - r));
+                row.createCell(3).setCellFormula(r == 0 ? "C1" : "C" + excelRow + "+D" + r + "-C" + r);
+                row.createCell(4).setCellFormula("TEXT(D" + excelRow + ",\"0.00\")");
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wb.write(out);
+        byte[] data = out.toByteArray();
+
+        XSSFWorkbook wbSerial = openLazy(data);
+        wbSerial.getCreationHelper().createFormulaEvaluator().evaluateAll();
+        for (int i = 0; i < 5; i++) {
+            XSSFWorkbook wbParallel = openLazy(data);
+            wbParallel.getCreationHelper().createFormulaEvaluator().evaluateAll(4);
+
+            for (int s = 0; s < wbSerial.getNumberOfSheets(); s++) {
+                XSSFSheet sheetSerial = wbSerial.getSheetAt(s);
+                XSSFSheet sheetParallel = wbParallel.getSheetAt(s);
+                for (int r = 0; r < 500; r++) {
+                    for (int c = 1; c < 5; c++) {
+                        XSSFCell expected = sheetSerial.getRow(r).getCell(c);
+                        XSSFCell actual = sheetParallel.getRow(r).getCell(c);
+                        String msg = sheetSerial.getSheetName() + "!" + r + "," + c;
+                        assertEquals(msg, expected.getCachedFormulaResultType(), actual.getCachedFormulaResultType());
+                        if (c == 4) {
+                            assertEquals(msg, expected.getStringCellValue(), actual.getStringCellValue());
+                        } else {
+                            assertEquals(msg, expected.getNumericCellValue(), actual.getNumericCellValue(), 0.0);
+                        }
+                    }
+                }
+            }
+            assertEquals(2 * 499, wbParallel.getSheet("Second").getRow(499).getCell(3).getNumericCellValue(), 0.0);
+        }
+    }
+
+    private static XSSFWorkbook openLazy(byte[] data) throws IOException, InvalidFormatException {
+        return new XSSFWorkbook(OPCPackage.open(new ByteArrayInputStream(data)), true);
+    }
 }
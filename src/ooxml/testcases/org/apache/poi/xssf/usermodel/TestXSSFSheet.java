@@ -1310,4 +1310,50 @@ public final class TestXSSFSheet extends BaseTestSheet {
         }
         fail();
     }
+
+    public void testLazyRows() throws Exception {
+        XSSFWorkbook eager = new XSSFWorkbook(XSSFTestDataSamples.openSamplePackage("shared_formulas.xlsx"));
+        XSSFWorkbook lazy = new XSSFWorkbook(XSSFTestDataSamples.openSamplePackage("shared_formulas.xlsx"), true);
+        XSSFSheet eagerSheet = eager.getSheetAt(0);
+        XSSFSheet lazySheet = lazy.getSheetAt(0);
+
+        // touch a single cell first, the shared formulas must still be known
+        XSSFCell c = lazySheet.getRow(5).getCell(0);
+        assertEquals(eagerSheet.getRow(5).getCell(0).getCellFormula(), c.getCellFormula());
+        assertSame(c, lazySheet.getRow(5).getCell(0));
+
+        assertEquals(eagerSheet.getFirstRowNum(), lazySheet.getFirstRowNum());
+        assertEquals(eagerSheet.getLastRowNum(), lazySheet.getLastRowNum());
+        assertEquals(eagerSheet.getPhysicalNumberOfRows(), lazySheet.getPhysicalNumberOfRows());
+        for (Row eagerRow : eagerSheet) {
+            Row lazyRow = lazySheet.getRow(eagerRow.getRowNum());
+            assertEquals(eagerRow.getFirstCellNum(), lazyRow.getFirstCellNum());
+            assertEquals(eagerRow.getLastCellNum(), lazyRow.getLastCellNum());
+            assertEquals(eagerRow.getPhysicalNumberOfCells(), lazyRow.getPhysicalNumberOfCells());
+            for (Cell eagerCell : eagerRow) {
+                Cell lazyCell = lazyRow.getCell(eagerCell.getColumnIndex());
+                assertEquals(eagerCell.getCellType(), lazyCell.getCellType());
+                if (eagerCell.getCellType() == Cell.CELL_TYPE_FORMULA) {
+                    assertEquals(eagerCell.getCellFormula(), lazyCell.getCellFormula());
+                } else {
+                    assertEquals(eagerCell.toString(), lazyCell.toString());
+                }
+            }
+        }
+
+        // changes to a lazily opened sheet are saved as usual
+        lazy = new XSSFWorkbook(XSSFTestDataSamples.openSamplePackage("shared_formulas.xlsx"), true);
+        lazySheet = lazy.getSheetAt(0);
+        int lastRowNum = lazySheet.getLastRowNum();
+        lazySheet.getRow(1).createCell(5).setCellValue("changed");
+        lazySheet.removeRow(lazySheet.getRow(2));
+        lazySheet.createRow(lastRowNum + 1).createCell(3).setCellValue(42);
+        lazy = XSSFTestDataSamples.writeOutAndReadBack(lazy);
+        lazySheet = lazy.getSheetAt(0);
+        assertEquals("changed", lazySheet.getRow(1).getCell(5).getStringCellValue());
+        assertNull(lazySheet.getRow(2));
+        assertEquals(42.0, lazySheet.getRow(lastRowNum + 1).getCell(3).getNumericCellValue());
+        assertEquals(eagerSheet.getRow(5).getCell(0).getCellFormula(),
+                lazySheet.getRow(5).getCell(0).getCellFormula());
+    }
 }
@@ -48,6 +48,8 @@ import org.apache.poi.poifs.filesystem.DocumentEntry;
 import org.apache.poi.poifs.filesystem.DocumentInputStream;
 import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.poifs.filesystem.POIFSWriterEvent;
+import org.apache.poi.poifs.filesystem.POIFSWriterListener;
 import org.apache.poi.util.LittleEndian;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
@@ -321,75 +323,78 @@ public final class HSLFSlideShow extends POIDocument {
 	}
 
 	/**
-	 * Find and read in pictures contained in this presentation.
+	 * Find the pictures contained in this presentation.
 	 * This is lazily called as and when we want to touch pictures.
+	 * Only the header of each picture is read here, the picture data
+	 *  itself is read from the stream when it's first used.
 	 */
 	private void readPictures() throws IOException {
-        _pictures = new ArrayList<PictureData>();
-
-		byte[] pictstream;
+		_pictures = new ArrayList<PictureData>();
 
+		DocumentEntry entry;
 		try {
-			DocumentEntry entry = (DocumentEntry)directory.getEntry("Pictures");
-			pictstream = new byte[entry.getSize()];
-			DocumentInputStream is = directory.createDocumentInputStream("Pictures");
-			is.read(pictstream);
+			entry = (DocumentEntry)directory.getEntry("Pictures");
 		} catch (FileNotFoundException e){
 			// Silently catch exceptions if the presentation doesn't
 			//  contain pictures - will use a null set instead
 			return;
 		}
 
-        int pos = 0;
-		// An empty picture record (length 0) will take up 8 bytes
-        while (pos <= (pictstream.length-8)) {
-            int offset = pos;
-
-            // Image signature
-            int signature = LittleEndian.getUShort(pictstream, pos);
-            pos += LittleEndian.SHORT_SIZE;
-            // Image type + 0xF018
-            int type = LittleEndian.getUShort(pictstream, pos);
-            pos += LittleEndian.SHORT_SIZE;
-            // Image size (excluding the 8 byte header)
-            int imgsize = LittleEndian.getInt(pictstream, pos);
-            pos += LittleEndian.INT_SIZE;
-
-            // When parsing the BStoreDelay stream, [MS-ODRAW] says that we
-            //  should terminate if the type isn't 0xf007 or 0xf018->0xf117
-            if (!((type == 0xf007) || (type >= 0xf018 && type <= 0xf117)))
-                break;
-
-			// The image size must be 0 or greater
-			// (0 is allowed, but odd, since we do wind on by the header each
-			//  time, so we won't get stuck)
-			if(imgsize < 0) {
-				throw new CorruptPowerPointFileException("The file contains a picture, at position " + _pictures.size() + ", which has a negatively sized data length, so we can't trust any of the picture data");
-			}
+		int streamSize = entry.getSize();
+		byte[] header = new byte[8];
+		DocumentInputStream is = directory.createDocumentInputStream(entry);
+		try {
+			int pos = 0;
+			// An empty picture record (length 0) will take up 8 bytes
+			while (pos <= (streamSize-8)) {
+				int offset = pos;
+				is.readFully(header);
+
+				// Image signature
+				int signature = LittleEndian.getUShort(header, 0);
+				// Image type + 0xF018
+				int type = LittleEndian.getUShort(header, 2);
+				// Image size (excluding the 8 byte header)
+				int imgsize = LittleEndian.getInt(header, 4);
+				pos += header.length;
+
+				// When parsing the BStoreDelay stream, [MS-ODRAW] says that we
+				//  should terminate if the type isn't 0xf007 or 0xf018->0xf117
+				if (!((type == 0xf007) || (type >= 0xf018 && type <= 0xf117)))
+					break;
+
+				// The image size must be 0 or greater
+				// (0 is allowed, but odd, since we do wind on by the header each
+				//  time, so we won't get stuck)
+				if(imgsize < 0) {
+					throw new CorruptPowerPointFileException("The file contains a picture, at position " + _pictures.size() + ", which has a negatively sized data length, so we can't trust any of the picture data");
+				}
+				if(imgsize > streamSize - pos) {
+					throw new CorruptPowerPointFileException("The file contains a picture, at position " + _pictures.size() + ", which runs past the end of the pictures stream");
+				}
 
-			// If they type (including the bonus 0xF018) is 0, skip it
-			if(type == 0) {
-				logger.log(POILogger.ERROR, "Problem reading picture: Invalid image type 0, on picture with length " + imgsize + ".\nYou document will probably become corrupted if you save it!");
-				logger.log(POILogger.ERROR, "" + pos);
-			} else {
-				// Build the PictureData object from the data
-				try {
-					PictureData pict = PictureData.create(type - 0xF018);
-
-                    // Copy the data, ready to pass to PictureData
-                    byte[] imgdata = new byte[imgsize];
-                    System.arraycopy(pictstream, pos, imgdata, 0, imgdata.length);
-                    pict.setRawData(imgdata);
-
-                    pict.setOffset(offset);
-					_pictures.add(pict);
-				} catch(IllegalArgumentException e) {
-					logger.log(POILogger.ERROR, "Problem reading picture: " + e + "\nYou document will probably become corrupted if you save it!");
+				// If they type (including the bonus 0xF018) is 0, skip it
+				if(type == 0) {
+					logger.log(POILogger.ERROR, "Problem reading picture: Invalid image type 0, on picture with length " + imgsize + ".\nYou document will probably become corrupted if you save it!");
+					logger.log(POILogger.ERROR, "" + pos);
+				} else {
+					// Build the PictureData object, which will read its data later
+					try {
+						PictureData pict = PictureData.create(type - 0xF018);
+						pict.setRawDataSource(entry, pos, imgsize);
+						pict.setOffset(offset);
+						_pictures.add(pict);
+					} catch(IllegalArgumentException e) {
+						logger.log(POILogger.ERROR, "Problem reading picture: " + e + "\nYou document will probably become corrupted if you save it!");
+					}
 				}
-			}
 
-            pos += imgsize;
-        }
+				is.skip(imgsize);
+				pos += imgsize;
+			}
+		} finally {
+			is.close();
+		}
 	}
 
 
@@ -494,13 +499,18 @@ public final class HSLFSlideShow extends POIDocument {
            readPictures();
         }
         if (_pictures.size() > 0) {
-            ByteArrayOutputStream pict = new ByteArrayOutputStream();
-            for (PictureData p : _pictures) {
-                p.write(pict);
+            if (directory.getNFileSystem() != null) {
+                // NPOIFS reads the pictures from its file as they're needed,
+                //  which may be the file we're about to write over, so get
+                //  them all in before anything is written
+                for (PictureData p : _pictures) {
+                    p.getRawData();
+                }
             }
-            outFS.createDocument(
-                new ByteArrayInputStream(pict.toByteArray()), "Pictures"
-            );
+            // Pictures which haven't been touched are copied straight
+            //  from the old stream as the new one is written
+            PicturesStreamWriter pictWriter = new PicturesStreamWriter();
+            outFS.createDocument("Pictures", pictWriter.getSize(), pictWriter);
             writtenEntries.add("Pictures");
         }
 
@@ -513,6 +523,37 @@ public final class HSLFSlideShow extends POIDocument {
         outFS.writeFilesystem(out);
     }
 
+    /**
+     * Writes the 'Pictures' stream, one picture at a time, when the
+     *  filesystem is written out.
+     */
+    private final class PicturesStreamWriter implements POIFSWriterListener {
+        private final PictureData[] _pics;
+        private final int _size;
+
+        public PicturesStreamWriter() {
+            _pics = _pictures.toArray(new PictureData[_pictures.size()]);
+            int size = 0;
+            for (PictureData p : _pics) {
+                size += p.getRawDataSize() + 8;
+            }
+            _size = size;
+        }
+        public int getSize() {
+            return _size;
+        }
+        public void processPOIFSWriterEvent(POIFSWriterEvent event) {
+            try {
+                OutputStream out = event.getStream();
+                for (PictureData p : _pics) {
+                    p.write(out);
+                }
+            } catch (IOException e) {
+                throw new HSLFException("Couldn't write the pictures stream", e);
+            }
+        }
+    }
+
 
 	/* ******************* adding methods follow ********************* */
 
@@ -560,7 +601,7 @@ public final class HSLFSlideShow extends POIDocument {
       int offset = 0;
 	   if(_pictures.size() > 0) {
 	      PictureData prev = _pictures.get(_pictures.size() - 1);
-	      offset = prev.getOffset() + prev.getRawData().length + 8;
+	      offset = prev.getOffset() + prev.getRawDataSize() + 8;
 	   }
 	   img.setOffset(offset);
 	   _pictures.add(img);
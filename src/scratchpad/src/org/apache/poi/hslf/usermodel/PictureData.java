@@ -23,6 +23,8 @@ import org.apache.poi.util.POILogFactory;
 import org.apache.poi.hslf.model.Picture;
 import org.apache.poi.hslf.blip.*;
 import org.apache.poi.hslf.exceptions.HSLFException;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
 
 import java.io.OutputStream;
 import java.io.IOException;
@@ -45,9 +47,29 @@ public abstract class PictureData {
     protected static final int CHECKSUM_SIZE = 16;
 
     /**
-    * Binary data of the picture
+     * Size of the chunks that a picture which hasn't been loaded is copied in
+     */
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    /**
+    * Binary data of the picture, or <code>null</code> if it hasn't been read
+    *  from {@link #rawdataSource} yet
     */
     private byte[] rawdata;
+    /**
+     * The 'Pictures' stream that the binary data of the picture is read from
+     *  the first time it's needed, if the picture came from a file
+     */
+    private DocumentEntry rawdataSource;
+    /**
+     * The position of the binary data in {@link #rawdataSource}, just after
+     *  the 8 byte header
+     */
+    private int rawdataSourceOffset;
+    /**
+     * The length of the binary data in {@link #rawdataSource}
+     */
+    private int rawdataSourceSize;
     /**
      * The offset to the picture in the stream
      */
@@ -91,11 +113,65 @@ public abstract class PictureData {
      * @return picture data
      */
     public byte[] getRawData(){
+        if (rawdata == null && rawdataSource != null) {
+            rawdata = readRawData(rawdataSourceSize);
+            rawdataSource = null;
+        }
         return rawdata;
     }
 
     public void setRawData(byte[] data){
         rawdata = data;
+        rawdataSource = null;
+    }
+
+    /**
+     * Sets where the raw binary data of this picture is, so that it can be read
+     *  only when it's first needed, rather than when the slideshow is opened.
+     * The document must remain readable for as long as this picture is used.
+     *
+     * @param source the 'Pictures' stream
+     * @param offset the position of the data in the stream, after the 8 byte header
+     * @param size the length of the data
+     */
+    public void setRawDataSource(DocumentEntry source, int offset, int size){
+        rawdata = null;
+        rawdataSource = source;
+        rawdataSourceOffset = offset;
+        rawdataSourceSize = size;
+    }
+
+    /**
+     * Returns the length of the raw binary data of this Picture, without
+     *  reading the data if it hasn't been read yet
+     *
+     * @return the length of the data returned by {@link #getRawData()}
+     */
+    public int getRawDataSize(){
+        if (rawdata == null && rawdataSource != null) {
+            return rawdataSourceSize;
+        }
+        return rawdata == null ? 0 : rawdata.length;
+    }
+
+    /**
+     * Reads the first <code>length</code> bytes of the raw data from the
+     *  source stream
+     */
+    private byte[] readRawData(int length){
+        byte[] data = new byte[length];
+        try {
+            DocumentInputStream is = new DocumentInputStream(rawdataSource);
+            try {
+                is.skip(rawdataSourceOffset);
+                is.readFully(data);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e){
+            throw new HSLFException("Couldn't read the picture at offset " + offset, e);
+        }
+        return data;
     }
 
     /**
@@ -121,6 +197,10 @@ public abstract class PictureData {
      * Returns 16-byte checksum of this picture
      */
     public byte[] getUID(){
+        if (rawdata == null && rawdataSource != null) {
+            // no need to read the whole picture for this
+            return readRawData(CHECKSUM_SIZE);
+        }
         byte[] uid = new byte[16];
         System.arraycopy(rawdata, 0, uid, 0, uid.length);
         return uid;
@@ -155,13 +235,29 @@ public abstract class PictureData {
         LittleEndian.putUShort(data, 0, getType() + 0xF018);
         out.write(data);
 
-        byte[] rawdata = getRawData();
-
         data = new byte[LittleEndian.INT_SIZE];
-        LittleEndian.putInt(data, 0, rawdata.length);
+        LittleEndian.putInt(data, 0, getRawDataSize());
         out.write(data);
 
-        out.write(rawdata);
+        if (rawdata == null && rawdataSource != null) {
+            // Copy the data across without keeping hold of it
+            DocumentInputStream is = new DocumentInputStream(rawdataSource);
+            try {
+                is.skip(rawdataSourceOffset);
+                byte[] buffer = new byte[Math.min(COPY_BUFFER_SIZE, rawdataSourceSize)];
+                int remaining = rawdataSourceSize;
+                while (remaining > 0) {
+                    int len = Math.min(buffer.length, remaining);
+                    is.readFully(buffer, 0, len);
+                    out.write(buffer, 0, len);
+                    remaining -= len;
+                }
+            } finally {
+                is.close();
+            }
+        } else {
+            out.write(getRawData());
+        }
     }
 
     /**
@@ -210,8 +306,8 @@ public abstract class PictureData {
     public byte[] getHeader() {
         byte[] header = new byte[16 + 8];
         LittleEndian.putInt(header, 0, getSignature());
-        LittleEndian.putInt(header, 4, getRawData().length);
-        System.arraycopy(rawdata, 0, header, 8, 16);
+        LittleEndian.putInt(header, 4, getRawDataSize());
+        System.arraycopy(getUID(), 0, header, 8, 16);
         return header;
     }
 
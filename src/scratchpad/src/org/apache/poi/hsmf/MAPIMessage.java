@@ -118,6 +118,17 @@ public class MAPIMessage extends POIDocument {
    public MAPIMessage(NPOIFSFileSystem fs) throws IOException {
       this(fs.getRoot());
    }
+   /**
+    * Constructor for reading MSG Files from a POIFS filesystem,
+    *  optionally reading the binary and string chunks lazily.
+    * See {@link #MAPIMessage(DirectoryNode, boolean)}
+    * @param fs
+    * @param lazy
+    * @throws IOException
+    */
+   public MAPIMessage(NPOIFSFileSystem fs, boolean lazy) throws IOException {
+      this(fs.getRoot(), lazy);
+   }
    /**
     * @deprecated Use {@link #MAPIMessage(DirectoryNode)} instead
     */
@@ -132,10 +143,29 @@ public class MAPIMessage extends POIDocument {
     * @throws IOException
     */
    public MAPIMessage(DirectoryNode poifsDir) throws IOException {
+      this(poifsDir, false);
+   }
+   /**
+    * Constructor for reading MSG Files from a certain
+    *  point within a POIFS filesystem.
+    * When reading lazily, the binary and string chunks, such as
+    *  the bodies and attachment data, are only read from the
+    *  filesystem when they're first used, so only what's needed
+    *  is held in memory. Attachments can then also be streamed,
+    *  see {@link AttachmentChunks#getEmbeddedAttachmentObjectStream()}.
+    *  The filesystem must be kept open for as long as the message
+    *  is in use, and is best opened from a File, as
+    *  {@link NPOIFSFileSystem#NPOIFSFileSystem(File)} then doesn't
+    *  load it into memory either.
+    * @param poifsDir
+    * @param lazy
+    * @throws IOException
+    */
+   public MAPIMessage(DirectoryNode poifsDir, boolean lazy) throws IOException {
       super(poifsDir);
 
       // Grab all the chunks
-      ChunkGroup[] chunkGroups = POIFSChunkParser.parse(poifsDir);
+      ChunkGroup[] chunkGroups = POIFSChunkParser.parse(poifsDir, lazy);
 
       // Grab interesting bits
       ArrayList<AttachmentChunks> attachments = new ArrayList<AttachmentChunks>();
@@ -32,6 +32,7 @@ import static org.apache.poi.hsmf.datatypes.MAPIProperty.ATTACH_RENDERING;
 import static org.apache.poi.hsmf.datatypes.MAPIProperty.ATTACH_SIZE;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -104,6 +105,19 @@ public class AttachmentChunks implements ChunkGroup {
       return null;
    }
    
+   /**
+    * Returns a stream of the embedded object, if the attachment
+    *  is an object based embedding, or null if it's an embedded
+    *  message. For a {@link MAPIMessage} reading its chunks lazily,
+    *  the object is streamed from the file rather than loaded.
+    */
+   public InputStream getEmbeddedAttachmentObjectStream() throws IOException {
+      if (attachData != null) {
+         return attachData.getValueStream();
+      }
+      return null;
+   }
+   
    public Chunk[] getAll() {
       return allChunks.toArray(new Chunk[allChunks.size()]);
    }
@@ -16,11 +16,13 @@
 ==================================================================== */
 package org.apache.poi.hsmf.datatypes;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.poi.hsmf.datatypes.Types.MAPIType;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
 import org.apache.poi.util.IOUtils;
 
 /**
@@ -52,21 +54,49 @@ public class ByteChunk extends Chunk {
    }
 
    public void writeValue(OutputStream out) throws IOException {
+      if (unreadValue != null) {
+         // Copy it across, without holding on to it
+         InputStream inp = getValueStream();
+         try {
+            IOUtils.copy(inp, out);
+         } finally {
+            inp.close();
+         }
+         return;
+      }
       out.write(value);
    }
 
    public byte[] getValue() {
+      ensureValueRead();
       return value;
    }
    public void setValue(byte[] value) {
+      this.unreadValue = null;
       this.value = value;
    }
+
+   /**
+    * Returns a stream of the data. If the data is being read
+    *  lazily, and hasn't been needed yet, it's streamed from the
+    *  document, without being held in memory.
+    * @return the data, or null if there isn't any
+    */
+   public InputStream getValueStream() throws IOException {
+      if (unreadValue != null) {
+         return new DocumentInputStream(unreadValue);
+      }
+      if (value == null) {
+         return null;
+      }
+      return new ByteArrayInputStream(value);
+   }
    
    /**
     * Returns the data in a debug-friendly string format
     */
    public String toString() {
-       return toDebugFriendlyString(value);
+       return toDebugFriendlyString(getValue());
    }
    
    /**
@@ -107,6 +137,6 @@ public class ByteChunk extends Chunk {
     * @return  the data formatted as a string
     */
    public String getAs7bitString() {
-      return StringChunk.parseAs7BitData(value);
+      return StringChunk.parseAs7BitData(getValue());
    }
 }
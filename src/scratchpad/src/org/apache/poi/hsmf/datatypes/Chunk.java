@@ -22,13 +22,25 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.poi.hsmf.datatypes.Types.MAPIType;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.DocumentNode;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
 
 public abstract class Chunk {
+   private static POILogger logger = POILogFactory.getLogger(Chunk.class);
+
    public static final String DEFAULT_NAME_PREFIX = "__substg1.0_";
    
    protected int chunkId;
    protected MAPIType type;
    protected String namePrefix;
+
+   /**
+    * Where the value is still to be read from, if it's
+    *  being read lazily and hasn't been needed yet
+    */
+   protected DocumentNode unreadValue;
 	
    protected Chunk(String namePrefix, int chunkId, MAPIType type) {
       this.namePrefix = namePrefix;
@@ -74,4 +86,37 @@ public abstract class Chunk {
     * Reads the value of this chunk using an InputStream
     */
    public abstract void readValue(InputStream value) throws IOException;
+
+   /**
+    * Has the value of this chunk read from the document the
+    *  first time it's needed, rather than now. Only chunks which
+    *  check {@link #ensureValueRead()} before using their value,
+    *  such as {@link ByteChunk} and {@link StringChunk}, support this.
+    */
+   public void readValueLater(DocumentNode value) {
+      this.unreadValue = value;
+   }
+
+   /**
+    * Reads the value, if it was left to be read later and
+    *  hasn't been yet. If it can't be read, that's logged,
+    *  and the chunk is left without a value.
+    */
+   protected void ensureValueRead() {
+      if (unreadValue == null) {
+         return;
+      }
+      DocumentNode document = unreadValue;
+      unreadValue = null;
+      try {
+         DocumentInputStream inp = new DocumentInputStream(document);
+         try {
+            readValue(inp);
+         } finally {
+            inp.close();
+         }
+      } catch(IOException e) {
+         logger.log(POILogger.ERROR, "Error reading from part " + document.getName() + " - " + e.toString());
+      }
+   }
 }
@@ -69,8 +69,9 @@ public class StringChunk extends Chunk {
    public void set7BitEncoding(String encoding) {
       this.encoding7Bit = encoding;
 
-      // Re-read the String if we're a 7 bit one
-      if(type == Types.ASCII_STRING) {
+      // Re-read the String if we're a 7 bit one, unless it's
+      //  still to be read, when the new encoding gets used then
+      if(type == Types.ASCII_STRING && unreadValue == null) {
          parseString();
       }
    }
@@ -94,6 +95,7 @@ public class StringChunk extends Chunk {
    }
 
    public void writeValue(OutputStream out) throws IOException {
+      ensureValueRead();
       out.write(rawValue);
    }
    private void storeString() {
@@ -115,20 +117,23 @@ public class StringChunk extends Chunk {
     * Returns the Text value of the chunk
     */
    public String getValue() {
+      ensureValueRead();
       return this.value;
    }
 
    public byte[] getRawValue() {
+      ensureValueRead();
       return this.rawValue;
    }
 
    public void setValue(String str) {
+      this.unreadValue = null;
       this.value = str;
       storeString();
    }
 
    public String toString() {
-      return this.value;
+      return getValue();
    }
    
    /**
@@ -56,6 +56,16 @@ public final class POIFSChunkParser {
       return parse(fs.getRoot());
    }
    public static ChunkGroup[] parse(DirectoryNode node) throws IOException {
+      return parse(node, false);
+   }
+   /**
+    * Processes the chunks, optionally leaving the values of the
+    *  plain binary and string chunks to be read from the directory
+    *  when they're first used, see {@link Chunk#readValueLater(DocumentNode)}.
+    *  When reading lazily, the file system must be kept open for as
+    *  long as the chunks are used.
+    */
+   public static ChunkGroup[] parse(DirectoryNode node, boolean lazy) throws IOException {
       Chunks mainChunks = new Chunks();
       
       ArrayList<ChunkGroup> groups = new ArrayList<ChunkGroup>();
@@ -81,7 +91,7 @@ public final class POIFSChunkParser {
             }
             
             if(group != null) {
-               processChunks(dir, group);
+               processChunks(dir, group, lazy);
                groups.add(group);
             } else {
                // Unknown directory, skip silently
@@ -90,7 +100,7 @@ public final class POIFSChunkParser {
       }
       
       // Now do the top level chunks
-      processChunks(node, mainChunks);
+      processChunks(node, mainChunks, lazy);
       
       // All chunks are now processed, have the ChunkGroup
       // match up variable-length properties and their chunks
@@ -107,12 +117,15 @@ public final class POIFSChunkParser {
     *  doesn't recurse or descend 
     */
    protected static void processChunks(DirectoryNode node, ChunkGroup grouping) {
+      processChunks(node, grouping, false);
+   }
+   protected static void processChunks(DirectoryNode node, ChunkGroup grouping, boolean lazy) {
       for(Entry entry : node) {
          if(entry instanceof DocumentNode) {
-            process(entry, grouping);
+            process(entry, grouping, lazy);
          } else if(entry instanceof DirectoryNode) {
              if(entry.getName().endsWith(Types.DIRECTORY.asFileEnding())) {
-                 process(entry, grouping);
+                 process(entry, grouping, lazy);
              }
          }
       }
@@ -122,6 +135,9 @@ public final class POIFSChunkParser {
     * Creates a chunk, and gives it to its parent group 
     */
    protected static void process(Entry entry, ChunkGroup grouping) {
+      process(entry, grouping, false);
+   }
+   protected static void process(Entry entry, ChunkGroup grouping, boolean lazy) {
       String entryName = entry.getName();
       Chunk chunk = null;
       
@@ -204,7 +220,13 @@ public final class POIFSChunkParser {
       }
          
       if(chunk != null) {
-          if(entry instanceof DocumentNode) {
+          if(entry instanceof DocumentNode && lazy &&
+                (chunk instanceof ByteChunk || chunk instanceof StringChunk)) {
+             // Only the plain values can wait, the other chunks
+             //  are needed to make sense of the rest
+             chunk.readValueLater((DocumentNode)entry);
+             grouping.record(chunk);
+          } else if(entry instanceof DocumentNode) {
              try {
                 DocumentInputStream inp = new DocumentInputStream((DocumentNode)entry);
                 chunk.readValue(inp);
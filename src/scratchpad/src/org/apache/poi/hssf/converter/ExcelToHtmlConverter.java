@@ -48,6 +48,7 @@ import org.apache.poi.util.POILogger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
+import org.xml.sax.ContentHandler;
 
 /**
  * Converts xls files (97-2007) to HTML file.
@@ -121,6 +122,36 @@ public class ExcelToHtmlConverter extends AbstractExcelConverter
         return excelToHtmlConverter.getDocument();
     }
 
+    /**
+     * Converts Excel file (97-2007) into HTML, streaming the rows out as
+     * they're converted instead of building the whole DOM first. See
+     * {@link HtmlDocumentFacade#startStreaming()}.
+     * 
+     * @param xlsFile
+     *            file to process
+     * @param output
+     *            where to send the result HTML
+     */
+    public static void process( File xlsFile, ContentHandler output )
+            throws Exception
+    {
+        final HSSFWorkbook workbook = ExcelToHtmlUtils.loadXls( xlsFile );
+        HtmlDocumentFacade htmlDocumentFacade = new HtmlDocumentFacade(
+                DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .newDocument() );
+        htmlDocumentFacade.startStreaming();
+        try
+        {
+            new ExcelToHtmlConverter( htmlDocumentFacade )
+                    .processWorkbook( workbook );
+            htmlDocumentFacade.writeTo( output );
+        }
+        finally
+        {
+            htmlDocumentFacade.stopStreaming();
+        }
+    }
+
     private String cssClassContainerCell = null;
 
     private String cssClassContainerDiv = null;
@@ -651,8 +682,42 @@ public class ExcelToHtmlConverter extends AbstractExcelConverter
         final CellRangeAddress[][] mergedRanges = ExcelToHtmlUtils
                 .buildMergedRangesMap( sheet );
 
-        final List<Element> emptyRowElements = new ArrayList<Element>(
-                physicalNumberOfRows );
+        /*
+         * The column widths and headers come before the rows, so for the rows
+         * to be streamed as they're done, the number of columns has to be
+         * known up front, which takes converting them an extra time
+         */
+        final boolean streaming = htmlDocumentFacade.isStreaming();
+        final int maxSheetColumns = processRows( sheet, mergedRanges,
+                streaming ? null : tableBody );
+
+        processColumnWidths( sheet, maxSheetColumns, table );
+
+        if ( isOutputColumnHeaders() )
+        {
+            processColumnHeaders( sheet, maxSheetColumns, table );
+        }
+
+        table.appendChild( tableBody );
+
+        htmlDocumentFacade.getBody().appendChild( table );
+
+        if ( streaming )
+        {
+            processRows( sheet, mergedRanges, tableBody );
+        }
+    }
+
+    /**
+     * @param tableBody
+     *            where to add the rows, or <tt>null</tt> to only count the
+     *            columns
+     * @return maximum number of columns rendered in a row, at least one
+     */
+    private int processRows( HSSFSheet sheet,
+            CellRangeAddress[][] mergedRanges, Element tableBody )
+    {
+        final List<Element> emptyRowElements = new ArrayList<Element>();
         int maxSheetColumns = 1;
         for ( int r = sheet.getFirstRowNum(); r <= sheet.getLastRowNum(); r++ )
         {
@@ -671,6 +736,10 @@ public class ExcelToHtmlConverter extends AbstractExcelConverter
 
             int maxRowColumnNumber = processRow( mergedRanges, row,
                     tableRowElement );
+            maxSheetColumns = Math.max( maxSheetColumns, maxRowColumnNumber );
+
+            if ( tableBody == null )
+                continue;
 
             if ( maxRowColumnNumber == 0 )
             {
@@ -688,20 +757,10 @@ public class ExcelToHtmlConverter extends AbstractExcelConverter
                 }
 
                 tableBody.appendChild( tableRowElement );
+                htmlDocumentFacade.flush( tableBody );
             }
-            maxSheetColumns = Math.max( maxSheetColumns, maxRowColumnNumber );
-        }
-
-        processColumnWidths( sheet, maxSheetColumns, table );
-
-        if ( isOutputColumnHeaders() )
-        {
-            processColumnHeaders( sheet, maxSheetColumns, table );
         }
-
-        table.appendChild( tableBody );
-
-        htmlDocumentFacade.getBody().appendChild( table );
+        return maxSheetColumns;
     }
 
     protected void processSheetHeader( Element htmlBody, HSSFSheet sheet )
@@ -178,6 +178,15 @@ public abstract class AbstractWordConverter
 
     private PicturesManager picturesManager;
 
+    /**
+     * Called after each paragraph or table directly in a section has been
+     * added to the flow, which won't change after that
+     */
+    protected void afterTopLevelBlock( Element flow )
+    {
+        // no op by default
+    }
+
     /**
      * Special actions that need to be called after processing complete, like
      * updating stylesheets or building document notes list. Usually they are
@@ -1073,6 +1082,8 @@ public abstract class AbstractWordConverter
 
                 Table table = range.getTable( paragraph );
                 processTable( wordDocument, flow, table );
+                if ( currentTableLevel == Integer.MIN_VALUE )
+                    afterTopLevelBlock( flow );
 
                 p += table.numParagraphs();
                 p--;
@@ -1113,6 +1124,9 @@ public abstract class AbstractWordConverter
                 processParagraph( wordDocument, flow, currentTableLevel,
                         paragraph, AbstractWordUtils.EMPTY );
             }
+
+            if ( currentTableLevel == Integer.MIN_VALUE )
+                afterTopLevelBlock( flow );
         }
 
     }
@@ -16,14 +16,32 @@
 ==================================================================== */
 package org.apache.poi.hwpf.converter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.poi.util.Beta;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.Text;
-
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds the HTML document for the converters.
+ * <p>
+ * By default the whole document is built as DOM. For large documents,
+ * {@link #startStreaming()} makes the parts of the body the converter has
+ * finished with, see {@link #flush(Element)}, move out of the DOM to a
+ * temporary file as it goes, so the memory used only depends on the parts
+ * still being converted. The document is then sent to a
+ * {@link ContentHandler} by {@link #writeTo(ContentHandler)}, with the same
+ * markup as the DOM would have had. It can't be sent as it's converted, as
+ * the stylesheet in the head is only complete once the whole body has been.
+ */
 @Beta
 public class HtmlDocumentFacade
 {
@@ -38,6 +56,17 @@ public class HtmlDocumentFacade
     private Map<String, Map<String, String>> stylesheet = new LinkedHashMap<String, Map<String, String>>();
     private Element stylesheetElement;
 
+    /**
+     * Where the finished parts of the body go, when streaming
+     */
+    private NodeEventFile streamed;
+
+    /**
+     * Elements in the body whose start tags have been streamed, but not their
+     * end tags yet, outermost first
+     */
+    private final List<Element> streamedOpenElements = new ArrayList<Element>();
+
     protected Element title;
     protected Text titleText;
 
@@ -233,6 +262,67 @@ public class HtmlDocumentFacade
         return document.createElement( "ul" );
     }
 
+    /**
+     * Tells the facade that nothing will be added to the body in front of the
+     * given element, or its children, any more, and that none of those will
+     * change. When streaming, those are moved out of the DOM to the temporary
+     * file, along with the start tags of the element and the elements around
+     * it, which mustn't change any more either. When not streaming, does
+     * nothing.
+     * 
+     * @param container
+     *            the element, in the body, which is being filled
+     */
+    public void flush( Element container )
+    {
+        if ( streamed == null )
+            return;
+
+        List<Element> path = new ArrayList<Element>();
+        for ( Node node = container; node != body; node = node.getParentNode() )
+        {
+            if ( node == null )
+                throw new IllegalArgumentException( "Element <"
+                        + container.getTagName() + "> isn't in the body" );
+            path.add( 0, (Element) node );
+        }
+
+        try
+        {
+            // close the elements which aren't being filled any more
+            int common = 0;
+            while ( common < path.size()
+                    && common < streamedOpenElements.size()
+                    && path.get( common ) == streamedOpenElements.get( common ) )
+            {
+                common++;
+            }
+            closeStreamedElements( common );
+
+            // open those which are, after whatever comes before them
+            for ( int e = common; e < path.size(); e++ )
+            {
+                Element element = path.get( e );
+                Node parent = element.getParentNode();
+                while ( parent.getFirstChild() != element )
+                {
+                    Node previous = parent.getFirstChild();
+                    streamed.write( previous );
+                    parent.removeChild( previous );
+                }
+                streamed.startElement( element );
+                streamedOpenElements.add( element );
+            }
+
+            writeChildren( container );
+        }
+        catch ( IOException exc )
+        {
+            throw new RuntimeException(
+                    "Unable to write to the temporary file", exc );
+        }
+    }
+
     public Element getBody()
     {
         return body;
@@ -292,8 +382,119 @@ public class HtmlDocumentFacade
         this.titleText.setData( titleText );
     }
 
+    /**
+     * @return whether {@link #startStreaming()} has been called, and the
+     *         document not written yet
+     */
+    public boolean isStreaming()
+    {
+        return streamed != null;
+    }
+
+    /**
+     * Starts moving the finished parts of the body to a temporary file, see
+     * {@link #flush(Element)}. Once that's done, the document can only be
+     * output by {@link #writeTo(ContentHandler)}.
+     */
+    public void startStreaming() throws IOException
+    {
+        if ( streamed == null )
+            streamed = new NodeEventFile();
+    }
+
+    /**
+     * Deletes the temporary file used for streaming, if there still is one,
+     * for when the document won't be written after all
+     */
+    public void stopStreaming()
+    {
+        if ( streamed != null )
+        {
+            streamed.delete();
+            streamed = null;
+            streamedOpenElements.clear();
+        }
+    }
+
     public void updateStylesheet()
     {
         stylesheetElement.setTextContent( buildStylesheet( stylesheet ) );
     }
+
+    /**
+     * Sends the whole document to the handler. When streaming, the body is
+     * read back from the temporary file, which is then deleted, and the
+     * body is left empty in the DOM.
+     */
+    public void writeTo( ContentHandler handler ) throws IOException,
+            SAXException
+    {
+        try
+        {
+            handler.startDocument();
+            for ( Node node = document.getFirstChild(); node != null; node = node
+                    .getNextSibling() )
+            {
+                if ( node == html )
+                    writeHtml( handler );
+                else
+                    NodeEventFile.send( node, handler );
+            }
+            handler.endDocument();
+        }
+        finally
+        {
+            stopStreaming();
+        }
+    }
+
+    /**
+     * Writes the rest of the open elements, except the outermost ones, and
+     * their end tags
+     */
+    private void closeStreamedElements( int keep ) throws IOException
+    {
+        while ( streamedOpenElements.size() > keep )
+        {
+            Element finished = streamedOpenElements
+                    .remove( streamedOpenElements.size() - 1 );
+            writeChildren( finished );
+            streamed.endElement();
+            finished.getParentNode().removeChild( finished );
+        }
+    }
+
+    private void writeChildren( Element element ) throws IOException
+    {
+        Node child;
+        while ( ( child = element.getFirstChild() ) != null )
+        {
+            streamed.write( child );
+            element.removeChild( child );
+        }
+    }
+
+    private void writeHtml( ContentHandler handler ) throws IOException,
+            SAXException
+    {
+        NodeEventFile.startElement( html, handler );
+        for ( Node node = html.getFirstChild(); node != null; node = node
+                .getNextSibling() )
+        {
+            if ( node != body || streamed == null )
+            {
+                NodeEventFile.send( node, handler );
+                continue;
+            }
+
+            // everything left in the body is finished now
+            closeStreamedElements( 0 );
+            writeChildren( body );
+
+            NodeEventFile.startElement( body, handler );
+            streamed.sendTo( handler );
+            handler.endElement( "", body.getTagName(), body.getTagName() );
+        }
+        handler.endElement( "", html.getTagName(), html.getTagName() );
+    }
 }
@@ -0,0 +1,274 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.hwpf.converter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Stack;
+
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Holds the SAX events of DOM nodes in a temporary file, until they can be
+ * sent on. Used by the streaming mode of {@link HtmlDocumentFacade}.
+ */
+final class NodeEventFile
+{
+    private static final int START_ELEMENT = 1;
+    private static final int END_ELEMENT = 2;
+    private static final int TEXT = 3;
+    private static final int COMMENT = 4;
+
+    private static final POILogger logger = POILogFactory
+            .getLogger( NodeEventFile.class );
+
+    /**
+     * Sends the events of the element's start tag
+     */
+    static void startElement( Element element, ContentHandler handler )
+            throws SAXException
+    {
+        AttributesImpl attributes = new AttributesImpl();
+        NamedNodeMap domAttributes = element.getAttributes();
+        for ( int a = 0; a < domAttributes.getLength(); a++ )
+        {
+            Node attribute = domAttributes.item( a );
+            attributes.addAttribute( "", attribute.getNodeName(),
+                    attribute.getNodeName(), "CDATA",
+                    attribute.getNodeValue() );
+        }
+        handler.startElement( "", element.getTagName(),
+                element.getTagName(), attributes );
+    }
+
+    /**
+     * Sends the events of the node and everything in it
+     */
+    static void send( Node node, ContentHandler handler ) throws SAXException
+    {
+        switch ( node.getNodeType() )
+        {
+        case Node.ELEMENT_NODE:
+            startElement( (Element) node, handler );
+            for ( Node child = node.getFirstChild(); child != null; child = child
+                    .getNextSibling() )
+            {
+                send( child, handler );
+            }
+            handler.endElement( "", node.getNodeName(), node.getNodeName() );
+            break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            char[] text = node.getNodeValue().toCharArray();
+            handler.characters( text, 0, text.length );
+            break;
+        case Node.COMMENT_NODE:
+            if ( handler instanceof LexicalHandler )
+            {
+                char[] comment = node.getNodeValue().toCharArray();
+                ( (LexicalHandler) handler ).comment( comment, 0,
+                        comment.length );
+            }
+            break;
+        default:
+            // nothing else is created by the converters
+            break;
+        }
+    }
+
+    private File file;
+
+    private DataOutputStream out;
+
+    NodeEventFile() throws IOException
+    {
+        file = TempFile.createTempFile( "poi-converter-", ".tmp" );
+        out = new DataOutputStream( new BufferedOutputStream(
+                new FileOutputStream( file ) ) );
+    }
+
+    /**
+     * Closes and deletes the file, if that hasn't been done already
+     */
+    void delete()
+    {
+        try
+        {
+            if ( out != null )
+                out.close();
+        }
+        catch ( IOException exc )
+        {
+            logger.log( POILogger.WARN, "Unable to close temporary file: ",
+                    exc, exc );
+        }
+        out = null;
+
+        if ( file != null && !file.delete() && file.exists() )
+        {
+            logger.log( POILogger.WARN, "The temporary file '",
+                    file.getAbsolutePath(), "' cannot be deleted" );
+        }
+        file = null;
+    }
+
+    void endElement() throws IOException
+    {
+        out.writeByte( END_ELEMENT );
+    }
+
+    /**
+     * Sends all the events written so far, after which no more can be
+     * written
+     */
+    void sendTo( ContentHandler handler ) throws IOException, SAXException
+    {
+        out.close();
+        out = null;
+
+        DataInputStream in = new DataInputStream( new BufferedInputStream(
+                new FileInputStream( file ) ) );
+        try
+        {
+            Stack<String> openElements = new Stack<String>();
+            int type;
+            while ( ( type = in.read() ) != -1 )
+            {
+                switch ( type )
+                {
+                case START_ELEMENT:
+                    String name = readString( in );
+                    AttributesImpl attributes = new AttributesImpl();
+                    int count = in.readInt();
+                    for ( int a = 0; a < count; a++ )
+                    {
+                        String attributeName = readString( in );
+                        attributes.addAttribute( "", attributeName,
+                                attributeName, "CDATA", readString( in ) );
+                    }
+                    handler.startElement( "", name, name, attributes );
+                    openElements.push( name );
+                    break;
+                case END_ELEMENT:
+                    String closed = openElements.pop();
+                    handler.endElement( "", closed, closed );
+                    break;
+                case TEXT:
+                    char[] text = readChars( in );
+                    handler.characters( text, 0, text.length );
+                    break;
+                case COMMENT:
+                    char[] comment = readChars( in );
+                    if ( handler instanceof LexicalHandler )
+                        ( (LexicalHandler) handler ).comment( comment, 0,
+                                comment.length );
+                    break;
+                default:
+                    throw new IllegalStateException( "Unknown event type "
+                            + type );
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    void startElement( Element element ) throws IOException
+    {
+        out.writeByte( START_ELEMENT );
+        writeString( element.getTagName() );
+
+        NamedNodeMap attributes = element.getAttributes();
+        out.writeInt( attributes.getLength() );
+        for ( int a = 0; a < attributes.getLength(); a++ )
+        {
+            Node attribute = attributes.item( a );
+            writeString( attribute.getNodeName() );
+            writeString( attribute.getNodeValue() );
+        }
+    }
+
+    /**
+     * Writes the events of the node and everything in it
+     */
+    void write( Node node ) throws IOException
+    {
+        switch ( node.getNodeType() )
+        {
+        case Node.ELEMENT_NODE:
+            startElement( (Element) node );
+            for ( Node child = node.getFirstChild(); child != null; child = child
+                    .getNextSibling() )
+            {
+                write( child );
+            }
+            endElement();
+            break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            out.writeByte( TEXT );
+            writeString( node.getNodeValue() );
+            break;
+        case Node.COMMENT_NODE:
+            out.writeByte( COMMENT );
+            writeString( node.getNodeValue() );
+            break;
+        default:
+            // nothing else is created by the converters
+            break;
+        }
+    }
+
+    private static char[] readChars( DataInputStream in ) throws IOException
+    {
+        char[] chars = new char[in.readInt()];
+        for ( int c = 0; c < chars.length; c++ )
+        {
+            chars[c] = in.readChar();
+        }
+        return chars;
+    }
+
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        return new String( readChars( in ) );
+    }
+
+    private void writeString( String value ) throws IOException
+    {
+        // writeUTF() can't be used, as text may be longer than 64k
+        out.writeInt( value.length() );
+        out.writeChars( value );
+    }
+}
@@ -48,6 +48,7 @@ import org.apache.poi.util.POILogger;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
+import org.xml.sax.ContentHandler;
 
 import static org.apache.poi.hwpf.converter.AbstractWordUtils.TWIPS_PER_INCH;
 
@@ -163,6 +164,31 @@ public class WordToHtmlConverter extends AbstractWordConverter
         return wordToHtmlConverter.getDocument();
     }
 
+    /**
+     * Converts the .doc file into HTML, streaming it out as it's converted
+     * instead of building the whole DOM first. See
+     * {@link HtmlDocumentFacade#startStreaming()}.
+     */
+    public static void process( File docFile, ContentHandler output )
+            throws Exception
+    {
+        final HWPFDocumentCore wordDocument = WordToHtmlUtils.loadDoc( docFile );
+        HtmlDocumentFacade htmlDocumentFacade = new HtmlDocumentFacade(
+                DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .newDocument() );
+        htmlDocumentFacade.startStreaming();
+        try
+        {
+            new WordToHtmlConverter( htmlDocumentFacade )
+                    .processDocument( wordDocument );
+            htmlDocumentFacade.writeTo( output );
+        }
+        finally
+        {
+            htmlDocumentFacade.stopStreaming();
+        }
+    }
+
     private final Stack<BlockProperies> blocksProperies = new Stack<BlockProperies>();
 
     private final HtmlDocumentFacade htmlDocumentFacade;
@@ -195,6 +221,12 @@ public class WordToHtmlConverter extends AbstractWordConverter
         htmlDocumentFacade.updateStylesheet();
     }
 
+    @Override
+    protected void afterTopLevelBlock( Element flow )
+    {
+        htmlDocumentFacade.flush( flow );
+    }
+
     public Document getDocument()
     {
         return htmlDocumentFacade.getDocument();
@@ -0,0 +1,383 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hwpf.extractor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.POIDocument;
+import org.apache.poi.POIOLE2TextExtractor;
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.OldWordFileFormatException;
+import org.apache.poi.hwpf.model.ComplexFileTable;
+import org.apache.poi.hwpf.model.FileInformationBlock;
+import org.apache.poi.hwpf.model.GenericPropertyNode;
+import org.apache.poi.hwpf.model.PieceDescriptor;
+import org.apache.poi.hwpf.model.PlexOfCps;
+import org.apache.poi.hwpf.model.SubdocumentType;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.LittleEndian;
+
+/**
+ * A lightweight text extractor for Word 97+ documents, for when only the
+ * text is wanted, such as when indexing large numbers of files.
+ * <p>
+ * Unlike {@link WordExtractor}, this doesn't build a {@link HWPFDocument}.
+ * Only the FIB and the text piece descriptors are read when the extractor
+ * is created; the character, paragraph, section and style tables are never
+ * parsed, and nor are the data stream, pictures or drawings. The text is
+ * then read from the WordDocument stream one piece at a time as it's
+ * written out, without holding the whole stream in memory.
+ * <p>
+ * The text is the same as that of {@link WordExtractor#getTextFromPieces()},
+ * so will include field codes and other crud. Paragraphs are found by their
+ * paragraph and cell marks, rather than from the paragraph properties.
+ */
+public final class WordTextPieceExtractor extends POIOLE2TextExtractor
+{
+    private static final String STREAM_WORD_DOCUMENT = "WordDocument";
+    private static final String STREAM_TABLE_0 = "0Table";
+    private static final String STREAM_TABLE_1 = "1Table";
+
+    /** The length of the FIB up to and including cbRgFcLcb */
+    private static final int FIB_FIXED_SIZE = 154;
+
+    /** How many characters are decoded at a time */
+    private static final int BUFFER_CHARS = 4096;
+
+    /** Decoding of the bytes of non unicode text pieces */
+    private static final char[] CP1252 = new char[256];
+    static
+    {
+        byte[] bytes = new byte[256];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = (byte) i;
+        }
+        try
+        {
+            new String( bytes, "Cp1252" ).getChars( 0, 256, CP1252, 0 );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    private final DirectoryNode _directory;
+    private final FileInformationBlock _fib;
+    /** The text pieces, in character position order */
+    private final GenericPropertyNode[] _pieces;
+    private final PieceDescriptor[] _descriptors;
+
+    /**
+     * Create a new Word Extractor
+     *
+     * @param is
+     *            InputStream containing the word file
+     */
+    public WordTextPieceExtractor( InputStream is ) throws IOException
+    {
+        this( HWPFDocument.verifyAndBuildPOIFS( is ) );
+    }
+
+    /**
+     * Create a new Word Extractor
+     *
+     * @param fs
+     *            POIFSFileSystem containing the word file
+     */
+    public WordTextPieceExtractor( POIFSFileSystem fs ) throws IOException
+    {
+        this( fs.getRoot() );
+    }
+
+    public WordTextPieceExtractor( DirectoryNode dir ) throws IOException
+    {
+        super( new TextOnlyDocument( dir ) );
+        _directory = dir;
+
+        byte[] fib = readFib();
+        _fib = new FileInformationBlock( fib );
+        _fib.fillVariableFieldOffsets( fib );
+
+        // use the fib to determine the name of the table stream.
+        String name = _fib.getFibBase().isFWhichTblStm() ? STREAM_TABLE_1
+                : STREAM_TABLE_0;
+
+        // Only the Clx is needed from the table stream
+        byte[] clx = new byte[_fib.getLcbClx()];
+        DocumentInputStream tableStream;
+        try
+        {
+            tableStream = dir.createDocumentInputStream( name );
+        }
+        catch ( FileNotFoundException fnfe )
+        {
+            throw new IllegalStateException( "Table Stream '" + name
+                    + "' wasn't found - Either the document is corrupt, or is Word95 (or earlier)" );
+        }
+        try
+        {
+            tableStream.skip( _fib.getFcClx() );
+            tableStream.readFully( clx );
+        }
+        finally
+        {
+            tableStream.close();
+        }
+
+        PlexOfCps pieceTable = ComplexFileTable.readPieceDescriptors( clx, 0 );
+        _pieces = new GenericPropertyNode[pieceTable.length()];
+        _descriptors = new PieceDescriptor[_pieces.length];
+        for ( int x = 0; x < _pieces.length; x++ )
+        {
+            _pieces[x] = pieceTable.getProperty( x );
+            _descriptors[x] = new PieceDescriptor( _pieces[x].getBytes(), 0 );
+        }
+    }
+
+    /**
+     * Reads just the FIB from the start of the WordDocument stream
+     */
+    private byte[] readFib() throws IOException
+    {
+        DocumentInputStream is = _directory
+                .createDocumentInputStream( STREAM_WORD_DOCUMENT );
+        try
+        {
+            byte[] fixed = new byte[FIB_FIXED_SIZE];
+            is.readFully( fixed );
+            // nFib follows the wIdent
+            if ( LittleEndian.getUShort( fixed, 2 ) < 106 )
+            {
+                throw new OldWordFileFormatException(
+                        "The document is too old - Word 95 or older. Try HWPFOldDocument instead?" );
+            }
+
+            // then come the fcLcb pairs, and cswNew
+            int cbRgFcLcb = LittleEndian.getUShort( fixed, FIB_FIXED_SIZE - 2 );
+            byte[] fib = new byte[FIB_FIXED_SIZE + cbRgFcLcb
+                    * LittleEndian.INT_SIZE * 2 + LittleEndian.SHORT_SIZE];
+            System.arraycopy( fixed, 0, fib, 0, fixed.length );
+            is.readFully( fib, fixed.length, fib.length - fixed.length );
+
+            // and finally the fibRgCswNew
+            int cswNew = LittleEndian.getUShort( fib, fib.length - 2 );
+            byte[] full = new byte[fib.length + cswNew * LittleEndian.SHORT_SIZE];
+            System.arraycopy( fib, 0, full, 0, fib.length );
+            is.readFully( full, fib.length, full.length - fib.length );
+            return full;
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    /**
+     * Writes all the text of the document, including that of the headers,
+     * footnotes, comments etc, as it's read from the text pieces. No line
+     * endings are changed, so paragraphs end with a <code>\r</code>.
+     */
+    public void writeText( Writer out ) throws IOException
+    {
+        writeText( out, Integer.MAX_VALUE );
+    }
+
+    /**
+     * Writes the text of the text pieces, stopping after the given number
+     * of characters.
+     */
+    private void writeText( Writer out, int maxChars ) throws IOException
+    {
+        byte[] bytes = new byte[BUFFER_CHARS * 2];
+        char[] chars = new char[BUFFER_CHARS];
+
+        DocumentInputStream is = null;
+        int streamPos = 0;
+        int written = 0;
+        try
+        {
+            for ( int x = 0; x < _pieces.length && written < maxChars; x++ )
+            {
+                int filePos = _descriptors[x].getFilePosition();
+                boolean unicode = _descriptors[x].isUnicode();
+                int remaining = Math.min( _pieces[x].getEnd()
+                        - _pieces[x].getStart(), maxChars - written );
+
+                // Pieces are normally stored in order, so the stream only
+                //  has to be re-opened if one is before its predecessor
+                if ( is == null || filePos < streamPos )
+                {
+                    if ( is != null )
+                    {
+                        is.close();
+                    }
+                    is = _directory
+                            .createDocumentInputStream( STREAM_WORD_DOCUMENT );
+                    streamPos = 0;
+                }
+                is.skip( filePos - streamPos );
+                streamPos = filePos;
+
+                while ( remaining > 0 )
+                {
+                    int count = Math.min( remaining, BUFFER_CHARS );
+                    if ( unicode )
+                    {
+                        is.readFully( bytes, 0, count * 2 );
+                        streamPos += count * 2;
+                        for ( int i = 0; i < count; i++ )
+                        {
+                            chars[i] = (char) LittleEndian.getUShort( bytes,
+                                    i * 2 );
+                        }
+                    }
+                    else
+                    {
+                        is.readFully( bytes, 0, count );
+                        streamPos += count;
+                        for ( int i = 0; i < count; i++ )
+                        {
+                            chars[i] = CP1252[bytes[i] & 0xFF];
+                        }
+                    }
+                    out.write( chars, 0, count );
+                    written += count;
+                    remaining -= count;
+                }
+            }
+        }
+        finally
+        {
+            if ( is != null )
+            {
+                is.close();
+            }
+        }
+    }
+
+    /**
+     * Grab the text out of the text pieces, with the same line endings as
+     * {@link WordExtractor#getTextFromPieces()}
+     */
+    public String getTextFromPieces()
+    {
+        StringWriter sw = new StringWriter();
+        try
+        {
+            writeText( sw );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        String text = sw.toString();
+
+        // Fix line endings (Note - won't get all of them
+        text = text.replaceAll( "\r\r\r", "\r\n\r\n\r\n" );
+        text = text.replaceAll( "\r\r", "\r\n\r\n" );
+
+        if ( text.endsWith( "\r" ) )
+        {
+            text += "\n";
+        }
+
+        return text;
+    }
+
+    /**
+     * Same as {@link #getTextFromPieces()}
+     */
+    public String getText()
+    {
+        return getTextFromPieces();
+    }
+
+    /**
+     * Get the text of the main document, excluding headers, footnotes etc,
+     * as an array with one String per paragraph. Each ends with its
+     * paragraph mark, as in {@link WordExtractor#getParagraphText()}, or with
+     * a cell mark for the paragraphs that end table cells.
+     */
+    public String[] getParagraphText()
+    {
+        StringWriter sw = new StringWriter();
+        try
+        {
+            writeText( sw, _fib
+                    .getSubdocumentTextStreamLength( SubdocumentType.MAIN ) );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+        String text = sw.toString();
+
+        List<String> ret = new ArrayList<String>();
+        int start = 0;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            if ( c == '\r' )
+            {
+                ret.add( text.substring( start, i + 1 ) + "\n" );
+                start = i + 1;
+            }
+            else if ( c == '\u0007' )
+            {
+                ret.add( text.substring( start, i + 1 ) );
+                start = i + 1;
+            }
+        }
+        if ( start < text.length() )
+        {
+            ret.add( text.substring( start ) );
+        }
+        return ret.toArray( new String[ret.size()] );
+    }
+
+    /**
+     * Gives access to the properties streams of the document, which are only
+     * read if asked for. It can't be written out.
+     */
+    private static final class TextOnlyDocument extends POIDocument
+    {
+        TextOnlyDocument( DirectoryNode dir )
+        {
+            super( dir );
+        }
+
+        @Override
+        public void write( OutputStream out )
+        {
+            throw new IllegalStateException(
+                    "Documents opened for text extraction can't be written out" );
+        }
+    }
+}
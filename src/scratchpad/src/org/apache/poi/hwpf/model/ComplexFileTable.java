@@ -70,6 +70,31 @@ public final class ComplexFileTable
     _tpt = new TextPieceTable(documentStream, tableStream, offset, pieceTableSize, fcMin);
   }
 
+  /**
+   * Reads just the descriptors of the text pieces, skipping over any
+   * property modifiers before them, without reading the text itself.
+   *
+   * @param tableStream the table stream, or just the Clx read from it
+   * @param offset the offset of the Clx
+   */
+  public static PlexOfCps readPieceDescriptors(byte[] tableStream, int offset) throws IOException
+  {
+    while (tableStream[offset] == GRPPRL_TYPE)
+    {
+      offset++;
+      int size = LittleEndian.getShort(tableStream, offset);
+      offset += LittleEndian.SHORT_SIZE + size;
+    }
+
+    if(tableStream[offset] != TEXT_PIECE_TABLE_TYPE)
+    {
+      throw new IOException("The text piece table is corrupted");
+    }
+    int pieceTableSize = LittleEndian.getInt(tableStream, ++offset);
+    offset += LittleEndian.INT_SIZE;
+    return new PlexOfCps(tableStream, offset, pieceTableSize, PieceDescriptor.getSizeInBytes());
+  }
+
   public TextPieceTable getTextPieceTable()
   {
     return _tpt;
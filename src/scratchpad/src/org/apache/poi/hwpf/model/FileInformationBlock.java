@@ -215,6 +215,17 @@ public final class FileInformationBlock implements Cloneable
                 strExpectedCswNew + ", not 0x", Integer.toHexString( cswNew ) );
     }
 
+    /**
+     * Reads only the offsets and sizes of the variable fields, without
+     * loading any of their data from the table stream, for callers which
+     * will read just the few structures they need.
+     */
+    public void fillVariableFieldOffsets( byte[] mainDocument )
+    {
+        _fieldHandler = new FIBFieldHandler( mainDocument, 154, _cbRgFcLcb,
+                null, new HashSet<Integer>(), false );
+    }
+
     public void fillVariableFields( byte[] mainDocument, byte[] tableStream )
     {
         /*
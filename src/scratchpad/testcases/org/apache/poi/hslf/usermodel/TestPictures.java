@@ -21,6 +21,9 @@ import org.apache.poi.hslf.*;
 import org.apache.poi.hslf.blip.*;
 import org.apache.poi.hslf.model.*;
 import org.apache.poi.POIDataSamples;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.TempFile;
 import junit.framework.TestCase;
 
 import java.io.*;
@@ -458,4 +461,90 @@ public final class TestPictures extends TestCase{
         Picture p = (Picture)ppt.getSlides()[0].getShapes()[0];
         assertEquals("tomcat.png", p.getPictureName());
     }
+
+    /**
+     * Picture data is only read from the 'Pictures' stream when it's needed,
+     *  and untouched pictures are copied across when the file is saved
+     */
+    public void testLazyPictureData() throws Exception {
+        HSLFSlideShow hslf = new HSLFSlideShow(slTests.openResourceAsStream("pictures.ppt"));
+        PictureData[] pictures = hslf.getPictures();
+        assertEquals(5, pictures.length);
+
+        byte[][] expected = new byte[pictures.length][];
+        HSLFSlideShow eager = new HSLFSlideShow(slTests.openResourceAsStream("pictures.ppt"));
+        for (int i = 0; i < pictures.length; i++) {
+            expected[i] = eager.getPictures()[i].getRawData();
+            assertEquals(expected[i].length, pictures[i].getRawDataSize());
+            byte[] uid = new byte[16];
+            System.arraycopy(expected[i], 0, uid, 0, uid.length);
+            assertTrue(Arrays.equals(uid, pictures[i].getUID()));
+        }
+
+        // load one of them, and replace another
+        assertTrue(Arrays.equals(expected[1], pictures[1].getRawData()));
+        byte[] replaced = pictures[2].getData();
+        pictures[2].setData(replaced);
+        expected[2] = pictures[2].getRawData();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        hslf.write(out);
+        hslf = new HSLFSlideShow(new ByteArrayInputStream(out.toByteArray()));
+        pictures = hslf.getPictures();
+        assertEquals(5, pictures.length);
+        for (int i = 0; i < pictures.length; i++) {
+            assertTrue(Arrays.equals(expected[i], pictures[i].getRawData()));
+        }
+        assertTrue(Arrays.equals(replaced, pictures[2].getData()));
+    }
+
+    /**
+     * NPOIFS reads the pictures from the file, so they must all have been
+     *  read before a slideshow is written back over the file it came from
+     */
+    public void testWriteOverNPOIFSSource() throws Exception {
+        File file = TempFile.createTempFile("pictures", ".ppt");
+        InputStream is = slTests.openResourceAsStream("pictures.ppt");
+        FileOutputStream fout = new FileOutputStream(file);
+        IOUtils.copy(is, fout);
+        fout.close();
+        is.close();
+
+        HSLFSlideShow eager = new HSLFSlideShow(slTests.openResourceAsStream("pictures.ppt"));
+        PictureData[] expected = eager.getPictures();
+
+        NPOIFSFileSystem npoifs = new NPOIFSFileSystem(file);
+        try {
+            HSLFSlideShow hslf = new HSLFSlideShow(npoifs);
+            assertEquals(expected.length, hslf.getPictures().length);
+
+            // Write over the file, only truncating it once writing starts
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                hslf.write(new OutputStream() {
+                    private boolean started;
+                    public void write(int b) throws IOException {
+                        write(new byte[] { (byte)b }, 0, 1);
+                    }
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (!started) {
+                            raf.setLength(0);
+                            started = true;
+                        }
+                        raf.write(b, off, len);
+                    }
+                });
+            } finally {
+                raf.close();
+            }
+        } finally {
+            npoifs.close();
+        }
+
+        PictureData[] pictures = new HSLFSlideShow(new FileInputStream(file)).getPictures();
+        assertEquals(expected.length, pictures.length);
+        for (int i = 0; i < pictures.length; i++) {
+            assertTrue(Arrays.equals(expected[i].getRawData(), pictures[i].getRawData()));
+        }
+    }
 }
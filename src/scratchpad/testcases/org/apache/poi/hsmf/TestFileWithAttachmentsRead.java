@@ -18,12 +18,16 @@
 package org.apache.poi.hsmf;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 
 import junit.framework.TestCase;
 
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.hsmf.datatypes.AttachmentChunks;
 import org.apache.poi.hsmf.exceptions.ChunkNotFoundException;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.util.IOUtils;
 
 /**
  * Tests to verify that we can read attachments from msg file
@@ -128,4 +132,39 @@ public class TestFileWithAttachmentsRead extends TestCase {
        assertEquals("Nick Booth", nested.getRecipientNames());
        assertEquals("Test Attachment", nested.getConversationTopic());
    }
+
+   /**
+    * Test that reading the chunks lazily gives the same values,
+    *  and that the attachments can be streamed
+    */
+   public void testReadLazily() throws Exception {
+      POIDataSamples samples = POIDataSamples.getHSMFInstance();
+      NPOIFSFileSystem fs = new NPOIFSFileSystem(samples.getFile("attachment_test_msg.msg"));
+      try {
+         MAPIMessage lazy = new MAPIMessage(fs, true);
+         assertEquals(twoSimpleAttachments.getSubject(), lazy.getSubject());
+         assertEquals(twoSimpleAttachments.getTextBody(), lazy.getTextBody());
+
+         AttachmentChunks[] attachments = lazy.getAttachmentFiles();
+         assertEquals(2, attachments.length);
+         assertEquals("test-unicode.doc", attachments[0].attachLongFileName.toString());
+         assertEquals("pj1.txt", attachments[1].attachLongFileName.toString());
+
+         // Streamed, without being loaded
+         InputStream stream = attachments[0].getEmbeddedAttachmentObjectStream();
+         byte[] streamed = IOUtils.toByteArray(stream);
+         stream.close();
+         assertEquals(24064, streamed.length);
+         assertTrue(Arrays.equals(
+               twoSimpleAttachments.getAttachmentFiles()[0].getEmbeddedAttachmentObject(),
+               streamed));
+
+         // And loaded
+         assertEquals(89, attachments[1].getEmbeddedAttachmentObject().length);
+         stream = attachments[1].getEmbeddedAttachmentObjectStream();
+         assertEquals(89, IOUtils.toByteArray(stream).length);
+      } finally {
+         fs.close();
+      }
+   }
 }
@@ -27,6 +27,8 @@ import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 
 import junit.framework.Test;
@@ -35,6 +37,7 @@ import junit.framework.TestSuite;
 
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hwpf.converter.HtmlDocumentFacade;
 
 public class TestExcelConverterSuite
 {
@@ -138,5 +141,24 @@ public class TestExcelConverterSuite
         transformer.transform(
                 new DOMSource( excelToHtmlConverter.getDocument() ),
                 new StreamResult( stringWriter ) );
+
+        // the same, streamed
+        HtmlDocumentFacade streamedFacade = new HtmlDocumentFacade(
+                DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .newDocument() );
+        streamedFacade.startStreaming();
+        new ExcelToHtmlConverter( streamedFacade )
+                .processWorkbook( ExcelToHtmlUtils.loadXls( child ) );
+
+        StringWriter streamedWriter = new StringWriter();
+        TransformerHandler handler = ( (SAXTransformerFactory) TransformerFactory
+                .newInstance() ).newTransformerHandler();
+        handler.getTransformer().setOutputProperties(
+                transformer.getOutputProperties() );
+        handler.setResult( new StreamResult( streamedWriter ) );
+        streamedFacade.writeTo( handler );
+
+        TestCase.assertEquals( stringWriter.toString(),
+                streamedWriter.toString() );
     }
 }
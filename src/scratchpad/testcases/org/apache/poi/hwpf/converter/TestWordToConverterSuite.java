@@ -27,6 +27,8 @@ import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 
 import junit.framework.Test;
@@ -145,6 +147,25 @@ public class TestWordToConverterSuite
                 new DOMSource( wordToHtmlConverter.getDocument() ),
                 new StreamResult( stringWriter ) );
 
+        // the same, streamed
+        HtmlDocumentFacade streamedFacade = new HtmlDocumentFacade(
+                DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .newDocument() );
+        streamedFacade.startStreaming();
+        new WordToHtmlConverter( streamedFacade )
+                .processDocument( AbstractWordUtils.loadDoc( child ) );
+
+        StringWriter streamedWriter = new StringWriter();
+        TransformerHandler handler = ( (SAXTransformerFactory) TransformerFactory
+                .newInstance() ).newTransformerHandler();
+        handler.getTransformer().setOutputProperties(
+                transformer.getOutputProperties() );
+        handler.setResult( new StreamResult( streamedWriter ) );
+        streamedFacade.writeTo( handler );
+
+        TestCase.assertEquals( stringWriter.toString(),
+                streamedWriter.toString() );
+
         // no exceptions
     }
 
@@ -0,0 +1,72 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hwpf.extractor;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.hwpf.OldWordFileFormatException;
+
+/**
+ * Tests for {@link WordTextPieceExtractor}, which should give the same text
+ *  as {@link WordExtractor} does from the text pieces
+ */
+public final class TestWordTextPieceExtractor extends TestCase {
+    private static final POIDataSamples docTests = POIDataSamples.getDocumentInstance();
+
+    public void testSameTextAsWordExtractor() throws Exception {
+        String[] files = {
+                "test2.doc", "test.doc", "ThreeColHeadFoot.doc",
+                "HeaderFooterUnicode.doc", "footnote.doc", "rasp.doc",
+        };
+        for (String file : files) {
+            WordExtractor expected = new WordExtractor(docTests.openResourceAsStream(file));
+            WordTextPieceExtractor actual = new WordTextPieceExtractor(docTests.openResourceAsStream(file));
+            assertEquals(file, expected.getTextFromPieces(), actual.getTextFromPieces());
+            assertEquals(file, expected.getTextFromPieces(), actual.getText());
+        }
+    }
+
+    public void testParagraphs() throws Exception {
+        WordExtractor expected = new WordExtractor(docTests.openResourceAsStream("test2.doc"));
+        WordTextPieceExtractor actual = new WordTextPieceExtractor(docTests.openResourceAsStream("test2.doc"));
+
+        String[] expectedText = expected.getParagraphText();
+        String[] actualText = actual.getParagraphText();
+        assertEquals(14, actualText.length);
+        for (int i = 0; i < expectedText.length; i++) {
+            assertEquals(expectedText[i], actualText[i]);
+        }
+    }
+
+    public void testMetadata() throws Exception {
+        WordTextPieceExtractor extractor = new WordTextPieceExtractor(docTests.openResourceAsStream("test2.doc"));
+        WordExtractor expected = new WordExtractor(docTests.openResourceAsStream("test2.doc"));
+        assertEquals(expected.getSummaryInformation().getAuthor(),
+                extractor.getSummaryInformation().getAuthor());
+    }
+
+    public void testWord95() throws Exception {
+        try {
+            new WordTextPieceExtractor(docTests.openResourceAsStream("Word95.doc"));
+            fail("expected OldWordFileFormatException");
+        } catch (OldWordFileFormatException e) {
+            // expected
+        }
+    }
+}
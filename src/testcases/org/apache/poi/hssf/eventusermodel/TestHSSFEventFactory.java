@@ -28,9 +28,13 @@ import org.apache.poi.hssf.record.DVALRecord;
 import org.apache.poi.hssf.record.DVRecord;
 import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.FeatHdrRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
 import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
 import org.apache.poi.hssf.record.SelectionRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 /**
  * 
@@ -111,6 +115,52 @@ public final class TestHSSFEventFactory extends TestCase {
 		assertTrue("no errors while processing the file", true);
 	}
 
+	/**
+	 * Records nobody listens for are skipped, which must not change the ones that are wanted
+	 */
+	public void testSkipUnwantedRecords() throws Exception {
+		String[] files = {
+			"SimpleWithSkip.xls", "ContinueRecordProblem.xls", "42844.xls",
+			"DrawingContinue.xls", "WithChart.xls", "password.xls",
+		};
+		short[] sids = { NumberRecord.sid, LabelSSTRecord.sid, SSTRecord.sid };
+		Biff8EncryptionKey.setCurrentUserPassword("password");
+		try {
+			for (int i = 0; i < files.length; i++) {
+				HSSFRequest all = new HSSFRequest();
+				MockHSSFListener allListener = new MockHSSFListener();
+				all.addListenerForAllRecords(allListener);
+				new HSSFEventFactory().processEvents(all,
+						new POIFSFileSystem(openSample(files[i])).createDocumentInputStream("Workbook"));
+
+				HSSFRequest some = new HSSFRequest();
+				MockHSSFListener someListener = new MockHSSFListener();
+				for (int j = 0; j < sids.length; j++) {
+					some.addListener(someListener, sids[j]);
+				}
+				new HSSFEventFactory().processEvents(some,
+						new POIFSFileSystem(openSample(files[i])).createDocumentInputStream("Workbook"));
+
+				List<String> expected = new ArrayList<String>();
+				for (Record r : allListener.getRecords()) {
+					for (int j = 0; j < sids.length; j++) {
+						if (r.getSid() == sids[j]) {
+							expected.add(r.toString());
+						}
+					}
+				}
+				List<String> actual = new ArrayList<String>();
+				for (Record r : someListener.getRecords()) {
+					actual.add(r.toString());
+				}
+				assertTrue(files[i], expected.size() > 0);
+				assertEquals(files[i], expected, actual);
+			}
+		} finally {
+			Biff8EncryptionKey.setCurrentUserPassword(null);
+		}
+	}
+
 	private static class MockHSSFListener implements HSSFListener {
 		private final List<Record> records = new ArrayList<Record>();
 
@@ -249,4 +249,26 @@ public final class TestRecordFactory extends TestCase {
 		}
 		assertEquals(5, outRecs.size());
 	}
+
+	/**
+	 * Every known sid must map to the record class declaring it, and the sids must be
+	 * listed in order
+	 */
+	public void testKnownRecordClasses() throws Exception {
+		short[] sids = RecordFactory.getAllKnownRecordSIDs();
+		assertTrue(sids.length > 100);
+		for (int i = 0; i < sids.length; i++) {
+			if (i > 0) {
+				assertTrue(sids[i - 1] < sids[i]);
+			}
+			Class<? extends Record> recClass = RecordFactory.getRecordClass(sids[i]);
+			assertNotNull(recClass);
+			assertEquals(recClass.getName(), sids[i], recClass.getField("sid").getShort(null));
+		}
+		assertNull(RecordFactory.getRecordClass(0x7FFF));
+		assertNull(RecordFactory.getRecordClass(-1));
+
+		RecordInputStream in = TestcaseRecordInputStream.create(0x7FFF, new byte[] { 1, 2, });
+		assertEquals(UnknownRecord.class, RecordFactory.createSingleRecord(in).getClass());
+	}
 }
@@ -17,6 +17,8 @@
 
 package org.apache.poi.hssf.record;
 
+import java.io.ByteArrayInputStream;
+
 import org.apache.poi.util.HexRead;
 
 import junit.framework.AssertionFailedError;
@@ -94,4 +96,56 @@ public final class TestRecordInputStream extends TestCase {
 		String actual = in.readString();
 		assertEquals("Multilingual - \u591A\u8A00\u8A9E", actual);
 	}
+
+	/**
+	 * The data of each record is read into a buffer shared by all the records of the
+	 * stream, which must grow when a later record is larger, and must not leak data
+	 * from one record into the next
+	 */
+	public void testRecordsOfDifferentSizes() {
+		byte[] data = HexRead.readFromString(""
+				+ "AA AA 02 00 " // small record
+				+ "34 12 "
+				+ "BB BB 0F 00 " // larger record
+				+ "01 "
+				+ "02 03 "
+				+ "04 05 06 07 "
+				+ "08 09 0A 0B 0C 0D 0E 0F "
+				+ "CC CC 03 00 " // skipped
+				+ "FF FF FF "
+				+ "DD DD 03 00 " // read into a continue
+				+ "41 42 43 "
+				+ "3C 00 02 00 "
+				+ "44 45 "
+				);
+		RecordInputStream in = new RecordInputStream(new ByteArrayInputStream(data));
+		assertTrue(in.hasNextRecord());
+		in.nextRecord();
+		assertEquals((short)0xAAAA, in.getSid());
+		assertEquals(0x1234, in.readUShort());
+
+		assertTrue(in.hasNextRecord());
+		in.nextRecord();
+		assertEquals(15, in.remaining());
+		assertEquals(0x01, in.readByte());
+		assertEquals(0x0302, in.readShort());
+		assertEquals(0x07060504, in.readInt());
+		assertEquals(0x0F0E0D0C0B0A0908L, in.readLong());
+		assertEquals(0, in.remaining());
+
+		assertTrue(in.hasNextRecord());
+		in.nextRecord();
+		in.skipRemainder();
+
+		assertTrue(in.hasNextRecord());
+		in.nextRecord();
+		assertEquals((short)0xDDDD, in.getSid());
+		assertEquals(3, in.remaining());
+		byte[] buf = new byte[3];
+		in.readFully(buf);
+		assertEquals("ABC", new String(buf));
+		// reading past the end moves on to the continue record
+		assertEquals(0x4544, in.readUShort());
+		assertFalse(in.hasNextRecord());
+	}
 }
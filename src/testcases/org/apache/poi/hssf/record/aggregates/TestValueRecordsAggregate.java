@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.zip.CRC32;
 
@@ -33,7 +34,9 @@ import org.apache.poi.hssf.model.RowBlocksReader;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
 import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.SharedFormulaRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
@@ -406,4 +409,78 @@ public final class TestValueRecordsAggregate extends TestCase {
 		assertEquals(expectedNumberOfMulBlankRecords, bs.countMulBlankRecords);
 		assertEquals(expectedNumberOfSingleBlankRecords, bs.countSingleBlankRecords);
 	}
+
+	/**
+	 * Number, blank and string cells read from a file are kept as values, and only get
+	 * records when asked for
+	 */
+	public void testPackedCells() {
+		NumberRecord nr = new NumberRecord();
+		nr.setRow(1);
+		nr.setColumn((short) 3);
+		nr.setXFIndex((short) 21);
+		nr.setValue(2.5);
+		LabelSSTRecord lr = new LabelSSTRecord();
+		lr.setRow(1);
+		lr.setColumn((short) 1);
+		lr.setXFIndex((short) 22);
+		lr.setSSTIndex(7);
+		FormulaRecord fr = new FormulaRecord();
+		fr.setRow(2);
+		fr.setColumn((short) 0);
+
+		List<Record> records = new ArrayList<Record>();
+		records.add(nr);
+		records.add(lr);
+		records.add(fr);
+		records.add(new WindowTwoRecord());
+		constructValueRecord(records);
+		valueRecord.addMultipleBlanks(new MulBlankRecord(2, 1, new short[] { 23, 24, }));
+
+		assertEquals(5, valueRecord.getPhysicalNumberOfCells());
+		assertEquals(4, valueRecord.getPackedCellCount());
+		assertEquals(2, valueRecord.getPackedCellCount(1));
+		assertEquals(1, valueRecord.getFirstPackedCellNum(1));
+		assertEquals(3, valueRecord.getLastPackedCellNum(1));
+		assertEquals(0, valueRecord.getFirstCellNum());
+		assertEquals(3, valueRecord.getLastCellNum());
+
+		// only the formula has a record
+		Iterator<CellValueRecordInterface> it = valueRecord.getCellRecordIterator();
+		assertTrue(it.next() instanceof FormulaRecordAggregate);
+		assertFalse(it.hasNext());
+
+		// the packed cells are written as before, including the MULBLANK
+		confirmMulBlank(2, 1, 0);
+		assertEquals(nr.getRecordSize() + lr.getRecordSize(), valueRecord.getRowCellBlockSize(1, 1));
+
+		NumberRecord nr2 = (NumberRecord) valueRecord.getCell(1, 3);
+		assertEquals(2.5, nr2.getValue(), 0.0);
+		assertEquals(21, nr2.getXFIndex());
+		assertEquals(1, nr2.getRow());
+		assertEquals(3, nr2.getColumn());
+		// the record is kept once it has been created
+		assertSame(nr2, valueRecord.getCell(1, 3));
+		assertEquals(3, valueRecord.getPackedCellCount());
+		assertNull(valueRecord.getCell(1, 2));
+		assertNull(valueRecord.getCell(5, 0));
+
+		valueRecord.removeCell(newBlankRecord(1, 2));
+		assertEquals(2, valueRecord.getPackedCellCount());
+		assertEquals(4, valueRecord.getPhysicalNumberOfCells());
+
+		// iterating over all the cells creates the remaining records
+		int count = 0;
+		for (it = valueRecord.iterator(); it.hasNext(); ) {
+			CellValueRecordInterface cvr = it.next();
+			count++;
+			if (cvr.getRow() == 1 && cvr.getColumn() == 1) {
+				assertEquals(7, ((LabelSSTRecord) cvr).getSSTIndex());
+				assertEquals(22, cvr.getXFIndex());
+			}
+		}
+		assertEquals(4, count);
+		assertEquals(0, valueRecord.getPackedCellCount());
+		assertEquals(-1, valueRecord.getFirstPackedCellNum(1));
+	}
 }
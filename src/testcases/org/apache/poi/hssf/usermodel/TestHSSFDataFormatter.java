@@ -333,6 +333,33 @@ public final class TestHSSFDataFormatter extends TestCase {
 		}
 	}
 	
+	/**
+	 * The formats handed out are copies, so changing them doesn't
+	 * affect the formatter, or any other formatter
+	 */
+	public void testFormatsAreCopies() {
+		HSSFWorkbook workbook = new HSSFWorkbook();
+		HSSFCell cell = workbook.createSheet().createRow(0).createCell(0);
+		cell.setCellValue(1234.5);
+		HSSFCellStyle style = workbook.createCellStyle();
+		style.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+		cell.setCellStyle(style);
+
+		DecimalFormat created = (DecimalFormat) formatter.createFormat(cell);
+		assertEquals("1,234.50", created.format(1234.5));
+		created.applyPattern("0");
+		assertEquals("1,234.50", formatter.formatCellValue(cell));
+		assertEquals("1,234.50", new HSSFDataFormatter().formatCellValue(cell));
+
+		cell.setCellStyle(workbook.createCellStyle());
+		DecimalFormat general = (DecimalFormat) formatter.createFormat(cell);
+		general.applyPattern("0.00");
+		assertEquals("1234.5", formatter.formatCellValue(cell));
+		DecimalFormat defaultFormat = (DecimalFormat) formatter.getDefaultFormat(cell);
+		defaultFormat.applyPattern("0.00");
+		assertEquals("1234.5", formatter.formatCellValue(cell));
+	}
+
 	/**
 	 * A format of "@" means use the general format
 	 */
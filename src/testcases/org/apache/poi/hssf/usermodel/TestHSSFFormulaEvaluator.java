@@ -235,4 +235,108 @@ public final class TestHSSFFormulaEvaluator extends BaseTestFormulaEvaluator {
         baseTestSharedFormulas("shared_formulas.xls");
     }
 
+
+    /**
+     * The parallel evaluateAll must give exactly the same results as the serial one,
+     *  including for cells it can't analyse (INDIRECT, circular references)
+     */
+    public void testEvaluateAllInParallel() {
+        HSSFWorkbook wbSerial = createEvaluateAllWorkbook();
+        HSSFWorkbook wbParallel = createEvaluateAllWorkbook();
+
+        new HSSFFormulaEvaluator(wbSerial).evaluateAll();
+        new HSSFFormulaEvaluator(wbParallel).evaluateAll(4);
+
+        assertEquals(2 * 500 * 5 + 3, confirmSameResults(wbSerial, wbParallel));
+
+        HSSFSheet sheet = wbParallel.getSheet("Second");
+        assertEquals(2 * 499 + 2 * 499 + 10, sheet.getRow(499).getCell(3).getNumericCellValue(), 0.0);
+        assertEquals(Cell.CELL_TYPE_ERROR, sheet.getRow(500).getCell(0).getCachedFormulaResultType());
+    }
+
+    /**
+     * The cells of a loaded sheet start off packed, and must all be unpacked before
+     *  the evaluating threads read them
+     */
+    public void testEvaluateAllInParallelLoaded() {
+        HSSFWorkbook wb = HSSFTestDataSamples.writeOutAndReadBack(createEvaluateAllWorkbook());
+        HSSFWorkbook wbSerial = HSSFTestDataSamples.writeOutAndReadBack(wb);
+        assertTrue(wb.getSheet("First").getSheet().getRowsAggregate()
+                .getValueRecordsAggregate().getPackedCellCount() > 0);
+
+        new HSSFFormulaEvaluator(wbSerial).evaluateAll();
+        for (int i = 0; i < 5; i++) {
+            HSSFWorkbook wbParallel = HSSFTestDataSamples.writeOutAndReadBack(wb);
+            new HSSFFormulaEvaluator(wbParallel).evaluateAll(4);
+            assertEquals(2 * 500 * 5 + 3, confirmSameResults(wbSerial, wbParallel));
+        }
+    }
+
+    /**
+     * @return the number of formula cells compared
+     */
+    private static int confirmSameResults(HSSFWorkbook wbSerial, HSSFWorkbook wbParallel) {
+        int nFormulas = 0;
+        for (int i = 0; i < wbSerial.getNumberOfSheets(); i++) {
+            HSSFSheet sheetSerial = wbSerial.getSheetAt(i);
+            HSSFSheet sheetParallel = wbParallel.getSheetAt(i);
+            for (int r = 0; r <= sheetSerial.getLastRowNum(); r++) {
+                HSSFRow rowSerial = sheetSerial.getRow(r);
+                for (int c = 0; c < rowSerial.getLastCellNum(); c++) {
+                    HSSFCell expected = rowSerial.getCell(c);
+                    if (expected.getCellType() != Cell.CELL_TYPE_FORMULA) {
+                        continue;
+                    }
+                    nFormulas++;
+                    HSSFCell actual = sheetParallel.getRow(r).getCell(c);
+                    String msg = sheetSerial.getSheetName() + "!" + r + "," + c;
+                    assertEquals(msg, expected.getCachedFormulaResultType(), actual.getCachedFormulaResultType());
+                    switch (expected.getCachedFormulaResultType()) {
+                        case Cell.CELL_TYPE_NUMERIC:
+                            assertEquals(msg, expected.getNumericCellValue(), actual.getNumericCellValue(), 0.0);
+                            break;
+                        case Cell.CELL_TYPE_STRING:
+                            assertEquals(msg, expected.getStringCellValue(), actual.getStringCellValue());
+                            break;
+                        case Cell.CELL_TYPE_BOOLEAN:
+                            assertEquals(msg, expected.getBooleanCellValue(), actual.getBooleanCellValue());
+                            break;
+                        case Cell.CELL_TYPE_ERROR:
+                            assertEquals(msg, expected.getErrorCellValue(), actual.getErrorCellValue());
+                            break;
+                    }
+                }
+            }
+        }
+        return nFormulas;
+    }
+
+    private static HSSFWorkbook createEvaluateAllWorkbook() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        wb.createSheet("First");
+        wb.createSheet("Second");
+        HSSFName name = wb.createName();
+        name.setNameName("Ten");
+        name.setRefersToFormula("First!$A$11");
+
+        for (String sheetName : new String[] { "First", "Second" }) {
+            HSSFSheet sheet = wb.getSheet(sheetName);
+            for (int r = 0; r < 500; r++) {
+                HSSFRow row = sheet.createRow(r);
+                int excelRow = r + 1;
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellFormula("A" + excelRow + "*2");
+                row.createCell(2).setCellFormula("B" + excelRow + "+First!B" + excelRow);
+                row.createCell(3).setCellFormula(r == 0 ? "C1+Ten" : "C" + excelRow + "+D" + r + "-C" + r);
+                row.createCell(4).setCellFormula("TEXT(D" + excelRow + ",\"0.00\")");
+                row.createCell(5).setCellFormula("INDIRECT(\"D" + excelRow + "\")+SUM(B$1:B2)");
+            }
+        }
+
+        HSSFRow row = wb.getSheet("Second").createRow(500);
+        row.createCell(0).setCellFormula("B501+1");
+        row.createCell(1).setCellFormula("A501+1");
+        row.createCell(2).setCellFormula("A501+B1");
+        return wb;
+    }
 }
@@ -17,12 +17,16 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.util.Iterator;
+
 import junit.framework.AssertionFailedError;
 
 import org.apache.poi.hssf.HSSFITestDataProvider;
+import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.RowRecord;
 import org.apache.poi.ss.usermodel.BaseTestRow;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.SpreadsheetVersion;
 
 /**
@@ -133,4 +137,54 @@ public final class TestHSSFRow extends BaseTestRow {
         assertEquals(row.getHeight(), sheet.getDefaultRowHeight());
         assertEquals(row.getRowRecord().getBadFontHeight(), false);
     }
+
+    /**
+     * The number, blank and string cells read from a file are only wrapped in
+     *  HSSFCells as they are used
+     */
+    public void testPackedCells() {
+        HSSFWorkbook workbook = new HSSFWorkbook();
+        HSSFSheet sheet = workbook.createSheet("Sheet1");
+        HSSFCellStyle style = workbook.createCellStyle();
+        HSSFRow row = sheet.createRow(2);
+        row.createCell(1).setCellValue(1.5);
+        row.createCell(2).setCellValue(new HSSFRichTextString("text"));
+        row.createCell(4).setCellStyle(style);
+        row.createCell(5).setCellStyle(style);
+        row.createCell(7).setCellFormula("B3*2");
+
+        workbook = HSSFTestDataSamples.writeOutAndReadBack(workbook);
+        sheet = workbook.getSheetAt(0);
+        row = sheet.getRow(2);
+        assertEquals(4, sheet.getSheet().getRowsAggregate().getValueRecordsAggregate().getPackedCellCount());
+        assertEquals(5, row.getPhysicalNumberOfCells());
+        assertEquals(1, row.getFirstCellNum());
+        assertEquals(8, row.getLastCellNum());
+
+        assertEquals(1.5, row.getCell(1).getNumericCellValue(), 0.0);
+        assertSame(row.getCell(1), row.getCell(1));
+        assertEquals("text", row.getCell(2).getStringCellValue());
+        assertNull(row.getCell(3));
+        assertEquals(HSSFCell.CELL_TYPE_BLANK, row.getCell(4).getCellType());
+        assertEquals(style.getIndex(), row.getCell(4).getCellStyle().getIndex());
+        assertEquals(5, row.getPhysicalNumberOfCells());
+
+        // replace a cell which was never used, and remove another
+        row.createCell(5).setCellValue(true);
+        row.removeCell(row.getCell(1));
+        assertEquals(4, row.getPhysicalNumberOfCells());
+        assertEquals(2, row.getFirstCellNum());
+
+        workbook = HSSFTestDataSamples.writeOutAndReadBack(workbook);
+        row = workbook.getSheetAt(0).getRow(2);
+        assertNull(row.getCell(1));
+        assertEquals("text", row.getCell(2).getStringCellValue());
+        assertEquals(true, row.getCell(5).getBooleanCellValue());
+        assertEquals("B3*2", row.getCell(7).getCellFormula());
+        int count = 0;
+        for (Iterator<Cell> it = row.cellIterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(4, count);
+    }
 }
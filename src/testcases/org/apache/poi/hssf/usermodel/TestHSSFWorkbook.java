@@ -361,6 +361,74 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
             // Expected badly behaved sheet record to cause exception
             assertTrue(e.getMessage().startsWith("Actual serialized sheet size"));
         }
+        // The same check applies when streaming the records out
+        try {
+            wb.write(new ByteArrayOutputStream());
+            throw new AssertionFailedError("Identified bug 45066 b");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Actual serialized sheet size"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * write() streams the records out sheet by sheet, rather than going
+     *  via getBytes(), but the Workbook stream should be identical
+     */
+    public void testWriteMatchesGetBytes() throws IOException {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        for (int s = 0; s < 3; s++) {
+            HSSFSheet sheet = wb.createSheet("Sheet" + s);
+            for (int r = 0; r < 200; r++) {
+                HSSFRow row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r * s);
+                row.createCell(1).setCellValue("Row " + r + " of sheet " + s);
+                row.createCell(2).setCellFormula("A" + (r+1) + "*2");
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        wb.write(baos);
+        byte[] expected = wb.getBytes();
+
+        POIFSFileSystem fs = new POIFSFileSystem(new ByteArrayInputStream(baos.toByteArray()));
+        InputStream is = fs.createDocumentInputStream("Workbook");
+        byte[] actual = new byte[expected.length];
+        assertEquals(expected.length, is.available());
+        is.read(actual);
+        assertTrue(java.util.Arrays.equals(expected, actual));
+
+        HSSFWorkbook wb2 = new HSSFWorkbook(fs);
+        assertEquals(3, wb2.getNumberOfSheets());
+        assertEquals("Row 199 of sheet 2", wb2.getSheetAt(2).getRow(199).getCell(1).getStringCellValue());
+        assertEquals(398.0, wb2.getSheetAt(2).getRow(199).getCell(0).getNumericCellValue(), 0.0);
+    }
+
+    /**
+     * A failure of the output part way through the Workbook stream
+     *  still comes out of write() as an IOException
+     */
+    public void testWriteFailure() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        HSSFSheet sheet = wb.createSheet();
+        for (int r = 0; r < 2000; r++) {
+            sheet.createRow(r).createCell(0).setCellValue(r);
+        }
+        OutputStream failing = new OutputStream() {
+            private int written;
+            public void write(int b) throws IOException {
+                if (++written > 20000) {
+                    throw new IOException("disk full");
+                }
+            }
+        };
+        try {
+            wb.write(failing);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
     }
 
     /**
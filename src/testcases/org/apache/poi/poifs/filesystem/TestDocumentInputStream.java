@@ -20,6 +20,7 @@ package org.apache.poi.poifs.filesystem;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -28,6 +29,7 @@ import junit.framework.TestCase;
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.poifs.property.DirectoryProperty;
 import org.apache.poi.poifs.storage.RawDataBlock;
+import org.apache.poi.util.TempFile;
 
 /**
  * Class to test DocumentInputStream functionality
@@ -503,6 +505,67 @@ public final class TestDocumentInputStream extends TestCase {
        }
     }
     
+    /**
+     * Tests that skipping over whole blocks of a file backed stream, big
+     *  and mini, leaves it in the right place, and that mark and reset
+     *  still work afterwards
+     */
+    public void testSkipBlocks() throws IOException {
+       byte[] big = new byte[20000];
+       byte[] mini = new byte[3000];
+       for (int i = 0; i < big.length; i++) {
+          big[i] = (byte)(i * 7 + i / 256);
+       }
+       for (int i = 0; i < mini.length; i++) {
+          mini[i] = (byte)(i * 3 + i / 64);
+       }
+       POIFSFileSystem written = new POIFSFileSystem();
+       written.createDocument(new ByteArrayInputStream(big), "Big");
+       written.createDocument(new ByteArrayInputStream(mini), "Mini");
+       File file = TempFile.createTempFile("skip", ".ole2");
+       FileOutputStream out = new FileOutputStream(file);
+       written.writeFilesystem(out);
+       out.close();
+
+       NPOIFSFileSystem npoifs = new NPOIFSFileSystem(file);
+       try {
+          DirectoryNode root = npoifs.getRoot();
+          confirmSkips(new NDocumentInputStream((DocumentEntry)root.getEntry("Big")), big, 512);
+          confirmSkips(new NDocumentInputStream((DocumentEntry)root.getEntry("Mini")), mini, 64);
+       } finally {
+          npoifs.close();
+       }
+    }
+
+    private static void confirmSkips(DocumentInputStream stream, byte[] data, int blockSize)
+          throws IOException {
+       // whole blocks, from the start of a block and from within one
+       int[] skips = { blockSize * 3, 5, blockSize * 2, blockSize - 6, 1, blockSize * 4 + 17 };
+       int offset = 0;
+       for (int skip : skips) {
+          assertEquals(skip, stream.skip(skip));
+          offset += skip;
+          assertEquals(data.length - offset, stream.available());
+          assertEquals(data[offset] & 0xff, stream.read());
+          offset++;
+       }
+
+       stream.mark(0);
+       byte[] expected = new byte[blockSize + 10];
+       System.arraycopy(data, offset + blockSize * 2, expected, 0, expected.length);
+       byte[] actual = new byte[expected.length];
+       assertEquals(blockSize * 2, stream.skip(blockSize * 2));
+       stream.readFully(actual);
+       assertTrue(Arrays.equals(expected, actual));
+       stream.reset();
+       assertEquals(data.length - offset, stream.available());
+       assertEquals(data[offset] & 0xff, stream.read());
+
+       assertEquals(data.length - offset - 1, stream.skip(data.length));
+       assertEquals(0, stream.available());
+       assertEquals(-1, stream.read());
+    }
+
     /**
      * Test that we can read files at multiple levels down the tree
      */
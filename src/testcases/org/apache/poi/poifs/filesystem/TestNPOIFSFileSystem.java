@@ -19,9 +19,15 @@ package org.apache.poi.poifs.filesystem;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
+import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 
 import org.apache.poi.POIDataSamples;
@@ -548,6 +554,76 @@ public final class TestNPOIFSFileSystem extends TestCase {
       }
    }
    
+   /**
+    * Tests that a memory mapped filesystem gives the same
+    *  contents as a normal one, including when several threads
+    *  read from it at once
+    */
+   public void testMemoryMappedConcurrentRead() throws Exception {
+      for(String name : new String[] {"BlockSize512.zvi", "BlockSize4096.zvi"}) {
+         NPOIFSFileSystem fsA = new NPOIFSFileSystem(_inst.openResourceAsStream(name));
+         final NPOIFSFileSystem fsB = new NPOIFSFileSystem(_inst.getFile(name), true, true);
+         
+         final String[] docs = new String[] {
+               "Thumbnail", "\u0005DocumentSummaryInformation",
+               "\u0005SummaryInformation", "Tags"
+         };
+         final byte[][] expected = new byte[docs.length][];
+         for(int i=0; i<docs.length; i++) {
+            expected[i] = readDocument(fsA.getRoot(), docs[i]);
+            assertTrue(Arrays.equals(expected[i], readDocument(fsB.getRoot(), docs[i])));
+         }
+         
+         // Now have lots of threads read the same documents
+         final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+         Thread[] threads = new Thread[8];
+         for(int t=0; t<threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+               public void run() {
+                  try {
+                     for(int r=0; r<50; r++) {
+                        int i = (offset+r) % docs.length;
+                        byte[] actual = readDocument(fsB.getRoot(), docs[i]);
+                        if(! Arrays.equals(expected[i], actual)) {
+                           failures.add(new AssertionFailedError("Wrong contents for " + docs[i]));
+                        }
+                     }
+                  } catch(Throwable e) {
+                     failures.add(e);
+                  }
+               }
+            };
+            threads[t].start();
+         }
+         for(Thread thread : threads) {
+            thread.join();
+         }
+         assertEquals(failures.toString(), 0, failures.size());
+         
+         // Memory mapped files can't be written in place
+         try {
+            fsB.writeFilesystem();
+            fail("Memory mapped files are read-only");
+         } catch(IllegalArgumentException e) {}
+         fsB.close();
+      }
+      
+      try {
+         new NPOIFSFileSystem(_inst.getFile("BlockSize512.zvi"), false, true);
+         fail("Memory mapped files must be opened read-only");
+      } catch(IllegalArgumentException e) {}
+   }
+   
+   private static byte[] readDocument(DirectoryEntry dir, String name) throws IOException {
+      DocumentNode doc = (DocumentNode)dir.getEntry(name);
+      NDocumentInputStream inp = new NDocumentInputStream(doc);
+      byte[] contents = new byte[doc.getSize()];
+      assertEquals(doc.getSize(), inp.read(contents));
+      inp.close();
+      return contents;
+   }
+   
    /**
     * Read a file, write it and read it again.
     * Then, alter+add some streams, write and read
@@ -20,8 +20,10 @@
 package org.apache.poi.poifs.nio;
 
 import java.io.File;
+import java.io.RandomAccessFile;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.apache.poi.POIDataSamples;
 
@@ -78,6 +80,84 @@ public class TestDataSource extends TestCase
       } catch(IllegalArgumentException e) {}
    }
    
+   public void testMappedFile() throws Exception {
+      File f = data.getFile("Notes.ole2");
+      
+      // Use small chunks, so that some reads span two mappings
+      FileChannel channel = (new RandomAccessFile(f, "r")).getChannel();
+      MappedFileDataSource ds = new MappedFileDataSource(channel, 1000);
+      assertEquals(8192, ds.size());
+      
+      // Start of file
+      ByteBuffer bs; 
+      bs = ds.read(4, 0);
+      assertEquals(4, bs.capacity());
+      assertEquals(0, bs.position());
+      assertEquals(true, bs.isReadOnly());
+      assertEquals(0xd0-256, bs.get(0));
+      assertEquals(0xcf-256, bs.get(1));
+      assertEquals(0x11-000, bs.get(2));
+      assertEquals(0xe0-256, bs.get(3));
+      assertEquals(0xd0-256, bs.get());
+      assertEquals(0xcf-256, bs.get());
+      assertEquals(0x11-000, bs.get());
+      assertEquals(0xe0-256, bs.get());
+      
+      // Mid way through
+      bs = ds.read(8, 0x400);
+      assertEquals(8, bs.capacity());
+      assertEquals(0, bs.position());
+      assertEquals((byte)'R', bs.get(0));
+      assertEquals(0, bs.get(1));
+      assertEquals((byte)'o', bs.get(2));
+      assertEquals(0, bs.get(3));
+      assertEquals((byte)'o', bs.get(4));
+      assertEquals(0, bs.get(5));
+      assertEquals((byte)'t', bs.get(6));
+      assertEquals(0, bs.get(7));
+      
+      // Spanning two mappings, 8 bytes from each
+      byte[] expected = new byte[16];
+      RandomAccessFile raf = new RandomAccessFile(f, "r");
+      raf.seek(3992);
+      raf.readFully(expected);
+      raf.close();
+      bs = ds.read(16, 3992);
+      assertEquals(16, bs.remaining());
+      assertEquals((byte)'n', bs.get(0));
+      assertEquals((byte)'m', bs.get(2));
+      assertEquals((byte)'h', bs.get(9));
+      for(int i=0; i<16; i++) {
+         assertEquals(expected[i], bs.get(i));
+      }
+
+      // Should match the file backed one, block by block
+      FileBackedDataSource fds = new FileBackedDataSource(f);
+      for(int pos=0; pos<8192; pos+=512) {
+         assertEquals(fds.read(512, pos), ds.read(512, pos));
+      }
+      fds.close();
+      
+      // Can go to the end, but not past it
+      bs = ds.read(8, 8190);
+      assertEquals(0, bs.position());
+      assertEquals(2, bs.remaining());
+      
+      // Can't go off the end
+      try {
+         bs = ds.read(4, 8192);
+         fail("Shouldn't be able to read off the end of the file");
+      } catch(IllegalArgumentException e) {}
+      
+      // Can't write
+      try {
+         ds.write(ByteBuffer.allocate(4), 0);
+         fail("Memory mapped data sources are read-only");
+      } catch(UnsupportedOperationException e) {}
+      
+      ds.close();
+   }
+   
    public void testByteArray() throws Exception {
       byte[] data = new byte[256];
       byte b;
@@ -267,6 +267,10 @@ public class TestEvaluationCache extends TestCase {
 		public void clearAllCachedResultValues() {
 			_evaluator.clearAllCachedResultValues();
 		}
+
+		public String getCacheMemoryUsageReport() {
+			return _evaluator.getCacheMemoryUsageReport();
+		}
 	}
 
 	private static MySheet createMediumComplex() {
@@ -432,6 +436,20 @@ public class TestEvaluationCache extends TestCase {
 		});
 	}
 
+	public void testMemoryUsageReport() {
+		MySheet ms = createMediumComplex();
+		String report = ms.getCacheMemoryUsageReport();
+		assertTrue(report, report.indexOf("plain cells=0 ") > 0);
+		assertTrue(report, report.indexOf("formula cells=0 ") > 0);
+
+		ms.evaluateCell("A1");
+		report = ms.getCacheMemoryUsageReport();
+		// B1, B2, C1, C2 and A1 itself
+		assertTrue(report, report.indexOf("formula cells=5 ") > 0);
+		// D1:E3 and B3
+		assertTrue(report, report.indexOf("plain cells=7 ") > 0);
+	}
+
 	/**
 	 * verifies that when updating a plain cell, depending (formula) cell cached values are cleared
 	 * only when the plain cell's value actually changes
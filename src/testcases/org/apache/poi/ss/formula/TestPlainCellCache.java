@@ -19,6 +19,10 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
 import junit.framework.TestCase;
 import org.apache.poi.ss.formula.PlainCellCache.Loc;
 import org.apache.poi.ss.formula.eval.*;
@@ -62,4 +66,43 @@ public class TestPlainCellCache extends TestCase {
 
         }
     }
+
+    /**
+     * Mixes puts and removes of nearby cells (which collide in the hash table) and checks
+     * the cache against a plain map
+     */
+    public void testManyPutsAndRemoves() {
+        PlainCellCache cache = new PlainCellCache();
+        Map<Long, PlainValueCellCacheEntry> expected = new HashMap<Long, PlainValueCellCacheEntry>();
+        Random rand = new Random(12345);
+        for (int i = 0; i < 200000; i++) {
+            int sheetIndex = rand.nextInt(3);
+            int rowIndex = rand.nextInt(300);
+            int columnIndex = rand.nextInt(10);
+            long bookSheetColumn = Loc.toBookSheetColumn(0, sheetIndex, columnIndex);
+            Long key = Long.valueOf(bookSheetColumn * 1000 + rowIndex);
+            if (rand.nextInt(3) == 0) {
+                cache.remove(bookSheetColumn, rowIndex);
+                expected.remove(key);
+            } else {
+                PlainValueCellCacheEntry entry = new PlainValueCellCacheEntry(new NumberEval(i));
+                cache.put(bookSheetColumn, rowIndex, entry);
+                expected.put(key, entry);
+            }
+            assertSame(expected.get(key), cache.get(bookSheetColumn, rowIndex));
+        }
+        assertEquals(expected.size(), cache.size());
+        for (int sheetIndex = 0; sheetIndex < 3; sheetIndex++) {
+            for (int columnIndex = 0; columnIndex < 10; columnIndex++) {
+                long bookSheetColumn = Loc.toBookSheetColumn(0, sheetIndex, columnIndex);
+                for (int rowIndex = 0; rowIndex < 300; rowIndex++) {
+                    Long key = Long.valueOf(bookSheetColumn * 1000 + rowIndex);
+                    assertSame(expected.get(key), cache.get(bookSheetColumn, rowIndex));
+                }
+            }
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(Loc.toBookSheetColumn(0, 1, 1), 1));
+    }
 }
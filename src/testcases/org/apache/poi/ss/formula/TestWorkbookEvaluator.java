@@ -21,6 +21,7 @@ import junit.framework.AssertionFailedError;
 import junit.framework.TestCase;
 
 import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
 import org.apache.poi.ss.formula.ptg.AreaErrPtg;
 import org.apache.poi.ss.formula.ptg.AttrPtg;
 import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
@@ -28,6 +29,8 @@ import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
 import org.apache.poi.ss.formula.ptg.IntPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.UnionPtg;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
 import org.apache.poi.ss.formula.eval.MissingArgEval;
@@ -240,6 +243,68 @@ public class TestWorkbookEvaluator extends TestCase {
 	}
 	
 
+	/**
+	 * Formula cells are compiled on first evaluation, and re-used when their
+	 * inputs change. The results should match the interpreter's.
+	 */
+	public void testCompiledFormula() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		HSSFSheet sheet = wb.createSheet("Sheet1");
+		HSSFRow row = sheet.createRow(0);
+		HSSFCell input = row.createCell(0);
+		input.setCellValue(2);
+		String[] formulas = {
+			"A1*3+SUM(A1:A1)",
+			"IF(A1>1,\"big\",\"small\")",
+			"IF(A1>1,A1*10)",
+			"1+IF(A1>1,,)",
+			"IF(1/(A1-1)>0,1,2)",
+			"CHOOSE(A1+1,5,6,7,8)",
+			"IF(A1>1,IF(A1>2,3,2),1)&\"!\"",
+		};
+		HSSFCell[] cells = new HSSFCell[formulas.length];
+		for (int i = 0; i < formulas.length; i++) {
+			cells[i] = row.createCell(i + 1);
+			cells[i].setCellFormula(formulas[i]);
+		}
+
+		HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+		// the debug output mode always uses the interpreter
+		HSSFFormulaEvaluator interpreter = new HSSFFormulaEvaluator(wb);
+		for (double value : new double[] { 1, 3, 0, 2 }) {
+			input.setCellValue(value);
+			fe.notifyUpdateCell(input);
+			for (int i = 0; i < formulas.length; i++) {
+				interpreter.clearAllCachedResultValues();
+				interpreter.setDebugEvaluationOutputForNextEval(true);
+				CellValue expected = interpreter.evaluate(cells[i]);
+				CellValue actual = fe.evaluate(cells[i]);
+				assertEquals(formulas[i] + " with A1=" + value,
+						expected.formatAsString(), actual.formatAsString());
+			}
+		}
+		assertEquals("big", fe.evaluate(cells[1]).getStringValue());
+		assertEquals(1.0, fe.evaluate(cells[4]).getNumberValue(), 0.0);
+		assertEquals(7.0, fe.evaluate(cells[5]).getNumberValue(), 0.0);
+
+		// The formula itself changing needs the cell to be re-compiled
+		cells[0].setCellFormula("A1*4");
+		fe.notifySetFormula(cells[0]);
+		assertEquals(8.0, fe.evaluate(cells[0]).getNumberValue(), 0.0);
+	}
+
+	public void testCompileTokens() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		wb.createSheet("Sheet1");
+
+		assertFalse(CompiledFormula.compile(HSSFFormulaParser.parse("IF(A1,B1,C1)", wb)).isInterpreted());
+		assertFalse(CompiledFormula.compile(HSSFFormulaParser.parse("SUM(A1:B2)*(2+3)", wb)).isInterpreted());
+		assertFalse(CompiledFormula.compile(new Ptg[] { new IntPtg(42), AttrPtg.SUM, }).isInterpreted());
+		// The union operator isn't compiled
+		assertTrue(CompiledFormula.compile(new Ptg[] {
+				new RefPtg("A1"), new RefPtg("B1"), UnionPtg.instance, }).isInterpreted());
+	}
+
   /**
    * formulas with defined names.
    */
@@ -0,0 +1,201 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.ErrorConstants;
+
+/**
+ * Tests for the indexes that VLOOKUP, HLOOKUP, MATCH, COUNTIF and SUMIF build over
+ * the cached values of the ranges they search. The results must be the same as those
+ * of a plain scan, and must follow changes to the cells in those ranges.
+ */
+public final class TestIndexedLookups extends TestCase {
+
+	private HSSFSheet _sheet;
+	private HSSFFormulaEvaluator _evaluator;
+
+	@Override
+	protected void setUp() {
+		HSSFWorkbook wb = new HSSFWorkbook();
+		_sheet = wb.createSheet("Sheet1");
+		Object[] values = {
+			Double.valueOf(3), "apple", "5", Boolean.TRUE, Double.valueOf(5),
+			"APPLE", null, Double.valueOf(3), null, "banana",
+		};
+		for (int i = 0; i < values.length; i++) {
+			HSSFRow row = _sheet.createRow(i);
+			Object value = values[i];
+			if (value instanceof Double) {
+				row.createCell(0).setCellValue(((Double) value).doubleValue());
+			} else if (value instanceof String) {
+				row.createCell(0).setCellValue((String) value);
+			} else if (value instanceof Boolean) {
+				row.createCell(0).setCellValue(((Boolean) value).booleanValue());
+			}
+			row.createCell(1).setCellValue(i + 1);
+			row.createCell(2).setCellValue((i + 1) * 10);
+		}
+		_sheet.getRow(8).createCell(0).setCellErrorValue((byte) ErrorConstants.ERROR_NA);
+		_evaluator = new HSSFFormulaEvaluator(wb);
+	}
+
+	private CellValue evaluate(String formula) {
+		HSSFRow row = _sheet.getRow(20);
+		if (row == null) {
+			row = _sheet.createRow(20);
+		}
+		HSSFCell cell = row.createCell(5);
+		cell.setCellFormula(formula);
+		_evaluator.notifyUpdateCell(cell);
+		return _evaluator.evaluate(cell);
+	}
+
+	private void confirmNumber(double expected, String formula) {
+		CellValue cv = evaluate(formula);
+		assertEquals(formula, Cell.CELL_TYPE_NUMERIC, cv.getCellType());
+		assertEquals(formula, expected, cv.getNumberValue(), 0.0);
+	}
+
+	private void confirmError(int expectedErrorCode, String formula) {
+		CellValue cv = evaluate(formula);
+		assertEquals(formula, Cell.CELL_TYPE_ERROR, cv.getCellType());
+		assertEquals(formula, expectedErrorCode, cv.getErrorValue());
+	}
+
+	private void setValue(int rowIndex, double value) {
+		HSSFCell cell = _sheet.getRow(rowIndex).getCell(0);
+		if (cell == null) {
+			cell = _sheet.getRow(rowIndex).createCell(0);
+		}
+		cell.setCellValue(value);
+		_evaluator.notifyUpdateCell(cell);
+	}
+
+	private void setValue(int rowIndex, String value) {
+		HSSFCell cell = _sheet.getRow(rowIndex).getCell(0);
+		if (cell == null) {
+			cell = _sheet.getRow(rowIndex).createCell(0);
+		}
+		cell.setCellValue(value);
+		_evaluator.notifyUpdateCell(cell);
+	}
+
+	public void testCountif() {
+		confirmNumber(2, "COUNTIF(A1:A10,3)");
+		// numeric criteria also match text that looks like the same number
+		confirmNumber(2, "COUNTIF(A1:A10,5)");
+		confirmNumber(2, "COUNTIF(A1:A10,\"apple\")");
+		confirmNumber(2, "COUNTIF(A1:A10,\"=Apple\")");
+		confirmNumber(1, "COUNTIF(A1:A10,TRUE)");
+		confirmNumber(1, "COUNTIF(A1:A10,NA())");
+		confirmNumber(0, "COUNTIF(A1:A10,\"pear\")");
+		// criteria which aren't looked up in the index
+		// only text and blanks can match text criteria, even with "<>"
+		confirmNumber(3, "COUNTIF(A1:A10,\"<>apple\")");
+		confirmNumber(2, "COUNTIF(A1:A10,\"a*\")");
+		confirmNumber(3, "COUNTIF(A1:A10,\">=3\")");
+	}
+
+	public void testNegativeZero() {
+		// row 7 was blank
+		setValue(6, -0.0);
+		setValue(8, "0");
+		confirmNumber(2, "COUNTIF(A1:A10,0)");
+		confirmNumber(2, "COUNTIF(A1:A10,-0)");
+		confirmNumber(2, "COUNTIF(A1:A10,\"=0\")");
+		confirmNumber(4, "COUNTIF(A1:A10,\">=0\")");
+		confirmNumber(0, "COUNTIF(A1:A10,\"<0\")");
+		confirmNumber(16, "SUMIF(A1:A10,0,B1:B10)");
+	}
+
+	public void testSumif() {
+		confirmNumber(8, "SUMIF(A1:A10,\"apple\",B1:B10)");
+		confirmNumber(8, "SUMIF(A1:A10,5,B1:B10)");
+		confirmNumber(9, "SUMIF(A1:A10,3,B1:B10)");
+		confirmNumber(90, "SUMIF(A1:A10,3,C1)");
+		confirmNumber(0, "SUMIF(A1:A10,\"pear\",B1:B10)");
+		confirmNumber(14, "SUMIF(A1:A10,\">=3\",B1:B10)");
+	}
+
+	public void testVlookupAndMatch() {
+		confirmNumber(2, "VLOOKUP(\"APPLE\",A1:B10,2,FALSE)");
+		confirmNumber(1, "VLOOKUP(3,A1:B10,2,FALSE)");
+		confirmNumber(4, "VLOOKUP(TRUE,A1:B10,2,FALSE)");
+		confirmError(ErrorConstants.ERROR_NA, "VLOOKUP(\"pear\",A1:B10,2,FALSE)");
+		confirmNumber(10, "MATCH(\"banana\",A1:A10,0)");
+		// MATCH does not treat text as numbers
+		confirmNumber(5, "MATCH(5,A1:A10,0)");
+		confirmNumber(2, "MATCH(\"a*\",A1:A10,0)");
+		confirmNumber(5, "HLOOKUP(4,B4:C5,2,FALSE)");
+	}
+
+	public void testMatchSorted() {
+		confirmNumber(3, "MATCH(35,C1:C10,1)");
+		confirmNumber(3, "MATCH(30,C1:C10)");
+		confirmNumber(10, "MATCH(1000,C1:C10,1)");
+		confirmError(ErrorConstants.ERROR_NA, "MATCH(5,C1:C10,1)");
+		confirmNumber(6, "VLOOKUP(65,C1:C10,1)/10");
+	}
+
+	public void testIndexFollowsChanges() {
+		confirmNumber(2, "COUNTIF(A1:A10,3)");
+		confirmNumber(10, "MATCH(\"banana\",A1:A10,0)");
+		confirmNumber(2, "COUNTIF(A1:A10,\"apple\")");
+
+		setValue(9, 3);
+		confirmNumber(3, "COUNTIF(A1:A10,3)");
+		confirmError(ErrorConstants.ERROR_NA, "MATCH(\"banana\",A1:A10,0)");
+		confirmNumber(19, "SUMIF(A1:A10,3,B1:B10)");
+
+		// row 7 was blank
+		setValue(6, "Apple");
+		confirmNumber(3, "COUNTIF(A1:A10,\"apple\")");
+		confirmNumber(1, "MATCH(\"apple\",A7:A10,0)");
+
+		setValue(1, 35);
+		confirmNumber(6, "MATCH(\"apple\",A1:A10,0)");
+		confirmNumber(2, "COUNTIF(A1:A10,\"apple\")");
+	}
+
+	public void testWholeColumn() {
+		confirmNumber(2, "COUNTIF(A:A,3)");
+		confirmNumber(10, "MATCH(\"banana\",A:A,0)");
+		confirmNumber(9, "SUMIF(A:A,3,B:B)");
+		// the rows after the last one are blank
+		confirmNumber(65536 - 9 + 2, "COUNTIF(A:A,\"<>apple\")");
+		confirmError(ErrorConstants.ERROR_NA, "MATCH(\"pear\",A:A,0)");
+
+		// a cell after the rows that were read
+		_sheet.createRow(99);
+		setValue(99, "pear");
+		confirmNumber(100, "MATCH(\"pear\",A:A,0)");
+		confirmNumber(65536 - 9 + 2, "COUNTIF(A:A,\"<>apple\")");
+		setValue(99, 3);
+		confirmNumber(3, "COUNTIF(A:A,3)");
+		confirmNumber(65536 - 10 + 2, "COUNTIF(A:A,\"<>apple\")");
+	}
+}
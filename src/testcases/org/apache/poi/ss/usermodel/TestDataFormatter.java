@@ -25,6 +25,8 @@ import java.text.DateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
 
 import junit.framework.TestCase;
 
@@ -538,4 +540,191 @@ public class TestDataFormatter extends TestCase {
        DataFormatter dfUS = new DataFormatter(Locale.US, true);
        assertEquals("01.010", dfUS.formatRawCellContents(0.0000116898, -1, "ss.000"));
     }
+
+    /**
+     * Formats are shared between formatters, but not the ones
+     *  that were added to or are specific to a formatter
+     */
+    public void testSharedFormats() {
+       DataFormatter df1 = new DataFormatter(Locale.US);
+       DataFormatter df2 = new DataFormatter(Locale.US);
+       DataFormatter dfCsv = new DataFormatter(Locale.US, true);
+       DataFormatter dfDE = new DataFormatter(Locale.GERMAN);
+
+       assertEquals("1,234.50", df1.formatRawCellContents(1234.5, -1, "#,##0.00"));
+       assertEquals("1,234.50", df2.formatRawCellContents(1234.5, -1, "#,##0.00"));
+       assertEquals("1.234,50", dfDE.formatRawCellContents(1234.5, -1, "#,##0.00"));
+
+       df1.addFormat("0.0", new java.text.DecimalFormat("000"));
+       assertEquals("012", df1.formatRawCellContents(12, -1, "0.0"));
+       assertEquals("12.0", df2.formatRawCellContents(12, -1, "0.0"));
+
+       assertEquals("abc", dfCsv.formatRawCellContents(1, -1, "\"abc\""));
+       assertEquals("1.0", df2.formatRawCellContents(1, -1, "\"abc\""));
+    }
+
+    /**
+     * Date formats are created in the default time zone, so ones created
+     *  for another default can't be reused
+     */
+    public void testSharedFormatsFollowDefaultTimeZone() {
+       TimeZone tz = TimeZone.getDefault();
+       try {
+          TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+          assertEquals("2013-03-10 12:00",
+                new DataFormatter(Locale.US).formatRawCellContents(41343.5, -1, "yyyy-mm-dd hh:mm"));
+          TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+          assertEquals("2013-03-10 12:00",
+                new DataFormatter(Locale.US).formatRawCellContents(41343.5, -1, "yyyy-mm-dd hh:mm"));
+       } finally {
+          TimeZone.setDefault(tz);
+       }
+    }
+
+    /**
+     * One formatter can be used by several threads at once
+     */
+    public void testConcurrentFormatting() throws Exception {
+       final DataFormatter df = new DataFormatter(Locale.US);
+       final String[] formats = {
+             "yyyy-mm-dd hh:mm:ss.000", "#,##0.00", "0.00%", "# ?/?", "mmm d, yyyy", "0.000E+00",
+             "[h]:mm:ss", "000-00-0000",
+       };
+       final double[] values = { 41234.1234567, 1.5, 1234567.891, 0.25, 40000, 12345.678 };
+       final String[][] expected = new String[formats.length][values.length];
+       for (int i = 0; i < formats.length; i++) {
+          for (int j = 0; j < values.length; j++) {
+             expected[i][j] = new DataFormatter(Locale.US).formatRawCellContents(values[j], -1, formats[i]);
+          }
+       }
+
+       final String[] failure = new String[1];
+       Thread[] threads = new Thread[4];
+       for (int t = 0; t < threads.length; t++) {
+          final int offset = t;
+          threads[t] = new Thread() {
+             public void run() {
+                for (int n = 0; n < 2000; n++) {
+                   int i = (n + offset) % formats.length;
+                   int j = (n / formats.length + offset) % values.length;
+                   String actual = df.formatRawCellContents(values[j], -1, formats[i]);
+                   if (!expected[i][j].equals(actual)) {
+                      synchronized (failure) {
+                         failure[0] = formats[i] + " gave " + actual + " instead of " + expected[i][j];
+                      }
+                      return;
+                   }
+                }
+             }
+          };
+          threads[t].start();
+       }
+       for (Thread thread : threads) {
+          thread.join();
+       }
+       assertNull(failure[0], failure[0]);
+    }
+
+    /**
+     * The common built-in formats are written straight into the buffer,
+     *  with the same text as the java.text formats give
+     */
+    public void testFormatRawCellContentsIntoBuilder() {
+       DataFormatter dfUS = new DataFormatter(Locale.US);
+       StringBuilder sb = new StringBuilder("x");
+       dfUS.formatRawCellContents(1234.5, -1, "#,##0.00", false, sb);
+       assertEquals("x1,234.50", sb.toString());
+
+       // Formats added to the formatter are still used
+       dfUS.addFormat("0.00", new java.text.DecimalFormat("000"));
+       sb.setLength(0);
+       dfUS.formatRawCellContents(12, -1, "0.00", false, sb);
+       assertEquals("012", sb.toString());
+
+       // Subclasses that format raw values themselves are still used
+       DataFormatter custom = new DataFormatter(Locale.US) {
+          public String formatRawCellContents(double value, int formatIndex, String formatString) {
+             return "[" + super.formatRawCellContents(value, formatIndex, formatString) + "]";
+          }
+       };
+       sb.setLength(0);
+       custom.formatRawCellContents(1234.5, -1, "#,##0.00", false, sb);
+       assertEquals("[1,234.50]", sb.toString());
+
+       // Other formats go the usual way
+       sb.setLength(0);
+       dfUS.formatRawCellContents(0.5, -1, "# ?/?", false, sb);
+       assertEquals(dfUS.formatRawCellContents(0.5, -1, "# ?/?"), sb.toString());
+
+       String[] numberFormats = { "General", "@", "0", "0.00", "#,##0", "#,##0.00", "0%", "0.00%" };
+       double[] edgeValues = {
+             0, -0.0, 0.5, 1.5, 2.5, -2.5, 0.125, 1.005, -0.001, 0.005, 0.015, 1e-11, -1e-11,
+             5e-11, 0.1, 1234567.891, 999999.995, 28147.123456789, 1e14, 123456789012345.0,
+             1e15, 1e20, 1e-300, 0.99999999999, Double.MIN_VALUE, Double.NaN,
+       };
+       String[] dateFormats = {
+             "m/d/yy", "d-mmm-yy", "d-mmm", "mmm-yy", "h:mm AM/PM", "h:mm:ss AM/PM",
+             "h:mm", "h:mm:ss", "m/d/yy h:mm",
+       };
+       double[] edgeDates = {
+             0, 1, 59, 60, 60.5, 61, 0.99999999, 0.5, 41234.99999, 2958465.99999, 2958466, -1,
+             // either side of, and in, the daylight saving changes of March 10 and November 3, 2013
+             41343 + 1.5/24, 41343 + 2.0/24, 41343 + 2.5/24, 41343 + 3.0/24 - 1.0/86400, 41343 + 3.0/24,
+             41581 + 0.5/24, 41581 + 1.0/24, 41581 + 1.5/24, 41581 + 2.0/24,
+       };
+
+       TimeZone tz = TimeZone.getDefault();
+       TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+       try {
+          // local times skipped by the clocks going forward are moved on by an hour
+          DataFormatter dfNY = new DataFormatter(Locale.US);
+          StringBuilder sb2 = new StringBuilder();
+          dfNY.formatRawCellContents(41343 + 2.5/24, -1, "m/d/yy h:mm", false, sb2);
+          assertEquals("3/10/13 3:30", sb2.toString());
+          assertEquals("3/10/13 3:30", dfNY.formatRawCellContents(41343 + 2.5/24, -1, "m/d/yy h:mm"));
+
+          Locale[] locales = { Locale.US, Locale.GERMAN, Locale.FRANCE };
+          Random rnd = new Random(12345);
+          for (Locale locale : locales) {
+             DataFormatter df = new DataFormatter(locale);
+             BuiltinFormatWriter writer = new BuiltinFormatWriter(
+                   new java.text.DecimalFormatSymbols(locale), new java.text.DateFormatSymbols(locale));
+             for (String format : numberFormats) {
+                for (double value : edgeValues) {
+                   checkFormatting(df, value, format, false);
+                   checkFormatting(df, -value, format, false);
+                }
+                for (int i = 0; i < 2000; i++) {
+                   double value = Math.floor(rnd.nextDouble() * 100000) / 1000;
+                   if (i % 2 == 0) {
+                      value = (rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(24) - 12);
+                   }
+                   checkFormatting(df, value, format, false);
+                }
+                // common values aren't left to the java.text formats
+                assertTrue(writer.write(1234.5678, format, false, new StringBuilder()));
+             }
+             for (String format : dateFormats) {
+                for (double value : edgeDates) {
+                   checkFormatting(df, value, format, false);
+                   checkFormatting(df, value, format, true);
+                }
+                for (int i = 0; i < 2000; i++) {
+                   double value = rnd.nextDouble() * 100000;
+                   checkFormatting(df, value, format, i % 2 == 0);
+                }
+                assertTrue(writer.write(41234.5678, format, false, new StringBuilder()));
+             }
+          }
+       } finally {
+          TimeZone.setDefault(tz);
+       }
+    }
+
+    private static void checkFormatting(DataFormatter df, double value, String format, boolean use1904Windowing) {
+       StringBuilder sb = new StringBuilder();
+       df.formatRawCellContents(value, -1, format, use1904Windowing, sb);
+       assertEquals(format + " of " + value,
+             df.formatRawCellContents(value, -1, format, use1904Windowing), sb.toString());
+    }
 }
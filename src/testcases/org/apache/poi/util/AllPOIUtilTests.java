@@ -35,6 +35,7 @@ public final class AllPOIUtilTests {
         result.addTestSuite(TestIntList.class);
         result.addTestSuite(TestLittleEndian.class);
         result.addTestSuite(TestLongField.class);
+        result.addTestSuite(TestMappedStringTable.class);
         result.addTestSuite(TestPOILogFactory.class);
         result.addTestSuite(TestPOILogger.class);
         result.addTestSuite(TestShortField.class);
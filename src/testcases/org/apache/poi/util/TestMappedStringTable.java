@@ -0,0 +1,111 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.util;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Class to test {@link MappedStringTable}
+ */
+public final class TestMappedStringTable extends TestCase {
+
+    public void testAddAndGet() throws IOException {
+        MappedStringTable table = new MappedStringTable();
+        try {
+            assertEquals(0, table.size());
+            table.add("first");
+            table.add("");
+            table.add("\u00e9t\u00e9 \u4e2d\u6587 \ud834\udd1e");
+            table.add("first");
+            assertEquals(4, table.size());
+            assertEquals("first", table.get(0));
+            assertEquals("", table.get(1));
+            assertEquals("\u00e9t\u00e9 \u4e2d\u6587 \ud834\udd1e", table.get(2));
+            assertEquals("first", table.get(3));
+            try {
+                table.get(4);
+                fail("expected IndexOutOfBoundsException");
+            } catch (IndexOutOfBoundsException e) {
+                // expected
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    public void testAddUnique() throws IOException {
+        MappedStringTable table = new MappedStringTable();
+        try {
+            assertEquals(0, table.addUnique("a"));
+            assertEquals(1, table.addUnique("b"));
+            assertEquals(0, table.addUnique("a"));
+            // plain adds are not deduped, nor found by addUnique
+            table.add("c");
+            assertEquals(3, table.addUnique("c"));
+            assertEquals(3, table.addUnique("c"));
+            assertEquals(4, table.size());
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Small chunks, so that both files need many mappings, and strings
+     *  have to skip to the next chunk rather than span two
+     */
+    public void testManyChunks() throws IOException {
+        MappedStringTable table = new MappedStringTable(1024);
+        try {
+            int n = 20000;
+            for (int i = 0; i < n; i++) {
+                assertEquals(i, table.addUnique(makeString(i)));
+            }
+            for (int i = 0; i < n; i += 7) {
+                assertEquals(i, table.addUnique(makeString(i)));
+            }
+            assertEquals(n, table.size());
+            for (int i = 0; i < n; i++) {
+                assertEquals(makeString(i), table.get(i));
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 1024; i++) {
+                sb.append('x');
+            }
+            try {
+                table.add(sb.toString());
+                fail("expected IllegalArgumentException");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            table.close();
+        }
+    }
+
+    private static String makeString(int i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("s").append(i);
+        for (int j = 0; j < i % 50; j++) {
+            sb.append((char)('a' + j % 26));
+        }
+        return sb.toString();
+    }
+}